@@ -0,0 +1,20 @@
+package com.example.onlineticketingsystem.DTO;
+
+import com.example.onlineticketingsystem.entity.AuditLog;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.List;
+
+// Audit logs matching a search, newest first. total counts every match from the cursor on; pass
+// nextCursor back as cursor for the next page (null on the last page).
+@Data
+@AllArgsConstructor
+@NoArgsConstructor
+public class AuditSearchResultDTO {
+
+    private List<AuditLog> items;
+    private long total;
+    private String nextCursor;
+}
@@ -7,8 +7,14 @@ public class AuthResponseDTO {
 
     private String accessToken;
     private String tokenType = "Bearer";
+    private String refreshToken;
 
     public AuthResponseDTO(String accessToken) {
         this.accessToken = accessToken;
     }
+
+    public AuthResponseDTO(String accessToken, String refreshToken) {
+        this.accessToken = accessToken;
+        this.refreshToken = refreshToken;
+    }
 }
@@ -0,0 +1,15 @@
+package com.example.onlineticketingsystem.DTO;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+// exact is false when count comes from table statistics or was capped (the real count is at least count)
+@Data
+@AllArgsConstructor
+@NoArgsConstructor
+public class CountEstimateDTO {
+
+    private long count;
+    private boolean exact;
+}
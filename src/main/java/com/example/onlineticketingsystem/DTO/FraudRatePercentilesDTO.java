@@ -0,0 +1,19 @@
+package com.example.onlineticketingsystem.DTO;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.Map;
+
+// Fraud-rate percentiles of one route or inspector over a report's range, keyed like "p50" and "p95", with
+// the number of inspections (that had passengers) they were computed from
+@Data
+@AllArgsConstructor
+@NoArgsConstructor
+public class FraudRatePercentilesDTO {
+
+    private int groupId;
+    private long inspections;
+    private Map<String, Double> percentiles;
+}
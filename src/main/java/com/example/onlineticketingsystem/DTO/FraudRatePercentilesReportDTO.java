@@ -0,0 +1,23 @@
+package com.example.onlineticketingsystem.DTO;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.LocalDate;
+import java.util.List;
+
+// Fraud-rate percentiles per route or inspector between from and to (inclusive). staleSketches counts the
+// sketches in the range still waiting to be rebuilt after an update or delete; while it is above zero the
+// percentiles may include inspections that have since changed.
+@Data
+@AllArgsConstructor
+@NoArgsConstructor
+public class FraudRatePercentilesReportDTO {
+
+    private LocalDate from;
+    private LocalDate to;
+    private String groupBy;
+    private int staleSketches;
+    private List<FraudRatePercentilesDTO> rows;
+}
@@ -0,0 +1,30 @@
+package com.example.onlineticketingsystem.DTO;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.List;
+
+// Outcome of rebuilding the fraud counters from the inspect table: every route whose counter had drifted,
+// with what the table says (expected) and what the counter held before it was corrected
+@Data
+@AllArgsConstructor
+@NoArgsConstructor
+public class FraudReconcileDTO {
+
+    private int routes;
+    private List<RouteDrift> drifted;
+    private long durationMs;
+
+    @Data
+    @AllArgsConstructor
+    @NoArgsConstructor
+    public static class RouteDrift {
+        private int routeId;
+        private long expectedFraudCount;
+        private long countedFraudCount;
+        private long expectedInspections;
+        private long countedInspections;
+    }
+}
@@ -0,0 +1,20 @@
+package com.example.onlineticketingsystem.DTO;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.Map;
+
+// One group of an analytics query: the group's value (an id, a date or an hour; null without grouping), the
+// number of inspections, and the sum and average of each requested measure
+@Data
+@AllArgsConstructor
+@NoArgsConstructor
+public class InspectAnalyticsRowDTO {
+
+    private Object key;
+    private long count;
+    private Map<String, Long> sums;
+    private Map<String, Double> averages;
+}
@@ -0,0 +1,18 @@
+package com.example.onlineticketingsystem.DTO;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+// What became of one uploaded inspection, by its position in the upload (from 0). status is created (with the
+// new inspectId), rejected (failed validation) or failed (its batch could not be written).
+@Data
+@AllArgsConstructor
+@NoArgsConstructor
+public class InspectBulkItemDTO {
+
+    private int index;
+    private String status;
+    private Integer inspectId;
+    private String error;
+}
@@ -0,0 +1,23 @@
+package com.example.onlineticketingsystem.DTO;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.List;
+
+// The outcome of a bulk upload. error is set when reading stopped early (malformed JSON or too many items);
+// the items before that point were processed as usual and are listed.
+@Data
+@AllArgsConstructor
+@NoArgsConstructor
+public class InspectBulkResultDTO {
+
+    private int received;
+    private int created;
+    private int rejected;
+    private int failed;
+    private int batches;
+    private String error;
+    private List<InspectBulkItemDTO> items;
+}
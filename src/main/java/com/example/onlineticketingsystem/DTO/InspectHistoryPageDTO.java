@@ -0,0 +1,17 @@
+package com.example.onlineticketingsystem.DTO;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.List;
+
+// One page of an inspector's inspections. nextCursor is null on the last page.
+@Data
+@AllArgsConstructor
+@NoArgsConstructor
+public class InspectHistoryPageDTO {
+
+    private List<InspectSummaryDTO> items;
+    private String nextCursor;
+}
@@ -0,0 +1,22 @@
+package com.example.onlineticketingsystem.DTO;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.LocalDate;
+
+// Inspection totals for one day or week (periodStart is the Monday) and, when the report is grouped, one
+// route, bus or inspector (groupId). fraudRate is fraudCount per passenger checked.
+@Data
+@AllArgsConstructor
+@NoArgsConstructor
+public class InspectRollupDTO {
+
+    private LocalDate periodStart;
+    private Integer groupId;
+    private long inspections;
+    private long fraudCount;
+    private long passengers;
+    private double fraudRate;
+}
@@ -0,0 +1,23 @@
+package com.example.onlineticketingsystem.DTO;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.LocalDate;
+import java.util.List;
+
+// A range report read from the daily rollups. complete is false while the backfill has not yet rebuilt
+// every day, in which case older inspections may be missing from the rows.
+@Data
+@AllArgsConstructor
+@NoArgsConstructor
+public class InspectRollupReportDTO {
+
+    private LocalDate from;
+    private LocalDate to;
+    private String granularity;
+    private String groupBy;
+    private boolean complete;
+    private List<InspectRollupDTO> rows;
+}
@@ -0,0 +1,23 @@
+package com.example.onlineticketingsystem.DTO;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.LocalDate;
+import java.time.LocalTime;
+
+// One inspection in an inspector's history; the inspector is implied by the request and left out.
+@Data
+@AllArgsConstructor
+@NoArgsConstructor
+public class InspectSummaryDTO {
+
+    private int inspectId;
+    private int busId;
+    private int routeId;
+    private LocalDate inspectDate;
+    private LocalTime inspectTime;
+    private int noFraudDetected;
+    private int noOfPassengers;
+}
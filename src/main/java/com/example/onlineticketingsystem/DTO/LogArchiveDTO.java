@@ -0,0 +1,16 @@
+package com.example.onlineticketingsystem.DTO;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+// One archived month of audit_log or security_log; month is yyyy-MM and bytes the gzipped file size
+@Data
+@AllArgsConstructor
+@NoArgsConstructor
+public class LogArchiveDTO {
+
+    private String table;
+    private String month;
+    private long bytes;
+}
@@ -0,0 +1,17 @@
+package com.example.onlineticketingsystem.DTO;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.List;
+
+// One page of log rows, newest first. nextCursor is null on the last page.
+@Data
+@AllArgsConstructor
+@NoArgsConstructor
+public class LogPageDTO<T> {
+
+    private List<T> items;
+    private String nextCursor;
+}
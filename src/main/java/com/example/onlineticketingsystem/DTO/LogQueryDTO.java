@@ -0,0 +1,27 @@
+package com.example.onlineticketingsystem.DTO;
+
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import org.springframework.format.annotation.DateTimeFormat;
+
+import java.time.Instant;
+
+// Query parameters of /security-logs and /audit-logs. performedBy applies to audit logs; username,
+// status and ipAddress to security logs. from is inclusive, to exclusive. cursor is the nextCursor
+// of the previous page.
+@Data
+@NoArgsConstructor
+public class LogQueryDTO {
+
+    @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME)
+    private Instant from;
+    @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME)
+    private Instant to;
+    private String performedBy;
+    private String username;
+    private String action;
+    private String status;
+    private String ipAddress;
+    private String cursor;
+    private Integer limit;
+}
@@ -0,0 +1,9 @@
+package com.example.onlineticketingsystem.DTO;
+
+import lombok.Data;
+
+@Data
+public class RefreshTokenDTO {
+
+    private String refreshToken;
+}
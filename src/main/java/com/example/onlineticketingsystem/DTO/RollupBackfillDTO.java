@@ -0,0 +1,21 @@
+package com.example.onlineticketingsystem.DTO;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.LocalDate;
+
+// Where the rollup backfill stands: every day before nextDate has been rebuilt. daysRebuilt counts the days
+// this instance has rebuilt since it started.
+@Data
+@AllArgsConstructor
+@NoArgsConstructor
+public class RollupBackfillDTO {
+
+    private boolean running;
+    private boolean complete;
+    private LocalDate nextDate;
+    private LocalDate endDate;
+    private long daysRebuilt;
+}
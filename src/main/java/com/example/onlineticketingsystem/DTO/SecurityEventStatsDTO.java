@@ -0,0 +1,38 @@
+package com.example.onlineticketingsystem.DTO;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.Instant;
+import java.util.List;
+import java.util.Map;
+
+// Security events per sliding window ("1m", "15m", "1h"). IP counts come from a sketch and may be
+// slightly overestimated, never underestimated.
+@Data
+@AllArgsConstructor
+@NoArgsConstructor
+public class SecurityEventStatsDTO {
+
+    private Instant generatedAt;
+    private Map<String, WindowStats> windows;
+
+    @Data
+    @AllArgsConstructor
+    @NoArgsConstructor
+    public static class WindowStats {
+        private long total;
+        private Map<String, Long> byStatus;
+        private Map<String, Long> byAction;
+        private List<IpCount> topIps;
+    }
+
+    @Data
+    @AllArgsConstructor
+    @NoArgsConstructor
+    public static class IpCount {
+        private String ipAddress;
+        private long count;
+    }
+}
@@ -2,16 +2,21 @@ package com.example.onlineticketingsystem.controller;
 
 import com.example.onlineticketingsystem.DTO.AuthResponseDTO;
 import com.example.onlineticketingsystem.DTO.LoginDTO;
+import com.example.onlineticketingsystem.DTO.RefreshTokenDTO;
 import com.example.onlineticketingsystem.DTO.RegisterDTO;
+import com.example.onlineticketingsystem.exception.InvalidRefreshTokenException;
+import com.example.onlineticketingsystem.exception.PasswordHashingRejectedException;
 import com.example.onlineticketingsystem.service.AuthService;
-import com.example.onlineticketingsystem.service.RateLimiterService;
+import com.example.onlineticketingsystem.service.RateLimiter;
 import com.example.onlineticketingsystem.service.SecurityLogService;
 import jakarta.servlet.http.HttpServletRequest;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
+import org.springframework.security.core.Authentication;
 import org.springframework.web.bind.annotation.*;
 
 @RestController
@@ -23,10 +28,10 @@ public class AuthController {
 
     private final AuthService authService;
     private final SecurityLogService securityLogService;
-    private final RateLimiterService rateLimiterService;
+    private final RateLimiter rateLimiterService;
 
     @Autowired
-    public AuthController(AuthService authService, SecurityLogService securityLogService, RateLimiterService rateLimiterService) {
+    public AuthController(AuthService authService, SecurityLogService securityLogService, RateLimiter rateLimiterService) {
         this.authService = authService;
         this.securityLogService = securityLogService;
         this.rateLimiterService = rateLimiterService;
@@ -40,6 +45,9 @@ public class AuthController {
             logger.info("User '{}' registered successfully from IP: {}", registerDTO.getName(), ipAddress);
             securityLogService.logAccess("REGISTER", registerDTO.getName(), "SUCCESS", ipAddress, "User registration successful");
             return new ResponseEntity<>("User registered successfully!", HttpStatus.OK);
+        } catch (PasswordHashingRejectedException e) {
+            logger.warn("Registration by '{}' from IP {} rejected: {}", registerDTO.getName(), ipAddress, e.getMessage());
+            return serviceBusy(e);
         } catch (RuntimeException e) {
             logger.warn("Failed registration attempt by '{}' from IP: {}", registerDTO.getName(), ipAddress);
             securityLogService.logAccess("REGISTER", registerDTO.getName(), "FAILURE", ipAddress, e.getMessage());
@@ -70,6 +78,10 @@ public class AuthController {
             // Reset attempts on successful login
             rateLimiterService.resetAttempts(ipAddress);
             return new ResponseEntity<>(response, HttpStatus.OK);
+        } catch (PasswordHashingRejectedException e) {
+            // Overload is not a wrong password, so it does not count towards the IP's failed attempts
+            logger.warn("Login by '{}' from IP {} rejected: {}", loginDTO.getUsername(), ipAddress, e.getMessage());
+            return serviceBusy(e);
         } catch (RuntimeException e) {
             // Log failed login attempt
             logger.warn("Failed login attempt by '{}' from IP: {}. Reason: {}", loginDTO.getUsername(), ipAddress, e.getMessage());
@@ -85,4 +97,56 @@ public class AuthController {
             return ResponseEntity.status(HttpStatus.UNAUTHORIZED).body("Login failed. Please check your credentials.");
         }
     }
+
+    // Renew the access token without a password check; the refresh token is rotated on every call
+    @PostMapping("/refresh")
+    public ResponseEntity<?> refresh(@RequestBody RefreshTokenDTO refreshTokenDTO, HttpServletRequest request) {
+        String ipAddress = request.getRemoteAddr();
+        try {
+            AuthResponseDTO response = authService.refreshAccessToken(refreshTokenDTO.getRefreshToken());
+            return new ResponseEntity<>(response, HttpStatus.OK);
+        } catch (InvalidRefreshTokenException e) {
+            logger.warn("Refresh token rejected from IP {}: {}", ipAddress, e.getMessage());
+            securityLogService.logAccess("REFRESH", null, "FAILURE", ipAddress, e.getMessage());
+            return ResponseEntity.status(HttpStatus.UNAUTHORIZED).body("Refresh token is invalid. Please log in again.");
+        }
+    }
+
+    // Revoke the caller's access token and the refresh token sent in the body
+    @PostMapping("/logout")
+    public ResponseEntity<String> logout(@RequestBody(required = false) RefreshTokenDTO refreshTokenDTO,
+                                         @RequestHeader(value = HttpHeaders.AUTHORIZATION, required = false) String authorization,
+                                         HttpServletRequest request) {
+        String ipAddress = request.getRemoteAddr();
+        String accessToken = authorization != null && authorization.startsWith("Bearer ") ? authorization.substring(7) : null;
+        String refreshToken = refreshTokenDTO != null ? refreshTokenDTO.getRefreshToken() : null;
+        if (accessToken == null && refreshToken == null) {
+            return ResponseEntity.status(HttpStatus.UNAUTHORIZED).body("Access or refresh token required.");
+        }
+        // An expired access token still logs out: the refresh token is revoked and the access token is dead anyway
+        String username = authService.logout(accessToken, refreshToken);
+        logger.info("User '{}' logged out from IP: {}", username, ipAddress);
+        securityLogService.logAccess("LOGOUT", username != null ? username : "unknown", "SUCCESS", ipAddress, "Tokens revoked");
+        return ResponseEntity.ok("Logged out successfully.");
+    }
+
+    // Admin only: revoke every token of a user, e.g. after a password change or a compromised device
+    @PostMapping("/revoke/{username}")
+    public ResponseEntity<String> revokeUser(@PathVariable String username, Authentication authentication,
+                                             HttpServletRequest request) {
+        String ipAddress = request.getRemoteAddr();
+        if (authentication == null || authentication.getAuthorities().stream().noneMatch(grantedAuthority -> grantedAuthority.getAuthority().equals("admin"))) {
+            logger.warn("Unauthorized attempt to revoke tokens of '{}' from IP: {}", username, ipAddress);
+            return ResponseEntity.status(HttpStatus.UNAUTHORIZED).body("Access denied. Admin role required.");
+        }
+        authService.revokeAllTokens(username, "revoked by " + authentication.getName());
+        securityLogService.logAccess("REVOKE", username, "SUCCESS", ipAddress, "All tokens revoked by " + authentication.getName());
+        return ResponseEntity.ok("All tokens of " + username + " have been revoked.");
+    }
+
+    private ResponseEntity<String> serviceBusy(PasswordHashingRejectedException e) {
+        return ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE)
+                .header(HttpHeaders.RETRY_AFTER, "1")
+                .body(e.getMessage());
+    }
 }
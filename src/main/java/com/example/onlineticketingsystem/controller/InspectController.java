@@ -1,17 +1,32 @@
 package com.example.onlineticketingsystem.controller;
 
 import com.example.onlineticketingsystem.DTO.InspectDTO;
-import com.example.onlineticketingsystem.entity.Inspect;
+import com.example.onlineticketingsystem.DTO.FraudRatePercentilesReportDTO;
+import com.example.onlineticketingsystem.DTO.FraudReconcileDTO;
+import com.example.onlineticketingsystem.DTO.InspectAnalyticsRowDTO;
+import com.example.onlineticketingsystem.DTO.InspectBulkResultDTO;
+import com.example.onlineticketingsystem.DTO.InspectHistoryPageDTO;
+import com.example.onlineticketingsystem.DTO.InspectRollupReportDTO;
+import com.example.onlineticketingsystem.DTO.RollupBackfillDTO;
 import com.example.onlineticketingsystem.service.AuditLogService;
+import com.example.onlineticketingsystem.service.FraudCounterService;
+import com.example.onlineticketingsystem.service.FraudRateSketchService;
+import com.example.onlineticketingsystem.service.InspectBulkService;
+import com.example.onlineticketingsystem.service.InspectColumnStore;
+import com.example.onlineticketingsystem.service.InspectRollupService;
 import com.example.onlineticketingsystem.service.InspectService;
+import jakarta.servlet.http.HttpServletRequest;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.format.annotation.DateTimeFormat;
 import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.security.core.Authentication;
 import org.springframework.web.bind.annotation.*;
 
+import java.time.LocalDate;
 import java.util.List;
 import java.util.Map;
 
@@ -28,6 +43,21 @@ public class InspectController {
     @Autowired
     private AuditLogService auditLogService;
 
+    @Autowired
+    private FraudCounterService fraudCounterService;
+
+    @Autowired
+    private InspectRollupService inspectRollupService;
+
+    @Autowired
+    private InspectColumnStore inspectColumnStore;
+
+    @Autowired
+    private FraudRateSketchService fraudRateSketchService;
+
+    @Autowired
+    private InspectBulkService inspectBulkService;
+
     @PostMapping("/createInspect")
     public ResponseEntity<?> saveInspect(@RequestBody InspectDTO inspectDTO, Authentication authentication) {
         logger.info("User '{}' is attempting to create an inspection", authentication.getName());
@@ -48,6 +78,32 @@ public class InspectController {
         }
     }
 
+    // End-of-shift uploads: a JSON array of inspections, or NDJSON (Content-Type application/x-ndjson), streamed
+    // and written in batches. Every item gets a result; the response is 200 even when some were rejected.
+    @PostMapping(value = "/bulk", consumes = {MediaType.APPLICATION_JSON_VALUE, MediaType.APPLICATION_NDJSON_VALUE})
+    public ResponseEntity<?> bulkCreate(HttpServletRequest request, Authentication authentication) {
+        logger.info("User '{}' is attempting a bulk upload of inspections", authentication.getName());
+
+        if (authentication.getAuthorities().stream().noneMatch(grantedAuthority -> grantedAuthority.getAuthority().equals("ticket-inspector") || grantedAuthority.getAuthority().equals("admin"))) {
+            logger.warn("Unauthorized access attempt by user '{}' without ticket-inspector or admin role", authentication.getName());
+            return ResponseEntity.status(HttpStatus.UNAUTHORIZED).body("Access denied. You need to have ticket-inspector or admin role.");
+        }
+        String role = authentication.getAuthorities().stream().anyMatch(grantedAuthority -> grantedAuthority.getAuthority().equals("admin"))
+                ? "admin" : "ticket-inspector";
+        boolean ndjson = request.getContentType() != null && request.getContentType().startsWith(MediaType.APPLICATION_NDJSON_VALUE);
+
+        try {
+            InspectBulkResultDTO result = inspectBulkService.ingest(request.getInputStream(), ndjson, authentication.getName(), role);
+            logger.info("User '{}' uploaded {} inspections, {} created", authentication.getName(), result.getReceived(), result.getCreated());
+            return ResponseEntity.ok(result);
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().body(e.getMessage());
+        } catch (Exception e) {
+            logger.error("An error occurred during a bulk upload of inspections: {}", e.getMessage());
+            return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR).body("An error occurred during a bulk upload of inspections");
+        }
+    }
+
     @GetMapping("/getInspect")
     public ResponseEntity<?> getAllInspects(Authentication authentication) {
         logger.info("User '{}' is attempting to access all inspections", authentication.getName());
@@ -72,8 +128,12 @@ public class InspectController {
         }
     }
 
+    // The inspector's inspections newest first, a page at a time; pass nextCursor back as cursor for the next page
     @GetMapping("/byInspector/{id}")
-    public ResponseEntity<?> getInspectsByInspectorId(@PathVariable int id, Authentication authentication) {
+    public ResponseEntity<?> getInspectsByInspectorId(@PathVariable int id,
+                                                      @RequestParam(required = false) String cursor,
+                                                      @RequestParam(required = false) Integer limit,
+                                                      Authentication authentication) {
         logger.info("User '{}' is attempting to access inspections by inspector ID {}", authentication.getName(), id);
 
         if (authentication.getAuthorities().stream().noneMatch(grantedAuthority -> grantedAuthority.getAuthority().equals("ticket-inspector") || grantedAuthority.getAuthority().equals("admin"))) {
@@ -82,22 +142,76 @@ public class InspectController {
         }
 
         try{
-        List<Inspect> inspects = inspectService.getInspectsByInspectorId(id);
+        InspectHistoryPageDTO page = inspectService.getInspectsByInspectorId(id, cursor, limit);
 
-        if (inspects.isEmpty()) {
+        if (page.getItems().isEmpty() && cursor == null) {
             logger.warn("No inspections found in the database for inspector ID {}", id);
             return ResponseEntity.status(HttpStatus.NOT_FOUND).body("No inspections found in the database for inspector ID " + id);
         }
 
         logger.info("User '{}' successfully accessed inspections for inspector ID {}", authentication.getName(), id);
         auditLogService.createAuditLog("Read", authentication.getName(), "ticket-inspector", "Accessed inspections for inspector ID " + id);
-        return ResponseEntity.ok(inspects);
+        return ResponseEntity.ok(page);
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().body(e.getMessage());
         } catch (Exception e) {
             logger.error("An error occurred while fetching inspection data: {}", e.getMessage());
             return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR).body("An error occurred while fetching inspection data");
         }
     }
 
+    // This year's inspections up to today, newest first
+    @GetMapping("/getInspectorHistory/{id}")
+    public ResponseEntity<?> getInspectHistoryByInspectorId(@PathVariable int id,
+                                                            @RequestParam(required = false) String cursor,
+                                                            @RequestParam(required = false) Integer limit,
+                                                            Authentication authentication) {
+        logger.info("User '{}' is attempting to access the inspection history of inspector ID {}", authentication.getName(), id);
+
+        if (authentication.getAuthorities().stream().noneMatch(grantedAuthority -> grantedAuthority.getAuthority().equals("ticket-inspector") || grantedAuthority.getAuthority().equals("admin"))) {
+            logger.warn("Unauthorized access attempt by user '{}' without ticket-inspector or admin role", authentication.getName());
+            return ResponseEntity.status(HttpStatus.UNAUTHORIZED).body("Access denied. You need to have ticket-inspector or admin role.");
+        }
+
+        try {
+            InspectHistoryPageDTO page = inspectService.getInspectHistoryByInspectorId(id, cursor, limit);
+            logger.info("User '{}' successfully accessed the inspection history of inspector ID {}", authentication.getName(), id);
+            auditLogService.createAuditLog("Read", authentication.getName(), "ticket-inspector", "Accessed inspection history for inspector ID " + id);
+            return ResponseEntity.ok(page);
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().body(e.getMessage());
+        } catch (Exception e) {
+            logger.error("An error occurred while fetching inspection history: {}", e.getMessage());
+            return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR).body("An error occurred while fetching inspection history");
+        }
+    }
+
+    // Inspections from tomorrow to the end of the year, soonest first
+    @GetMapping("/getInspectorUpComing/{id}")
+    public ResponseEntity<?> getUpcomingInspectByInspectorId(@PathVariable int id,
+                                                             @RequestParam(required = false) String cursor,
+                                                             @RequestParam(required = false) Integer limit,
+                                                             Authentication authentication) {
+        logger.info("User '{}' is attempting to access upcoming inspections of inspector ID {}", authentication.getName(), id);
+
+        if (authentication.getAuthorities().stream().noneMatch(grantedAuthority -> grantedAuthority.getAuthority().equals("ticket-inspector") || grantedAuthority.getAuthority().equals("admin"))) {
+            logger.warn("Unauthorized access attempt by user '{}' without ticket-inspector or admin role", authentication.getName());
+            return ResponseEntity.status(HttpStatus.UNAUTHORIZED).body("Access denied. You need to have ticket-inspector or admin role.");
+        }
+
+        try {
+            InspectHistoryPageDTO page = inspectService.getUpcomingInspectByInspectorId(id, cursor, limit);
+            logger.info("User '{}' successfully accessed upcoming inspections of inspector ID {}", authentication.getName(), id);
+            auditLogService.createAuditLog("Read", authentication.getName(), "ticket-inspector", "Accessed upcoming inspections for inspector ID " + id);
+            return ResponseEntity.ok(page);
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().body(e.getMessage());
+        } catch (Exception e) {
+            logger.error("An error occurred while fetching upcoming inspections: {}", e.getMessage());
+            return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR).body("An error occurred while fetching upcoming inspections");
+        }
+    }
+
     @DeleteMapping("/deleteInspect")
     public ResponseEntity<?> delete(@RequestBody InspectDTO inspectDTO, Authentication authentication) {
         logger.info("User '{}' is attempting to delete an inspection with ID {}", authentication.getName(), inspectDTO.getInspectId());
@@ -138,8 +252,12 @@ public class InspectController {
         }
     }
 
+    // from and to (yyyy-MM-dd, inclusive) and inspectorId narrow both fraud reports
     @GetMapping("/fraudCount")
-    public ResponseEntity<?> fraudCount(Authentication authentication) {
+    public ResponseEntity<?> fraudCount(@RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate from,
+                                        @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate to,
+                                        @RequestParam(required = false) Integer inspectorId,
+                                        Authentication authentication) {
         logger.info("User '{}' is attempting to access fraud count", authentication.getName());
 
         if (authentication.getAuthorities().stream().noneMatch(grantedAuthority -> grantedAuthority.getAuthority().equals("admin") || grantedAuthority.getAuthority().equals("ticket-inspector"))) {
@@ -148,9 +266,11 @@ public class InspectController {
         }
 
         try {
-        int fraudCount = inspectService.fraudCount();
+        long fraudCount = inspectService.fraudCount(from, to, inspectorId);
         logger.info("User '{}' successfully accessed fraud count", authentication.getName());
         return ResponseEntity.ok(fraudCount);
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().body(e.getMessage());
         } catch (Exception e) {
             logger.error("An error occurred while fetching fraud count: {}", e.getMessage());
             return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR).body("An error occurred while fetching fraud count");
@@ -158,7 +278,10 @@ public class InspectController {
     }
 
     @GetMapping("/fraudByRoute")
-    public ResponseEntity<?> fraudByRoute(Authentication authentication) {
+    public ResponseEntity<?> fraudByRoute(@RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate from,
+                                          @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate to,
+                                          @RequestParam(required = false) Integer inspectorId,
+                                          Authentication authentication) {
         logger.info("User '{}' is attempting to access fraud by route", authentication.getName());
 
         if (authentication.getAuthorities().stream().noneMatch(grantedAuthority -> grantedAuthority.getAuthority().equals("admin") || grantedAuthority.getAuthority().equals("ticket-inspector"))) {
@@ -167,18 +290,164 @@ public class InspectController {
         }
 
         try {
-            Map<Integer, Integer> fraudByRoute = inspectService.fraudByRoute();
+            Map<Integer, Long> fraudByRoute = inspectService.fraudByRoute(from, to, inspectorId);
             if (fraudByRoute.isEmpty()) {
                 logger.warn("No fraud data found in the database");
                 return ResponseEntity.status(HttpStatus.NOT_FOUND).body("No fraud data found in the database");
             }
             logger.info("User '{}' successfully accessed fraud by route", authentication.getName());
             return ResponseEntity.ok(fraudByRoute);
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().body(e.getMessage());
         } catch (Exception e) {
             logger.error("An error occurred while fetching fraud by route: {}", e.getMessage());
             return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR).body("An error occurred while fetching fraud by route");
         }
     }
 
+    // Rebuild the fraud counters from the inspections and report which routes had drifted
+    @PostMapping("/fraudCounters/reconcile")
+    public ResponseEntity<?> reconcileFraudCounters(Authentication authentication) {
+        logger.info("User '{}' is attempting to reconcile fraud counters", authentication.getName());
+
+        if (authentication.getAuthorities().stream().noneMatch(grantedAuthority -> grantedAuthority.getAuthority().equals("admin"))) {
+            logger.warn("Unauthorized access attempt by user '{}' without admin role", authentication.getName());
+            return ResponseEntity.status(HttpStatus.UNAUTHORIZED).body("Access denied. You need to have admin role.");
+        }
+
+        try {
+            FraudReconcileDTO result = fraudCounterService.reconcile();
+            logger.info("User '{}' reconciled fraud counters; {} routes had drifted", authentication.getName(), result.getDrifted().size());
+            auditLogService.createAuditLog("Update", authentication.getName(), "admin", "Reconciled fraud counters");
+            return ResponseEntity.ok(result);
+        } catch (Exception e) {
+            logger.error("An error occurred while reconciling fraud counters: {}", e.getMessage());
+            return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR).body("An error occurred while reconciling fraud counters");
+        }
+    }
+
+    // Inspections, fraud and passengers per day or week (granularity) between from and to, optionally grouped by
+    // route, bus or inspector (groupBy) and filtered by routeId, busId and inspectorId. Reads only the rollups.
+    @GetMapping("/rollups")
+    public ResponseEntity<?> rollups(@RequestParam @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate from,
+                                     @RequestParam @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate to,
+                                     @RequestParam(required = false) String granularity,
+                                     @RequestParam(required = false) String groupBy,
+                                     @RequestParam(required = false) Integer routeId,
+                                     @RequestParam(required = false) Integer busId,
+                                     @RequestParam(required = false) Integer inspectorId,
+                                     Authentication authentication) {
+        logger.info("User '{}' is attempting to access inspection rollups", authentication.getName());
+
+        if (authentication.getAuthorities().stream().noneMatch(grantedAuthority -> grantedAuthority.getAuthority().equals("admin") || grantedAuthority.getAuthority().equals("ticket-inspector"))) {
+            logger.warn("Unauthorized access attempt by user '{}' without admin or ticket-inspector role", authentication.getName());
+            return ResponseEntity.status(HttpStatus.UNAUTHORIZED).body("Access denied. You need to have admin or ticket-inspector role.");
+        }
+
+        try {
+            InspectRollupReportDTO report = inspectRollupService.report(from, to, InspectRollupService.Granularity.parse(granularity),
+                    InspectRollupService.GroupBy.parse(groupBy), routeId, busId, inspectorId);
+            logger.info("User '{}' successfully accessed inspection rollups", authentication.getName());
+            return ResponseEntity.ok(report);
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().body(e.getMessage());
+        } catch (Exception e) {
+            logger.error("An error occurred while fetching inspection rollups: {}", e.getMessage());
+            return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR).body("An error occurred while fetching inspection rollups");
+        }
+    }
+
+    @GetMapping("/rollups/backfill")
+    public ResponseEntity<?> rollupBackfillStatus(Authentication authentication) {
+        if (authentication.getAuthorities().stream().noneMatch(grantedAuthority -> grantedAuthority.getAuthority().equals("admin"))) {
+            logger.warn("Unauthorized access attempt by user '{}' without admin role", authentication.getName());
+            return ResponseEntity.status(HttpStatus.UNAUTHORIZED).body("Access denied. You need to have admin role.");
+        }
+        return ResponseEntity.ok(inspectRollupService.backfillStatus());
+    }
+
+    // Resume an unfinished backfill, or with restart=true rebuild every day's rollups again
+    @PostMapping("/rollups/backfill")
+    public ResponseEntity<?> startRollupBackfill(@RequestParam(defaultValue = "false") boolean restart, Authentication authentication) {
+        logger.info("User '{}' is attempting to start the inspection rollup backfill", authentication.getName());
+
+        if (authentication.getAuthorities().stream().noneMatch(grantedAuthority -> grantedAuthority.getAuthority().equals("admin"))) {
+            logger.warn("Unauthorized access attempt by user '{}' without admin role", authentication.getName());
+            return ResponseEntity.status(HttpStatus.UNAUTHORIZED).body("Access denied. You need to have admin role.");
+        }
+
+        try {
+            RollupBackfillDTO status = inspectRollupService.startBackfill(restart);
+            auditLogService.createAuditLog("Update", authentication.getName(), "admin", "Started the inspection rollup backfill");
+            return ResponseEntity.ok(status);
+        } catch (Exception e) {
+            logger.error("An error occurred while starting the inspection rollup backfill: {}", e.getMessage());
+            return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR).body("An error occurred while starting the inspection rollup backfill");
+        }
+    }
+
+    // Ad-hoc totals from the in-memory snapshot, which trails the database by about a second: inspections
+    // grouped by route, bus, inspector, date or hour (groupBy) with the sum and average of each measure (fraud,
+    // passengers). Filters are optional; from and to are inclusive dates, hourFrom and hourTo hours of the day.
+    @GetMapping("/analytics")
+    public ResponseEntity<?> analytics(@RequestParam(required = false) String groupBy,
+                                       @RequestParam(required = false) List<String> measures,
+                                       @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate from,
+                                       @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate to,
+                                       @RequestParam(required = false) Integer routeId,
+                                       @RequestParam(required = false) Integer busId,
+                                       @RequestParam(required = false) Integer inspectorId,
+                                       @RequestParam(required = false) Integer hourFrom,
+                                       @RequestParam(required = false) Integer hourTo,
+                                       Authentication authentication) {
+        logger.info("User '{}' is attempting to access inspection analytics", authentication.getName());
+
+        if (authentication.getAuthorities().stream().noneMatch(grantedAuthority -> grantedAuthority.getAuthority().equals("admin") || grantedAuthority.getAuthority().equals("ticket-inspector"))) {
+            logger.warn("Unauthorized access attempt by user '{}' without admin or ticket-inspector role", authentication.getName());
+            return ResponseEntity.status(HttpStatus.UNAUTHORIZED).body("Access denied. You need to have admin or ticket-inspector role.");
+        }
+
+        try {
+            List<InspectAnalyticsRowDTO> rows = inspectColumnStore.query(InspectColumnStore.Dimension.parse(groupBy),
+                    InspectColumnStore.Measure.parse(measures), from, to, routeId, busId, inspectorId, hourFrom, hourTo);
+            logger.info("User '{}' successfully accessed inspection analytics", authentication.getName());
+            return ResponseEntity.ok(rows);
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().body(e.getMessage());
+        } catch (IllegalStateException e) {
+            return ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE).body(e.getMessage());
+        } catch (Exception e) {
+            logger.error("An error occurred while fetching inspection analytics: {}", e.getMessage());
+            return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR).body("An error occurred while fetching inspection analytics");
+        }
+    }
+
+    // Percentiles of the fraud rate (fraud per passenger of each inspection) between from and to, per route or
+    // per inspector (groupBy), optionally for one of them (id). percentiles are 0 to 100 and default to 50 and 95.
+    @GetMapping("/fraudRatePercentiles")
+    public ResponseEntity<?> fraudRatePercentiles(@RequestParam @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate from,
+                                                  @RequestParam @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate to,
+                                                  @RequestParam(required = false) String groupBy,
+                                                  @RequestParam(required = false) Integer id,
+                                                  @RequestParam(required = false) List<Double> percentiles,
+                                                  Authentication authentication) {
+        logger.info("User '{}' is attempting to access fraud-rate percentiles", authentication.getName());
 
+        if (authentication.getAuthorities().stream().noneMatch(grantedAuthority -> grantedAuthority.getAuthority().equals("admin") || grantedAuthority.getAuthority().equals("ticket-inspector"))) {
+            logger.warn("Unauthorized access attempt by user '{}' without admin or ticket-inspector role", authentication.getName());
+            return ResponseEntity.status(HttpStatus.UNAUTHORIZED).body("Access denied. You need to have admin or ticket-inspector role.");
+        }
+
+        try {
+            FraudRatePercentilesReportDTO report = fraudRateSketchService.percentiles(FraudRateSketchService.Dimension.parse(groupBy),
+                    from, to, id, percentiles);
+            logger.info("User '{}' successfully accessed fraud-rate percentiles", authentication.getName());
+            return ResponseEntity.ok(report);
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().body(e.getMessage());
+        } catch (Exception e) {
+            logger.error("An error occurred while fetching fraud-rate percentiles: {}", e.getMessage());
+            return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR).body("An error occurred while fetching fraud-rate percentiles");
+        }
+    }
 }
@@ -1,18 +1,24 @@
 package com.example.onlineticketingsystem.controller;
 
+import com.example.onlineticketingsystem.DTO.AuditSearchResultDTO;
+import com.example.onlineticketingsystem.DTO.LogPageDTO;
+import com.example.onlineticketingsystem.DTO.LogQueryDTO;
 import com.example.onlineticketingsystem.entity.AuditLog;
 import com.example.onlineticketingsystem.entity.SecurityLog;
 import com.example.onlineticketingsystem.service.AuditLogService;
+import com.example.onlineticketingsystem.service.LogArchiveService;
+import com.example.onlineticketingsystem.service.LogExportService;
 import com.example.onlineticketingsystem.service.SecurityLogService;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.ContentDisposition;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.ResponseEntity;
 import org.springframework.http.HttpStatus;
 import org.springframework.security.core.Authentication;
 import org.springframework.web.bind.annotation.*;
-
-import java.util.List;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 
 @RestController
 @RequestMapping("/api/v1/logs")
@@ -23,61 +29,223 @@ public class SecurityAuditController {
 
     private final SecurityLogService securityLogService;
     private final AuditLogService auditLogService;
+    private final LogExportService logExportService;
+    private final LogArchiveService logArchiveService;
 
     @Autowired
-    public SecurityAuditController(SecurityLogService securityLogService, AuditLogService auditLogService) {
+    public SecurityAuditController(SecurityLogService securityLogService, AuditLogService auditLogService,
+                                   LogExportService logExportService, LogArchiveService logArchiveService) {
         this.securityLogService = securityLogService;
         this.auditLogService = auditLogService;
+        this.logExportService = logExportService;
+        this.logArchiveService = logArchiveService;
     }
 
-    // Get all Security Logs
+    // Security logs, newest first, one page at a time. Pass the returned nextCursor to get the next page.
     @GetMapping("/security-logs")
-    public ResponseEntity<?> getAllSecurityLogs(Authentication authentication) {
+    public ResponseEntity<?> getSecurityLogs(LogQueryDTO query, Authentication authentication) {
         // Check if the user is an admin
-        if (authentication.getAuthorities().stream().noneMatch(grantedAuthority -> grantedAuthority.getAuthority().equals("admin"))) {
+        if (isNotAdmin(authentication)) {
             logger.warn("Unauthorized attempt to access Security Logs by '{}'", authentication.getName());
             return ResponseEntity.status(HttpStatus.UNAUTHORIZED).body("Access denied. Admin role required.");
         }
 
         try {
-            List<SecurityLog> securityLogs = securityLogService.getAllSecurityLogs();
+            LogPageDTO<SecurityLog> page = securityLogService.findSecurityLogs(query);
 
-            if (securityLogs.isEmpty()) {
+            if (page.getItems().isEmpty() && query.getCursor() == null) {
                 logger.warn("No security logs found in the database");
                 return ResponseEntity.status(HttpStatus.NOT_FOUND).body("No security logs found in the database");
             }
 
             logger.info("Admin '{}' accessed Security Logs", authentication.getName());
-            return ResponseEntity.ok(securityLogs);
+            return ResponseEntity.ok(page);
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().body(e.getMessage());
         } catch (Exception e) {
             logger.error("An error occurred while fetching security logs: {}", e.getMessage());
             return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR).body("An error occurred while fetching security logs.");
         }
     }
 
-    // Get all Audit Logs
+    @GetMapping("/security-logs/count-estimate")
+    public ResponseEntity<?> estimateSecurityLogs(LogQueryDTO query, Authentication authentication) {
+        if (isNotAdmin(authentication)) {
+            logger.warn("Unauthorized attempt to count Security Logs by '{}'", authentication.getName());
+            return ResponseEntity.status(HttpStatus.UNAUTHORIZED).body("Access denied. Admin role required.");
+        }
+        try {
+            return ResponseEntity.ok(securityLogService.countEstimate(query));
+        } catch (Exception e) {
+            logger.error("An error occurred while counting security logs: {}", e.getMessage());
+            return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR).body("An error occurred while counting security logs.");
+        }
+    }
+
+    // Live security event counts for the dashboard; served from memory, safe to poll every few seconds
+    @GetMapping("/security-stats")
+    public ResponseEntity<?> getSecurityStats(Authentication authentication) {
+        if (isNotAdmin(authentication)) {
+            logger.warn("Unauthorized attempt to access Security Stats by '{}'", authentication.getName());
+            return ResponseEntity.status(HttpStatus.UNAUTHORIZED).body("Access denied. Admin role required.");
+        }
+        return ResponseEntity.ok(securityLogService.stats());
+    }
+
+    // Audit logs, newest first, one page at a time. Pass the returned nextCursor to get the next page.
     @GetMapping("/audit-logs")
-    public ResponseEntity<?> getAllAuditLogs(Authentication authentication) {
+    public ResponseEntity<?> getAuditLogs(LogQueryDTO query, Authentication authentication) {
         // Check if the user is an admin
-        if (authentication.getAuthorities().stream().noneMatch(grantedAuthority -> grantedAuthority.getAuthority().equals("admin"))) {
+        if (isNotAdmin(authentication)) {
             logger.warn("Unauthorized attempt to access Audit Logs by '{}'", authentication.getName());
             return ResponseEntity.status(HttpStatus.UNAUTHORIZED).body("Access denied. Admin role required.");
         }
 
         try {
-            List<AuditLog> auditLogs = auditLogService.getAllAuditLogs();
+            LogPageDTO<AuditLog> page = auditLogService.findAuditLogs(query);
 
-            if (auditLogs.isEmpty()) {
+            if (page.getItems().isEmpty() && query.getCursor() == null) {
                 logger.warn("No audit logs found in the database");
                 return ResponseEntity.status(HttpStatus.NOT_FOUND).body("No audit logs found in the database");
             }
 
             logger.info("Admin '{}' accessed Audit Logs", authentication.getName());
-            return ResponseEntity.ok(auditLogs);
+            return ResponseEntity.ok(page);
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().body(e.getMessage());
         } catch (Exception e) {
             logger.error("An error occurred while fetching audit logs: {}", e.getMessage());
             return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR).body("An error occurred while fetching audit logs.");
         }
     }
 
-}
\ No newline at end of file
+    // Audit logs whose details contain the words and "quoted phrases" in q, newest first; performedBy,
+    // action, from and to narrow the search further
+    @GetMapping("/audit-logs/search")
+    public ResponseEntity<?> searchAuditLogs(@RequestParam(required = false) String q, LogQueryDTO query,
+                                             Authentication authentication) {
+        if (isNotAdmin(authentication)) {
+            logger.warn("Unauthorized attempt to search Audit Logs by '{}'", authentication.getName());
+            return ResponseEntity.status(HttpStatus.UNAUTHORIZED).body("Access denied. Admin role required.");
+        }
+        try {
+            AuditSearchResultDTO result = auditLogService.search(q, query);
+            logger.info("Admin '{}' searched Audit Logs", authentication.getName());
+            return ResponseEntity.ok(result);
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().body(e.getMessage());
+        } catch (IllegalStateException e) {
+            return ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE).body(e.getMessage());
+        } catch (Exception e) {
+            logger.error("An error occurred while searching audit logs: {}", e.getMessage());
+            return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR).body("An error occurred while searching audit logs.");
+        }
+    }
+
+    @GetMapping("/audit-logs/count-estimate")
+    public ResponseEntity<?> estimateAuditLogs(LogQueryDTO query, Authentication authentication) {
+        if (isNotAdmin(authentication)) {
+            logger.warn("Unauthorized attempt to count Audit Logs by '{}'", authentication.getName());
+            return ResponseEntity.status(HttpStatus.UNAUTHORIZED).body("Access denied. Admin role required.");
+        }
+        try {
+            return ResponseEntity.ok(auditLogService.countEstimate(query));
+        } catch (Exception e) {
+            logger.error("An error occurred while counting audit logs: {}", e.getMessage());
+            return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR).body("An error occurred while counting audit logs.");
+        }
+    }
+
+    // Every matching security log, oldest first, streamed as NDJSON or CSV (gzip=true for a .gz download)
+    @GetMapping("/security-logs/export")
+    public ResponseEntity<?> exportSecurityLogs(LogQueryDTO query,
+                                                @RequestParam(defaultValue = "ndjson") String format,
+                                                @RequestParam(defaultValue = "false") boolean gzip,
+                                                Authentication authentication) {
+        if (isNotAdmin(authentication)) {
+            logger.warn("Unauthorized attempt to export Security Logs by '{}'", authentication.getName());
+            return ResponseEntity.status(HttpStatus.UNAUTHORIZED).body("Access denied. Admin role required.");
+        }
+        try {
+            LogExportService.Format exportFormat = LogExportService.Format.parse(format);
+            logger.info("Admin '{}' exported Security Logs as {}", authentication.getName(), exportFormat.getExtension());
+            return exportResponse("security-logs", exportFormat, gzip,
+                    logExportService.exportSecurityLogs(query, exportFormat, gzip));
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().body(e.getMessage());
+        }
+    }
+
+    // Every matching audit log, oldest first, streamed as NDJSON or CSV (gzip=true for a .gz download)
+    @GetMapping("/audit-logs/export")
+    public ResponseEntity<?> exportAuditLogs(LogQueryDTO query,
+                                             @RequestParam(defaultValue = "ndjson") String format,
+                                             @RequestParam(defaultValue = "false") boolean gzip,
+                                             Authentication authentication) {
+        if (isNotAdmin(authentication)) {
+            logger.warn("Unauthorized attempt to export Audit Logs by '{}'", authentication.getName());
+            return ResponseEntity.status(HttpStatus.UNAUTHORIZED).body("Access denied. Admin role required.");
+        }
+        try {
+            LogExportService.Format exportFormat = LogExportService.Format.parse(format);
+            logger.info("Admin '{}' exported Audit Logs as {}", authentication.getName(), exportFormat.getExtension());
+            return exportResponse("audit-logs", exportFormat, gzip,
+                    logExportService.exportAuditLogs(query, exportFormat, gzip));
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().body(e.getMessage());
+        }
+    }
+
+    // Months that retention has moved out of the tables into archive files
+    @GetMapping("/archive")
+    public ResponseEntity<?> listArchives(Authentication authentication) {
+        if (isNotAdmin(authentication)) {
+            logger.warn("Unauthorized attempt to list Log Archives by '{}'", authentication.getName());
+            return ResponseEntity.status(HttpStatus.UNAUTHORIZED).body("Access denied. Admin role required.");
+        }
+        try {
+            return ResponseEntity.ok(logArchiveService.list());
+        } catch (Exception e) {
+            logger.error("An error occurred while listing log archives: {}", e.getMessage());
+            return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR).body("An error occurred while listing log archives.");
+        }
+    }
+
+    // Archived security logs matching the usual filters, streamed as NDJSON, oldest first
+    @GetMapping("/archive/security-logs")
+    public ResponseEntity<?> queryArchivedSecurityLogs(LogQueryDTO query, Authentication authentication) {
+        if (isNotAdmin(authentication)) {
+            logger.warn("Unauthorized attempt to read archived Security Logs by '{}'", authentication.getName());
+            return ResponseEntity.status(HttpStatus.UNAUTHORIZED).body("Access denied. Admin role required.");
+        }
+        logger.info("Admin '{}' queried archived Security Logs", authentication.getName());
+        StreamingResponseBody body = out -> logArchiveService.query("security_log", query, out);
+        return ResponseEntity.ok().header(HttpHeaders.CONTENT_TYPE, LogExportService.Format.NDJSON.getContentType()).body(body);
+    }
+
+    // Archived audit logs matching the usual filters, streamed as NDJSON, oldest first
+    @GetMapping("/archive/audit-logs")
+    public ResponseEntity<?> queryArchivedAuditLogs(LogQueryDTO query, Authentication authentication) {
+        if (isNotAdmin(authentication)) {
+            logger.warn("Unauthorized attempt to read archived Audit Logs by '{}'", authentication.getName());
+            return ResponseEntity.status(HttpStatus.UNAUTHORIZED).body("Access denied. Admin role required.");
+        }
+        logger.info("Admin '{}' queried archived Audit Logs", authentication.getName());
+        StreamingResponseBody body = out -> logArchiveService.query("audit_log", query, out);
+        return ResponseEntity.ok().header(HttpHeaders.CONTENT_TYPE, LogExportService.Format.NDJSON.getContentType()).body(body);
+    }
+
+    // A gzipped export is a .gz file download rather than a Content-Encoding, so clients keep it compressed
+    private ResponseEntity<StreamingResponseBody> exportResponse(String name, LogExportService.Format format, boolean gzip,
+                                                                 StreamingResponseBody body) {
+        String filename = name + "." + format.getExtension() + (gzip ? ".gz" : "");
+        return ResponseEntity.ok()
+                .header(HttpHeaders.CONTENT_TYPE, gzip ? "application/gzip" : format.getContentType() + ";charset=UTF-8")
+                .header(HttpHeaders.CONTENT_DISPOSITION, ContentDisposition.attachment().filename(filename).build().toString())
+                .body(body);
+    }
+
+    private boolean isNotAdmin(Authentication authentication) {
+        return authentication.getAuthorities().stream().noneMatch(grantedAuthority -> grantedAuthority.getAuthority().equals("admin"));
+    }
+}
@@ -1,19 +1,23 @@
 package com.example.onlineticketingsystem.entity;
 
-import jakarta.persistence.Entity;
-import jakarta.persistence.GeneratedValue;
-import jakarta.persistence.GenerationType;
-import jakarta.persistence.Id;
+import jakarta.persistence.*;
 import lombok.AllArgsConstructor;
 import lombok.Data;
 import lombok.NoArgsConstructor;
+import org.hibernate.annotations.ColumnDefault;
 
 import java.sql.Timestamp;
 
+// Every listing is ordered by (timestamp, id), optionally after an equality filter, so each index ends with both
 @Entity
 @Data
 @AllArgsConstructor
 @NoArgsConstructor
+@Table(name = "audit_log", indexes = {
+        @Index(name = "idx_audit_log_timestamp", columnList = "timestamp, id"),
+        @Index(name = "idx_audit_log_performed_by", columnList = "performedBy, timestamp, id"),
+        @Index(name = "idx_audit_log_action", columnList = "action, timestamp, id")
+})
 public class AuditLog {
 
     @Id
@@ -24,4 +28,9 @@ public class AuditLog {
     private String role;
     private Timestamp timestamp;
     private String details;
+    // A coalesced read stands for eventCount identical events from firstTimestamp to timestamp.
+    // Other rows are single events (count 1, no firstTimestamp).
+    @ColumnDefault("1")
+    private Integer eventCount;
+    private Timestamp firstTimestamp;
 }
@@ -0,0 +1,22 @@
+package com.example.onlineticketingsystem.entity;
+
+import jakarta.persistence.*;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+// Running fraud total and inspection count per route, kept in step with the inspect table by
+// FraudCounterService so the dashboard does not have to aggregate it on every poll
+@Entity
+@Data
+@AllArgsConstructor
+@NoArgsConstructor
+@Table(name = "fraud_counter")
+public class FraudCounter {
+
+    @Id
+    private int routeId;
+    private long fraudCount;
+    private long inspections;
+    private long updatedAt;
+}
@@ -0,0 +1,55 @@
+package com.example.onlineticketingsystem.entity;
+
+import jakarta.persistence.*;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.io.Serial;
+import java.io.Serializable;
+import java.sql.Date;
+
+// A serialized QuantileSketch of the fraud rates (fraud per passenger) of the inspections of one route or
+// inspector (dimension, groupId) on one day or in one month (granularity, periodStart). Inserts are added to
+// the sketch directly; a sketch that lost an inspection to an update or delete is marked stale and rebuilt
+// from the inspect table by FraudRateSketchService.
+@Entity
+@Data
+@AllArgsConstructor
+@NoArgsConstructor
+@IdClass(FraudRateSketch.Key.class)
+@Table(name = "fraud_rate_sketch", indexes = {
+        @Index(name = "idx_fraud_rate_sketch_stale", columnList = "stale")
+})
+public class FraudRateSketch {
+
+    @Id
+    @Column(length = 16)
+    private String dimension;
+    @Id
+    @Column(length = 8)
+    private String granularity;
+    @Id
+    private Date periodStart;
+    @Id
+    private int groupId;
+    private long inspections;
+    @Lob
+    @Column(length = 1_000_000)
+    private byte[] sketch;
+    private boolean stale;
+    private long updatedAt;
+
+    @Data
+    @AllArgsConstructor
+    @NoArgsConstructor
+    public static class Key implements Serializable {
+        @Serial
+        private static final long serialVersionUID = 1L;
+
+        private String dimension;
+        private String granularity;
+        private Date periodStart;
+        private int groupId;
+    }
+}
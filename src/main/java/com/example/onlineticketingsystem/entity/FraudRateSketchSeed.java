@@ -0,0 +1,21 @@
+package com.example.onlineticketingsystem.entity;
+
+import jakarta.persistence.*;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+// Written once FraudRateSketchService has marked the sketches of every inspection that existed before it for
+// rebuilding. The table holds at most this one row; while it is empty the rebuild thread seeds on start.
+@Entity
+@Data
+@AllArgsConstructor
+@NoArgsConstructor
+@Table(name = "fraud_rate_sketch_seed")
+public class FraudRateSketchSeed {
+
+    @Id
+    private int id;
+    private int sketches;
+    private long seededAt;
+}
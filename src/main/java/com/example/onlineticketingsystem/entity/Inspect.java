@@ -1,9 +1,6 @@
 package com.example.onlineticketingsystem.entity;
 
-import jakarta.persistence.Entity;
-import jakarta.persistence.GeneratedValue;
-import jakarta.persistence.GenerationType;
-import jakarta.persistence.Id;
+import jakarta.persistence.*;
 import lombok.AllArgsConstructor;
 import lombok.Data;
 import lombok.NoArgsConstructor;
@@ -11,10 +8,18 @@ import lombok.NoArgsConstructor;
 import java.sql.Date;
 import java.sql.Time;
 
+// The fraud reports group by route within a date range; noFraudDetected is included so they read only the index.
+// Fraud-rate sketch rebuilds and today's per-route counts read one day or month of inspections.
+// Inspector histories page through idx_inspect_inspector_date, which is descending because they are read newest first.
 @Entity
 @Data
 @AllArgsConstructor
 @NoArgsConstructor
+@Table(name = "inspect", indexes = {
+        @Index(name = "idx_inspect_route_date", columnList = "routeId, inspectDate, noFraudDetected"),
+        @Index(name = "idx_inspect_date", columnList = "inspectDate"),
+        @Index(name = "idx_inspect_inspector_date", columnList = "inspectorId DESC, inspectDate DESC, inspectTime DESC, inspectId DESC")
+})
 public class Inspect {
     @Id
     @GeneratedValue(strategy = GenerationType.IDENTITY)
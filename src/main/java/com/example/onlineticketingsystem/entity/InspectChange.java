@@ -0,0 +1,24 @@
+package com.example.onlineticketingsystem.entity;
+
+import jakarta.persistence.*;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+// One row per inspection write, in commit order of seq. InspectColumnStore follows seq to find the
+// inspections it has to reload; rows older than the retention are removed.
+@Entity
+@Data
+@AllArgsConstructor
+@NoArgsConstructor
+@Table(name = "inspect_change", indexes = {
+        @Index(name = "idx_inspect_change_changed_at", columnList = "changedAt")
+})
+public class InspectChange {
+
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private long seq;
+    private int inspectId;
+    private long changedAt;
+}
@@ -0,0 +1,51 @@
+package com.example.onlineticketingsystem.entity;
+
+import jakarta.persistence.*;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.io.Serial;
+import java.io.Serializable;
+import java.sql.Date;
+
+// Inspections of one day summed per route, bus and inspector. Kept up to date by InspectRollupService on
+// every inspection write and rebuilt day by day by its backfill. Reports filter on a date range, optionally
+// with one of the three ids, so each has an index starting with it and ending with the date.
+@Entity
+@Data
+@AllArgsConstructor
+@NoArgsConstructor
+@IdClass(InspectDailyRollup.Key.class)
+@Table(name = "inspect_daily_rollup", indexes = {
+        @Index(name = "idx_inspect_rollup_route", columnList = "routeId, inspectDate"),
+        @Index(name = "idx_inspect_rollup_bus", columnList = "busId, inspectDate"),
+        @Index(name = "idx_inspect_rollup_inspector", columnList = "inspectorId, inspectDate")
+})
+public class InspectDailyRollup {
+
+    @Id
+    private Date inspectDate;
+    @Id
+    private int routeId;
+    @Id
+    private int busId;
+    @Id
+    private int inspectorId;
+    private long inspections;
+    private long fraudCount;
+    private long passengers;
+
+    @Data
+    @AllArgsConstructor
+    @NoArgsConstructor
+    public static class Key implements Serializable {
+        @Serial
+        private static final long serialVersionUID = 1L;
+
+        private Date inspectDate;
+        private int routeId;
+        private int busId;
+        private int inspectorId;
+    }
+}
@@ -0,0 +1,24 @@
+package com.example.onlineticketingsystem.entity;
+
+import jakarta.persistence.*;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+// Failed login counter shared by all nodes when rate-limiter.store=shared. Times are epoch millis.
+@Entity
+@Data
+@AllArgsConstructor
+@NoArgsConstructor
+@Table(name = "login_attempt", indexes = {
+        @Index(name = "idx_login_attempt_blocked_until", columnList = "blockedUntil")
+})
+public class LoginAttempt {
+
+    @Id
+    @Column(length = 64)
+    private String ipAddress;
+    private int attempts;
+    private long blockedUntil;
+    private long updatedAt;
+}
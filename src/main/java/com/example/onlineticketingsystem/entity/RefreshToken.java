@@ -0,0 +1,37 @@
+package com.example.onlineticketingsystem.entity;
+
+import jakarta.persistence.*;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+// Opaque refresh token. Only the SHA-256 of the token is stored; every token issued by one login shares a
+// familyId so a replayed (already rotated) token can revoke the whole chain. Times are epoch millis.
+@Entity
+@Data
+@AllArgsConstructor
+@NoArgsConstructor
+@Table(name = "refresh_token", indexes = {
+        @Index(name = "idx_refresh_token_hash", columnList = "tokenHash", unique = true),
+        @Index(name = "idx_refresh_token_family", columnList = "familyId"),
+        @Index(name = "idx_refresh_token_expires_at", columnList = "expiresAt"),
+        // Lets revoking a user's tokens read and lock only that user's live rows
+        @Index(name = "idx_refresh_token_username", columnList = "username, revoked")
+})
+public class RefreshToken {
+
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private long id;
+    @Column(nullable = false, length = 64)
+    private String tokenHash;
+    @Column(nullable = false, length = 36)
+    private String familyId;
+    @Column(nullable = false)
+    private String username;
+    private long issuedAt;
+    private long expiresAt;
+    // Set when the token has been exchanged for a new one; presenting it again is a reuse
+    private long rotatedAt;
+    private boolean revoked;
+}
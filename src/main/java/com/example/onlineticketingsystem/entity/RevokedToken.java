@@ -0,0 +1,29 @@
+package com.example.onlineticketingsystem.entity;
+
+import jakarta.persistence.*;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+// Source of truth for revoked access tokens; every node loads it at startup and polls it for new rows.
+// tokenKey is "jti:<id>" for one token or "user:<email>" for all of a user's tokens issued up to issuedBefore.
+// Rows are deleted once expiresAt has passed, since the tokens they cover are no longer accepted. Times are epoch millis.
+@Entity
+@Data
+@AllArgsConstructor
+@NoArgsConstructor
+@Table(name = "revoked_token", indexes = {
+        @Index(name = "idx_revoked_token_revoked_at", columnList = "revokedAt"),
+        @Index(name = "idx_revoked_token_expires_at", columnList = "expiresAt")
+})
+public class RevokedToken {
+
+    @Id
+    @Column(length = 300)
+    private String tokenKey;
+    private String username;
+    private long issuedBefore;
+    private long expiresAt;
+    private long revokedAt;
+    private String reason;
+}
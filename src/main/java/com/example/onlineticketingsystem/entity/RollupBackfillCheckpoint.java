@@ -0,0 +1,26 @@
+package com.example.onlineticketingsystem.entity;
+
+import jakarta.persistence.*;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.sql.Date;
+
+// Progress of a rollup backfill: every day before nextDate has been rebuilt, and the job is done once
+// nextDate passes endDate. It is written in the same transaction as the days it covers, so a restarted
+// backfill continues with the first day that was not committed.
+@Entity
+@Data
+@AllArgsConstructor
+@NoArgsConstructor
+@Table(name = "rollup_backfill_checkpoint")
+public class RollupBackfillCheckpoint {
+
+    @Id
+    @Column(length = 64)
+    private String job;
+    private Date nextDate;
+    private Date endDate;
+    private long updatedAt;
+}
@@ -1,19 +1,24 @@
 package com.example.onlineticketingsystem.entity;
 
-import jakarta.persistence.Entity;
-import jakarta.persistence.GeneratedValue;
-import jakarta.persistence.GenerationType;
-import jakarta.persistence.Id;
+import jakarta.persistence.*;
 import lombok.AllArgsConstructor;
 import lombok.Data;
 import lombok.NoArgsConstructor;
 
 import java.sql.Timestamp;
 
+// Every listing is ordered by (timestamp, id), optionally after an equality filter, so each index ends with both
 @Entity
 @Data
 @AllArgsConstructor
 @NoArgsConstructor
+@Table(name = "security_log", indexes = {
+        @Index(name = "idx_security_log_timestamp", columnList = "timestamp, id"),
+        @Index(name = "idx_security_log_username", columnList = "username, timestamp, id"),
+        @Index(name = "idx_security_log_action", columnList = "action, timestamp, id"),
+        @Index(name = "idx_security_log_status", columnList = "status, timestamp, id"),
+        @Index(name = "idx_security_log_ip_address", columnList = "ipAddress, timestamp, id")
+})
 public class SecurityLog {
 
     @Id
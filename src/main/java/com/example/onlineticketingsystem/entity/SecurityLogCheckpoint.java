@@ -0,0 +1,24 @@
+package com.example.onlineticketingsystem.entity;
+
+import jakarta.persistence.*;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+// How far each security log journal has been copied into security_log, keyed by the id stored in the journal
+// directory. It is updated in the same transaction as the rows it covers, so after a crash shipping resumes
+// exactly where it stopped.
+@Entity
+@Data
+@AllArgsConstructor
+@NoArgsConstructor
+@Table(name = "security_log_checkpoint")
+public class SecurityLogCheckpoint {
+
+    @Id
+    // The journal id; the column keeps its original name
+    @Column(name = "node_id", length = 128)
+    private String journalId;
+    private long journalOffset;
+    private long updatedAt;
+}
@@ -0,0 +1,28 @@
+package com.example.onlineticketingsystem.entity;
+
+import jakarta.persistence.*;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+// One row per account across the passenger, bus_owner, ticket_inspector and admin tables,
+// so an email resolves to its user type, id, password hash and role in a single indexed lookup
+@Entity
+@Data
+@AllArgsConstructor
+@NoArgsConstructor
+@Table(name = "user_directory", indexes = {
+        @Index(name = "idx_user_directory_email", columnList = "email", unique = true)
+})
+public class UserDirectory {
+
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private int id;
+    @Column(nullable = false, unique = true)
+    private String email;
+    private String userType;
+    private int userId;
+    private String password;
+    private String roleName;
+}
@@ -0,0 +1,21 @@
+package com.example.onlineticketingsystem.entity;
+
+import jakarta.persistence.*;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+// Written once UserDirectoryService has copied every user that predates user_directory into it. The table holds
+// at most this one row; once it is there the directory alone answers for every email.
+@Entity
+@Data
+@AllArgsConstructor
+@NoArgsConstructor
+@Table(name = "user_directory_backfill")
+public class UserDirectoryBackfill {
+
+    @Id
+    private int id;
+    private int added;
+    private long completedAt;
+}
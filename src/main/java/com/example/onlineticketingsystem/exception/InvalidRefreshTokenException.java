@@ -0,0 +1,14 @@
+package com.example.onlineticketingsystem.exception;
+
+import java.io.Serial;
+
+// Thrown for unknown, expired, revoked or replayed refresh tokens; the client has to log in again
+public class InvalidRefreshTokenException extends RuntimeException {
+
+    @Serial
+    private static final long serialVersionUID = 1L;
+
+    public InvalidRefreshTokenException(String message) {
+        super(message);
+    }
+}
@@ -0,0 +1,14 @@
+package com.example.onlineticketingsystem.exception;
+
+import java.io.Serial;
+
+// Thrown when the password hashing queue is full; controllers answer it with 503 instead of waiting
+public class PasswordHashingRejectedException extends RuntimeException {
+
+    @Serial
+    private static final long serialVersionUID = 1L;
+
+    public PasswordHashingRejectedException(String message) {
+        super(message);
+    }
+}
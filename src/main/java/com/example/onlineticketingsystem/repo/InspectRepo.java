@@ -1,19 +1,47 @@
 package com.example.onlineticketingsystem.repo;
 
 import com.example.onlineticketingsystem.entity.Inspect;
+import jakarta.persistence.LockModeType;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Lock;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 
 import java.sql.Date;
 import java.util.List;
+import java.util.Optional;
 
 
 public interface InspectRepo extends JpaRepository<Inspect,Integer> {
-    List<Inspect> findByInspectorId(int inspectorId);
 
-    List<Inspect> findByInspectDate(Date inspectDate);
+    interface RouteFraud {
+        int getRouteId();
+
+        long getFraudCount();
 
-    List<Inspect> findByInspectorIdAndInspectDateBetween(int inspectorId, Date startDate, Date endDate);
+        long getInspections();
+    }
+
+    List<Inspect> findByInspectDate(Date inspectDate);
 
     Inspect findByInspectId(int inspect_id);
 
+    // Locks the row until the transaction ends, so its old values can be taken off the fraud counters safely
+    @Lock(LockModeType.PESSIMISTIC_WRITE)
+    @Query("SELECT i FROM Inspect i WHERE i.inspectId = :id")
+    Optional<Inspect> findForUpdate(@Param("id") int id);
+
+    // The filters are optional: a null date or inspector matches every row
+    @Query("SELECT COALESCE(SUM(i.noFraudDetected), 0) FROM Inspect i"
+            + " WHERE (:from IS NULL OR i.inspectDate >= :from) AND (:to IS NULL OR i.inspectDate <= :to)"
+            + " AND (:inspectorId IS NULL OR i.inspectorId = :inspectorId)")
+    long sumFraud(@Param("from") Date from, @Param("to") Date to, @Param("inspectorId") Integer inspectorId);
+
+    @Query("SELECT i.routeId AS routeId, SUM(i.noFraudDetected) AS fraudCount, COUNT(i) AS inspections"
+            + " FROM Inspect i"
+            + " WHERE (:from IS NULL OR i.inspectDate >= :from) AND (:to IS NULL OR i.inspectDate <= :to)"
+            + " AND (:inspectorId IS NULL OR i.inspectorId = :inspectorId)"
+            + " GROUP BY i.routeId ORDER BY i.routeId")
+    List<RouteFraud> sumFraudByRoute(@Param("from") Date from, @Param("to") Date to, @Param("inspectorId") Integer inspectorId);
+
 }
@@ -0,0 +1,119 @@
+package com.example.onlineticketingsystem.repo;
+
+import com.example.onlineticketingsystem.DTO.InspectHistoryPageDTO;
+import com.example.onlineticketingsystem.DTO.InspectSummaryDTO;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowMapper;
+import org.springframework.stereotype.Repository;
+import org.springframework.util.StringUtils;
+
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDate;
+import java.time.LocalTime;
+import java.time.format.DateTimeParseException;
+import java.util.ArrayList;
+import java.util.Base64;
+import java.util.List;
+
+// Keyset pagination over one inspector's inspections, ordered by (inspect_date, inspect_time, inspect_id).
+// A page continues strictly after the previous page's last row, so every page is one range scan of at most
+// limit + 1 entries of idx_inspect_inspector_date, however long the history. The index is descending and
+// the ORDER BY names all of its columns, inspector_id included, which H2 needs before it will read rows in
+// index order; MySQL scans the same index backwards for the soonest-first pages. Inspections without a time
+// sort before the timed ones of the same day, as NULLs do in both databases; inspections without a date
+// have no place in a history and are left out.
+@Repository
+public class JdbcInspectHistoryRepo {
+
+    private static final String COLUMNS =
+            "inspect_id, bus_id, route_id, inspect_date, inspect_time, no_fraud_detected, no_of_passengers";
+
+    private static final RowMapper<InspectSummaryDTO> ROW_MAPPER = (rs, rowNum) -> new InspectSummaryDTO(
+            rs.getInt("inspect_id"), rs.getInt("bus_id"), rs.getInt("route_id"),
+            rs.getObject("inspect_date", LocalDate.class), rs.getObject("inspect_time", LocalTime.class),
+            rs.getInt("no_fraud_detected"), rs.getInt("no_of_passengers"));
+
+    private final JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    public JdbcInspectHistoryRepo(JdbcTemplate jdbcTemplate) {
+        this.jdbcTemplate = jdbcTemplate;
+    }
+
+    // from and to are inclusive and optional; newestFirst walks the history backwards
+    public InspectHistoryPageDTO page(int inspectorId, LocalDate from, LocalDate to, boolean newestFirst,
+                                      String cursor, int limit) {
+        List<String> conditions = new ArrayList<>(List.of("inspector_id = ?", "inspect_date IS NOT NULL"));
+        List<Object> params = new ArrayList<>(List.of(inspectorId));
+        if (from != null) {
+            conditions.add("inspect_date >= ?");
+            params.add(from);
+        }
+        if (to != null) {
+            conditions.add("inspect_date <= ?");
+            params.add(to);
+        }
+        if (StringUtils.hasText(cursor)) {
+            Cursor after = Cursor.decode(cursor);
+            after(after, newestFirst, conditions, params);
+        }
+        params.add(limit + 1);
+
+        String direction = newestFirst ? " DESC" : "";
+        List<InspectSummaryDTO> rows = jdbcTemplate.query("SELECT " + COLUMNS + " FROM inspect WHERE "
+                + String.join(" AND ", conditions) + " ORDER BY inspector_id" + direction + ", inspect_date" + direction
+                + ", inspect_time" + direction + ", inspect_id" + direction + " LIMIT ?", ROW_MAPPER, params.toArray());
+
+        String nextCursor = null;
+        if (rows.size() > limit) {
+            rows = rows.subList(0, limit);
+            InspectSummaryDTO last = rows.get(limit - 1);
+            nextCursor = new Cursor(last.getInspectDate(), last.getInspectTime(), last.getInspectId()).encode();
+        }
+        return new InspectHistoryPageDTO(rows, nextCursor);
+    }
+
+    // Rows strictly past the cursor in the page order. The plain bound on inspect_date comes first so the
+    // optimizer sees a range on the index even though the rest of the condition is a disjunction.
+    private static void after(Cursor after, boolean newestFirst, List<String> conditions, List<Object> params) {
+        String past = newestFirst ? "<" : ">";
+        conditions.add("inspect_date " + past + "= ?");
+        params.add(after.date());
+        String sameDay;
+        if (after.time() == null) {
+            // Untimed rows come first going forwards and last going backwards
+            sameDay = newestFirst
+                    ? "inspect_time IS NULL AND inspect_id < ?"
+                    : "(inspect_time IS NOT NULL OR inspect_id > ?)";
+            params.addAll(List.of(after.date(), after.date(), after.id()));
+        } else {
+            sameDay = "(inspect_time " + past + " ? OR (inspect_time = ? AND inspect_id " + past + " ?)"
+                    + (newestFirst ? " OR inspect_time IS NULL)" : ")");
+            params.addAll(List.of(after.date(), after.date(), after.time(), after.time(), after.id()));
+        }
+        conditions.add("(inspect_date " + past + " ? OR (inspect_date = ? AND " + sameDay + "))");
+    }
+
+    // Opaque to clients: base64url of "<date>|<time, empty when unset>|<id>"
+    private record Cursor(LocalDate date, LocalTime time, int id) {
+
+        private String encode() {
+            String value = date + "|" + (time != null ? time : "") + "|" + id;
+            return Base64.getUrlEncoder().withoutPadding().encodeToString(value.getBytes(StandardCharsets.UTF_8));
+        }
+
+        private static Cursor decode(String cursor) {
+            try {
+                String[] parts = new String(Base64.getUrlDecoder().decode(cursor), StandardCharsets.UTF_8).split("\\|", -1);
+                if (parts.length != 3) {
+                    throw new IllegalArgumentException("Invalid cursor");
+                }
+                return new Cursor(LocalDate.parse(parts[0]), parts[1].isEmpty() ? null : LocalTime.parse(parts[1]),
+                        Integer.parseInt(parts[2]));
+            } catch (IllegalArgumentException | DateTimeParseException e) {
+                throw new IllegalArgumentException("Invalid cursor");
+            }
+        }
+    }
+}
@@ -0,0 +1,222 @@
+package com.example.onlineticketingsystem.repo;
+
+import com.example.onlineticketingsystem.DTO.CountEstimateDTO;
+import com.example.onlineticketingsystem.DTO.LogPageDTO;
+import com.example.onlineticketingsystem.DTO.LogQueryDTO;
+import com.example.onlineticketingsystem.entity.AuditLog;
+import com.example.onlineticketingsystem.entity.SecurityLog;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.dao.DataAccessException;
+import org.springframework.jdbc.core.BeanPropertyRowMapper;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowCallbackHandler;
+import org.springframework.jdbc.core.RowMapper;
+import org.springframework.stereotype.Repository;
+import org.springframework.util.StringUtils;
+
+import java.nio.charset.StandardCharsets;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.Timestamp;
+import java.time.Instant;
+import java.time.format.DateTimeParseException;
+import java.util.ArrayList;
+import java.util.Base64;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.function.Function;
+import java.util.function.ToIntFunction;
+
+// Keyset pagination over security_log and audit_log, newest first. A page continues strictly after the
+// (timestamp, id) of the previous page's last row, so every page is one index range scan of at most
+// limit + 1 rows no matter how deep the client has paged. Filters are equalities that match the leading
+// column of one of the composite indexes declared on the entities.
+@Repository
+public class JdbcLogQueryRepo {
+
+    private static final Table AUDIT_LOG = new Table("audit_log",
+            "id, action, performed_by, role, timestamp, details, event_count, first_timestamp",
+            new BeanPropertyRowMapper<>(AuditLog.class));
+    private static final Table SECURITY_LOG = new Table("security_log",
+            "id, action, username, status, ip_address, timestamp, details",
+            new BeanPropertyRowMapper<>(SecurityLog.class));
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    public LogPageDTO<AuditLog> findAuditLogs(LogQueryDTO query, int limit) {
+        Where where = new Where(query)
+                .equal("performed_by", query.getPerformedBy())
+                .equal("action", query.getAction());
+        return page(AUDIT_LOG, where, query.getCursor(), limit, AuditLog::getTimestamp, AuditLog::getId);
+    }
+
+    public LogPageDTO<SecurityLog> findSecurityLogs(LogQueryDTO query, int limit) {
+        Where where = new Where(query)
+                .equal("username", query.getUsername())
+                .equal("action", query.getAction())
+                .equal("status", query.getStatus())
+                .equal("ip_address", query.getIpAddress());
+        return page(SECURITY_LOG, where, query.getCursor(), limit, SecurityLog::getTimestamp, SecurityLog::getId);
+    }
+
+    public CountEstimateDTO estimateAuditLogs(LogQueryDTO query, int cap) {
+        Where where = new Where(query)
+                .equal("performed_by", query.getPerformedBy())
+                .equal("action", query.getAction());
+        return estimate(AUDIT_LOG, where, cap);
+    }
+
+    public CountEstimateDTO estimateSecurityLogs(LogQueryDTO query, int cap) {
+        Where where = new Where(query)
+                .equal("username", query.getUsername())
+                .equal("action", query.getAction())
+                .equal("status", query.getStatus())
+                .equal("ip_address", query.getIpAddress());
+        return estimate(SECURITY_LOG, where, cap);
+    }
+
+    // The rows with the given ids in the order given; ids that no longer exist are left out
+    public List<AuditLog> findAuditLogsByIds(List<Integer> ids) {
+        if (ids.isEmpty()) {
+            return List.of();
+        }
+        String placeholders = String.join(", ", Collections.nCopies(ids.size(), "?"));
+        @SuppressWarnings("unchecked")
+        List<AuditLog> rows = jdbcTemplate.query("SELECT " + AUDIT_LOG.columns + " FROM " + AUDIT_LOG.name
+                + " WHERE id IN (" + placeholders + ")", (RowMapper<AuditLog>) AUDIT_LOG.rowMapper, ids.toArray());
+        Map<Integer, AuditLog> byId = new HashMap<>();
+        rows.forEach(row -> byId.put(row.getId(), row));
+        return ids.stream().map(byId::get).filter(Objects::nonNull).toList();
+    }
+
+    // Stream every matching row, oldest first, through a forward-only read-only cursor. The handler sees
+    // one row at a time and nothing is collected, so memory use does not depend on the row count.
+    public void exportAuditLogs(LogQueryDTO query, int fetchSize, RowCallbackHandler handler) {
+        Where where = new Where(query)
+                .equal("performed_by", query.getPerformedBy())
+                .equal("action", query.getAction());
+        export(AUDIT_LOG, where, fetchSize, handler);
+    }
+
+    public void exportSecurityLogs(LogQueryDTO query, int fetchSize, RowCallbackHandler handler) {
+        Where where = new Where(query)
+                .equal("username", query.getUsername())
+                .equal("action", query.getAction())
+                .equal("status", query.getStatus())
+                .equal("ip_address", query.getIpAddress());
+        export(SECURITY_LOG, where, fetchSize, handler);
+    }
+
+    private void export(Table table, Where where, int fetchSize, RowCallbackHandler handler) {
+        String sql = "SELECT " + table.columns + " FROM " + table.name + where.sql() + " ORDER BY timestamp, id";
+        jdbcTemplate.query(connection -> {
+            PreparedStatement statement = connection.prepareStatement(sql, ResultSet.TYPE_FORWARD_ONLY, ResultSet.CONCUR_READ_ONLY);
+            statement.setFetchSize(fetchSize);
+            for (int i = 0; i < where.params.size(); i++) {
+                statement.setObject(i + 1, where.params.get(i));
+            }
+            return statement;
+        }, handler);
+    }
+
+    private <T> LogPageDTO<T> page(Table table, Where where, String cursor, int limit,
+                                   Function<T, Timestamp> timestampOf, ToIntFunction<T> idOf) {
+        if (StringUtils.hasText(cursor)) {
+            Cursor after = Cursor.decode(cursor);
+            Timestamp timestamp = Timestamp.from(after.timestamp());
+            // The leading range lets any database seek on (timestamp, id); the OR alone is only a filter to some
+            where.add("timestamp <= ? AND (timestamp < ? OR id < ?)", timestamp, timestamp, after.id());
+        }
+        where.params.add(limit + 1);
+
+        @SuppressWarnings("unchecked")
+        List<T> rows = jdbcTemplate.query("SELECT " + table.columns + " FROM " + table.name + where.sql()
+                + " ORDER BY timestamp DESC, id DESC LIMIT ?", (RowMapper<T>) table.rowMapper, where.params.toArray());
+
+        String nextCursor = null;
+        if (rows.size() > limit) {
+            rows = rows.subList(0, limit);
+            T last = rows.get(limit - 1);
+            nextCursor = new Cursor(timestampOf.apply(last).toInstant(), idOf.applyAsInt(last)).encode();
+        }
+        return new LogPageDTO<>(rows, nextCursor);
+    }
+
+    // Without filters the table statistics answer in constant time (MySQL). With filters, rows are counted
+    // through the matching index but never more than cap of them.
+    private CountEstimateDTO estimate(Table table, Where where, int cap) {
+        if (where.params.isEmpty()) {
+            try {
+                Long tableRows = jdbcTemplate.queryForObject(
+                        "SELECT TABLE_ROWS FROM information_schema.TABLES WHERE TABLE_SCHEMA = DATABASE() AND TABLE_NAME = ?",
+                        Long.class, table.name);
+                if (tableRows != null) {
+                    return new CountEstimateDTO(tableRows, false);
+                }
+            } catch (DataAccessException e) {
+                // Not MySQL, or no statistics yet: fall back to the capped count
+            }
+        }
+        where.params.add(cap);
+        Long count = jdbcTemplate.queryForObject("SELECT COUNT(*) FROM (SELECT 1 FROM " + table.name + where.sql()
+                + " LIMIT ?) capped", Long.class, where.params.toArray());
+        long counted = count != null ? count : 0;
+        return new CountEstimateDTO(counted, counted < cap);
+    }
+
+    private record Table(String name, String columns, RowMapper<?> rowMapper) {
+    }
+
+    private static final class Where {
+        private final List<String> conditions = new ArrayList<>();
+        private final List<Object> params = new ArrayList<>();
+
+        private Where(LogQueryDTO query) {
+            if (query.getFrom() != null) {
+                add("timestamp >= ?", Timestamp.from(query.getFrom()));
+            }
+            if (query.getTo() != null) {
+                add("timestamp < ?", Timestamp.from(query.getTo()));
+            }
+        }
+
+        private Where equal(String column, String value) {
+            if (StringUtils.hasText(value)) {
+                add(column + " = ?", value);
+            }
+            return this;
+        }
+
+        private void add(String condition, Object... values) {
+            conditions.add(condition);
+            params.addAll(List.of(values));
+        }
+
+        private String sql() {
+            return conditions.isEmpty() ? "" : " WHERE " + String.join(" AND ", conditions);
+        }
+    }
+
+    // Opaque to clients: base64url of "<ISO instant>|<id>". The instant keeps sub-millisecond precision.
+    private record Cursor(Instant timestamp, int id) {
+
+        private String encode() {
+            return Base64.getUrlEncoder().withoutPadding()
+                    .encodeToString((timestamp + "|" + id).getBytes(StandardCharsets.UTF_8));
+        }
+
+        private static Cursor decode(String cursor) {
+            try {
+                String decoded = new String(Base64.getUrlDecoder().decode(cursor), StandardCharsets.UTF_8);
+                int separator = decoded.lastIndexOf('|');
+                return new Cursor(Instant.parse(decoded.substring(0, separator)), Integer.parseInt(decoded.substring(separator + 1)));
+            } catch (IllegalArgumentException | DateTimeParseException | IndexOutOfBoundsException e) {
+                throw new IllegalArgumentException("Invalid cursor");
+            }
+        }
+    }
+}
@@ -0,0 +1,74 @@
+package com.example.onlineticketingsystem.repo;
+
+import com.example.onlineticketingsystem.service.RateLimiterStore;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.namedparam.MapSqlParameterSource;
+import org.springframework.jdbc.core.namedparam.NamedParameterJdbcTemplate;
+import org.springframework.stereotype.Repository;
+
+import java.util.*;
+
+// RateLimiterStore on the login_attempt table. Each flush is one JDBC batch of MySQL upserts, so
+// concurrent nodes add to the same row atomically and the block is decided inside the database.
+@Repository
+@ConditionalOnProperty(name = "rate-limiter.store", havingValue = "shared")
+public class JdbcRateLimiterStore implements RateLimiterStore {
+
+    // Column assignments run left to right, so blocked_until sees the new attempts value and
+    // updated_at is still the previous one when attempts is evaluated
+    private static final String UPSERT = """
+            INSERT INTO login_attempt (ip_address, attempts, blocked_until, updated_at)
+            VALUES (:ip, :attempts, :insertBlockedUntil, :now)
+            ON DUPLICATE KEY UPDATE
+                attempts = IF((blocked_until <> 0 AND blocked_until <= :now) OR updated_at < :windowStart,
+                              VALUES(attempts), attempts + VALUES(attempts)),
+                blocked_until = IF(attempts >= :maxAttempts,
+                                   IF(blocked_until > :now, blocked_until, :blockUntil),
+                                   IF(blocked_until <= :now, 0, blocked_until)),
+                updated_at = :now
+            """;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    private NamedParameterJdbcTemplate namedParameterJdbcTemplate;
+
+    @Override
+    public void addAttempts(Map<String, Integer> attempts, int maxAttempts, long now, long windowStart, long blockUntil) {
+        MapSqlParameterSource[] batch = attempts.entrySet().stream()
+                .map(entry -> new MapSqlParameterSource()
+                        .addValue("ip", entry.getKey())
+                        .addValue("attempts", entry.getValue())
+                        .addValue("insertBlockedUntil", entry.getValue() >= maxAttempts ? blockUntil : 0L)
+                        .addValue("maxAttempts", maxAttempts)
+                        .addValue("now", now)
+                        .addValue("windowStart", windowStart)
+                        .addValue("blockUntil", blockUntil))
+                .toArray(MapSqlParameterSource[]::new);
+        namedParameterJdbcTemplate.batchUpdate(UPSERT, batch);
+    }
+
+    @Override
+    public void reset(Collection<String> ipAddresses) {
+        List<Object[]> batch = ipAddresses.stream().map(ip -> new Object[]{ip}).toList();
+        jdbcTemplate.batchUpdate("DELETE FROM login_attempt WHERE ip_address = ?", batch);
+    }
+
+    @Override
+    public Map<String, Long> findBlocked(long now) {
+        Map<String, Long> blocked = new HashMap<>();
+        jdbcTemplate.query("SELECT ip_address, blocked_until FROM login_attempt WHERE blocked_until > ?",
+                rs -> {
+                    blocked.put(rs.getString(1), rs.getLong(2));
+                }, now);
+        return blocked;
+    }
+
+    @Override
+    public int purgeIdle(long cutoff, long now) {
+        return jdbcTemplate.update("DELETE FROM login_attempt WHERE updated_at < ? AND blocked_until <= ?", cutoff, now);
+    }
+}
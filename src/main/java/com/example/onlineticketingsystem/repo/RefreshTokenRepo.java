@@ -0,0 +1,31 @@
+package com.example.onlineticketingsystem.repo;
+
+import com.example.onlineticketingsystem.entity.RefreshToken;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+
+import java.util.List;
+import java.util.Optional;
+
+public interface RefreshTokenRepo extends JpaRepository<RefreshToken, Long> {
+
+    Optional<RefreshToken> findByTokenHash(String tokenHash);
+
+    // Marks the token as used only if nobody else did first, so two concurrent refreshes cannot both succeed
+    @Modifying(clearAutomatically = true)
+    @Query("UPDATE RefreshToken t SET t.rotatedAt = :now WHERE t.id = :id AND t.rotatedAt = 0 AND t.revoked = false")
+    int markRotated(@Param("id") long id, @Param("now") long now);
+
+    @Modifying(clearAutomatically = true)
+    @Query("UPDATE RefreshToken t SET t.revoked = true WHERE t.familyId = :familyId AND t.revoked = false")
+    int revokeFamily(@Param("familyId") String familyId);
+
+    @Modifying(clearAutomatically = true)
+    @Query("UPDATE RefreshToken t SET t.revoked = true WHERE t.username = :username AND t.revoked = false")
+    int revokeAllForUser(@Param("username") String username);
+
+    @Query(value = "SELECT id FROM refresh_token WHERE expires_at < :now ORDER BY id LIMIT :limit", nativeQuery = true)
+    List<Long> findExpiredIds(@Param("now") long now, @Param("limit") int limit);
+}
@@ -0,0 +1,18 @@
+package com.example.onlineticketingsystem.repo;
+
+import com.example.onlineticketingsystem.entity.RevokedToken;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+
+import java.util.List;
+
+public interface RevokedTokenRepo extends JpaRepository<RevokedToken, String> {
+
+    List<RevokedToken> findByExpiresAtGreaterThan(long now);
+
+    List<RevokedToken> findByRevokedAtGreaterThanEqualAndExpiresAtGreaterThan(long since, long now);
+
+    @Query(value = "SELECT token_key FROM revoked_token WHERE expires_at <= :now LIMIT :limit", nativeQuery = true)
+    List<String> findExpiredKeys(@Param("now") long now, @Param("limit") int limit);
+}
@@ -0,0 +1,7 @@
+package com.example.onlineticketingsystem.repo;
+
+import com.example.onlineticketingsystem.entity.UserDirectoryBackfill;
+import org.springframework.data.jpa.repository.JpaRepository;
+
+public interface UserDirectoryBackfillRepo extends JpaRepository<UserDirectoryBackfill, Integer> {
+}
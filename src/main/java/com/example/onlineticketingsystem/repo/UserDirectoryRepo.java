@@ -0,0 +1,13 @@
+package com.example.onlineticketingsystem.repo;
+
+import com.example.onlineticketingsystem.entity.UserDirectory;
+import org.springframework.data.jpa.repository.JpaRepository;
+
+import java.util.Optional;
+
+public interface UserDirectoryRepo extends JpaRepository<UserDirectory, Integer> {
+
+    Optional<UserDirectory> findByEmail(String email);
+
+    boolean existsByEmail(String email);
+}
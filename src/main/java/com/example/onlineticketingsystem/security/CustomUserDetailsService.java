@@ -2,6 +2,7 @@ package com.example.onlineticketingsystem.security;
 
 import com.example.onlineticketingsystem.entity.*;
 import com.example.onlineticketingsystem.repo.*;
+import com.example.onlineticketingsystem.service.UserDirectoryService;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.security.core.GrantedAuthority;
 import org.springframework.security.core.authority.SimpleGrantedAuthority;
@@ -30,12 +31,31 @@ public class CustomUserDetailsService implements UserDetailsService {
     @Autowired
     private AdminRepo adminRepo;
 
+    @Autowired
+    private UserDirectoryService userDirectoryService;
+
 
     @Override
     public UserDetails loadUserByUsername(String email) throws UsernameNotFoundException {
-        // Try to find the user in each repository
+        // One indexed query resolves any user type
+        UserDirectory entry = userDirectoryService.findByEmail(email).orElse(null);
+        if (entry != null) {
+            return new org.springframework.security.core.userdetails.User(
+                    entry.getEmail(),
+                    entry.getPassword(),
+                    Collections.singletonList(new SimpleGrantedAuthority(entry.getRoleName()))
+            );
+        }
+
+        // After the backfill every user is in the directory, so a miss there is final
+        if (userDirectoryService.isBackfilled()) {
+            throw new UsernameNotFoundException("User not found with email: " + email);
+        }
+
+        // Not in the directory yet (the backfill has not finished): probe each table and record the hit
         Passenger passenger = passengerRepo.findByEmail(email).orElse(null);
         if (passenger != null) {
+            userDirectoryService.record(UserDirectoryService.PASSENGER, passenger);
             return new org.springframework.security.core.userdetails.User(
                     passenger.getEmail(),
                     passenger.getPassword(),
@@ -45,6 +65,7 @@ public class CustomUserDetailsService implements UserDetailsService {
 
         BusOwner busOwner = busOwnerRepo.findByEmail(email).orElse(null);
         if (busOwner != null) {
+            userDirectoryService.record(UserDirectoryService.BUS_OWNER, busOwner);
             return new org.springframework.security.core.userdetails.User(
                     busOwner.getEmail(),
                     busOwner.getPassword(),
@@ -54,6 +75,7 @@ public class CustomUserDetailsService implements UserDetailsService {
 
         TicketInspector ticketInspector = ticketInspectorRepo.findByEmail(email).orElse(null);
         if (ticketInspector != null) {
+            userDirectoryService.record(UserDirectoryService.TICKET_INSPECTOR, ticketInspector);
             return new org.springframework.security.core.userdetails.User(
                     ticketInspector.getEmail(),
                     ticketInspector.getPassword(),
@@ -63,6 +85,7 @@ public class CustomUserDetailsService implements UserDetailsService {
 
         Admin admin = adminRepo.findByEmail(email).orElse(null);
         if (admin != null) {
+            userDirectoryService.record(UserDirectoryService.ADMIN, admin);
             return new org.springframework.security.core.userdetails.User(
                     admin.getEmail(),
                     admin.getPassword(),
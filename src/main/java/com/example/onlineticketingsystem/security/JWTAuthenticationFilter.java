@@ -1,10 +1,13 @@
 package com.example.onlineticketingsystem.security;
 
+import com.example.onlineticketingsystem.service.TokenRevocationService;
+import io.jsonwebtoken.Claims;
 import jakarta.servlet.FilterChain;
 import jakarta.servlet.ServletException;
 import jakarta.servlet.http.HttpServletRequest;
 import jakarta.servlet.http.HttpServletResponse;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
 import org.springframework.security.core.authority.SimpleGrantedAuthority;
 import org.springframework.security.core.context.SecurityContextHolder;
@@ -25,23 +28,36 @@ public class JWTAuthenticationFilter extends OncePerRequestFilter {
     @Autowired
     private CustomUserDetailsService customUserDetailsService;
 
+    @Autowired
+    private UserDetailsCache userDetailsCache;
+
+    @Autowired
+    private TokenRevocationService tokenRevocationService;
+
+    // "claims" builds the principal from the verified token alone; "database" also checks the user still exists
+    @Value("${jwt.principal-mode:claims}")
+    private String principalMode;
+
     @Override
     protected void doFilterInternal(HttpServletRequest request,
                                     HttpServletResponse response,
                                     FilterChain filterChain) throws ServletException, IOException {
         String token = getJWTFromRequest(request);
 
-        if (StringUtils.hasText(token) && tokenGenerator.validateToken(token)) {
-            String username = tokenGenerator.getUsernameFromJWT(token);
-            String role = tokenGenerator.getRoleFromJWT(token); // Get the role from the token
+        if (StringUtils.hasText(token)) {
+            // Signature is verified once here; username and role come from the same claims
+            Claims claims = tokenGenerator.getClaimsFromJWT(token);
+            if (tokenRevocationService.isRevoked(claims)) {
+                // Continue unauthenticated; protected endpoints then answer 401 through JwtAuthEntryPoint
+                filterChain.doFilter(request, response);
+                return;
+            }
+            String username = claims.getSubject();
+            String role = claims.get("role", String.class); // Get the role from the token
 
-            // Create UserDetails with the retrieved role
-            UserDetails userDetails = customUserDetailsService.loadUserByUsername(username);
-
-            System.out.println("Role: " + role);
-            System.out.println("User Details: " + userDetails.getUsername() + " " + userDetails.getPassword() + " " + userDetails.getAuthorities());
-            userDetails = new User(userDetails.getUsername(), userDetails.getPassword(),
-                    Collections.singleton(new SimpleGrantedAuthority(role)));
+            UserDetails userDetails = "database".equalsIgnoreCase(principalMode)
+                    ? loadUser(username)
+                    : new User(username, "", Collections.singleton(new SimpleGrantedAuthority(role)));
 
             UsernamePasswordAuthenticationToken authenticationToken = new UsernamePasswordAuthenticationToken(userDetails, null,
                     userDetails.getAuthorities());
@@ -61,6 +77,16 @@ public class JWTAuthenticationFilter extends OncePerRequestFilter {
     }
 
 
+    // Look the user up through the cache so only the first request after a miss or eviction hits the database
+    private UserDetails loadUser(String username) {
+        UserDetails userDetails = userDetailsCache.getUserFromCache(username);
+        if (userDetails == null) {
+            userDetails = customUserDetailsService.loadUserByUsername(username);
+            userDetailsCache.putUserInCache(userDetails);
+        }
+        return userDetails;
+    }
+
     private String getJWTFromRequest(HttpServletRequest request) {
         String bearerToken = request.getHeader("Authorization");
         if(StringUtils.hasText(bearerToken) && bearerToken.startsWith("Bearer ")) {
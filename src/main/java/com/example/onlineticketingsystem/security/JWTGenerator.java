@@ -3,33 +3,46 @@ package com.example.onlineticketingsystem.security;
 import io.jsonwebtoken.Claims;
 import io.jsonwebtoken.Jwts;
 import io.jsonwebtoken.SignatureAlgorithm;
-import io.jsonwebtoken.security.Keys;
 import org.springframework.security.authentication.AuthenticationCredentialsNotFoundException;
 import org.springframework.security.core.Authentication;
 import org.springframework.security.oauth2.core.user.OAuth2User;
 import org.springframework.stereotype.Component;
 
-import java.security.Key;
 import java.util.Date;
+import java.util.UUID;
 
 @Component
 public class JWTGenerator {
 
-    private static final Key key = Keys.secretKeyFor(SignatureAlgorithm.HS512);
+    private final JwtClaimsCache claimsCache;
+    private final JwtKeyRing keyRing;
+
+    public JWTGenerator(JwtClaimsCache claimsCache, JwtKeyRing keyRing) {
+        this.claimsCache = claimsCache;
+        this.keyRing = keyRing;
+    }
 
     // Token generation for general Spring Security users
     public String generateToken(Authentication authentication){
         String username = authentication.getName();
         String role = authentication.getAuthorities().toArray()[0].toString();
+        return generateToken(username, role);
+    }
+
+    // Token generation for a user whose identity was already established, e.g. by a refresh token
+    public String generateToken(String username, String role) {
         Date currentDate = new Date();
         Date expireDate = new Date(currentDate.getTime() + SecurityConstants.JWT_EXPIRATION);
 
+        JwtKeyRing.SigningKey signingKey = keyRing.signingKey();
         return Jwts.builder()
+                .setHeaderParam("kid", signingKey.getKid())
+                .setId(UUID.randomUUID().toString())
                 .setSubject(username)
                 .claim("role", role)
                 .setIssuedAt(currentDate)
                 .setExpiration(expireDate)
-                .signWith(key, SignatureAlgorithm.HS512)
+                .signWith(signingKey.getKey(), SignatureAlgorithm.HS512)
                 .compact();
     }
 
@@ -40,43 +53,42 @@ public class JWTGenerator {
         Date currentDate = new Date();
         Date expireDate = new Date(currentDate.getTime() + SecurityConstants.JWT_EXPIRATION);
 
+        JwtKeyRing.SigningKey signingKey = keyRing.signingKey();
         return Jwts.builder()
+                .setHeaderParam("kid", signingKey.getKid())
+                .setId(UUID.randomUUID().toString())
                 .setSubject(email)
                 .claim("role", role)
                 .setIssuedAt(currentDate)
                 .setExpiration(expireDate)
-                .signWith(key, SignatureAlgorithm.HS512)
+                .signWith(signingKey.getKey(), SignatureAlgorithm.HS512)
                 .compact();
     }
 
+    // Verify the token once and return its claims; repeated calls with the same token are served from the cache
+    public Claims getClaimsFromJWT(String token) {
+        return claimsCache.get(token, this::parseClaims);
+    }
+
     // Extract the username (or email in the case of OAuth2 users) from JWT
     public String getUsernameFromJWT(String token){
-        Claims claims = Jwts.parserBuilder()
-                .setSigningKey(key)
-                .build()
-                .parseClaimsJws(token)
-                .getBody();
-        return claims.getSubject();
+        return getClaimsFromJWT(token).getSubject();
     }
 
     // Extract the role from JWT
     public String getRoleFromJWT(String token){
-        Claims claims = Jwts.parserBuilder()
-                .setSigningKey(key)
-                .build()
-                .parseClaimsJws(token)
-                .getBody();
-        return claims.get("role", String.class);
+        return getClaimsFromJWT(token).get("role", String.class);
     }
 
     // Validate the JWT token
     public boolean validateToken(String token){
+        getClaimsFromJWT(token);
+        return true;
+    }
+
+    private Claims parseClaims(String token) {
         try {
-            Jwts.parserBuilder()
-                    .setSigningKey(key)
-                    .build()
-                    .parseClaimsJws(token);
-            return true;
+            return keyRing.parserFor(token).parseClaimsJws(token).getBody();
         } catch (Exception e){
             throw new AuthenticationCredentialsNotFoundException("Invalid or expired token", e.fillInStackTrace());
         }
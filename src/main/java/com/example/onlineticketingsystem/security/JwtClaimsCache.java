@@ -0,0 +1,130 @@
+package com.example.onlineticketingsystem.security;
+
+import io.jsonwebtoken.Claims;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Base64;
+import java.util.Collections;
+import java.util.Date;
+import java.util.Comparator;
+import java.util.Map;
+import java.util.NavigableSet;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentSkipListSet;
+import java.util.function.Function;
+
+// Keeps the verified claims of recently seen tokens so the signature is only checked once per token. Entries are
+// also kept in expiry order, so a full cache gives up the soonest to expire (expired ones first) in O(log n) and
+// expired entries are purged on a schedule rather than by the requests that miss.
+@Component
+public class JwtClaimsCache {
+
+    private final Map<String, CachedClaims> entries = new ConcurrentHashMap<>();
+    private final NavigableSet<Expiry> byExpiry = new ConcurrentSkipListSet<>(
+            Comparator.comparingLong(Expiry::expiresAt).thenComparing(Expiry::key));
+    private final int maxSize;
+    private final Counter hits;
+    private final Counter misses;
+    private final Counter evictions;
+
+    public JwtClaimsCache(@Value("${jwt.claims-cache.max-size:10000}") int maxSize, MeterRegistry meterRegistry) {
+        this.maxSize = maxSize;
+        this.hits = Counter.builder("jwt.claims.cache").tag("result", "hit").register(meterRegistry);
+        this.misses = Counter.builder("jwt.claims.cache").tag("result", "miss").register(meterRegistry);
+        this.evictions = Counter.builder("jwt.claims.cache.evictions").register(meterRegistry);
+        meterRegistry.gaugeMapSize("jwt.claims.cache.size", Collections.emptyList(), entries);
+    }
+
+    // Returns the cached claims for the token, or verifies it with the given parser and caches the result
+    public Claims get(String token, Function<String, Claims> verifier) {
+        String key = digest(token);
+        long now = System.currentTimeMillis();
+
+        CachedClaims cached = entries.get(key);
+        if (cached != null) {
+            if (now < cached.expiresAt) {
+                hits.increment();
+                return cached.claims;
+            }
+            remove(key, cached);
+        }
+
+        misses.increment();
+        Claims claims = verifier.apply(token);
+
+        Date expiration = claims.getExpiration();
+        if (expiration != null && maxSize > 0) {
+            while (entries.size() >= maxSize) {
+                Expiry soonest = byExpiry.pollFirst();
+                if (soonest == null) {
+                    break;
+                }
+                if (entries.remove(soonest.key()) != null) {
+                    evictions.increment();
+                }
+            }
+            // A concurrent miss on the same token puts the same expiry, which the set holds once
+            entries.put(key, new CachedClaims(claims, expiration.getTime()));
+            byExpiry.add(new Expiry(expiration.getTime(), key));
+        }
+        return claims;
+    }
+
+    public void invalidate(String token) {
+        String key = digest(token);
+        CachedClaims cached = entries.get(key);
+        if (cached != null) {
+            remove(key, cached);
+        }
+    }
+
+    public void clear() {
+        entries.clear();
+        byExpiry.clear();
+    }
+
+    public int size() {
+        return entries.size();
+    }
+
+    @Scheduled(fixedDelayString = "${jwt.claims-cache.purge-interval-ms:60000}")
+    public void purgeExpired() {
+        long now = System.currentTimeMillis();
+        int purged = 0;
+        for (Expiry expired : byExpiry.headSet(new Expiry(now + 1, ""), false)) {
+            if (byExpiry.remove(expired) && entries.remove(expired.key()) != null) {
+                purged++;
+            }
+        }
+        evictions.increment(purged);
+    }
+
+    private void remove(String key, CachedClaims cached) {
+        if (entries.remove(key, cached)) {
+            byExpiry.remove(new Expiry(cached.expiresAt, key));
+        }
+    }
+
+    private static String digest(String token) {
+        try {
+            MessageDigest sha256 = MessageDigest.getInstance("SHA-256");
+            byte[] hash = sha256.digest(token.getBytes(StandardCharsets.US_ASCII));
+            return Base64.getUrlEncoder().withoutPadding().encodeToString(hash);
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 not available", e);
+        }
+    }
+
+    private record CachedClaims(Claims claims, long expiresAt) {
+    }
+
+    private record Expiry(long expiresAt, String key) {
+    }
+}
@@ -0,0 +1,245 @@
+package com.example.onlineticketingsystem.security;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.jsonwebtoken.JwtParser;
+import io.jsonwebtoken.Jwts;
+import io.jsonwebtoken.SignatureAlgorithm;
+import io.jsonwebtoken.security.Keys;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.security.authentication.AuthenticationCredentialsNotFoundException;
+import org.springframework.stereotype.Component;
+import org.springframework.util.StringUtils;
+
+import javax.crypto.SecretKey;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.*;
+
+// HS512 keys shared by every node, so a token signed on one node verifies on all of them.
+// Keys come from jwt.keys or from the file named by jwt.keys-file, one "kid:base64-secret[:activate-at-millis]"
+// entry each. Every listed key verifies tokens; the newest key whose activation time has passed signs them.
+// To rotate, publish the new key with an activation time a couple of reload intervals ahead, and remove the
+// old key once the tokens it signed have expired. The file is re-read on a schedule.
+@Component
+public class JwtKeyRing {
+
+    private static final Logger logger = LoggerFactory.getLogger(JwtKeyRing.class);
+    private static final ObjectMapper objectMapper = new ObjectMapper();
+    private static final int MIN_SECRET_BYTES = 64;
+
+    private final String configuredKeys;
+    private final Path keysFile;
+    private final JwtClaimsCache claimsCache;
+    private final Counter reloads;
+    private final Counter unknownKid;
+    private volatile KeySet keySet;
+    private volatile String loadedSource;
+
+    @Autowired
+    public JwtKeyRing(@Value("${jwt.keys:}") String configuredKeys,
+                      @Value("${jwt.keys-file:}") String keysFile,
+                      JwtClaimsCache claimsCache,
+                      MeterRegistry meterRegistry) {
+        this.configuredKeys = configuredKeys;
+        this.claimsCache = claimsCache;
+        this.keysFile = StringUtils.hasText(keysFile) ? Path.of(keysFile) : null;
+        this.reloads = Counter.builder("jwt.keys.reloads").register(meterRegistry);
+        this.unknownKid = Counter.builder("jwt.keys.unknown.kid").register(meterRegistry);
+        Gauge.builder("jwt.keys.count", this, ring -> ring.keySet.keys.size()).register(meterRegistry);
+
+        String source = readSource();
+        if (StringUtils.hasText(source)) {
+            this.keySet = KeySet.parse(source, System.currentTimeMillis());
+            this.loadedSource = source;
+        } else {
+            // Nothing configured: fall back to a random per-JVM key, which only works for a single node
+            logger.warn("No JWT signing keys configured (jwt.keys / jwt.keys-file); using a random key for this JVM only");
+            SecretKey key = Keys.secretKeyFor(SignatureAlgorithm.HS512);
+            this.keySet = new KeySet(List.of(new SigningKey("local", key, Long.MIN_VALUE)), System.currentTimeMillis());
+            this.loadedSource = "";
+        }
+        logger.info("JWT key ring loaded {} key(s), signing with '{}'", keySet.keys.size(), keySet.active.kid);
+    }
+
+    public SigningKey signingKey() {
+        return keySet.active;
+    }
+
+    // The prebuilt parser for the key named in the token's kid header. Tokens without a kid were signed
+    // before key ids existed and are checked against the signing key.
+    public JwtParser parserFor(String token) {
+        KeySet current = keySet;
+        String kid = readKid(token);
+        if (kid == null) {
+            return current.active.parser;
+        }
+        SigningKey key = current.byKid.get(kid);
+        if (key == null) {
+            unknownKid.increment();
+            throw new AuthenticationCredentialsNotFoundException("Invalid or expired token");
+        }
+        return key.parser;
+    }
+
+    public Set<String> keyIds() {
+        return keySet.byKid.keySet();
+    }
+
+    // Re-read the key source and recompute the signing key. Returns true if the set of keys changed.
+    @Scheduled(fixedDelayString = "${jwt.keys.reload-interval-ms:60000}")
+    public boolean reload() {
+        String source;
+        try {
+            source = readSource();
+        } catch (UncheckedIOException e) {
+            logger.error("Could not read JWT keys file {}; keeping the current keys", keysFile, e);
+            return false;
+        }
+        if (!StringUtils.hasText(source)) {
+            return false;
+        }
+
+        long now = System.currentTimeMillis();
+        KeySet current = keySet;
+        if (source.equals(loadedSource)) {
+            // Same keys, but a pending key may have reached its activation time
+            if (current.signingKeyAt(now) != current.active) {
+                keySet = new KeySet(current.keys, now);
+                logger.info("JWT signing key rotated to '{}'", keySet.active.kid);
+            }
+            return false;
+        }
+
+        try {
+            KeySet loaded = KeySet.parse(source, now);
+            keySet = loaded;
+            loadedSource = source;
+            if (!loaded.byKid.keySet().containsAll(current.byKid.keySet())) {
+                // Tokens signed with a removed key must stop verifying now, not when their cached claims expire
+                claimsCache.clear();
+            }
+            reloads.increment();
+            logger.info("JWT key ring reloaded {} key(s), signing with '{}'", loaded.keys.size(), loaded.active.kid);
+            return true;
+        } catch (IllegalArgumentException e) {
+            logger.error("Invalid JWT keys; keeping the current keys: {}", e.getMessage());
+            return false;
+        }
+    }
+
+    private String readSource() {
+        if (keysFile != null) {
+            try {
+                return Files.readString(keysFile, StandardCharsets.UTF_8);
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }
+        return configuredKeys.replace(',', '\n');
+    }
+
+    private static String readKid(String token) {
+        int dot = token.indexOf('.');
+        if (dot <= 0) {
+            return null;
+        }
+        try {
+            JsonNode header = objectMapper.readTree(Base64.getUrlDecoder().decode(token.substring(0, dot)));
+            JsonNode kid = header.get("kid");
+            return kid != null ? kid.asText() : null;
+        } catch (IOException | IllegalArgumentException e) {
+            throw new AuthenticationCredentialsNotFoundException("Invalid or expired token", e);
+        }
+    }
+
+    public static final class SigningKey {
+        private final String kid;
+        private final SecretKey key;
+        private final long activateAt;
+        // Parsers are immutable and thread-safe, so each key builds its own once
+        private final JwtParser parser;
+
+        private SigningKey(String kid, SecretKey key, long activateAt) {
+            this.kid = kid;
+            this.key = key;
+            this.activateAt = activateAt;
+            this.parser = Jwts.parserBuilder().setSigningKey(key).build();
+        }
+
+        public String getKid() {
+            return kid;
+        }
+
+        public SecretKey getKey() {
+            return key;
+        }
+    }
+
+    private static final class KeySet {
+        private final List<SigningKey> keys;
+        private final Map<String, SigningKey> byKid;
+        private final SigningKey active;
+
+        private KeySet(List<SigningKey> keys, long now) {
+            this.keys = keys;
+            Map<String, SigningKey> index = new HashMap<>();
+            keys.forEach(key -> index.put(key.kid, key));
+            this.byKid = Collections.unmodifiableMap(index);
+            this.active = signingKeyAt(now);
+        }
+
+        // The latest activated key; if none is active yet, the earliest one so tokens can still be issued
+        private SigningKey signingKeyAt(long now) {
+            SigningKey best = null;
+            for (SigningKey key : keys) {
+                if (key.activateAt <= now && (best == null || key.activateAt >= best.activateAt)) {
+                    best = key;
+                }
+            }
+            if (best == null) {
+                best = keys.stream().min(Comparator.comparingLong(key -> key.activateAt)).orElseThrow();
+            }
+            return best;
+        }
+
+        private static KeySet parse(String source, long now) {
+            List<SigningKey> keys = new ArrayList<>();
+            Set<String> seen = new HashSet<>();
+            for (String line : source.split("\\R")) {
+                String entry = line.trim();
+                if (entry.isEmpty() || entry.startsWith("#")) {
+                    continue;
+                }
+                String[] parts = entry.split(":");
+                if (parts.length < 2 || parts.length > 3 || parts[0].isBlank()) {
+                    throw new IllegalArgumentException("Expected kid:base64-secret[:activate-at-millis] but got an entry for '" + parts[0] + "'");
+                }
+                String kid = parts[0].trim();
+                if (!seen.add(kid)) {
+                    throw new IllegalArgumentException("Duplicate JWT key id '" + kid + "'");
+                }
+                byte[] secret = Base64.getDecoder().decode(parts[1].trim());
+                if (secret.length < MIN_SECRET_BYTES) {
+                    throw new IllegalArgumentException("JWT key '" + kid + "' must be at least " + MIN_SECRET_BYTES + " bytes for HS512");
+                }
+                long activateAt = parts.length == 3 ? Long.parseLong(parts[2].trim()) : 0;
+                keys.add(new SigningKey(kid, Keys.hmacShaKeyFor(secret), activateAt));
+            }
+            if (keys.isEmpty()) {
+                throw new IllegalArgumentException("No JWT keys found");
+            }
+            return new KeySet(List.copyOf(keys), now);
+        }
+    }
+}
@@ -0,0 +1,179 @@
+package com.example.onlineticketingsystem.security;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.servlet.FilterChain;
+import jakarta.servlet.ServletException;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.server.PathContainer;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.security.authentication.AnonymousAuthenticationToken;
+import org.springframework.security.core.Authentication;
+import org.springframework.security.core.context.SecurityContextHolder;
+import org.springframework.util.StringUtils;
+import org.springframework.web.filter.OncePerRequestFilter;
+import org.springframework.web.util.pattern.PathPattern;
+import org.springframework.web.util.pattern.PathPatternParser;
+
+import java.io.IOException;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.stream.IntStream;
+
+// Applies a token bucket per principal and per client IP to every request matching a configured rule.
+// Runs after JWTAuthenticationFilter so the principal is known; requests over the limit get 429.
+// Once max-keys buckets are tracked, principals and IPs without a bucket of their own share one overflow
+// bucket per rule until the scheduled sweep frees room, so a flood of new keys can neither evict the
+// buckets of known clients nor make the request path do more than a map lookup.
+public class RequestRateLimitFilter extends OncePerRequestFilter {
+
+    private static final Logger logger = LoggerFactory.getLogger(RequestRateLimitFilter.class);
+    private static final long NANOS_PER_SECOND = 1_000_000_000L;
+
+    private final boolean enabled;
+    private final int maxKeys;
+    private final List<CompiledRule> rules;
+    private final Map<String, TokenBucket> buckets = new ConcurrentHashMap<>();
+    private final Map<String, TokenBucket> overflow = new ConcurrentHashMap<>();
+    private final Counter overflowRequests;
+
+    public RequestRateLimitFilter(RequestRateLimitProperties properties, MeterRegistry meterRegistry) {
+        this.enabled = properties.isEnabled();
+        this.maxKeys = properties.getMaxKeys();
+        List<RequestRateLimitProperties.Rule> configured = properties.getRules();
+        this.rules = IntStream.range(0, configured.size())
+                .mapToObj(i -> new CompiledRule(i, configured.get(i), meterRegistry))
+                .toList();
+        meterRegistry.gaugeMapSize("http.rate.limit.tracked.keys", Collections.emptyList(), buckets);
+        this.overflowRequests = Counter.builder("http.rate.limit.overflow").register(meterRegistry);
+    }
+
+    @Override
+    protected void doFilterInternal(HttpServletRequest request,
+                                    HttpServletResponse response,
+                                    FilterChain filterChain) throws ServletException, IOException {
+        CompiledRule rule = match(request);
+        if (rule != null) {
+            long now = System.nanoTime();
+            long waitNanos = acquire(rule, "ip:", request.getRemoteAddr(), rule.ipCapacity, rule.ipTokensPerNano, now);
+
+            Authentication authentication = SecurityContextHolder.getContext().getAuthentication();
+            if (waitNanos == 0 && authentication != null && authentication.isAuthenticated()
+                    && !(authentication instanceof AnonymousAuthenticationToken)) {
+                waitNanos = acquire(rule, "user:", authentication.getName(), rule.capacity, rule.tokensPerNano, now);
+            }
+
+            if (waitNanos > 0) {
+                rule.rejections.increment();
+                long retryAfter = Math.max(1, (waitNanos + NANOS_PER_SECOND - 1) / NANOS_PER_SECOND);
+                logger.debug("Rate limit exceeded on '{}' from IP {}", rule.source, request.getRemoteAddr());
+                response.setStatus(HttpStatus.TOO_MANY_REQUESTS.value());
+                response.setHeader("Retry-After", Long.toString(retryAfter));
+                response.setContentType("text/plain");
+                response.getWriter().write("Too many requests. Please try again later.");
+                return;
+            }
+        }
+
+        filterChain.doFilter(request, response);
+    }
+
+    @Override
+    protected boolean shouldNotFilter(HttpServletRequest request) {
+        return !enabled || rules.isEmpty();
+    }
+
+    // Background sweeper: a bucket that has refilled completely carries no state and can go
+    @Scheduled(fixedDelayString = "${request-rate-limit.sweep-interval-ms:60000}")
+    public void sweep() {
+        long now = System.nanoTime();
+        buckets.values().removeIf(bucket -> bucket.isFull(now));
+    }
+
+    private CompiledRule match(HttpServletRequest request) {
+        PathContainer path = PathContainer.parsePath(request.getRequestURI());
+        String method = request.getMethod();
+        for (CompiledRule rule : rules) {
+            if ((rule.method == null || rule.method.equalsIgnoreCase(method)) && rule.pattern.matches(path)) {
+                return rule;
+            }
+        }
+        return null;
+    }
+
+    private long acquire(CompiledRule rule, String kind, String id, double capacity, double tokensPerNano, long now) {
+        String bucketKey = rule.index + kind + id;
+        TokenBucket bucket = buckets.get(bucketKey);
+        if (bucket == null) {
+            if (buckets.size() >= maxKeys) {
+                overflowRequests.increment();
+                bucket = overflow.computeIfAbsent(rule.index + kind, k -> new TokenBucket(capacity, tokensPerNano, now));
+            } else {
+                bucket = buckets.computeIfAbsent(bucketKey, k -> new TokenBucket(capacity, tokensPerNano, now));
+            }
+        }
+        return bucket.tryAcquire(now);
+    }
+
+    private static final class CompiledRule {
+        private final String index;
+        private final String source;
+        private final PathPattern pattern;
+        private final String method;
+        private final double capacity;
+        private final double tokensPerNano;
+        private final double ipCapacity;
+        private final double ipTokensPerNano;
+        private final Counter rejections;
+
+        private CompiledRule(int index, RequestRateLimitProperties.Rule rule, MeterRegistry meterRegistry) {
+            this.index = index + "|";
+            this.source = rule.getPattern();
+            this.pattern = PathPatternParser.defaultInstance.parse(rule.getPattern());
+            this.method = StringUtils.hasText(rule.getMethod()) ? rule.getMethod() : null;
+            this.capacity = rule.getCapacity();
+            this.tokensPerNano = rule.getRefillPerSecond() / 1e9;
+            this.ipCapacity = rule.getIpCapacity();
+            this.ipTokensPerNano = rule.getIpRefillPerSecond() / 1e9;
+            this.rejections = Counter.builder("http.rate.limit.rejections").tag("rule", rule.getPattern())
+                    .register(meterRegistry);
+        }
+    }
+
+    private static final class TokenBucket {
+        private final double capacity;
+        private final double tokensPerNano;
+        private double tokens;
+        private long lastRefill;
+
+        private TokenBucket(double capacity, double tokensPerNano, long now) {
+            this.capacity = capacity;
+            this.tokensPerNano = tokensPerNano;
+            this.tokens = capacity;
+            this.lastRefill = now;
+        }
+
+        // Returns 0 when a token was taken, otherwise the nanoseconds until one becomes available
+        private synchronized long tryAcquire(long now) {
+            if (now > lastRefill) {
+                tokens = Math.min(capacity, tokens + (now - lastRefill) * tokensPerNano);
+                lastRefill = now;
+            }
+            if (tokens >= 1) {
+                tokens -= 1;
+                return 0;
+            }
+            return tokensPerNano > 0 ? (long) Math.ceil((1 - tokens) / tokensPerNano) : Long.MAX_VALUE - NANOS_PER_SECOND;
+        }
+
+        private synchronized boolean isFull(long now) {
+            return tokens + (now - lastRefill) * tokensPerNano >= capacity;
+        }
+    }
+}
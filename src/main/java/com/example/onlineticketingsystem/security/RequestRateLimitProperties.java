@@ -0,0 +1,37 @@
+package com.example.onlineticketingsystem.security;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.List;
+
+// request-rate-limit.* settings. Rules are checked in order and the first matching pattern applies,
+// so list specific endpoints before catch-all patterns.
+@Data
+@Component
+@ConfigurationProperties(prefix = "request-rate-limit")
+public class RequestRateLimitProperties {
+
+    private boolean enabled = true;
+
+    // Upper bound on tracked principals and IPs across all rules; beyond it new ones share an overflow bucket per rule
+    private int maxKeys = 100000;
+
+    private List<Rule> rules = new ArrayList<>();
+
+    @Data
+    public static class Rule {
+        // Spring PathPattern, e.g. /api/Inspect/** ; matched against the request path
+        private String pattern;
+        // Optional HTTP method; empty matches every method
+        private String method;
+        // Burst size and sustained rate for each authenticated principal
+        private int capacity = 60;
+        private double refillPerSecond = 10;
+        // Burst size and sustained rate for each client IP (shared by everyone behind the address)
+        private int ipCapacity = 120;
+        private double ipRefillPerSecond = 20;
+    }
+}
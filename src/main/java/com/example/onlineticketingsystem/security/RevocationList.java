@@ -0,0 +1,145 @@
+package com.example.onlineticketingsystem.security;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+// In-memory view of revoked tokens. A Bloom filter answers "definitely not revoked" for almost every
+// request without touching the map; only possible hits are confirmed against the exact entries.
+// Keys are "jti:<id>" for single tokens and "user:<email>" for every token a user was issued before a cutoff.
+public class RevocationList {
+
+    private static final String JTI_PREFIX = "jti:";
+    private static final String USER_PREFIX = "user:";
+
+    private final int expectedEntries;
+    private final double falsePositiveRate;
+    private final Map<String, Entry> entries = new ConcurrentHashMap<>();
+    private volatile BloomFilter bloomFilter;
+
+    public RevocationList(int expectedEntries, double falsePositiveRate) {
+        this.expectedEntries = expectedEntries;
+        this.falsePositiveRate = falsePositiveRate;
+        this.bloomFilter = new BloomFilter(expectedEntries, falsePositiveRate);
+    }
+
+    // issuedBefore: tokens issued at or before this time (epoch millis) are revoked; Long.MAX_VALUE for all
+    public record Entry(long issuedBefore, long expiresAt) {
+    }
+
+    public static String jtiKey(String jti) {
+        return JTI_PREFIX + jti;
+    }
+
+    public static String userKey(String username) {
+        return USER_PREFIX + username;
+    }
+
+    public void add(String key, Entry entry) {
+        entries.merge(key, entry, (current, added) -> new Entry(
+                Math.max(current.issuedBefore(), added.issuedBefore()), Math.max(current.expiresAt(), added.expiresAt())));
+        // Read the filter after the map write so a concurrent rebuild cannot miss this key
+        bloomFilter.put(key);
+    }
+
+    public boolean isRevoked(String jti, String username, long issuedAt) {
+        BloomFilter filter = bloomFilter;
+        return (jti != null && matches(filter, JTI_PREFIX, jti, issuedAt))
+                || (username != null && matches(filter, USER_PREFIX, username, issuedAt));
+    }
+
+    // The key is only built when the filter reports a possible hit
+    private boolean matches(BloomFilter filter, String prefix, String id, long issuedAt) {
+        if (!filter.mightContain(prefix, id)) {
+            return false;
+        }
+        Entry entry = entries.get(prefix + id);
+        return entry != null && issuedAt <= entry.issuedBefore();
+    }
+
+    // Drop entries whose tokens have expired anyway, then rebuild the filter since Bloom filters cannot delete
+    public int purgeExpired(long now) {
+        int before = entries.size();
+        entries.values().removeIf(entry -> entry.expiresAt() <= now);
+        rebuild();
+        return before - entries.size();
+    }
+
+    public int size() {
+        return entries.size();
+    }
+
+    private void rebuild() {
+        BloomFilter rebuilt = new BloomFilter(Math.max(expectedEntries, entries.size() * 2), falsePositiveRate);
+        entries.keySet().forEach(rebuilt::put);
+        bloomFilter = rebuilt;
+        // Keys added while the new filter was being filled may have gone to the old one
+        entries.keySet().forEach(rebuilt::put);
+    }
+
+    // Lock-free Bloom filter over a bit array, with k indexes derived from two 64-bit hashes
+    static final class BloomFilter {
+        private final AtomicLongArray bits;
+        private final long bitCount;
+        private final int hashCount;
+
+        BloomFilter(int expectedEntries, double falsePositiveRate) {
+            int n = Math.max(1, expectedEntries);
+            long m = (long) Math.ceil(-n * Math.log(falsePositiveRate) / (Math.log(2) * Math.log(2)));
+            int words = (int) Math.max(1, (m + 63) / 64);
+            this.bits = new AtomicLongArray(words);
+            this.bitCount = words * 64L;
+            this.hashCount = Math.max(1, (int) Math.round((double) bitCount / n * Math.log(2)));
+        }
+
+        void put(String key) {
+            long hash = hash("", key);
+            long hash1 = mix(hash);
+            long hash2 = mix(hash ^ 0xC2B2AE3D27D4EB4FL) | 1;
+            for (int i = 0; i < hashCount; i++) {
+                long index = Math.floorMod(hash1 + i * hash2, bitCount);
+                int word = (int) (index >>> 6);
+                long mask = 1L << index;
+                if ((bits.get(word) & mask) == 0) {
+                    bits.getAndAccumulate(word, mask, (current, bit) -> current | bit);
+                }
+            }
+        }
+
+        // Same result as checking prefix + id, without building the string
+        boolean mightContain(String prefix, String id) {
+            long hash = hash(prefix, id);
+            long hash1 = mix(hash);
+            long hash2 = mix(hash ^ 0xC2B2AE3D27D4EB4FL) | 1;
+            for (int i = 0; i < hashCount; i++) {
+                long index = Math.floorMod(hash1 + i * hash2, bitCount);
+                if ((bits.get((int) (index >>> 6)) & (1L << index)) == 0) {
+                    return false;
+                }
+            }
+            return true;
+        }
+
+        // FNV-1a over the characters of prefix and id
+        private static long hash(String prefix, String id) {
+            long h = 0xCBF29CE484222325L;
+            for (int i = 0; i < prefix.length(); i++) {
+                h = (h ^ prefix.charAt(i)) * 0x100000001B3L;
+            }
+            for (int i = 0; i < id.length(); i++) {
+                h = (h ^ id.charAt(i)) * 0x100000001B3L;
+            }
+            return h;
+        }
+
+        // 64-bit finalizer so every bit of the index depends on every bit of the hash
+        private static long mix(long h) {
+            h ^= h >>> 33;
+            h *= 0xFF51AFD7ED558CCDL;
+            h ^= h >>> 33;
+            h *= 0xC4CEB9FE1A85EC53L;
+            h ^= h >>> 33;
+            return h;
+        }
+    }
+}
@@ -1,6 +1,8 @@
 package com.example.onlineticketingsystem.security;
 
+import io.micrometer.core.instrument.MeterRegistry;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.web.servlet.FilterRegistrationBean;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
 import org.springframework.security.authentication.AuthenticationManager;
@@ -40,7 +42,8 @@ public class SecurityConfig {
     }
 
     @Bean
-    public SecurityFilterChain securityFilterChain(HttpSecurity http) throws Exception {
+    public SecurityFilterChain securityFilterChain(HttpSecurity http,
+                                                   RequestRateLimitFilter requestRateLimitFilter) throws Exception {
         http
                 .csrf(AbstractHttpConfigurer::disable)
                 .exceptionHandling(e -> e.authenticationEntryPoint(authEntryPoint))
@@ -62,6 +65,9 @@ public class SecurityConfig {
         // Place JWTAuthenticationFilter before OAuth2LoginAuthenticationFilter
         http.addFilterBefore(jwtAuthenticationFilter(), OAuth2LoginAuthenticationFilter.class);
         http.addFilterBefore(jwtAuthenticationFilter(), UsernamePasswordAuthenticationFilter.class);
+
+        // Throttle once the principal is known, before any controller work is done
+        http.addFilterAfter(requestRateLimitFilter, JWTAuthenticationFilter.class);
         return http.build();
     }
 
@@ -81,4 +87,17 @@ public class SecurityConfig {
     public JWTAuthenticationFilter jwtAuthenticationFilter() {
         return new JWTAuthenticationFilter();
     }
+
+    @Bean
+    public RequestRateLimitFilter requestRateLimitFilter(RequestRateLimitProperties properties, MeterRegistry meterRegistry) {
+        return new RequestRateLimitFilter(properties, meterRegistry);
+    }
+
+    // Only run the rate limit filter inside the security chain, where the principal has been resolved
+    @Bean
+    public FilterRegistrationBean<RequestRateLimitFilter> requestRateLimitFilterRegistration(RequestRateLimitFilter filter) {
+        FilterRegistrationBean<RequestRateLimitFilter> registration = new FilterRegistrationBean<>(filter);
+        registration.setEnabled(false);
+        return registration;
+    }
 }
@@ -0,0 +1,72 @@
+package com.example.onlineticketingsystem.security;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.security.core.userdetails.UserCache;
+import org.springframework.security.core.userdetails.UserDetails;
+import org.springframework.stereotype.Component;
+
+import java.util.Collections;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+// TTL and size bounded cache of loaded users, used when the JWT filter still checks the database.
+// Anything that changes a user's password or role must call removeUserFromCache for that email.
+@Component
+public class UserDetailsCache implements UserCache {
+
+    private final Map<String, CachedUser> users = new ConcurrentHashMap<>();
+    private final long ttlMillis;
+    private final int maxSize;
+
+    public UserDetailsCache(@Value("${security.user-cache.ttl-seconds:300}") long ttlSeconds,
+                            @Value("${security.user-cache.max-size:10000}") int maxSize,
+                            MeterRegistry meterRegistry) {
+        this.ttlMillis = ttlSeconds * 1000;
+        this.maxSize = maxSize;
+        meterRegistry.gaugeMapSize("security.user.cache.size", Collections.emptyList(), users);
+    }
+
+    @Override
+    public UserDetails getUserFromCache(String username) {
+        CachedUser cached = users.get(username);
+        if (cached == null) {
+            return null;
+        }
+        if (System.currentTimeMillis() >= cached.expiresAt) {
+            users.remove(username, cached);
+            return null;
+        }
+        return cached.user;
+    }
+
+    @Override
+    public void putUserInCache(UserDetails user) {
+        if (maxSize <= 0) {
+            return;
+        }
+        long now = System.currentTimeMillis();
+        if (users.size() >= maxSize) {
+            users.values().removeIf(cached -> cached.expiresAt <= now);
+            if (users.size() >= maxSize) {
+                // Still full of live entries: start over rather than scanning for the oldest on every put
+                users.clear();
+            }
+        }
+        users.put(user.getUsername(), new CachedUser(user, now + ttlMillis));
+    }
+
+    @Override
+    public void removeUserFromCache(String username) {
+        if (username != null) {
+            users.remove(username);
+        }
+    }
+
+    public void clear() {
+        users.clear();
+    }
+
+    private record CachedUser(UserDetails user, long expiresAt) {
+    }
+}
@@ -0,0 +1,366 @@
+package com.example.onlineticketingsystem.service;
+
+import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.*;
+
+// One immutable piece of the audit search index: the documents of a contiguous range of audit_log ids and
+// an inverted index from term to the documents (and word positions) containing it. Documents are numbered
+// 0..size-1 in id order within the segment.
+//
+// File layout: magic, version, document count, ids (int each), timestamps (long each), term count, then
+// per term in sorted order its UTF-8 bytes (short length) and its postings (int length + bytes). Postings
+// are varints: document count, then per document the gap to the previous document, the number of
+// positions and the gaps between positions. The file is memory-mapped; only the term dictionary, ids and
+// timestamps are held on the heap and postings are decoded when a query needs them.
+final class AuditIndexSegment {
+
+    private static final int MAGIC = 0x41534958;
+    private static final int VERSION = 1;
+
+    // What a query needs from a segment or from the in-memory buffer
+    interface Source {
+        int size();
+
+        int id(int document);
+
+        long timestamp(int document);
+
+        Postings postings(String term);
+    }
+
+    // Documents containing a term, ascending, with the positions of the term in each document:
+    // positions[positionStarts[i] .. positionStarts[i + 1]) belong to docs[i]
+    record Postings(int[] docs, int[] positionStarts, int[] positions) {
+
+        int indexOf(int document) {
+            return Arrays.binarySearch(docs, document);
+        }
+
+        boolean hasPosition(int index, int position) {
+            return Arrays.binarySearch(positions, positionStarts[index], positionStarts[index + 1], position) >= 0;
+        }
+    }
+
+    private AuditIndexSegment() {
+    }
+
+    // A written segment, read through a memory map
+    static final class Reader implements Source {
+        private final Path path;
+        private final int[] ids;
+        private final long[] timestamps;
+        private final long minTimestamp;
+        private final long maxTimestamp;
+        private final String[] terms;
+        private final int[] offsets;
+        private final MappedByteBuffer buffer;
+
+        private Reader(Path path, int[] ids, long[] timestamps, String[] terms, int[] offsets, MappedByteBuffer buffer) {
+            this.path = path;
+            this.ids = ids;
+            this.timestamps = timestamps;
+            this.terms = terms;
+            this.offsets = offsets;
+            this.buffer = buffer;
+            this.minTimestamp = Arrays.stream(timestamps).min().orElse(Long.MAX_VALUE);
+            this.maxTimestamp = Arrays.stream(timestamps).max().orElse(Long.MIN_VALUE);
+        }
+
+        static Reader open(Path path) throws IOException {
+            MappedByteBuffer buffer;
+            try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+                buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+            }
+            if (buffer.getInt() != MAGIC || buffer.getInt() != VERSION) {
+                throw new IOException("Not an audit index segment: " + path);
+            }
+            int size = buffer.getInt();
+            int[] ids = new int[size];
+            buffer.asIntBuffer().get(ids);
+            buffer.position(buffer.position() + size * Integer.BYTES);
+            long[] timestamps = new long[size];
+            buffer.asLongBuffer().get(timestamps);
+            buffer.position(buffer.position() + size * Long.BYTES);
+
+            int termCount = buffer.getInt();
+            String[] terms = new String[termCount];
+            int[] offsets = new int[termCount];
+            for (int i = 0; i < termCount; i++) {
+                byte[] term = new byte[buffer.getShort() & 0xffff];
+                buffer.get(term);
+                terms[i] = new String(term, StandardCharsets.UTF_8);
+                int length = buffer.getInt();
+                offsets[i] = buffer.position();
+                buffer.position(buffer.position() + length);
+            }
+            return new Reader(path, ids, timestamps, terms, offsets, buffer);
+        }
+
+        Path path() {
+            return path;
+        }
+
+        int minId() {
+            return ids[0];
+        }
+
+        int maxId() {
+            return ids[ids.length - 1];
+        }
+
+        long minTimestamp() {
+            return minTimestamp;
+        }
+
+        long maxTimestamp() {
+            return maxTimestamp;
+        }
+
+        String[] terms() {
+            return terms;
+        }
+
+        @Override
+        public int size() {
+            return ids.length;
+        }
+
+        @Override
+        public int id(int document) {
+            return ids[document];
+        }
+
+        @Override
+        public long timestamp(int document) {
+            return timestamps[document];
+        }
+
+        @Override
+        public Postings postings(String term) {
+            int index = Arrays.binarySearch(terms, term);
+            if (index < 0) {
+                return null;
+            }
+            ByteBuffer in = buffer.duplicate().position(offsets[index]);
+            int count = readVarint(in);
+            int[] docs = new int[count];
+            int[] positionStarts = new int[count + 1];
+            int[] positions = new int[count];
+            int total = 0;
+            int document = 0;
+            for (int i = 0; i < count; i++) {
+                document += readVarint(in);
+                docs[i] = document;
+                int frequency = readVarint(in);
+                if (total + frequency > positions.length) {
+                    positions = Arrays.copyOf(positions, Math.max(total + frequency, positions.length * 2));
+                }
+                int position = 0;
+                for (int p = 0; p < frequency; p++) {
+                    position += readVarint(in);
+                    positions[total++] = position;
+                }
+                positionStarts[i + 1] = total;
+            }
+            return new Postings(docs, positionStarts, positions);
+        }
+    }
+
+    // The documents indexed since the last segment was written; searchable straight away. Not thread-safe.
+    static final class Builder implements Source {
+        private int[] ids = new int[1024];
+        private long[] timestamps = new long[1024];
+        private int size;
+        private final Map<String, TermBuilder> terms = new HashMap<>();
+
+        void add(int id, long timestamp, List<String> keywords, List<String> words) {
+            if (size == ids.length) {
+                ids = Arrays.copyOf(ids, size * 2);
+                timestamps = Arrays.copyOf(timestamps, size * 2);
+            }
+            int document = size++;
+            ids[document] = id;
+            timestamps[document] = timestamp;
+            for (String keyword : keywords) {
+                terms.computeIfAbsent(keyword, term -> new TermBuilder()).add(document, 0);
+            }
+            for (int position = 0; position < words.size(); position++) {
+                terms.computeIfAbsent(words.get(position), term -> new TermBuilder()).add(document, position);
+            }
+        }
+
+        @Override
+        public int size() {
+            return size;
+        }
+
+        @Override
+        public int id(int document) {
+            return ids[document];
+        }
+
+        @Override
+        public long timestamp(int document) {
+            return timestamps[document];
+        }
+
+        @Override
+        public Postings postings(String term) {
+            TermBuilder builder = terms.get(term);
+            return builder != null ? builder.postings() : null;
+        }
+
+        void write(Path path) throws IOException {
+            String[] sorted = terms.keySet().toArray(String[]::new);
+            Arrays.sort(sorted);
+            writeSegment(path, Arrays.copyOf(ids, size), Arrays.copyOf(timestamps, size), sorted,
+                    term -> terms.get(term).encode());
+        }
+    }
+
+    private static final class TermBuilder {
+        private int[] docs = new int[4];
+        private int[] positionStarts = new int[5];
+        private int[] positions = new int[4];
+        private int count;
+        private int positionCount;
+
+        private void add(int document, int position) {
+            if (count == 0 || docs[count - 1] != document) {
+                if (count == docs.length) {
+                    docs = Arrays.copyOf(docs, count * 2);
+                    positionStarts = Arrays.copyOf(positionStarts, count * 2 + 1);
+                }
+                docs[count++] = document;
+            }
+            if (positionCount == positions.length) {
+                positions = Arrays.copyOf(positions, positionCount * 2);
+            }
+            positions[positionCount++] = position;
+            positionStarts[count] = positionCount;
+        }
+
+        private Postings postings() {
+            return new Postings(Arrays.copyOf(docs, count), Arrays.copyOf(positionStarts, count + 1),
+                    Arrays.copyOf(positions, positionCount));
+        }
+
+        private byte[] encode() {
+            return encodePostings(List.of(postings()), new int[]{0});
+        }
+    }
+
+    // Combine adjacent segments (ascending id ranges) into one file
+    static void merge(List<Reader> segments, Path path) throws IOException {
+        int size = segments.stream().mapToInt(Reader::size).sum();
+        int[] ids = new int[size];
+        long[] timestamps = new long[size];
+        int[] bases = new int[segments.size()];
+        int base = 0;
+        SortedSet<String> terms = new TreeSet<>();
+        for (int i = 0; i < segments.size(); i++) {
+            Reader segment = segments.get(i);
+            System.arraycopy(segment.ids, 0, ids, base, segment.size());
+            System.arraycopy(segment.timestamps, 0, timestamps, base, segment.size());
+            bases[i] = base;
+            base += segment.size();
+            terms.addAll(Arrays.asList(segment.terms()));
+        }
+        writeSegment(path, ids, timestamps, terms.toArray(String[]::new), term -> {
+            List<Postings> parts = new ArrayList<>(segments.size());
+            int[] partBases = new int[segments.size()];
+            for (int i = 0; i < segments.size(); i++) {
+                Postings postings = segments.get(i).postings(term);
+                if (postings != null) {
+                    partBases[parts.size()] = bases[i];
+                    parts.add(postings);
+                }
+            }
+            return encodePostings(parts, partBases);
+        });
+    }
+
+    private interface PostingsEncoder {
+        byte[] encode(String term) throws IOException;
+    }
+
+    // Written beside the target and moved into place, so a segment file is always complete
+    private static void writeSegment(Path path, int[] ids, long[] timestamps, String[] terms, PostingsEncoder encoder) throws IOException {
+        Path temp = path.resolveSibling(path.getFileName() + ".tmp");
+        try (FileOutputStream file = new FileOutputStream(temp.toFile());
+             DataOutputStream out = new DataOutputStream(new BufferedOutputStream(file, 64 * 1024))) {
+            out.writeInt(MAGIC);
+            out.writeInt(VERSION);
+            out.writeInt(ids.length);
+            for (int id : ids) {
+                out.writeInt(id);
+            }
+            for (long timestamp : timestamps) {
+                out.writeLong(timestamp);
+            }
+            out.writeInt(terms.length);
+            for (String term : terms) {
+                byte[] bytes = term.getBytes(StandardCharsets.UTF_8);
+                byte[] postings = encoder.encode(term);
+                out.writeShort(bytes.length);
+                out.write(bytes);
+                out.writeInt(postings.length);
+                out.write(postings);
+            }
+            out.flush();
+            file.getFD().sync();
+        }
+        Files.move(temp, path, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    // Concatenate postings lists whose documents are shifted by the given bases
+    private static byte[] encodePostings(List<Postings> parts, int[] bases) {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        writeVarint(out, parts.stream().mapToInt(postings -> postings.docs().length).sum());
+        int previous = 0;
+        for (int part = 0; part < parts.size(); part++) {
+            Postings postings = parts.get(part);
+            for (int i = 0; i < postings.docs().length; i++) {
+                int document = bases[part] + postings.docs()[i];
+                writeVarint(out, document - previous);
+                previous = document;
+                int start = postings.positionStarts()[i];
+                int end = postings.positionStarts()[i + 1];
+                writeVarint(out, end - start);
+                int position = 0;
+                for (int p = start; p < end; p++) {
+                    writeVarint(out, postings.positions()[p] - position);
+                    position = postings.positions()[p];
+                }
+            }
+        }
+        return out.toByteArray();
+    }
+
+    private static void writeVarint(ByteArrayOutputStream out, int value) {
+        while ((value & ~0x7f) != 0) {
+            out.write((value & 0x7f) | 0x80);
+            value >>>= 7;
+        }
+        out.write(value);
+    }
+
+    private static int readVarint(ByteBuffer in) {
+        int value = 0;
+        for (int shift = 0; ; shift += 7) {
+            byte b = in.get();
+            value |= (b & 0x7f) << shift;
+            if (b >= 0) {
+                return value;
+            }
+        }
+    }
+}
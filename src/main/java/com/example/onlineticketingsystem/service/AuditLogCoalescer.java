@@ -0,0 +1,117 @@
+package com.example.onlineticketingsystem.service;
+
+import com.example.onlineticketingsystem.entity.AuditLog;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.sql.Timestamp;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.LongSupplier;
+import java.util.stream.Collectors;
+
+// Folds identical read events (same action, performedBy, role and details) into one audit row per window.
+// Polling clients produce the same "Accessed all buses" event every few seconds; instead of a row each,
+// the first event opens a group and every repeat within window-ms only bumps its count. drain() hands over
+// the groups whose window has passed as single rows with eventCount, firstTimestamp and timestamp (the
+// last event). Only the configured read actions are coalesced; everything else is rejected by offer()
+// and written one by one as before.
+@Component
+public class AuditLogCoalescer {
+
+    private final LongSupplier clock;
+    private final long windowMillis;
+    private final int maxGroups;
+    private final Set<String> actions;
+    private final Map<Key, Group> groups = new ConcurrentHashMap<>();
+    private final Counter coalesced;
+
+    @Autowired
+    public AuditLogCoalescer(@Value("${audit-log.coalesce.window-ms:60000}") long windowMillis,
+                             @Value("${audit-log.coalesce.max-groups:10000}") int maxGroups,
+                             @Value("${audit-log.coalesce.actions:READ}") String actions,
+                             MeterRegistry meterRegistry) {
+        this(System::currentTimeMillis, windowMillis, maxGroups, actions, meterRegistry);
+    }
+
+    public AuditLogCoalescer(LongSupplier clock, long windowMillis, int maxGroups, String actions, MeterRegistry meterRegistry) {
+        this.clock = clock;
+        this.windowMillis = windowMillis;
+        this.maxGroups = maxGroups;
+        this.actions = Arrays.stream(actions.split(","))
+                .map(action -> action.trim().toUpperCase(Locale.ROOT))
+                .filter(action -> !action.isEmpty())
+                .collect(Collectors.toUnmodifiableSet());
+        this.coalesced = Counter.builder("audit.log.coalesced").register(meterRegistry);
+        Gauge.builder("audit.log.coalesce.groups", groups, Map::size).register(meterRegistry);
+    }
+
+    // Take the event into a group. Returns false when the caller must write it itself: not a coalesced
+    // action, or max-groups distinct events are already open.
+    public boolean offer(AuditLog auditLog) {
+        if (auditLog.getAction() == null || !actions.contains(auditLog.getAction().toUpperCase(Locale.ROOT))) {
+            return false;
+        }
+        Key key = new Key(auditLog.getAction(), auditLog.getPerformedBy(), auditLog.getRole(), auditLog.getDetails());
+        long timestamp = auditLog.getTimestamp() != null ? auditLog.getTimestamp().getTime() : clock.getAsLong();
+        if (groups.size() >= maxGroups && !groups.containsKey(key)) {
+            return false;
+        }
+        groups.compute(key, (k, group) -> {
+            if (group == null) {
+                return new Group(timestamp);
+            }
+            group.count++;
+            group.last = Math.max(group.last, timestamp);
+            coalesced.increment();
+            return group;
+        });
+        return true;
+    }
+
+    // Remove and return the groups whose window has passed, or every group when all is true (shutdown).
+    // A repeat that arrives while its group is being drained simply opens the next group.
+    public List<AuditLog> drain(boolean all) {
+        long cutoff = clock.getAsLong() - windowMillis;
+        List<AuditLog> rows = new ArrayList<>();
+        for (Key key : groups.keySet()) {
+            groups.computeIfPresent(key, (k, group) -> {
+                if (!all && group.first > cutoff) {
+                    return group;
+                }
+                rows.add(new AuditLog(0, k.action(), k.performedBy(), k.role(), new Timestamp(group.last), k.details(),
+                        group.count, group.count > 1 ? new Timestamp(group.first) : null));
+                return null;
+            });
+        }
+        return rows;
+    }
+
+    public int getOpenGroups() {
+        return groups.size();
+    }
+
+    private record Key(String action, String performedBy, String role, String details) {
+    }
+
+    // Only touched inside ConcurrentHashMap.compute for its key
+    private static final class Group {
+        private final long first;
+        private long last;
+        private int count = 1;
+
+        private Group(long first) {
+            this.first = first;
+            this.last = first;
+        }
+    }
+}
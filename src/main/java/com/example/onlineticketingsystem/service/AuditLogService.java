@@ -1,9 +1,19 @@
 package com.example.onlineticketingsystem.service;
 
+import com.example.onlineticketingsystem.DTO.AuditSearchResultDTO;
+import com.example.onlineticketingsystem.DTO.CountEstimateDTO;
+import com.example.onlineticketingsystem.DTO.LogPageDTO;
+import com.example.onlineticketingsystem.DTO.LogQueryDTO;
 import com.example.onlineticketingsystem.entity.AuditLog;
+import com.example.onlineticketingsystem.repo.JdbcLogQueryRepo;
 import com.example.onlineticketingsystem.repo.AuditLogRepo;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
 import org.springframework.stereotype.Service;
+import org.springframework.util.StringUtils;
 
 import java.sql.Timestamp;
 import java.time.Instant;
@@ -15,6 +25,41 @@ public class AuditLogService {
     @Autowired
     private AuditLogRepo auditLogRepo;
 
+    @Autowired
+    private JdbcLogQueryRepo jdbcLogQueryRepo;
+
+    @Value("${logs.query.default-limit:100}")
+    private int defaultLimit;
+
+    @Value("${logs.query.max-limit:1000}")
+    private int maxLimit;
+
+    @Value("${logs.query.count-cap:100000}")
+    private int countCap;
+
+    @Autowired
+    private AuditLogWriter auditLogWriter;
+
+    // true: records are queued and written in batches by AuditLogWriter; false: one INSERT on the request thread
+    @Value("${audit-log.async.enabled:true}")
+    private boolean async;
+
+    @Autowired
+    private AuditLogCoalescer auditLogCoalescer;
+
+    // true: repeated identical read events within audit-log.coalesce.window-ms become one row with a count
+    @Value("${audit-log.coalesce.enabled:true}")
+    private boolean coalesce;
+
+    @Autowired
+    private AuditSearchIndex auditSearchIndex;
+
+    // New rows become searchable as soon as the batch writer has put them in the table
+    @PostConstruct
+    public void connectSearchIndex() {
+        auditLogWriter.addFlushListener(auditSearchIndex::refresh);
+    }
+
     public void createAuditLog(String action, String performedBy, String role, String details) {
         AuditLog auditLog = new AuditLog();
         auditLog.setAction(action);
@@ -22,10 +67,69 @@ public class AuditLogService {
         auditLog.setRole(role);
         auditLog.setTimestamp(Timestamp.from(Instant.now()));
         auditLog.setDetails(details);
-        auditLogRepo.save(auditLog);
+        auditLog.setEventCount(1);
+        if (coalesce && auditLogCoalescer.offer(auditLog)) {
+            return;
+        }
+        write(auditLog);
+    }
+
+    // Write out the coalesced reads whose window has closed
+    @Scheduled(fixedDelayString = "${audit-log.coalesce.flush-interval-ms:1000}")
+    public void flushCoalesced() {
+        auditLogCoalescer.drain(false).forEach(this::write);
+    }
+
+    // Runs before AuditLogWriter shuts down, since this service depends on it
+    @PreDestroy
+    public void shutdown() {
+        auditLogCoalescer.drain(true).forEach(this::write);
+    }
+
+    private void write(AuditLog auditLog) {
+        if (async) {
+            auditLogWriter.enqueue(auditLog);
+        } else {
+            auditLogRepo.save(auditLog);
+            auditSearchIndex.refresh();
+        }
+    }
+
+    // One page of logs matching the query, newest first; limit defaults to logs.query.default-limit
+    public LogPageDTO<AuditLog> findAuditLogs(LogQueryDTO query) {
+        return jdbcLogQueryRepo.findAuditLogs(query, pageLimit(query));
+    }
+
+    public CountEstimateDTO countEstimate(LogQueryDTO query) {
+        return jdbcLogQueryRepo.estimateAuditLogs(query, countCap);
+    }
+
+    // Full-text search of details (words and "phrases") combined with the performedBy, action and time filters
+    public AuditSearchResultDTO search(String q, LogQueryDTO query) {
+        if (!auditSearchIndex.isEnabled()) {
+            throw new IllegalStateException("Audit search is disabled");
+        }
+        int limit = pageLimit(query);
+        Integer before = null;
+        if (StringUtils.hasText(query.getCursor())) {
+            try {
+                before = Integer.valueOf(query.getCursor());
+            } catch (NumberFormatException e) {
+                throw new IllegalArgumentException("Invalid cursor");
+            }
+        }
+        AuditSearchIndex.SearchResult result = auditSearchIndex.search(q, query.getPerformedBy(), query.getAction(),
+                query.getFrom(), query.getTo(), before, limit);
+        List<Integer> ids = result.ids();
+        String nextCursor = result.total() > ids.size() ? String.valueOf(ids.get(ids.size() - 1)) : null;
+        return new AuditSearchResultDTO(jdbcLogQueryRepo.findAuditLogsByIds(ids), result.total(), nextCursor);
     }
 
-    public List<AuditLog> getAllAuditLogs(){
-        return auditLogRepo.findAll();
+    private int pageLimit(LogQueryDTO query) {
+        int limit = query.getLimit() != null ? query.getLimit() : defaultLimit;
+        if (limit < 1 || limit > maxLimit) {
+            throw new IllegalArgumentException("limit must be between 1 and " + maxLimit);
+        }
+        return limit;
     }
 }
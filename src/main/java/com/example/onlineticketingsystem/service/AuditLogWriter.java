@@ -0,0 +1,336 @@
+package com.example.onlineticketingsystem.service;
+
+import com.example.onlineticketingsystem.entity.AuditLog;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Service;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.sql.Timestamp;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeUnit;
+
+// Takes audit records off the request thread. Records go into a bounded queue and a single writer
+// thread inserts them with JDBC batches, flushing when a batch is full or flush-interval-ms has passed.
+// When the queue is full the overflow policy decides: block (wait up to block-timeout-ms, then drop),
+// drop (count and discard) or spill (append to a local file that is written to the table once the queue drains).
+@Service
+public class AuditLogWriter {
+
+    private static final Logger logger = LoggerFactory.getLogger(AuditLogWriter.class);
+    private static final ObjectMapper objectMapper = new ObjectMapper();
+    private static final String INSERT =
+            "INSERT INTO audit_log (action, performed_by, role, timestamp, details, event_count, first_timestamp) VALUES (?, ?, ?, ?, ?, ?, ?)";
+
+    public enum OverflowPolicy { BLOCK, DROP, SPILL }
+
+    private final JdbcTemplate jdbcTemplate;
+    private final BlockingQueue<AuditLog> queue;
+    private final int batchSize;
+    private final long flushIntervalNanos;
+    private final OverflowPolicy overflowPolicy;
+    private final long blockTimeoutMillis;
+    private final Path spillFile;
+    private final long shutdownTimeoutMillis;
+
+    private final Counter written;
+    private final Counter dropped;
+    private final Counter spilled;
+    private final Counter writeFailures;
+    private final Timer flushTime;
+
+    private final List<Runnable> flushListeners = new CopyOnWriteArrayList<>();
+    private final Object spillLock = new Object();
+    private BufferedWriter spillWriter;
+    private Thread writerThread;
+    private volatile boolean running;
+
+    @Autowired
+    public AuditLogWriter(JdbcTemplate jdbcTemplate,
+                          @Value("${audit-log.async.queue-capacity:10000}") int queueCapacity,
+                          @Value("${audit-log.async.batch-size:500}") int batchSize,
+                          @Value("${audit-log.async.flush-interval-ms:200}") long flushIntervalMillis,
+                          @Value("${audit-log.async.overflow-policy:spill}") String overflowPolicy,
+                          @Value("${audit-log.async.block-timeout-ms:50}") long blockTimeoutMillis,
+                          @Value("${audit-log.async.spill-file:audit-log-spill.ndjson}") String spillFile,
+                          @Value("${audit-log.async.shutdown-timeout-ms:10000}") long shutdownTimeoutMillis,
+                          MeterRegistry meterRegistry) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.queue = new ArrayBlockingQueue<>(queueCapacity);
+        this.batchSize = batchSize;
+        this.flushIntervalNanos = TimeUnit.MILLISECONDS.toNanos(flushIntervalMillis);
+        this.overflowPolicy = OverflowPolicy.valueOf(overflowPolicy.trim().toUpperCase(Locale.ROOT));
+        this.blockTimeoutMillis = blockTimeoutMillis;
+        this.spillFile = Path.of(spillFile);
+        this.shutdownTimeoutMillis = shutdownTimeoutMillis;
+
+        this.written = Counter.builder("audit.log.written").register(meterRegistry);
+        this.dropped = Counter.builder("audit.log.dropped").register(meterRegistry);
+        this.spilled = Counter.builder("audit.log.spilled").register(meterRegistry);
+        this.writeFailures = Counter.builder("audit.log.write.failures").register(meterRegistry);
+        this.flushTime = Timer.builder("audit.log.flush").register(meterRegistry);
+        Gauge.builder("audit.log.queue.depth", queue, BlockingQueue::size).register(meterRegistry);
+        // Age of the oldest record still waiting to be written
+        Gauge.builder("audit.log.lag", this, AuditLogWriter::lagMillis).baseUnit("milliseconds").register(meterRegistry);
+    }
+
+    @PostConstruct
+    public void start() {
+        running = true;
+        writerThread = new Thread(this::run, "audit-log-writer");
+        writerThread.setDaemon(true);
+        writerThread.start();
+    }
+
+    // Stop taking the writer's time from new records and write out everything still queued or spilled
+    @PreDestroy
+    public void shutdown() {
+        running = false;
+        if (writerThread == null) {
+            return;
+        }
+        try {
+            writerThread.join(shutdownTimeoutMillis);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        if (writerThread.isAlive()) {
+            logger.warn("Audit log writer did not finish within {} ms; {} records not written", shutdownTimeoutMillis, queue.size());
+        }
+        closeSpillWriter();
+    }
+
+    // Called on the request thread; never touches the database while the writer is running
+    public void enqueue(AuditLog auditLog) {
+        if (!running && writerThread != null && !writerThread.isAlive()) {
+            // Already shut down: write through so nothing is lost
+            flush(List.of(auditLog));
+            return;
+        }
+        if (queue.offer(auditLog)) {
+            return;
+        }
+        switch (overflowPolicy) {
+            case BLOCK -> {
+                try {
+                    if (!queue.offer(auditLog, blockTimeoutMillis, TimeUnit.MILLISECONDS)) {
+                        dropped.increment();
+                    }
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    dropped.increment();
+                }
+            }
+            case DROP -> dropped.increment();
+            case SPILL -> spill(List.of(auditLog));
+        }
+    }
+
+    // Run on the writer thread after each batch that reached the table
+    public void addFlushListener(Runnable listener) {
+        flushListeners.add(listener);
+    }
+
+    public int getQueueDepth() {
+        return queue.size();
+    }
+
+    private double lagMillis() {
+        AuditLog oldest = queue.peek();
+        return oldest == null || oldest.getTimestamp() == null ? 0 : System.currentTimeMillis() - oldest.getTimestamp().getTime();
+    }
+
+    private void run() {
+        List<AuditLog> batch = new ArrayList<>(batchSize);
+        while (true) {
+            try {
+                AuditLog first = running ? queue.poll(flushIntervalNanos, TimeUnit.NANOSECONDS) : queue.poll();
+                if (first == null) {
+                    // Idle: a good time to write back anything that overflowed to the spill file
+                    replaySpill();
+                    if (!running) {
+                        return;
+                    }
+                    continue;
+                }
+                batch.add(first);
+                fill(batch);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                running = false;
+            } catch (RuntimeException e) {
+                logger.error("Audit log writer error", e);
+            }
+            if (!batch.isEmpty()) {
+                flush(batch);
+                batch.clear();
+            }
+        }
+    }
+
+    // Top the batch up until it is full or the flush interval since its first record has passed
+    private void fill(List<AuditLog> batch) throws InterruptedException {
+        long deadline = System.nanoTime() + flushIntervalNanos;
+        while (batch.size() < batchSize) {
+            queue.drainTo(batch, batchSize - batch.size());
+            long remaining = deadline - System.nanoTime();
+            if (batch.size() >= batchSize || remaining <= 0 || !running) {
+                return;
+            }
+            AuditLog next = queue.poll(remaining, TimeUnit.NANOSECONDS);
+            if (next == null) {
+                return;
+            }
+            batch.add(next);
+        }
+    }
+
+    private void flush(List<AuditLog> batch) {
+        long started = System.nanoTime();
+        try {
+            jdbcTemplate.batchUpdate(INSERT, batch, batch.size(), (statement, auditLog) -> {
+                statement.setString(1, auditLog.getAction());
+                statement.setString(2, auditLog.getPerformedBy());
+                statement.setString(3, auditLog.getRole());
+                statement.setTimestamp(4, auditLog.getTimestamp());
+                statement.setString(5, auditLog.getDetails());
+                statement.setInt(6, auditLog.getEventCount() != null ? auditLog.getEventCount() : 1);
+                statement.setTimestamp(7, auditLog.getFirstTimestamp());
+            });
+            written.increment(batch.size());
+            flushListeners.forEach(Runnable::run);
+        } catch (RuntimeException e) {
+            writeFailures.increment();
+            if (overflowPolicy == OverflowPolicy.SPILL) {
+                logger.error("Could not write {} audit records; spilling them to {}", batch.size(), spillFile, e);
+                spill(batch);
+            } else {
+                logger.error("Could not write {} audit records; they are lost", batch.size(), e);
+                dropped.increment(batch.size());
+            }
+        } finally {
+            flushTime.record(System.nanoTime() - started, TimeUnit.NANOSECONDS);
+        }
+    }
+
+    private void spill(List<AuditLog> records) {
+        synchronized (spillLock) {
+            try {
+                if (spillWriter == null) {
+                    spillWriter = Files.newBufferedWriter(spillFile, StandardCharsets.UTF_8,
+                            StandardOpenOption.CREATE, StandardOpenOption.APPEND);
+                }
+                for (AuditLog auditLog : records) {
+                    spillWriter.write(objectMapper.writeValueAsString(new SpilledRecord(auditLog.getAction(),
+                            auditLog.getPerformedBy(), auditLog.getRole(),
+                            auditLog.getTimestamp() != null ? auditLog.getTimestamp().getTime() : System.currentTimeMillis(),
+                            auditLog.getDetails(), auditLog.getEventCount(),
+                            auditLog.getFirstTimestamp() != null ? auditLog.getFirstTimestamp().getTime() : null)));
+                    spillWriter.newLine();
+                }
+                spillWriter.flush();
+                spilled.increment(records.size());
+            } catch (IOException e) {
+                logger.error("Could not spill {} audit records to {}", records.size(), spillFile, e);
+                dropped.increment(records.size());
+            }
+        }
+    }
+
+    // Move the spill file aside and insert its records in batches. A record that cannot be parsed is skipped;
+    // if the database is down the records are spilled again by flush().
+    private void replaySpill() {
+        Path replayFile = spillFile.resolveSibling(spillFile.getFileName() + ".replay");
+        synchronized (spillLock) {
+            try {
+                if (Files.notExists(replayFile)) {
+                    if (Files.notExists(spillFile) || Files.size(spillFile) == 0) {
+                        return;
+                    }
+                    closeSpillWriter();
+                    Files.move(spillFile, replayFile, StandardCopyOption.ATOMIC_MOVE);
+                }
+            } catch (IOException e) {
+                logger.error("Could not prepare audit spill file {} for replay", spillFile, e);
+                return;
+            }
+        }
+
+        int replayed = 0;
+        try (BufferedReader reader = Files.newBufferedReader(replayFile, StandardCharsets.UTF_8)) {
+            List<AuditLog> batch = new ArrayList<>(batchSize);
+            String line;
+            while ((line = reader.readLine()) != null) {
+                if (line.isBlank()) {
+                    continue;
+                }
+                try {
+                    SpilledRecord record = objectMapper.readValue(line, SpilledRecord.class);
+                    batch.add(new AuditLog(0, record.action(), record.performedBy(), record.role(),
+                            new Timestamp(record.timestamp()), record.details(), record.eventCount(),
+                            record.firstTimestamp() != null ? new Timestamp(record.firstTimestamp()) : null));
+                } catch (IOException e) {
+                    logger.warn("Skipping unreadable audit spill record: {}", e.getMessage());
+                }
+                if (batch.size() == batchSize) {
+                    flush(batch);
+                    replayed += batch.size();
+                    batch.clear();
+                }
+            }
+            if (!batch.isEmpty()) {
+                flush(batch);
+                replayed += batch.size();
+            }
+        } catch (IOException e) {
+            logger.error("Could not read audit spill file {}", replayFile, e);
+            return;
+        }
+        try {
+            Files.delete(replayFile);
+        } catch (IOException e) {
+            logger.error("Could not delete replayed audit spill file {}", replayFile, e);
+        }
+        logger.info("Replayed {} spilled audit records", replayed);
+    }
+
+    private void closeSpillWriter() {
+        synchronized (spillLock) {
+            if (spillWriter != null) {
+                try {
+                    spillWriter.close();
+                } catch (IOException e) {
+                    logger.warn("Could not close audit spill file {}", spillFile, e);
+                }
+                spillWriter = null;
+            }
+        }
+    }
+
+    // eventCount and firstTimestamp are absent (null) in files spilled before reads were coalesced
+    private record SpilledRecord(String action, String performedBy, String role, long timestamp, String details,
+                                 Integer eventCount, Long firstTimestamp) {
+    }
+}
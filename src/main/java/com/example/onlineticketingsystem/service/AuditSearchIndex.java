@@ -0,0 +1,569 @@
+package com.example.onlineticketingsystem.service;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Service;
+import org.springframework.util.StringUtils;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Instant;
+import java.util.*;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+
+// Full-text search over audit_log without LIKE scans or an external search service. An indexer thread
+// follows audit_log by id (woken by the audit write path, polling otherwise) and adds each row to an
+// in-memory buffer that is searchable at once. Ids are handed out before commit, so a row can become
+// visible after rows with higher ids: each pass also re-reads the ids of the last lookback-ids and indexes
+// any the buffer does not have yet. The buffer therefore always holds that window, and when it is full only
+// the rows below it are written out as a segment file, in id order. The trailing merge-factor segments of
+// the same size class are merged, so there are only a few segments per size class. The buffer is not
+// persisted: after a restart the indexer resumes after the highest id on disk and reads the rest again from
+// the table. Segments whose ids have all been removed by retention are deleted.
+//
+// details is split into lower-case words with positions; performedBy and action are indexed whole as
+// "performedby:<value>" and "action:<value>". A query is a list of words, "quoted phrases" and
+// performedBy:/action: terms, all of which must match.
+@Service
+public class AuditSearchIndex {
+
+    private static final Logger logger = LoggerFactory.getLogger(AuditSearchIndex.class);
+    private static final String SEGMENT_SUFFIX = ".seg";
+    private static final String SELECT = "SELECT id, action, performed_by, timestamp, details FROM audit_log";
+
+    private final JdbcTemplate jdbcTemplate;
+    private final Path directory;
+    private final boolean enabled;
+    private final int segmentDocs;
+    private final int mergeFactor;
+    private final long pollIntervalMillis;
+    private final int readBatchSize;
+    private final int lookback;
+    private final Timer queryTime;
+    private final Counter lateRows;
+
+    private final Object bufferLock = new Object();
+    private AuditIndexSegment.Builder buffer = new AuditIndexSegment.Builder();
+    // The buffered rows again, to rebuild the buffer from when part of it is written out
+    private List<Document> bufferDocs = new ArrayList<>();
+    private final Set<Integer> bufferIds = new HashSet<>();
+    private volatile List<AuditIndexSegment.Reader> segments = List.of();
+    private volatile int lastIndexedId;
+    // Highest id in the segments; rows at or below it are never indexed again
+    private volatile int writtenId;
+
+    private final Object signal = new Object();
+    private boolean signalled;
+    private Thread indexerThread;
+    private volatile boolean running;
+
+    public record SearchResult(List<Integer> ids, long total) {
+    }
+
+    private record Document(int id, long timestamp, List<String> keywords, List<String> words) {
+    }
+
+    @Autowired
+    public AuditSearchIndex(JdbcTemplate jdbcTemplate,
+                            @Value("${audit-log.search.dir:audit-search-index}") String directory,
+                            @Value("${audit-log.search.enabled:true}") boolean enabled,
+                            @Value("${audit-log.search.segment-docs:50000}") int segmentDocs,
+                            @Value("${audit-log.search.merge-factor:8}") int mergeFactor,
+                            @Value("${audit-log.search.poll-interval-ms:5000}") long pollIntervalMillis,
+                            @Value("${audit-log.search.read-batch-size:5000}") int readBatchSize,
+                            @Value("${audit-log.search.lookback-ids:1000}") int lookback,
+                            MeterRegistry meterRegistry) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.directory = Path.of(directory);
+        this.enabled = enabled;
+        this.segmentDocs = segmentDocs;
+        this.mergeFactor = mergeFactor;
+        this.pollIntervalMillis = pollIntervalMillis;
+        this.readBatchSize = readBatchSize;
+        // Kept below segment-docs so that writing out a full buffer always frees most of it
+        this.lookback = Math.max(0, Math.min(lookback, segmentDocs / 2));
+        this.queryTime = Timer.builder("audit.search.query").register(meterRegistry);
+        this.lateRows = Counter.builder("audit.search.late.rows").register(meterRegistry);
+        Gauge.builder("audit.search.segments", this, index -> index.segments.size()).register(meterRegistry);
+        Gauge.builder("audit.search.last.indexed.id", this, index -> index.lastIndexedId).register(meterRegistry);
+    }
+
+    @PostConstruct
+    public void start() throws IOException {
+        if (!enabled) {
+            return;
+        }
+        open();
+        running = true;
+        indexerThread = new Thread(this::run, "audit-search-indexer");
+        indexerThread.setDaemon(true);
+        indexerThread.start();
+    }
+
+    // Stop the indexer and keep what is buffered below the lookback window, so the next start only reads
+    // the window and what came after it again
+    @PreDestroy
+    public void shutdown() {
+        running = false;
+        if (indexerThread != null) {
+            refresh();
+            try {
+                indexerThread.join(TimeUnit.SECONDS.toMillis(30));
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+        try {
+            writeBuffer(lastIndexedId - lookback);
+        } catch (IOException e) {
+            logger.warn("Could not write the audit search buffer; it is rebuilt from audit_log on the next start", e);
+        }
+    }
+
+    // Called after audit rows have been written, so they become searchable without waiting for the next poll
+    public void refresh() {
+        synchronized (signal) {
+            signalled = true;
+            signal.notifyAll();
+        }
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    // Load the segments on disk and continue after the highest id they contain
+    public void open() throws IOException {
+        Files.createDirectories(directory);
+        List<AuditIndexSegment.Reader> found = new ArrayList<>();
+        try (Stream<Path> files = Files.list(directory)) {
+            for (Path path : files.toList()) {
+                String name = path.getFileName().toString();
+                if (name.endsWith(".tmp")) {
+                    Files.delete(path);
+                } else if (name.endsWith(SEGMENT_SUFFIX)) {
+                    found.add(AuditIndexSegment.Reader.open(path));
+                }
+            }
+        }
+        // A crash between writing a merged segment and deleting its inputs leaves both; the inputs go
+        found.sort(Comparator.comparingInt(AuditIndexSegment.Reader::minId)
+                .thenComparing(Comparator.comparingInt(AuditIndexSegment.Reader::maxId).reversed()));
+        List<AuditIndexSegment.Reader> loaded = new ArrayList<>();
+        for (AuditIndexSegment.Reader segment : found) {
+            if (!loaded.isEmpty() && segment.maxId() <= loaded.get(loaded.size() - 1).maxId()) {
+                Files.delete(segment.path());
+            } else {
+                loaded.add(segment);
+            }
+        }
+        segments = List.copyOf(loaded);
+        lastIndexedId = loaded.isEmpty() ? 0 : loaded.get(loaded.size() - 1).maxId();
+        writtenId = lastIndexedId;
+        logger.info("Audit search index opened with {} segments up to id {}", loaded.size(), lastIndexedId);
+    }
+
+    // Index the rows of the lookback window that were not visible before, then every audit row after the last
+    // indexed id; returns how many rows were added
+    public int catchUp() throws IOException {
+        int added = indexLate();
+        while (true) {
+            List<Map<String, Object>> rows = jdbcTemplate.queryForList(
+                    SELECT + " WHERE id > ? ORDER BY id LIMIT ?", lastIndexedId, readBatchSize);
+            for (Map<String, Object> row : rows) {
+                add(row);
+                added++;
+                if (buffer.size() >= segmentDocs) {
+                    writeBuffer(lastIndexedId - lookback);
+                    merge();
+                }
+            }
+            if (rows.size() < readBatchSize) {
+                return added;
+            }
+        }
+    }
+
+    // Rows that committed after rows with higher ids were indexed. Only their ids are read to find them.
+    private int indexLate() {
+        int from = Math.max(writtenId, lastIndexedId - lookback);
+        if (from >= lastIndexedId) {
+            return 0;
+        }
+        List<Integer> ids = jdbcTemplate.queryForList(
+                "SELECT id FROM audit_log WHERE id > ? AND id <= ?", Integer.class, from, lastIndexedId);
+        List<Integer> missing;
+        synchronized (bufferLock) {
+            missing = ids.stream().filter(id -> !bufferIds.contains(id)).toList();
+        }
+        if (missing.isEmpty()) {
+            return 0;
+        }
+        String placeholders = String.join(",", Collections.nCopies(missing.size(), "?"));
+        List<Map<String, Object>> rows = jdbcTemplate.queryForList(
+                SELECT + " WHERE id IN (" + placeholders + ")", missing.toArray());
+        rows.forEach(this::add);
+        lateRows.increment(rows.size());
+        return rows.size();
+    }
+
+    private void add(Map<String, Object> row) {
+        int id = ((Number) row.get("id")).intValue();
+        Date timestamp = (Date) row.get("timestamp");
+        List<String> keywords = new ArrayList<>(2);
+        keyword(keywords, "performedby:", (String) row.get("performed_by"));
+        keyword(keywords, "action:", (String) row.get("action"));
+        Document document = new Document(id, timestamp != null ? timestamp.getTime() : 0, keywords,
+                words((String) row.get("details")));
+        synchronized (bufferLock) {
+            buffer.add(document.id(), document.timestamp(), document.keywords(), document.words());
+            bufferDocs.add(document);
+            bufferIds.add(id);
+            lastIndexedId = Math.max(lastIndexedId, id);
+        }
+    }
+
+    // Matching audit ids, newest first. Only ids below beforeId are considered when it is given; total counts
+    // every match, including ones beyond limit.
+    public SearchResult search(String query, String performedBy, String action, Instant from, Instant to,
+                               Integer beforeId, int limit) {
+        long started = System.nanoTime();
+        List<List<String>> clauses = parse(query);
+        if (StringUtils.hasText(performedBy)) {
+            clauses.add(List.of("performedby:" + performedBy.trim().toLowerCase(Locale.ROOT)));
+        }
+        if (StringUtils.hasText(action)) {
+            clauses.add(List.of("action:" + action.trim().toLowerCase(Locale.ROOT)));
+        }
+        if (clauses.isEmpty()) {
+            throw new IllegalArgumentException("Search needs at least one word, phrase, performedBy or action");
+        }
+        long fromMillis = from != null ? from.toEpochMilli() : Long.MIN_VALUE;
+        long toMillis = to != null ? to.toEpochMilli() : Long.MAX_VALUE;
+        int before = beforeId != null ? beforeId : Integer.MAX_VALUE;
+
+        List<Integer> ids = new ArrayList<>(limit);
+        long total = 0;
+        synchronized (bufferLock) {
+            total += collectBuffer(clauses, fromMillis, toMillis, before, limit, ids);
+        }
+        List<AuditIndexSegment.Reader> current = segments;
+        for (int i = current.size() - 1; i >= 0; i--) {
+            AuditIndexSegment.Reader segment = current.get(i);
+            if (segment.minId() >= before || segment.maxTimestamp() < fromMillis || segment.minTimestamp() >= toMillis) {
+                continue;
+            }
+            total += collect(segment, clauses, fromMillis, toMillis, before, limit, ids);
+        }
+        queryTime.record(System.nanoTime() - started, TimeUnit.NANOSECONDS);
+        return new SearchResult(ids, total);
+    }
+
+    // The buffer is in the order rows were indexed, which late rows break, so its matches are sorted here.
+    // Every buffered id is above the segments' ids.
+    private long collectBuffer(List<List<String>> clauses, long fromMillis, long toMillis, int before, int limit,
+                               List<Integer> ids) {
+        List<Integer> matched = new ArrayList<>();
+        for (int document : match(buffer, clauses)) {
+            long timestamp = buffer.timestamp(document);
+            if (buffer.id(document) < before && timestamp >= fromMillis && timestamp < toMillis) {
+                matched.add(buffer.id(document));
+            }
+        }
+        matched.sort(Comparator.reverseOrder());
+        ids.addAll(matched.subList(0, Math.min(matched.size(), limit - ids.size())));
+        return matched.size();
+    }
+
+    // Adds matches of one source to ids (newest first, up to limit) and returns how many matched in total
+    private static long collect(AuditIndexSegment.Source source, List<List<String>> clauses, long fromMillis,
+                                long toMillis, int before, int limit, List<Integer> ids) {
+        int[] documents = match(source, clauses);
+        long matched = 0;
+        for (int i = documents.length - 1; i >= 0; i--) {
+            int document = documents[i];
+            long timestamp = source.timestamp(document);
+            if (source.id(document) < before && timestamp >= fromMillis && timestamp < toMillis) {
+                matched++;
+                if (ids.size() < limit) {
+                    ids.add(source.id(document));
+                }
+            }
+        }
+        return matched;
+    }
+
+    // Documents containing every clause; a clause of several words must have them at consecutive positions
+    private static int[] match(AuditIndexSegment.Source source, List<List<String>> clauses) {
+        Map<String, AuditIndexSegment.Postings> postings = new HashMap<>();
+        for (List<String> clause : clauses) {
+            for (String term : clause) {
+                AuditIndexSegment.Postings termPostings = postings.computeIfAbsent(term, source::postings);
+                if (termPostings == null) {
+                    return new int[0];
+                }
+            }
+        }
+        // Intersect starting from the rarest term
+        List<AuditIndexSegment.Postings> byLength = new ArrayList<>(postings.values());
+        byLength.sort(Comparator.comparingInt(termPostings -> termPostings.docs().length));
+        int[] documents = byLength.get(0).docs();
+        for (int i = 1; i < byLength.size() && documents.length > 0; i++) {
+            documents = intersect(documents, byLength.get(i).docs());
+        }
+
+        for (List<String> clause : clauses) {
+            if (clause.size() > 1 && documents.length > 0) {
+                documents = phrase(documents, clause, postings);
+            }
+        }
+        return documents;
+    }
+
+    private static int[] intersect(int[] a, int[] b) {
+        int[] result = new int[Math.min(a.length, b.length)];
+        int count = 0;
+        int j = 0;
+        for (int document : a) {
+            // a is the shorter list: skip ahead in b with a binary search
+            int found = Arrays.binarySearch(b, j, b.length, document);
+            if (found >= 0) {
+                result[count++] = document;
+                j = found + 1;
+            } else {
+                j = -found - 1;
+            }
+            if (j >= b.length) {
+                break;
+            }
+        }
+        return Arrays.copyOf(result, count);
+    }
+
+    private static int[] phrase(int[] documents, List<String> words, Map<String, AuditIndexSegment.Postings> postings) {
+        AuditIndexSegment.Postings first = postings.get(words.get(0));
+        int[] result = new int[documents.length];
+        int count = 0;
+        for (int document : documents) {
+            int firstIndex = first.indexOf(document);
+            for (int p = first.positionStarts()[firstIndex]; p < first.positionStarts()[firstIndex + 1]; p++) {
+                int start = first.positions()[p];
+                boolean all = true;
+                for (int k = 1; k < words.size() && all; k++) {
+                    AuditIndexSegment.Postings next = postings.get(words.get(k));
+                    all = next.hasPosition(next.indexOf(document), start + k);
+                }
+                if (all) {
+                    result[count++] = document;
+                    break;
+                }
+            }
+        }
+        return Arrays.copyOf(result, count);
+    }
+
+    // Words and "phrases"; performedBy:x and action:x are exact terms. A bare word that splits into
+    // several words (an e-mail address, say) is treated as a phrase.
+    static List<List<String>> parse(String query) {
+        List<List<String>> clauses = new ArrayList<>();
+        if (query == null) {
+            return clauses;
+        }
+        int i = 0;
+        while (i < query.length()) {
+            char c = query.charAt(i);
+            if (Character.isWhitespace(c)) {
+                i++;
+            } else if (c == '"') {
+                int end = query.indexOf('"', i + 1);
+                if (end < 0) {
+                    end = query.length();
+                }
+                List<String> words = words(query.substring(i + 1, end));
+                if (!words.isEmpty()) {
+                    clauses.add(words);
+                }
+                i = end + 1;
+            } else {
+                int end = i;
+                while (end < query.length() && !Character.isWhitespace(query.charAt(end))) {
+                    end++;
+                }
+                String token = query.substring(i, end);
+                String lower = token.toLowerCase(Locale.ROOT);
+                if (lower.startsWith("performedby:") || lower.startsWith("action:")) {
+                    clauses.add(List.of(lower));
+                } else {
+                    List<String> words = words(token);
+                    if (!words.isEmpty()) {
+                        clauses.add(words);
+                    }
+                }
+                i = end;
+            }
+        }
+        return clauses;
+    }
+
+    // Lower-case runs of letters and digits
+    static List<String> words(String text) {
+        List<String> words = new ArrayList<>();
+        if (text == null) {
+            return words;
+        }
+        int start = -1;
+        for (int i = 0; i <= text.length(); i++) {
+            boolean letterOrDigit = i < text.length() && Character.isLetterOrDigit(text.charAt(i));
+            if (letterOrDigit && start < 0) {
+                start = i;
+            } else if (!letterOrDigit && start >= 0) {
+                words.add(text.substring(start, i).toLowerCase(Locale.ROOT));
+                start = -1;
+            }
+        }
+        return words;
+    }
+
+    private static void keyword(List<String> keywords, String field, String value) {
+        if (StringUtils.hasText(value)) {
+            keywords.add(field + value.trim().toLowerCase(Locale.ROOT));
+        }
+    }
+
+    private void run() {
+        long lastPrune = 0;
+        while (running) {
+            try {
+                catchUp();
+                if (System.currentTimeMillis() - lastPrune > TimeUnit.MINUTES.toMillis(10)) {
+                    pruneDeleted();
+                    lastPrune = System.currentTimeMillis();
+                }
+            } catch (Exception e) {
+                logger.error("Audit search indexer error", e);
+            }
+            synchronized (signal) {
+                if (!signalled && running) {
+                    try {
+                        signal.wait(pollIntervalMillis);
+                    } catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                        return;
+                    }
+                }
+                signalled = false;
+            }
+        }
+    }
+
+    // Write the buffered rows up to and including the given id as a segment, in id order; the rest stay buffered.
+    // Only the indexer thread (or shutdown, once it has stopped) changes the buffer, so it can be searched meanwhile.
+    private void writeBuffer(int upTo) throws IOException {
+        List<Document> sorted;
+        synchronized (bufferLock) {
+            sorted = new ArrayList<>(bufferDocs);
+        }
+        sorted.sort(Comparator.comparingInt(Document::id));
+        int split = 0;
+        while (split < sorted.size() && sorted.get(split).id() <= upTo) {
+            split++;
+        }
+        if (split == 0) {
+            return;
+        }
+        List<Document> written = sorted.subList(0, split);
+        List<Document> kept = sorted.subList(split, sorted.size());
+        Path path = segmentPath(written.get(0).id(), written.get(written.size() - 1).id());
+        builder(written).write(path);
+        AuditIndexSegment.Reader segment = AuditIndexSegment.Reader.open(path);
+        AuditIndexSegment.Builder rest = builder(kept);
+        synchronized (bufferLock) {
+            List<AuditIndexSegment.Reader> updated = new ArrayList<>(segments);
+            updated.add(segment);
+            segments = List.copyOf(updated);
+            buffer = rest;
+            bufferDocs = new ArrayList<>(kept);
+            written.forEach(document -> bufferIds.remove(document.id()));
+            writtenId = segment.maxId();
+        }
+    }
+
+    private static AuditIndexSegment.Builder builder(List<Document> documents) {
+        AuditIndexSegment.Builder builder = new AuditIndexSegment.Builder();
+        for (Document document : documents) {
+            builder.add(document.id(), document.timestamp(), document.keywords(), document.words());
+        }
+        return builder;
+    }
+
+    // While the newest merge-factor segments are in the same size class, merge them into one
+    private void merge() throws IOException {
+        while (true) {
+            List<AuditIndexSegment.Reader> current = segments;
+            if (current.size() < mergeFactor) {
+                return;
+            }
+            List<AuditIndexSegment.Reader> tail = current.subList(current.size() - mergeFactor, current.size());
+            int sizeClass = sizeClass(tail.get(0));
+            if (tail.stream().anyMatch(segment -> sizeClass(segment) != sizeClass)) {
+                return;
+            }
+            Path path = segmentPath(tail.get(0).minId(), tail.get(tail.size() - 1).maxId());
+            AuditIndexSegment.merge(tail, path);
+            AuditIndexSegment.Reader merged = AuditIndexSegment.Reader.open(path);
+            synchronized (bufferLock) {
+                List<AuditIndexSegment.Reader> updated = new ArrayList<>(current.subList(0, current.size() - mergeFactor));
+                updated.add(merged);
+                segments = List.copyOf(updated);
+            }
+            for (AuditIndexSegment.Reader segment : tail) {
+                Files.deleteIfExists(segment.path());
+            }
+        }
+    }
+
+    // 0 below segment-docs documents, then one class per merge-factor times more
+    private int sizeClass(AuditIndexSegment.Reader segment) {
+        int sizeClass = 0;
+        for (long limit = segmentDocs; segment.size() >= limit; limit *= mergeFactor) {
+            sizeClass++;
+        }
+        return sizeClass;
+    }
+
+    // Remove segments that only hold ids the table no longer has (retention drops the oldest months)
+    private void pruneDeleted() throws IOException {
+        Integer minId = jdbcTemplate.queryForObject("SELECT MIN(id) FROM audit_log", Integer.class);
+        List<AuditIndexSegment.Reader> current = segments;
+        List<AuditIndexSegment.Reader> kept = current.stream()
+                .filter(segment -> minId != null && segment.maxId() >= minId)
+                .toList();
+        if (kept.size() == current.size()) {
+            return;
+        }
+        synchronized (bufferLock) {
+            segments = kept;
+        }
+        for (AuditIndexSegment.Reader segment : current) {
+            if (!kept.contains(segment)) {
+                Files.deleteIfExists(segment.path());
+            }
+        }
+        logger.info("Removed {} audit search segments of deleted rows", current.size() - kept.size());
+    }
+
+    private Path segmentPath(int minId, int maxId) {
+        return directory.resolve(String.format("%010d-%010d%s", minId, maxId, SEGMENT_SUFFIX));
+    }
+}
@@ -4,8 +4,12 @@ import com.example.onlineticketingsystem.DTO.AuthResponseDTO;
 import com.example.onlineticketingsystem.DTO.LoginDTO;
 import com.example.onlineticketingsystem.DTO.RegisterDTO;
 import com.example.onlineticketingsystem.entity.*;
+import com.example.onlineticketingsystem.exception.InvalidRefreshTokenException;
 import com.example.onlineticketingsystem.repo.*;
 import com.example.onlineticketingsystem.security.JWTGenerator;
+import com.example.onlineticketingsystem.security.PasswordHashingExecutor;
+import com.example.onlineticketingsystem.security.UserDetailsCache;
+import io.jsonwebtoken.Claims;
 import org.owasp.html.HtmlPolicyBuilder;
 import org.owasp.html.PolicyFactory;
 import org.springframework.beans.factory.annotation.Autowired;
@@ -13,9 +17,12 @@ import org.springframework.security.authentication.AuthenticationManager;
 import org.springframework.security.authentication.BadCredentialsException;
 import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
 import org.springframework.security.core.Authentication;
+import org.springframework.security.core.AuthenticationException;
 import org.springframework.security.core.context.SecurityContextHolder;
 import org.springframework.security.crypto.password.PasswordEncoder;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
 
 import java.util.Optional;
 
@@ -30,7 +37,12 @@ public class AuthService {
     private final RoleRepo roleRepo;
     private final PasswordEncoder passwordEncoder;
     private final JWTGenerator jwtGenerator;
-
+    private final UserDetailsCache userDetailsCache;
+    private final UserDirectoryService userDirectoryService;
+    private final PasswordHashingExecutor passwordHashingExecutor;
+    private final RefreshTokenService refreshTokenService;
+    private final TokenRevocationService tokenRevocationService;
+    private final TransactionTemplate transactionTemplate;
 
     private static final PolicyFactory POLICY = new HtmlPolicyBuilder()
             .allowElements("a", "b", "i", "strong", "em", "p")
@@ -39,7 +51,10 @@ public class AuthService {
     @Autowired
     public AuthService(AuthenticationManager authenticationManager, PassengerRepo passengerRepo,
                        TicketInspectorRepo ticketInspectorRepo, BusOwnerRepo busOwnerRepo, AdminRepo adminRepo,
-                       RoleRepo roleRepo, PasswordEncoder passwordEncoder, JWTGenerator jwtGenerator) {
+                       RoleRepo roleRepo, PasswordEncoder passwordEncoder, JWTGenerator jwtGenerator,
+                       UserDetailsCache userDetailsCache, UserDirectoryService userDirectoryService,
+                       PasswordHashingExecutor passwordHashingExecutor, RefreshTokenService refreshTokenService,
+                       TokenRevocationService tokenRevocationService, PlatformTransactionManager transactionManager) {
         this.authenticationManager = authenticationManager;
         this.passengerRepo = passengerRepo;
         this.ticketInspectorRepo = ticketInspectorRepo;
@@ -48,12 +63,36 @@ public class AuthService {
         this.roleRepo = roleRepo;
         this.passwordEncoder = passwordEncoder;
         this.jwtGenerator = jwtGenerator;
+        this.userDetailsCache = userDetailsCache;
+        this.userDirectoryService = userDirectoryService;
+        this.passwordHashingExecutor = passwordHashingExecutor;
+        this.refreshTokenService = refreshTokenService;
+        this.tokenRevocationService = tokenRevocationService;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
     }
 
+    // The password is hashed before the transaction starts: a registration queued on the hashing pool must not
+    // hold a database connection while it waits for BCrypt.
     public void registerUser(RegisterDTO registerDTO) {
 
         String email = registerDTO.getEmail();
-        String password = passwordEncoder.encode(registerDTO.getPassword());
+        // Refused before hashing so that a taken email costs no BCrypt work
+        if (userDirectoryService.isRegistered(email)) {
+            throw new IllegalArgumentException("Email is already registered");
+        }
+        String password = passwordHashingExecutor.execute("register", () -> passwordEncoder.encode(registerDTO.getPassword()));
+        transactionTemplate.executeWithoutResult(status -> persistUser(registerDTO, password));
+
+        // The password and role for this email may have changed, so drop any cached copy
+        userDetailsCache.removeUserFromCache(email);
+    }
+
+    private void persistUser(RegisterDTO registerDTO, String password) {
+        String email = registerDTO.getEmail();
+        // One login per email: checked again, as another registration may have taken it during the hash
+        if (userDirectoryService.isRegistered(email)) {
+            throw new IllegalArgumentException("Email is already registered");
+        }
         String name = POLICY.sanitize(registerDTO.getName());
         String contactNo = sanitizeContactNumber(registerDTO.getContactNo());
 
@@ -73,7 +112,7 @@ public class AuthService {
                 passenger.setContactNo(contactNo);
                 passenger.setRole(userRole.get());
                 passenger.setBalance(registerDTO.getBalance());
-                passengerRepo.save(passenger);
+                userDirectoryService.record(UserDirectoryService.PASSENGER, passengerRepo.save(passenger));
                 break;
 
             case "B":
@@ -85,7 +124,7 @@ public class AuthService {
                 busOwner.setRole(userRole.get());
                 busOwner.setRegistrationNo(Integer.parseInt(POLICY.sanitize(String.valueOf(registerDTO.getRegistrationNo()))));
                 busOwner.setOwnedBuses(registerDTO.getOwnedBuses());
-                busOwnerRepo.save(busOwner);
+                userDirectoryService.record(UserDirectoryService.BUS_OWNER, busOwnerRepo.save(busOwner));
                 break;
 
             case "T":
@@ -96,7 +135,7 @@ public class AuthService {
                 ticketInspector.setContactNo(contactNo);
                 ticketInspector.setRole(userRole.get());
                 ticketInspector.setInspectorID(Integer.parseInt(POLICY.sanitize(String.valueOf(registerDTO.getInspectorId()))));
-                ticketInspectorRepo.save(ticketInspector);
+                userDirectoryService.record(UserDirectoryService.TICKET_INSPECTOR, ticketInspectorRepo.save(ticketInspector));
                 break;
 
             case "A":
@@ -106,7 +145,7 @@ public class AuthService {
                 admin.setName(name);
                 admin.setContactNo(contactNo);
                 admin.setRole(userRole.get());
-                adminRepo.save(admin);
+                userDirectoryService.record(UserDirectoryService.ADMIN, adminRepo.save(admin));
                 break;
 
             default:
@@ -119,18 +158,54 @@ public class AuthService {
             String sanitizedUsername = loginDTO.getUsername();
             String sanitizedPassword = POLICY.sanitize(loginDTO.getPassword());
 
-            Authentication authentication = authenticationManager.authenticate(
-                    new UsernamePasswordAuthenticationToken(sanitizedUsername, sanitizedPassword));
+            // The BCrypt check runs on the bounded hashing pool, not on this request thread
+            Authentication authentication = passwordHashingExecutor.execute("login", () -> authenticationManager.authenticate(
+                    new UsernamePasswordAuthenticationToken(sanitizedUsername, sanitizedPassword)));
 
             SecurityContextHolder.getContext().setAuthentication(authentication);
             String token = jwtGenerator.generateToken(authentication);
+            String refreshToken = refreshTokenService.issue(authentication.getName()).token();
 
-            return new AuthResponseDTO(token);
+            return new AuthResponseDTO(token, refreshToken);
         } catch (BadCredentialsException e) {
             throw new RuntimeException("Invalid username or password!");
         }
     }
 
+    // Mint a new access token from a refresh token. The role is read from user_directory so a changed
+    // role or a removed account takes effect at the next refresh; no password check is needed.
+    public AuthResponseDTO refreshAccessToken(String rawRefreshToken) {
+        RefreshTokenService.IssuedToken rotated = refreshTokenService.rotate(rawRefreshToken);
+        UserDirectory user = userDirectoryService.findByEmail(rotated.username()).orElse(null);
+        if (user == null || user.getRoleName() == null) {
+            refreshTokenService.revoke(rotated.token());
+            throw new InvalidRefreshTokenException("User no longer exists");
+        }
+        String token = jwtGenerator.generateToken(user.getEmail(), user.getRoleName());
+        return new AuthResponseDTO(token, rotated.token());
+    }
+
+    // Revoke the refresh token family, if given, and the presented access token. The refresh token goes first and
+    // regardless of the access token: an expired or invalid access token is already unusable, and logging out with
+    // one must still end the session. Returns the user the access token belonged to, or null if it was not valid.
+    public String logout(String accessToken, String refreshToken) {
+        refreshTokenService.revoke(refreshToken);
+        if (accessToken == null) {
+            return null;
+        }
+        Claims claims;
+        try {
+            claims = jwtGenerator.getClaimsFromJWT(accessToken);
+        } catch (AuthenticationException e) {
+            return null;
+        }
+        tokenRevocationService.revokeToken(claims, "logout");
+        return claims.getSubject();
+    }
+
+    public void revokeAllTokens(String username, String reason) {
+        tokenRevocationService.revokeUser(username, reason);
+    }
 
     private String sanitizeContactNumber(String contactNo) {
         return contactNo.replaceAll("\\D", "");
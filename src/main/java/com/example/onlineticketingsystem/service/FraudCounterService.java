@@ -0,0 +1,177 @@
+package com.example.onlineticketingsystem.service;
+
+import com.example.onlineticketingsystem.DTO.FraudReconcileDTO;
+import com.example.onlineticketingsystem.entity.Inspect;
+import com.example.onlineticketingsystem.repo.InspectRepo;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.dao.DuplicateKeyException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+// Materialized fraud totals per route (fraud_counter). InspectService applies the difference every save,
+// update and delete makes, inside the same transaction as the inspect row, so the dashboard reads a row per
+// route instead of aggregating the inspect table. reconcile() rebuilds the counters from the table and
+// reports any drift; it runs at startup and on demand.
+@Service
+public class FraudCounterService {
+
+    private static final Logger logger = LoggerFactory.getLogger(FraudCounterService.class);
+
+    private final JdbcTemplate jdbcTemplate;
+    private final InspectRepo inspectRepo;
+    private final TransactionTemplate transactionTemplate;
+    private final boolean reconcileOnStartup;
+    private final Counter deltas;
+    private final Counter driftedRoutes;
+
+    // What one inspect row adds to the counters
+    public record Contribution(int routeId, int fraudCount) {
+
+        public static Contribution of(Inspect inspect) {
+            return inspect != null ? new Contribution(inspect.getRouteId(), inspect.getNoFraudDetected()) : null;
+        }
+    }
+
+    @Autowired
+    public FraudCounterService(JdbcTemplate jdbcTemplate, InspectRepo inspectRepo,
+                               PlatformTransactionManager transactionManager,
+                               @Value("${inspect.fraud-counters.reconcile-on-startup:true}") boolean reconcileOnStartup,
+                               MeterRegistry meterRegistry) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.inspectRepo = inspectRepo;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.reconcileOnStartup = reconcileOnStartup;
+        this.deltas = Counter.builder("inspect.fraud.counters.deltas").register(meterRegistry);
+        this.driftedRoutes = Counter.builder("inspect.fraud.counters.drifted.routes").register(meterRegistry);
+    }
+
+    // Replace one row's contribution with another; either may be null for an insert or a delete. Must run in
+    // the transaction that changes the inspect row. Routes are locked in ascending order so two updates moving
+    // inspections between the same routes in opposite directions cannot deadlock.
+    public void apply(Contribution removed, Contribution added) {
+        Map<Integer, long[]> changes = new TreeMap<>();
+        if (removed != null) {
+            long[] change = changes.computeIfAbsent(removed.routeId(), route -> new long[2]);
+            change[0] -= removed.fraudCount();
+            change[1]--;
+        }
+        if (added != null) {
+            long[] change = changes.computeIfAbsent(added.routeId(), route -> new long[2]);
+            change[0] += added.fraudCount();
+            change[1]++;
+        }
+        changes.forEach((routeId, change) -> {
+            if (change[0] != 0 || change[1] != 0) {
+                add(routeId, change[0], change[1]);
+            }
+        });
+    }
+
+    // Several inserts at once, as bulk ingestion writes them: one counter update per route
+    public void addAll(List<Contribution> added) {
+        Map<Integer, long[]> changes = new TreeMap<>();
+        for (Contribution contribution : added) {
+            long[] change = changes.computeIfAbsent(contribution.routeId(), route -> new long[2]);
+            change[0] += contribution.fraudCount();
+            change[1]++;
+        }
+        changes.forEach((routeId, change) -> add(routeId, change[0], change[1]));
+    }
+
+    public long totalFraudCount() {
+        return jdbcTemplate.queryForObject("SELECT COALESCE(SUM(fraud_count), 0) FROM fraud_counter", Long.class);
+    }
+
+    // Routes that have at least one inspection, by route id
+    public Map<Integer, Long> fraudCountByRoute() {
+        Map<Integer, Long> byRoute = new LinkedHashMap<>();
+        jdbcTemplate.query("SELECT route_id, fraud_count FROM fraud_counter WHERE inspections > 0 ORDER BY route_id",
+                row -> {
+                    byRoute.put(row.getInt(1), row.getLong(2));
+                });
+        return byRoute;
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void reconcileOnStartup() {
+        if (reconcileOnStartup) {
+            reconcile();
+        }
+    }
+
+    // Recount every route from the inspect table and correct the counters. The counter rows are locked first,
+    // so inspections written meanwhile wait for the recount instead of being counted twice or not at all.
+    public FraudReconcileDTO reconcile() {
+        long started = System.currentTimeMillis();
+        FraudReconcileDTO result = transactionTemplate.execute(status -> {
+            Map<Integer, long[]> counted = new TreeMap<>();
+            jdbcTemplate.query("SELECT route_id, fraud_count, inspections FROM fraud_counter ORDER BY route_id FOR UPDATE",
+                    row -> {
+                        counted.put(row.getInt(1), new long[]{row.getLong(2), row.getLong(3)});
+                    });
+
+            List<FraudReconcileDTO.RouteDrift> drifted = new ArrayList<>();
+            List<InspectRepo.RouteFraud> expected = inspectRepo.sumFraudByRoute(null, null, null);
+            for (InspectRepo.RouteFraud route : expected) {
+                long[] counter = counted.remove(route.getRouteId());
+                long fraudCount = counter != null ? counter[0] : 0;
+                long inspections = counter != null ? counter[1] : 0;
+                if (counter == null || fraudCount != route.getFraudCount() || inspections != route.getInspections()) {
+                    drifted.add(new FraudReconcileDTO.RouteDrift(route.getRouteId(), route.getFraudCount(), fraudCount,
+                            route.getInspections(), inspections));
+                    add(route.getRouteId(), route.getFraudCount() - fraudCount, route.getInspections() - inspections);
+                }
+            }
+            // Counters for routes that no longer have any inspection
+            counted.forEach((routeId, counter) -> {
+                if (counter[0] != 0 || counter[1] != 0) {
+                    drifted.add(new FraudReconcileDTO.RouteDrift(routeId, 0, counter[0], 0, counter[1]));
+                }
+                jdbcTemplate.update("DELETE FROM fraud_counter WHERE route_id = ?", routeId);
+            });
+            return new FraudReconcileDTO(expected.size(), drifted, 0);
+        });
+
+        result.setDurationMs(System.currentTimeMillis() - started);
+        driftedRoutes.increment(result.getDrifted().size());
+        if (result.getDrifted().isEmpty()) {
+            logger.info("Fraud counters for {} routes match the inspect table", result.getRoutes());
+        } else {
+            logger.warn("Corrected drifted fraud counters for {} of {} routes: {}", result.getDrifted().size(),
+                    result.getRoutes(), result.getDrifted());
+        }
+        return result;
+    }
+
+    // The first inspection of a route creates its row. If another transaction creates it first, the insert
+    // fails on the primary key without aborting our transaction and the update is retried.
+    private void add(int routeId, long fraudDelta, long inspectionDelta) {
+        long now = System.currentTimeMillis();
+        String update = "UPDATE fraud_counter SET fraud_count = fraud_count + ?, inspections = inspections + ?, updated_at = ?"
+                + " WHERE route_id = ?";
+        if (jdbcTemplate.update(update, fraudDelta, inspectionDelta, now, routeId) == 0) {
+            try {
+                jdbcTemplate.update("INSERT INTO fraud_counter (route_id, fraud_count, inspections, updated_at) VALUES (?, ?, ?, ?)",
+                        routeId, fraudDelta, inspectionDelta, now);
+            } catch (DuplicateKeyException e) {
+                jdbcTemplate.update(update, fraudDelta, inspectionDelta, now, routeId);
+            }
+        }
+        deltas.increment();
+    }
+}
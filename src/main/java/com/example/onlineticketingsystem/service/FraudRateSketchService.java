@@ -0,0 +1,495 @@
+package com.example.onlineticketingsystem.service;
+
+import com.example.onlineticketingsystem.DTO.FraudRatePercentilesDTO;
+import com.example.onlineticketingsystem.DTO.FraudRatePercentilesReportDTO;
+import com.example.onlineticketingsystem.entity.Inspect;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.dao.DuplicateKeyException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.math.BigDecimal;
+import java.sql.Date;
+import java.time.LocalDate;
+import java.util.*;
+
+// Fraud-rate percentiles (fraud per passenger of each inspection) per route and per inspector from KLL
+// sketches in fraud_rate_sketch, one per route or inspector and day, and one per month so that long ranges
+// merge a sketch a month. A report merges the month sketches of the months inside the range and the day
+// sketches of the days around them.
+//
+// Sketches cannot forget a value, so InspectService's writes only add inserted inspections to them; an
+// update or delete marks the affected sketches stale. A background thread rebuilds stale sketches from the
+// inspect table, and a report rebuilds the few stale ones in its range itself. On first start every existing
+// day and month is marked stale, which builds the sketches for the inspections written before them.
+@Service
+public class FraudRateSketchService {
+
+    private static final Logger logger = LoggerFactory.getLogger(FraudRateSketchService.class);
+    private static final String DAY = "DAY";
+    private static final String MONTH = "MONTH";
+    private static final String KEY_WHERE = " WHERE dimension = ? AND granularity = ? AND period_start = ? AND group_id = ?";
+
+    public enum Dimension {
+        ROUTE("route_id"), INSPECTOR("inspector_id");
+
+        private final String column;
+
+        Dimension(String column) {
+            this.column = column;
+        }
+
+        private int groupId(Inspect inspect) {
+            return this == ROUTE ? inspect.getRouteId() : inspect.getInspectorId();
+        }
+
+        public static Dimension parse(String value) {
+            if (value == null) {
+                return ROUTE;
+            }
+            try {
+                return valueOf(value.trim().toUpperCase(Locale.ROOT));
+            } catch (IllegalArgumentException e) {
+                throw new IllegalArgumentException("Unknown groupBy '" + value + "'");
+            }
+        }
+    }
+
+    private record Key(Dimension dimension, String granularity, LocalDate periodStart, int groupId) implements Comparable<Key> {
+
+        private static final Comparator<Key> ORDER = Comparator.comparing(Key::dimension).thenComparing(Key::granularity)
+                .thenComparing(Key::periodStart).thenComparingInt(Key::groupId);
+
+        private Object[] args() {
+            return new Object[]{dimension.name(), granularity, Date.valueOf(periodStart), groupId};
+        }
+
+        private LocalDate periodEnd() {
+            return granularity.equals(DAY) ? periodStart : periodStart.plusMonths(1).minusDays(1);
+        }
+
+        @Override
+        public int compareTo(Key other) {
+            return ORDER.compare(this, other);
+        }
+    }
+
+    private final JdbcTemplate jdbcTemplate;
+    private final TransactionTemplate transactionTemplate;
+    private final int k;
+    private final boolean background;
+    private final long rebuildIntervalMs;
+    private final int rebuildBatchSize;
+    private final int inlineRebuildLimit;
+    private final Counter updates;
+    private final Counter staleMarks;
+    private final Counter rebuilt;
+
+    private volatile boolean stopping;
+    private Thread rebuildThread;
+
+    @Autowired
+    public FraudRateSketchService(JdbcTemplate jdbcTemplate, PlatformTransactionManager transactionManager,
+                                  @Value("${inspect.fraud-sketch.k:200}") int k,
+                                  @Value("${inspect.fraud-sketch.background:true}") boolean background,
+                                  @Value("${inspect.fraud-sketch.rebuild-interval-ms:5000}") long rebuildIntervalMs,
+                                  @Value("${inspect.fraud-sketch.rebuild-batch-size:500}") int rebuildBatchSize,
+                                  @Value("${inspect.fraud-sketch.inline-rebuild-limit:50}") int inlineRebuildLimit,
+                                  MeterRegistry meterRegistry) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.k = k;
+        this.background = background;
+        this.rebuildIntervalMs = Math.max(10, rebuildIntervalMs);
+        this.rebuildBatchSize = Math.max(1, rebuildBatchSize);
+        this.inlineRebuildLimit = Math.max(0, inlineRebuildLimit);
+        this.updates = Counter.builder("inspect.fraud.sketch.updates").register(meterRegistry);
+        this.staleMarks = Counter.builder("inspect.fraud.sketch.stale").register(meterRegistry);
+        this.rebuilt = Counter.builder("inspect.fraud.sketch.rebuilt").register(meterRegistry);
+    }
+
+    // Replace one inspection with another; either may be null for an insert or a delete. Must run in the
+    // transaction that changes the inspect row. Sketch rows are locked in key order to avoid deadlocks.
+    public void apply(Inspect removed, Inspect added) {
+        Set<Key> stale = new TreeSet<>(keys(removed));
+        Map<Key, Float> additions = new TreeMap<>();
+        for (Key key : keys(added)) {
+            if (!stale.contains(key)) {
+                additions.put(key, rate(added));
+            }
+        }
+        Set<Key> all = new TreeSet<>(stale);
+        all.addAll(additions.keySet());
+        for (Key key : all) {
+            if (stale.contains(key)) {
+                markStale(key);
+            } else {
+                add(key, additions.get(key));
+            }
+        }
+    }
+
+    // Several inserts at once, as bulk ingestion writes them: each sketch is read and written once
+    public void addAll(List<Inspect> added) {
+        Map<Key, List<Float>> rates = new TreeMap<>();
+        for (Inspect inspect : added) {
+            for (Key key : keys(inspect)) {
+                rates.computeIfAbsent(key, k -> new ArrayList<>()).add(rate(inspect));
+            }
+        }
+        rates.forEach((key, values) -> {
+            float[] batch = new float[values.size()];
+            for (int i = 0; i < batch.length; i++) {
+                batch[i] = values.get(i);
+            }
+            add(key, batch);
+        });
+    }
+
+    // Inspections without passengers have no fraud rate and are left out
+    private static List<Key> keys(Inspect inspect) {
+        if (inspect == null || inspect.getInspectDate() == null || inspect.getNoOfPassengers() <= 0) {
+            return List.of();
+        }
+        LocalDate day = inspect.getInspectDate().toLocalDate();
+        List<Key> keys = new ArrayList<>(4);
+        for (Dimension dimension : Dimension.values()) {
+            keys.add(new Key(dimension, DAY, day, dimension.groupId(inspect)));
+            keys.add(new Key(dimension, MONTH, day.withDayOfMonth(1), dimension.groupId(inspect)));
+        }
+        return keys;
+    }
+
+    private static float rate(Inspect inspect) {
+        return (float) inspect.getNoFraudDetected() / inspect.getNoOfPassengers();
+    }
+
+    private void markStale(Key key) {
+        jdbcTemplate.update("UPDATE fraud_rate_sketch SET stale = TRUE, updated_at = ?" + KEY_WHERE,
+                prepend(System.currentTimeMillis(), key.args()));
+        staleMarks.increment();
+    }
+
+    // The first inspection of a key creates its row. If another transaction creates it first, the insert fails
+    // on the primary key without aborting our transaction and the update is retried. A stale sketch is left
+    // for the rebuild, which reads this inspection from the table.
+    private void add(Key key, float... rates) {
+        List<byte[]> found = jdbcTemplate.query("SELECT sketch FROM fraud_rate_sketch" + KEY_WHERE
+                + " AND stale = FALSE FOR UPDATE", (row, i) -> row.getBytes(1), key.args());
+        if (found.isEmpty()) {
+            if (exists(key)) {
+                return;
+            }
+            QuantileSketch sketch = new QuantileSketch(k);
+            for (float rate : rates) {
+                sketch.update(rate);
+            }
+            try {
+                jdbcTemplate.update("INSERT INTO fraud_rate_sketch (dimension, granularity, period_start, group_id,"
+                        + " inspections, sketch, stale, updated_at) VALUES (?, ?, ?, ?, ?, ?, FALSE, ?)",
+                        append(key.args(), rates.length, sketch.toBytes(), System.currentTimeMillis()));
+            } catch (DuplicateKeyException e) {
+                add(key, rates);
+                return;
+            }
+        } else {
+            QuantileSketch sketch = QuantileSketch.fromBytes(found.get(0));
+            for (float rate : rates) {
+                sketch.update(rate);
+            }
+            jdbcTemplate.update("UPDATE fraud_rate_sketch SET sketch = ?, inspections = inspections + ?, updated_at = ?"
+                    + KEY_WHERE, prepend(sketch.toBytes(), rates.length, System.currentTimeMillis(), key.args()));
+        }
+        updates.increment();
+    }
+
+    private boolean exists(Key key) {
+        return jdbcTemplate.queryForObject("SELECT COUNT(*) FROM fraud_rate_sketch" + KEY_WHERE,
+                Integer.class, key.args()) > 0;
+    }
+
+    // Percentiles (0 to 100) of the fraud rate per route or inspector between from and to (inclusive),
+    // optionally for a single one
+    public FraudRatePercentilesReportDTO percentiles(Dimension dimension, LocalDate from, LocalDate to, Integer groupId,
+                                                     List<Double> percentiles) {
+        if (from == null || to == null) {
+            throw new IllegalArgumentException("from and to are required");
+        }
+        if (from.isAfter(to)) {
+            throw new IllegalArgumentException("from must not be after to");
+        }
+        List<Double> requested = percentiles == null || percentiles.isEmpty() ? List.of(50.0, 95.0) : percentiles;
+        double[] ranks = new double[requested.size()];
+        for (int i = 0; i < ranks.length; i++) {
+            double percentile = requested.get(i);
+            if (!(percentile >= 0 && percentile <= 100)) {
+                throw new IllegalArgumentException("percentiles must be between 0 and 100");
+            }
+            ranks[i] = percentile / 100;
+        }
+
+        // Whole months come from month sketches, the days before and after them from day sketches
+        LocalDate firstMonth = from.getDayOfMonth() == 1 ? from : from.withDayOfMonth(1).plusMonths(1);
+        LocalDate monthsEnd = to.plusDays(1).getDayOfMonth() == 1 ? to.plusDays(1) : to.withDayOfMonth(1);
+        StringBuilder where = new StringBuilder(" WHERE dimension = ?");
+        List<Object> args = new ArrayList<>(List.of(dimension.name()));
+        if (groupId != null) {
+            where.append(" AND group_id = ?");
+            args.add(groupId);
+        }
+        if (firstMonth.isBefore(monthsEnd)) {
+            where.append(" AND ((granularity = 'MONTH' AND period_start >= ? AND period_start < ?)"
+                    + " OR (granularity = 'DAY' AND ((period_start >= ? AND period_start < ?)"
+                    + " OR (period_start >= ? AND period_start <= ?))))");
+            args.addAll(List.of(Date.valueOf(firstMonth), Date.valueOf(monthsEnd), Date.valueOf(from),
+                    Date.valueOf(firstMonth), Date.valueOf(monthsEnd), Date.valueOf(to)));
+        } else {
+            where.append(" AND granularity = 'DAY' AND period_start >= ? AND period_start <= ?");
+            args.addAll(List.of(Date.valueOf(from), Date.valueOf(to)));
+        }
+
+        List<Key> stale = jdbcTemplate.query("SELECT dimension, granularity, period_start, group_id FROM fraud_rate_sketch"
+                + where + " AND stale = TRUE", (row, i) -> key(row.getString(1), row.getString(2), row.getDate(3), row.getInt(4)),
+                args.toArray());
+        if (!stale.isEmpty() && stale.size() <= inlineRebuildLimit) {
+            rebuild(stale);
+        }
+
+        Map<Integer, QuantileSketch> merged = new TreeMap<>();
+        int[] stillStale = {0};
+        jdbcTemplate.query("SELECT group_id, sketch, stale FROM fraud_rate_sketch" + where, row -> {
+            if (row.getBoolean(3)) {
+                stillStale[0]++;
+            }
+            byte[] bytes = row.getBytes(2);
+            if (bytes != null) {
+                merged.computeIfAbsent(row.getInt(1), id -> new QuantileSketch(k)).merge(QuantileSketch.fromBytes(bytes));
+            }
+        }, args.toArray());
+
+        List<FraudRatePercentilesDTO> rows = new ArrayList<>(merged.size());
+        merged.forEach((id, sketch) -> {
+            double[] values = sketch.quantiles(ranks);
+            Map<String, Double> byPercentile = new LinkedHashMap<>();
+            for (int i = 0; i < values.length; i++) {
+                // Rates are kept as floats; this prints 0.9 instead of 0.8999999761581421
+                values[i] = Double.parseDouble(Float.toString((float) values[i]));
+                byPercentile.put("p" + BigDecimal.valueOf(requested.get(i)).stripTrailingZeros().toPlainString(), values[i]);
+            }
+            rows.add(new FraudRatePercentilesDTO(id, sketch.count(), byPercentile));
+        });
+        return new FraudRatePercentilesReportDTO(from, to, dimension.name().toLowerCase(Locale.ROOT), stillStale[0], rows);
+    }
+
+    private static Key key(String dimension, String granularity, Date periodStart, int groupId) {
+        return new Key(Dimension.valueOf(dimension), granularity, periodStart.toLocalDate(), groupId);
+    }
+
+    // Rebuild up to rebuild-batch-size stale sketches at a time until none are left; returns how many
+    public int rebuildStale() {
+        int total = 0;
+        while (!stopping) {
+            List<Key> stale = jdbcTemplate.query("SELECT dimension, granularity, period_start, group_id FROM fraud_rate_sketch"
+                    + " WHERE stale = TRUE ORDER BY dimension, granularity, period_start, group_id LIMIT ?",
+                    (row, i) -> key(row.getString(1), row.getString(2), row.getDate(3), row.getInt(4)), rebuildBatchSize);
+            rebuild(stale);
+            total += stale.size();
+            if (stale.size() < rebuildBatchSize) {
+                break;
+            }
+        }
+        return total;
+    }
+
+    // Sketches of the same dimension and period are rebuilt together from one read of that period
+    private void rebuild(List<Key> keys) {
+        Map<Key, List<Integer>> periods = new TreeMap<>();
+        for (Key key : keys) {
+            periods.computeIfAbsent(new Key(key.dimension(), key.granularity(), key.periodStart(), 0), period -> new ArrayList<>())
+                    .add(key.groupId());
+        }
+        periods.forEach(this::rebuild);
+    }
+
+    // Recompute the sketches of some groups in one period from the inspect table. Their rows are locked first,
+    // so a write that marks one stale meanwhile waits and leaves it stale for the next round.
+    private void rebuild(Key period, List<Integer> groupIds) {
+        transactionTemplate.executeWithoutResult(status -> {
+            String groups = String.join(",", Collections.nCopies(groupIds.size(), "?"));
+            Object[] args = append(new Object[]{period.dimension().name(), period.granularity(), Date.valueOf(period.periodStart())},
+                    groupIds.toArray());
+            Map<Integer, QuantileSketch> sketches = new TreeMap<>();
+            jdbcTemplate.query("SELECT group_id FROM fraud_rate_sketch WHERE dimension = ? AND granularity = ? AND period_start = ?"
+                    + " AND group_id IN (" + groups + ") AND stale = TRUE FOR UPDATE", row -> {
+                sketches.put(row.getInt(1), new QuantileSketch(k));
+            }, args);
+            if (sketches.isEmpty()) {
+                return;
+            }
+            // One group reads its own rows; several read the whole period once, which a date index serves on
+            // every database
+            String column = period.dimension().column;
+            List<Object> readArgs = new ArrayList<>(List.of(Date.valueOf(period.periodStart()), Date.valueOf(period.periodEnd())));
+            String sql = "SELECT " + column + ", no_fraud_detected, no_of_passengers FROM inspect"
+                    + " WHERE inspect_date >= ? AND inspect_date <= ? AND no_of_passengers > 0";
+            if (sketches.size() == 1) {
+                sql += " AND " + column + " = ?";
+                readArgs.addAll(sketches.keySet());
+            }
+            jdbcTemplate.query(sql, row -> {
+                QuantileSketch sketch = sketches.get(row.getInt(1));
+                if (sketch != null) {
+                    sketch.update((float) row.getInt(2) / row.getInt(3));
+                }
+            }, readArgs.toArray());
+
+            long now = System.currentTimeMillis();
+            sketches.forEach((groupId, sketch) -> {
+                Key key = new Key(period.dimension(), period.granularity(), period.periodStart(), groupId);
+                if (sketch.count() == 0) {
+                    jdbcTemplate.update("DELETE FROM fraud_rate_sketch" + KEY_WHERE, key.args());
+                } else {
+                    jdbcTemplate.update("UPDATE fraud_rate_sketch SET sketch = ?, inspections = ?, stale = FALSE, updated_at = ?"
+                            + KEY_WHERE, prepend(sketch.toBytes(), sketch.count(), now, key.args()));
+                }
+            });
+            rebuilt.increment(sketches.size());
+        });
+    }
+
+    // Mark every route and inspector day and month that has inspections stale, so the rebuild creates their
+    // sketches. Runs once; its row in fraud_rate_sketch_seed records that it finished.
+    public int seed() {
+        Set<Key> keys = new TreeSet<>();
+        for (Dimension dimension : Dimension.values()) {
+            jdbcTemplate.query("SELECT DISTINCT " + dimension.column + ", inspect_date FROM inspect"
+                    + " WHERE inspect_date IS NOT NULL AND no_of_passengers > 0", row -> {
+                LocalDate day = row.getDate(2).toLocalDate();
+                keys.add(new Key(dimension, DAY, day, row.getInt(1)));
+                keys.add(new Key(dimension, MONTH, day.withDayOfMonth(1), row.getInt(1)));
+            });
+        }
+        long now = System.currentTimeMillis();
+        List<Key> batch = new ArrayList<>(rebuildBatchSize);
+        for (Key key : keys) {
+            batch.add(key);
+            if (batch.size() == rebuildBatchSize) {
+                markStale(batch, now);
+                batch.clear();
+            }
+        }
+        markStale(batch, now);
+
+        transactionTemplate.executeWithoutResult(status -> {
+            jdbcTemplate.update("DELETE FROM fraud_rate_sketch_seed");
+            jdbcTemplate.update("INSERT INTO fraud_rate_sketch_seed (id, sketches, seeded_at) VALUES (1, ?, ?)", keys.size(), now);
+        });
+        logger.info("Marked {} fraud-rate sketches for rebuilding", keys.size());
+        return keys.size();
+    }
+
+    public boolean isSeeded() {
+        return jdbcTemplate.queryForObject("SELECT COUNT(*) FROM fraud_rate_sketch_seed", Integer.class) > 0;
+    }
+
+    private void markStale(List<Key> keys, long now) {
+        if (keys.isEmpty()) {
+            return;
+        }
+        transactionTemplate.executeWithoutResult(status -> {
+            int[] updated = jdbcTemplate.batchUpdate("UPDATE fraud_rate_sketch SET stale = TRUE, updated_at = ?" + KEY_WHERE,
+                    keys.stream().map(key -> prepend(now, key.args())).toList());
+            List<Object[]> missing = new ArrayList<>();
+            for (int i = 0; i < keys.size(); i++) {
+                if (updated[i] == 0) {
+                    missing.add(append(keys.get(i).args(), now));
+                }
+            }
+            String insert = "INSERT INTO fraud_rate_sketch (dimension, granularity, period_start, group_id, inspections,"
+                    + " sketch, stale, updated_at) VALUES (?, ?, ?, ?, 0, NULL, TRUE, ?)";
+            try {
+                jdbcTemplate.batchUpdate(insert, missing);
+            } catch (DuplicateKeyException e) {
+                // A write created some of them meanwhile; mark those stale one by one
+                for (Object[] row : missing) {
+                    if (!exists(key((String) row[0], (String) row[1], (Date) row[2], (int) row[3]))) {
+                        jdbcTemplate.update(insert, row);
+                    }
+                }
+                jdbcTemplate.batchUpdate("UPDATE fraud_rate_sketch SET stale = TRUE, updated_at = ?" + KEY_WHERE,
+                        keys.stream().map(key -> prepend(now, key.args())).toList());
+            }
+        });
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public synchronized void start() {
+        if (!background || rebuildThread != null) {
+            return;
+        }
+        stopping = false;
+        rebuildThread = new Thread(() -> {
+            try {
+                if (!isSeeded()) {
+                    seed();
+                }
+            } catch (RuntimeException e) {
+                logger.error("Marking fraud-rate sketches for rebuilding failed; it is retried on the next start", e);
+            }
+            while (!stopping) {
+                try {
+                    rebuildStale();
+                } catch (RuntimeException e) {
+                    logger.warn("Rebuilding stale fraud-rate sketches failed; retrying", e);
+                }
+                try {
+                    Thread.sleep(rebuildIntervalMs);
+                } catch (InterruptedException e) {
+                    return;
+                }
+            }
+        }, "fraud-sketch-rebuild");
+        rebuildThread.setDaemon(true);
+        rebuildThread.start();
+    }
+
+    @PreDestroy
+    public synchronized void shutdown() {
+        stopping = true;
+        if (rebuildThread != null) {
+            rebuildThread.interrupt();
+            rebuildThread = null;
+        }
+    }
+
+    private static Object[] prepend(Object first, Object[] rest) {
+        Object[] args = new Object[rest.length + 1];
+        args[0] = first;
+        System.arraycopy(rest, 0, args, 1, rest.length);
+        return args;
+    }
+
+    private static Object[] prepend(Object first, Object second, Object[] rest) {
+        return prepend(first, prepend(second, rest));
+    }
+
+    private static Object[] prepend(Object first, Object second, Object third, Object[] rest) {
+        return prepend(first, prepend(second, prepend(third, rest)));
+    }
+
+    private static Object[] append(Object[] first, Object... rest) {
+        Object[] args = Arrays.copyOf(first, first.length + rest.length);
+        System.arraycopy(rest, 0, args, first.length, rest.length);
+        return args;
+    }
+}
@@ -0,0 +1,298 @@
+package com.example.onlineticketingsystem.service;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+@Service
+// Per-node limiter: attempt counts live only in this JVM
+@ConditionalOnProperty(name = "rate-limiter.store", havingValue = "memory", matchIfMissing = true)
+public class InMemoryRateLimiter implements RateLimiter {
+
+    // Buckets looked at per eviction on a full table, and evictions tried before a new IP is left untracked
+    private static final int SAMPLE_SIZE = 16;
+    private static final int EVICTION_ATTEMPTS = 4;
+
+    private final int maxAttempts;
+    private final long blockDuration;
+    private final int maxEntries;
+
+    // Time for one attempt to be given back; a bucket refills completely over one block duration
+    private final double millisPerToken;
+
+    // Each IP has a token bucket of maxAttempts failed logins. Updates go through ConcurrentHashMap.compute,
+    // which only locks the bin holding that IP, and reads of the block state are lock-free.
+    private final Map<String, AttemptBucket> buckets = new ConcurrentHashMap<>();
+    // Slots taken in buckets: a new IP reserves one before its bucket goes in, so the table never passes maxEntries
+    private final AtomicInteger size = new AtomicInteger();
+    // Clock hand for sampled eviction, guarded by itself; it resumes where the previous sample stopped
+    private final Object sampleLock = new Object();
+    private Iterator<Map.Entry<String, AttemptBucket>> hand = Collections.emptyIterator();
+
+    private final Counter blocks;
+    private final Counter rejections;
+    private final Counter idleEvictions;
+    private final Counter capacityEvictions;
+    private final Counter blockedEvictions;
+    private final Counter untracked;
+
+    @Autowired
+    public InMemoryRateLimiter(@Value("${rate-limiter.max-attempts:5}") int maxAttempts,
+                              @Value("${rate-limiter.block-duration-ms:600000}") long blockDuration,
+                              @Value("${rate-limiter.max-entries:100000}") int maxEntries,
+                              MeterRegistry meterRegistry) {
+        this.maxAttempts = maxAttempts;
+        this.blockDuration = blockDuration;
+        this.maxEntries = maxEntries;
+        this.millisPerToken = (double) blockDuration / maxAttempts;
+
+        meterRegistry.gaugeMapSize("rate.limiter.tracked.keys", Collections.emptyList(), buckets);
+        this.blocks = Counter.builder("rate.limiter.blocks").register(meterRegistry);
+        this.rejections = Counter.builder("rate.limiter.rejections").register(meterRegistry);
+        this.idleEvictions = Counter.builder("rate.limiter.evictions").tag("reason", "idle").register(meterRegistry);
+        this.capacityEvictions = Counter.builder("rate.limiter.evictions").tag("reason", "capacity").register(meterRegistry);
+        this.blockedEvictions = Counter.builder("rate.limiter.evictions").tag("reason", "blocked").register(meterRegistry);
+        this.untracked = Counter.builder("rate.limiter.untracked").register(meterRegistry);
+    }
+
+    // Check if the IP is blocked
+    @Override
+    public boolean isBlocked(String ipAddress) {
+        AttemptBucket bucket = buckets.get(ipAddress);
+        if (bucket == null) {
+            return false;
+        }
+
+        long currentTime = System.currentTimeMillis();
+        long blockExpiresAt = bucket.blockedUntil;
+        if (blockExpiresAt == 0) {
+            return false;
+        }
+        if (currentTime < blockExpiresAt) {
+            // Still blocked
+            rejections.increment();
+            return true;
+        }
+
+        // Unblock the IP after block duration has passed
+        if (buckets.remove(ipAddress, bucket)) {
+            size.decrementAndGet();
+        }
+        return false;
+    }
+
+    // Record a failed login attempt
+    @Override
+    public void recordFailedAttempt(String ipAddress) {
+        long currentTime = System.currentTimeMillis();
+        boolean[] reserved = {!buckets.containsKey(ipAddress) && reserve(currentTime)};
+
+        buckets.compute(ipAddress, (ip, bucket) -> {
+            if (bucket == null) {
+                // The IP may have been removed since the containsKey check; without a slot it is not tracked
+                if (!reserved[0] && !tryAcquire()) {
+                    untracked.increment();
+                    return null;
+                }
+                reserved[0] = false;
+                bucket = new AttemptBucket(maxAttempts, currentTime);
+            } else if (bucket.isBlockExpired(currentTime)) {
+                bucket = new AttemptBucket(maxAttempts, currentTime);
+            }
+            synchronized (bucket) {
+                bucket.lastSeen = currentTime;
+                if (bucket.blockedUntil != 0) {
+                    return bucket;
+                }
+
+                bucket.refill(currentTime, maxAttempts, millisPerToken);
+                bucket.tokens -= 1;
+
+                // If the number of failed attempts reaches the max allowed, block the IP
+                if (bucket.tokens < 1) {
+                    bucket.tokens = 0;
+                    bucket.blockedUntil = currentTime + blockDuration;
+                    blocks.increment();
+                }
+            }
+            return bucket;
+        });
+        if (reserved[0]) {
+            // Another thread put the bucket in first
+            size.decrementAndGet();
+        }
+    }
+
+    // Reset the attempt counter on successful login
+    @Override
+    public void resetAttempts(String ipAddress) {
+        if (buckets.remove(ipAddress) != null) {
+            size.decrementAndGet();
+        }
+    }
+
+    // Retrieve the remaining attempts for a given IP address (useful for debugging)
+    @Override
+    public int getRemainingAttempts(String ipAddress) {
+        AttemptBucket bucket = buckets.get(ipAddress);
+        if (bucket == null) {
+            return maxAttempts;
+        }
+        long currentTime = System.currentTimeMillis();
+        synchronized (bucket) {
+            if (bucket.blockedUntil != 0) {
+                return bucket.isBlockExpired(currentTime) ? maxAttempts : 0;
+            }
+            return (int) Math.floor(bucket.peek(currentTime, maxAttempts, millisPerToken));
+        }
+    }
+
+    public int getTrackedKeys() {
+        return buckets.size();
+    }
+
+    // Background sweeper: drop buckets that no longer hold any state worth keeping
+    @Scheduled(fixedDelayString = "${rate-limiter.sweep-interval-ms:60000}")
+    public void sweep() {
+        removeIdle(System.currentTimeMillis());
+    }
+
+    private int removeIdle(long currentTime) {
+        int[] removed = {0};
+        for (String ipAddress : buckets.keySet()) {
+            // computeIfPresent runs under the same bin lock as recordFailedAttempt, so a bucket that picks up
+            // a new failure while being checked is never dropped
+            buckets.computeIfPresent(ipAddress, (ip, bucket) -> {
+                synchronized (bucket) {
+                    if (bucket.isIdle(currentTime, maxAttempts, millisPerToken)) {
+                        removed[0]++;
+                        size.decrementAndGet();
+                        return null;
+                    }
+                    return bucket;
+                }
+            });
+        }
+        idleEvictions.increment(removed[0]);
+        return removed[0];
+    }
+
+    private boolean tryAcquire() {
+        int taken;
+        do {
+            taken = size.get();
+            if (taken >= maxEntries) {
+                return false;
+            }
+        } while (!size.compareAndSet(taken, taken + 1));
+        return true;
+    }
+
+    // Takes a slot for a new IP, evicting one sampled bucket at a time while the table is full. If every
+    // attempt loses the freed slot to another thread the IP is left untracked for this failure.
+    private boolean reserve(long currentTime) {
+        for (int attempt = 0; attempt < EVICTION_ATTEMPTS; attempt++) {
+            if (tryAcquire()) {
+                return true;
+            }
+            evictSampled(currentTime);
+        }
+        return tryAcquire();
+    }
+
+    // Looks at the next SAMPLE_SIZE buckets round the table and evicts one: the least recently seen unblocked
+    // bucket, which is usually idle, else the block that ends soonest. Blocked IPs go last
+    // because their lastSeen stays at the block time and would make them the first to go, letting a flood
+    // of fresh IPs lift a block; only a table full of blocks gives some up. Idle buckets elsewhere are left
+    // to sweep(), so a full table costs a new IP a bounded amount of work on the request thread.
+    private void evictSampled(long currentTime) {
+        Map.Entry<String, AttemptBucket> oldest = null;
+        Map.Entry<String, AttemptBucket> soonestExpiring = null;
+        synchronized (sampleLock) {
+            for (int i = 0; i < SAMPLE_SIZE; i++) {
+                if (!hand.hasNext()) {
+                    hand = buckets.entrySet().iterator();
+                    if (!hand.hasNext()) {
+                        return;
+                    }
+                }
+                Map.Entry<String, AttemptBucket> entry = hand.next();
+                AttemptBucket bucket = entry.getValue();
+                if (bucket.isBlocked(currentTime)) {
+                    if (soonestExpiring == null || bucket.blockedUntil < soonestExpiring.getValue().blockedUntil) {
+                        soonestExpiring = entry;
+                    }
+                } else if (oldest == null || bucket.lastSeen < oldest.getValue().lastSeen) {
+                    oldest = entry;
+                }
+            }
+        }
+        Map.Entry<String, AttemptBucket> victim = oldest != null ? oldest : soonestExpiring;
+        boolean blocked = oldest == null;
+        buckets.computeIfPresent(victim.getKey(), (ip, bucket) -> {
+            // The bucket may have been replaced, or blocked, since it was sampled
+            if (bucket != victim.getValue() || (!blocked && bucket.isBlocked(currentTime))) {
+                return bucket;
+            }
+            synchronized (bucket) {
+                if (bucket.isIdle(currentTime, maxAttempts, millisPerToken)) {
+                    idleEvictions.increment();
+                } else if (blocked) {
+                    blockedEvictions.increment();
+                } else {
+                    capacityEvictions.increment();
+                }
+            }
+            size.decrementAndGet();
+            return null;
+        });
+    }
+
+    // Guarded by its own monitor; blockedUntil and lastSeen are volatile so isBlocked can read them without locking
+    private static final class AttemptBucket {
+        private double tokens;
+        private long lastRefill;
+        private volatile long blockedUntil;
+        private volatile long lastSeen;
+
+        private AttemptBucket(int maxAttempts, long now) {
+            this.tokens = maxAttempts;
+            this.lastRefill = now;
+            this.lastSeen = now;
+        }
+
+        private boolean isBlocked(long now) {
+            return blockedUntil != 0 && now < blockedUntil;
+        }
+
+        private boolean isBlockExpired(long now) {
+            return blockedUntil != 0 && now >= blockedUntil;
+        }
+
+        private double peek(long now, int maxAttempts, double millisPerToken) {
+            return Math.min(maxAttempts, tokens + (now - lastRefill) / millisPerToken);
+        }
+
+        private void refill(long now, int maxAttempts, double millisPerToken) {
+            tokens = peek(now, maxAttempts, millisPerToken);
+            lastRefill = now;
+        }
+
+        private boolean isIdle(long now, int maxAttempts, double millisPerToken) {
+            if (blockedUntil != 0) {
+                return isBlockExpired(now);
+            }
+            return peek(now, maxAttempts, millisPerToken) >= maxAttempts;
+        }
+    }
+}
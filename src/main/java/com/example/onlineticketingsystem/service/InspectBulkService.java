@@ -0,0 +1,325 @@
+package com.example.onlineticketingsystem.service;
+
+import com.example.onlineticketingsystem.DTO.InspectBulkItemDTO;
+import com.example.onlineticketingsystem.DTO.InspectBulkResultDTO;
+import com.example.onlineticketingsystem.DTO.InspectDTO;
+import com.example.onlineticketingsystem.entity.Inspect;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.core.JsonToken;
+import com.fasterxml.jackson.databind.DeserializationFeature;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.ConnectionCallback;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.TimeZone;
+
+// Bulk upload of inspections as a JSON array or as NDJSON (one object per line), read as a stream: each
+// inspection is parsed and validated as it arrives, and the valid ones are written batch-size at a time.
+// Hibernate cannot batch inserts into an IDENTITY column, so a batch is one JDBC batch (a multi-row INSERT
+// once Connector/J rewrites it) that hands back the generated ids. The fraud counters, rollups, sketches and
+// the columnar change log are brought up to date once per batch in the same transaction, and one audit record
+// is written per batch. A batch that cannot be written fails as a whole and the upload carries on.
+@Service
+public class InspectBulkService {
+
+    private static final Logger logger = LoggerFactory.getLogger(InspectBulkService.class);
+
+    // Unknown fields are ignored as they are by /createInspect. Dates are read as local dates, not UTC midnight.
+    private static final ObjectMapper objectMapper = new ObjectMapper()
+            .configure(DeserializationFeature.FAIL_ON_UNKNOWN_PROPERTIES, false)
+            .setTimeZone(TimeZone.getDefault());
+
+    private static final String INSERT = "INSERT INTO inspect (inspector_id, bus_id, route_id, inspect_date, inspect_time,"
+            + " no_fraud_detected, no_of_passengers) VALUES (?, ?, ?, ?, ?, ?, ?)";
+    private static final int AUDIT_DETAILS_LENGTH = 255;
+
+    private final JdbcTemplate jdbcTemplate;
+    private final TransactionTemplate transactionTemplate;
+    private final FraudCounterService fraudCounterService;
+    private final InspectRollupService inspectRollupService;
+    private final FraudRateSketchService fraudRateSketchService;
+    private final InspectColumnStore inspectColumnStore;
+    private final AuditLogService auditLogService;
+    private final int batchSize;
+    private final int maxItems;
+    private final Counter createdRows;
+    private final Counter rejectedRows;
+    private final Counter failedBatches;
+
+    @Autowired
+    public InspectBulkService(JdbcTemplate jdbcTemplate, PlatformTransactionManager transactionManager,
+                              FraudCounterService fraudCounterService, InspectRollupService inspectRollupService,
+                              FraudRateSketchService fraudRateSketchService, InspectColumnStore inspectColumnStore,
+                              AuditLogService auditLogService,
+                              @Value("${inspect.bulk.batch-size:500}") int batchSize,
+                              @Value("${inspect.bulk.max-items:50000}") int maxItems,
+                              MeterRegistry meterRegistry) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.fraudCounterService = fraudCounterService;
+        this.inspectRollupService = inspectRollupService;
+        this.fraudRateSketchService = fraudRateSketchService;
+        this.inspectColumnStore = inspectColumnStore;
+        this.auditLogService = auditLogService;
+        this.batchSize = Math.max(1, batchSize);
+        this.maxItems = maxItems;
+        this.createdRows = Counter.builder("inspect.bulk.created").register(meterRegistry);
+        this.rejectedRows = Counter.builder("inspect.bulk.rejected").register(meterRegistry);
+        this.failedBatches = Counter.builder("inspect.bulk.failed.batches").register(meterRegistry);
+    }
+
+    // A body that is not a JSON array at all is an IllegalArgumentException; anything wrong after the first
+    // item ends the upload with an error in the result, the items before it having been processed
+    public InspectBulkResultDTO ingest(InputStream body, boolean ndjson, String performedBy, String role) throws IOException {
+        Upload upload = new Upload(performedBy, role);
+        try {
+            if (ndjson) {
+                readLines(body, upload);
+            } else {
+                readArray(body, upload);
+            }
+        } catch (JsonProcessingException e) {
+            upload.error = "Malformed JSON after item " + upload.items.size() + ": " + e.getOriginalMessage();
+        } finally {
+            upload.flush();
+        }
+        logger.info("Bulk upload by '{}': {} received, {} created, {} rejected, {} failed in {} batches",
+                performedBy, upload.items.size(), upload.created, upload.rejected, upload.failed, upload.batches);
+        return new InspectBulkResultDTO(upload.items.size(), upload.created, upload.rejected, upload.failed,
+                upload.batches, upload.error, upload.items);
+    }
+
+    private void readArray(InputStream body, Upload upload) throws IOException {
+        try (JsonParser parser = objectMapper.getFactory().createParser(body)) {
+            if (parser.nextToken() != JsonToken.START_ARRAY) {
+                throw new IllegalArgumentException("Expected a JSON array of inspections");
+            }
+            // A truncated array fails in nextToken like any other malformed JSON
+            while (parser.nextToken() != JsonToken.END_ARRAY) {
+                if (upload.items.size() == maxItems) {
+                    upload.error = "At most " + maxItems + " inspections per upload; the rest were not read";
+                    return;
+                }
+                upload.accept(objectMapper.readTree(parser));
+            }
+        }
+    }
+
+    // A malformed line rejects only that item
+    private void readLines(InputStream body, Upload upload) throws IOException {
+        BufferedReader reader = new BufferedReader(new InputStreamReader(body, StandardCharsets.UTF_8));
+        String line;
+        while ((line = reader.readLine()) != null) {
+            if (line.isBlank()) {
+                continue;
+            }
+            if (upload.items.size() == maxItems) {
+                upload.error = "At most " + maxItems + " inspections per upload; the rest were not read";
+                return;
+            }
+            JsonNode node;
+            try {
+                node = objectMapper.readTree(line);
+            } catch (JsonProcessingException e) {
+                upload.reject("Malformed JSON: " + e.getOriginalMessage());
+                continue;
+            }
+            upload.accept(node);
+        }
+    }
+
+    private static String validate(InspectDTO inspect) {
+        if (inspect.getInspectId() != 0) {
+            return "inspectId must not be set; bulk uploads only create inspections";
+        }
+        if (inspect.getInspectorId() <= 0) {
+            return "inspectorId must be positive";
+        }
+        if (inspect.getBusId() <= 0) {
+            return "busId must be positive";
+        }
+        if (inspect.getRouteId() <= 0) {
+            return "routeId must be positive";
+        }
+        if (inspect.getInspectDate() == null) {
+            return "inspectDate is required";
+        }
+        if (inspect.getNoFraudDetected() < 0) {
+            return "noFraudDetected must not be negative";
+        }
+        if (inspect.getNoOfPassengers() < 0) {
+            return "noOfPassengers must not be negative";
+        }
+        return null;
+    }
+
+    // Runs in the batch's transaction, after which the new rows and everything derived from them are visible together
+    private void write(List<Inspect> inspects) {
+        int[] ids = insert(inspects);
+        for (int i = 0; i < ids.length; i++) {
+            inspects.get(i).setInspectId(ids[i]);
+        }
+        fraudCounterService.addAll(inspects.stream().map(FraudCounterService.Contribution::of).toList());
+        inspectRollupService.addAll(inspects);
+        fraudRateSketchService.addAll(inspects);
+        inspectColumnStore.recordChanges(Arrays.stream(ids).boxed().toList());
+    }
+
+    private int[] insert(List<Inspect> inspects) {
+        return jdbcTemplate.execute((ConnectionCallback<int[]>) connection -> {
+            try (PreparedStatement statement = connection.prepareStatement(INSERT, Statement.RETURN_GENERATED_KEYS)) {
+                for (Inspect inspect : inspects) {
+                    statement.setInt(1, inspect.getInspectorId());
+                    statement.setInt(2, inspect.getBusId());
+                    statement.setInt(3, inspect.getRouteId());
+                    statement.setDate(4, inspect.getInspectDate());
+                    statement.setTime(5, inspect.getInspectTime());
+                    statement.setInt(6, inspect.getNoFraudDetected());
+                    statement.setInt(7, inspect.getNoOfPassengers());
+                    statement.addBatch();
+                }
+                statement.executeBatch();
+                int[] ids = new int[inspects.size()];
+                int found = 0;
+                try (ResultSet keys = statement.getGeneratedKeys()) {
+                    while (keys.next() && found < ids.length) {
+                        ids[found++] = keys.getInt(1);
+                    }
+                }
+                if (found != ids.length) {
+                    throw new IllegalStateException("Expected " + ids.length + " generated ids, got " + found);
+                }
+                return ids;
+            }
+        });
+    }
+
+    // The ids of a batch as runs of consecutive ids, e.g. "ids 7-9, 12": inserts by other writers can take ids
+    // in between, so a batch's ids need not be contiguous. When the runs do not fit in audit_log.details
+    // (VARCHAR(255)) only the first and last id are given, without claiming the ids between them.
+    private static String auditDetails(List<Inspect> inspects) {
+        int[] ids = inspects.stream().mapToInt(Inspect::getInspectId).sorted().toArray();
+        StringBuilder details = new StringBuilder("Bulk created " + ids.length + " inspections, ids ");
+        for (int start = 0; start < ids.length; ) {
+            int end = start;
+            while (end + 1 < ids.length && ids[end + 1] == ids[end] + 1) {
+                end++;
+            }
+            details.append(start > 0 ? ", " : "").append(ids[start]);
+            if (end > start) {
+                details.append('-').append(ids[end]);
+            }
+            start = end + 1;
+        }
+        if (details.length() <= AUDIT_DETAILS_LENGTH) {
+            return details.toString();
+        }
+        return "Bulk created " + ids.length + " inspections in several id runs, first id " + ids[0]
+                + ", last id " + ids[ids.length - 1];
+    }
+
+    private record Pending(InspectBulkItemDTO item, Inspect inspect) {
+    }
+
+    // The state of one upload. Items are listed in upload order; those waiting in the current batch have no status yet.
+    private final class Upload {
+        private final String performedBy;
+        private final String role;
+        private final List<InspectBulkItemDTO> items = new ArrayList<>();
+        private List<Pending> pending = new ArrayList<>();
+        private int created;
+        private int rejected;
+        private int failed;
+        private int batches;
+        private String error;
+
+        private Upload(String performedBy, String role) {
+            this.performedBy = performedBy;
+            this.role = role;
+        }
+
+        private void accept(JsonNode node) {
+            if (!node.isObject()) {
+                reject("Expected a JSON object");
+                return;
+            }
+            InspectDTO dto;
+            try {
+                dto = objectMapper.treeToValue(node, InspectDTO.class);
+            } catch (JsonProcessingException e) {
+                reject("Invalid inspection: " + e.getOriginalMessage());
+                return;
+            }
+            String problem = validate(dto);
+            if (problem != null) {
+                reject(problem);
+                return;
+            }
+            InspectBulkItemDTO item = new InspectBulkItemDTO(items.size(), null, null, null);
+            items.add(item);
+            pending.add(new Pending(item, new Inspect(0, dto.getInspectorId(), dto.getBusId(), dto.getRouteId(),
+                    dto.getInspectDate(), dto.getInspectTime(), dto.getNoFraudDetected(), dto.getNoOfPassengers())));
+            if (pending.size() == batchSize) {
+                flush();
+            }
+        }
+
+        private void reject(String problem) {
+            items.add(new InspectBulkItemDTO(items.size(), "rejected", null, problem));
+            rejected++;
+            rejectedRows.increment();
+        }
+
+        private void flush() {
+            if (pending.isEmpty()) {
+                return;
+            }
+            List<Pending> batch = pending;
+            pending = new ArrayList<>();
+            List<Inspect> inspects = batch.stream().map(Pending::inspect).toList();
+            try {
+                transactionTemplate.executeWithoutResult(status -> write(inspects));
+            } catch (RuntimeException e) {
+                logger.error("Bulk upload by '{}': a batch of {} inspections could not be written: {}",
+                        performedBy, batch.size(), e.getMessage());
+                for (Pending entry : batch) {
+                    entry.item().setStatus("failed");
+                    entry.item().setError("The batch could not be written");
+                }
+                failed += batch.size();
+                failedBatches.increment();
+                return;
+            }
+            for (Pending entry : batch) {
+                entry.item().setStatus("created");
+                entry.item().setInspectId(entry.inspect().getInspectId());
+            }
+            created += batch.size();
+            batches++;
+            createdRows.increment(batch.size());
+            auditLogService.createAuditLog("Create", performedBy, role, auditDetails(inspects));
+        }
+    }
+}
@@ -0,0 +1,318 @@
+package com.example.onlineticketingsystem.service;
+
+import com.example.onlineticketingsystem.DTO.InspectAnalyticsRowDTO;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.time.LocalDate;
+import java.time.LocalTime;
+import java.util.*;
+import java.util.concurrent.ForkJoinPool;
+
+// An in-memory InspectColumns copy of the inspect table for ad-hoc analytics (group by route, bus,
+// inspector, date or hour with sums and averages) without touching the database. It is loaded once, then a
+// background thread follows inspect_change, the log InspectService appends to in the same transaction as
+// every write, and reloads just the inspections that changed.
+//
+// Sequence numbers can commit out of order, so every refresh re-reads the log from cursor-lookback entries
+// below the cursor and applies the ones it has not seen. When the log was pruned past the cursor the snapshot
+// is rebuilt from scratch; a gap left by a rolled-back write can trigger that too, which only costs a reload.
+@Service
+public class InspectColumnStore {
+
+    private static final Logger logger = LoggerFactory.getLogger(InspectColumnStore.class);
+    private static final int RELOAD_BATCH = 500;
+    private static final String SELECT_COLUMNS = "SELECT inspect_id, inspector_id, bus_id, route_id, inspect_date,"
+            + " inspect_time, no_fraud_detected, no_of_passengers FROM inspect";
+
+    public enum Dimension {
+        ROUTE(InspectColumns.Column.ROUTE_ID), BUS(InspectColumns.Column.BUS_ID),
+        INSPECTOR(InspectColumns.Column.INSPECTOR_ID), DATE(InspectColumns.Column.INSPECT_DATE),
+        HOUR(InspectColumns.Column.INSPECT_HOUR);
+
+        private final InspectColumns.Column column;
+
+        Dimension(InspectColumns.Column column) {
+            this.column = column;
+        }
+
+        // null leaves the result ungrouped
+        public static Dimension parse(String value) {
+            return value == null ? null : parseEnum(Dimension.class, value, "groupBy");
+        }
+    }
+
+    public enum Measure {
+        FRAUD(InspectColumns.Column.FRAUD), PASSENGERS(InspectColumns.Column.PASSENGERS);
+
+        private final InspectColumns.Column column;
+
+        Measure(InspectColumns.Column column) {
+            this.column = column;
+        }
+
+        // Every measure when none is named
+        public static List<Measure> parse(List<String> values) {
+            if (values == null || values.isEmpty()) {
+                return List.of(values());
+            }
+            return values.stream().map(value -> parseEnum(Measure.class, value, "measure")).distinct().toList();
+        }
+    }
+
+    private final JdbcTemplate jdbcTemplate;
+    private final JdbcTemplate streamingTemplate;
+    private final boolean enabled;
+    private final long refreshMs;
+    private final int cursorLookback;
+    private final long retentionMs;
+    private final ForkJoinPool pool;
+    private final Counter reloadedRows;
+    private final Counter fullLoads;
+    private final Timer queries;
+
+    private volatile InspectColumns columns;
+    private volatile long cursor;
+    // Log entries within the lookback window that were already applied
+    private final NavigableSet<Long> recentlyApplied = new TreeSet<>();
+    private volatile boolean stopping;
+    private Thread refreshThread;
+
+    @Autowired
+    public InspectColumnStore(JdbcTemplate jdbcTemplate,
+                              @Value("${inspect.columnar.enabled:true}") boolean enabled,
+                              @Value("${inspect.columnar.refresh-ms:1000}") long refreshMs,
+                              @Value("${inspect.columnar.fetch-size:-2147483648}") int fetchSize,
+                              @Value("${inspect.columnar.cursor-lookback:256}") int cursorLookback,
+                              @Value("${inspect.columnar.change-retention-ms:86400000}") long retentionMs,
+                              @Value("${inspect.columnar.parallelism:0}") int parallelism,
+                              MeterRegistry meterRegistry) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.streamingTemplate = new JdbcTemplate(Objects.requireNonNull(jdbcTemplate.getDataSource()));
+        this.streamingTemplate.setFetchSize(fetchSize);
+        this.enabled = enabled;
+        this.refreshMs = Math.max(10, refreshMs);
+        this.cursorLookback = Math.max(0, cursorLookback);
+        this.retentionMs = retentionMs;
+        this.pool = parallelism > 0 ? new ForkJoinPool(parallelism) : ForkJoinPool.commonPool();
+        this.reloadedRows = Counter.builder("inspect.columnar.reloaded.rows").register(meterRegistry);
+        this.fullLoads = Counter.builder("inspect.columnar.full.loads").register(meterRegistry);
+        this.queries = Timer.builder("inspect.columnar.queries").register(meterRegistry);
+        Gauge.builder("inspect.columnar.rows", this, store -> store.columns != null ? store.columns.rows() : 0)
+                .register(meterRegistry);
+        Gauge.builder("inspect.columnar.bytes", this, store -> store.columns != null ? store.columns.bytes() : 0)
+                .register(meterRegistry);
+    }
+
+    // Must run in the transaction that changes the inspect row
+    public void recordChange(int inspectId) {
+        jdbcTemplate.update("INSERT INTO inspect_change (inspect_id, changed_at) VALUES (?, ?)",
+                inspectId, System.currentTimeMillis());
+    }
+
+    public void recordChanges(List<Integer> inspectIds) {
+        long changedAt = System.currentTimeMillis();
+        jdbcTemplate.batchUpdate("INSERT INTO inspect_change (inspect_id, changed_at) VALUES (?, ?)",
+                inspectIds.stream().map(inspectId -> new Object[]{inspectId, changedAt}).toList());
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public synchronized void start() {
+        if (!enabled || refreshThread != null) {
+            return;
+        }
+        stopping = false;
+        refreshThread = new Thread(() -> {
+            while (!stopping) {
+                try {
+                    refresh();
+                } catch (RuntimeException e) {
+                    logger.warn("Refreshing the inspection snapshot failed; retrying", e);
+                }
+                try {
+                    Thread.sleep(refreshMs);
+                } catch (InterruptedException e) {
+                    return;
+                }
+            }
+        }, "inspect-columnar-refresh");
+        refreshThread.setDaemon(true);
+        refreshThread.start();
+    }
+
+    @PreDestroy
+    public synchronized void shutdown() {
+        stopping = true;
+        if (refreshThread != null) {
+            refreshThread.interrupt();
+            refreshThread = null;
+        }
+        if (pool != ForkJoinPool.commonPool()) {
+            pool.shutdown();
+        }
+    }
+
+    // Bring the snapshot up to date: a full load the first time or after the log was pruned past the cursor,
+    // otherwise only the inspections logged since the last refresh
+    public synchronized void refresh() {
+        Long oldest = jdbcTemplate.queryForObject("SELECT MIN(seq) FROM inspect_change", Long.class);
+        if (columns == null || (oldest != null && oldest > cursor + 1)) {
+            load();
+        }
+        applyChanges();
+        columns.compactIfNeeded();
+    }
+
+    private void load() {
+        long started = System.currentTimeMillis();
+        // Taken before the scan: changes committed during it are applied again afterwards
+        long loadedCursor = jdbcTemplate.queryForObject("SELECT COALESCE(MAX(seq), 0) FROM inspect_change", Long.class);
+        long count = jdbcTemplate.queryForObject("SELECT COUNT(*) FROM inspect", Long.class);
+        InspectColumns loaded = new InspectColumns((int) Math.min(Integer.MAX_VALUE - 8, count + count / 8));
+        streamingTemplate.query(SELECT_COLUMNS + " ORDER BY inspect_id", row -> {
+            upsert(loaded, row);
+        });
+        columns = loaded;
+        cursor = loadedCursor;
+        recentlyApplied.clear();
+        fullLoads.increment();
+        logger.info("Loaded {} inspections into the columnar snapshot ({} MB) in {} ms", loaded.rows(),
+                loaded.bytes() >> 20, System.currentTimeMillis() - started);
+    }
+
+    private void applyChanges() {
+        Set<Integer> changed = new TreeSet<>();
+        long[] newest = {cursor};
+        jdbcTemplate.query("SELECT seq, inspect_id FROM inspect_change WHERE seq > ?", row -> {
+            long seq = row.getLong(1);
+            if (recentlyApplied.add(seq)) {
+                changed.add(row.getInt(2));
+                newest[0] = Math.max(newest[0], seq);
+            }
+        }, Math.max(0, cursor - cursorLookback));
+        if (changed.isEmpty()) {
+            return;
+        }
+
+        List<Integer> ids = new ArrayList<>(changed);
+        for (int from = 0; from < ids.size(); from += RELOAD_BATCH) {
+            List<Integer> batch = ids.subList(from, Math.min(ids.size(), from + RELOAD_BATCH));
+            Set<Integer> missing = new HashSet<>(batch);
+            String placeholders = String.join(",", Collections.nCopies(batch.size(), "?"));
+            jdbcTemplate.query(SELECT_COLUMNS + " WHERE inspect_id IN (" + placeholders + ")", row -> {
+                missing.remove(row.getInt(1));
+                upsert(columns, row);
+            }, batch.toArray());
+            missing.forEach(columns::delete);
+        }
+        reloadedRows.increment(ids.size());
+        cursor = newest[0];
+        recentlyApplied.headSet(cursor - cursorLookback, true).clear();
+    }
+
+    private static void upsert(InspectColumns target, ResultSet row) throws SQLException {
+        LocalDate date = row.getObject(5, LocalDate.class);
+        LocalTime time = row.getObject(6, LocalTime.class);
+        target.upsert(row.getInt(1), row.getInt(2), row.getInt(3), row.getInt(4),
+                date != null ? (int) date.toEpochDay() : InspectColumns.NULL,
+                time != null ? time.toSecondOfDay() : InspectColumns.NULL,
+                row.getInt(7), row.getInt(8));
+    }
+
+    // Log entries every snapshot has already applied are no longer needed; a snapshot that falls further
+    // behind than the retention reloads fully
+    @Scheduled(fixedDelayString = "${inspect.columnar.prune-interval-ms:600000}")
+    public void pruneChanges() {
+        jdbcTemplate.update("DELETE FROM inspect_change WHERE changed_at < ?", System.currentTimeMillis() - retentionMs);
+    }
+
+    // from and to are inclusive dates, hourFrom and hourTo inclusive hours of the day; every filter is optional
+    public List<InspectAnalyticsRowDTO> query(Dimension groupBy, List<Measure> measures, LocalDate from, LocalDate to,
+                                              Integer routeId, Integer busId, Integer inspectorId,
+                                              Integer hourFrom, Integer hourTo) {
+        InspectColumns snapshot = columns;
+        if (!enabled) {
+            throw new IllegalStateException("Inspection analytics are disabled");
+        }
+        if (snapshot == null) {
+            throw new IllegalStateException("Inspection analytics are still loading");
+        }
+        if (from != null && to != null && from.isAfter(to)) {
+            throw new IllegalArgumentException("from must not be after to");
+        }
+        if ((hourFrom != null && (hourFrom < 0 || hourFrom > 23)) || (hourTo != null && (hourTo < 0 || hourTo > 23))) {
+            throw new IllegalArgumentException("hours must be between 0 and 23");
+        }
+
+        List<InspectColumns.Filter> filters = new ArrayList<>();
+        if (from != null || to != null) {
+            // NULL dates sort below every day, so an open start still leaves them out
+            filters.add(new InspectColumns.Filter(InspectColumns.Column.INSPECT_DATE,
+                    from != null ? (int) from.toEpochDay() : InspectColumns.NULL + 1,
+                    to != null ? (int) to.toEpochDay() : Integer.MAX_VALUE));
+        }
+        if (routeId != null) {
+            filters.add(InspectColumns.Filter.equal(InspectColumns.Column.ROUTE_ID, routeId));
+        }
+        if (busId != null) {
+            filters.add(InspectColumns.Filter.equal(InspectColumns.Column.BUS_ID, busId));
+        }
+        if (inspectorId != null) {
+            filters.add(InspectColumns.Filter.equal(InspectColumns.Column.INSPECTOR_ID, inspectorId));
+        }
+        if (hourFrom != null || hourTo != null) {
+            filters.add(new InspectColumns.Filter(InspectColumns.Column.INSPECT_HOUR,
+                    hourFrom != null ? hourFrom : 0, hourTo != null ? hourTo : 23));
+        }
+        List<InspectColumns.Column> sums = measures.stream().map(measure -> measure.column).toList();
+
+        List<InspectColumns.Group> groups = queries.record(() ->
+                snapshot.aggregate(filters, groupBy != null ? groupBy.column : null, sums, pool));
+        List<InspectAnalyticsRowDTO> rows = new ArrayList<>(groups.size());
+        for (InspectColumns.Group group : groups) {
+            Map<String, Long> groupSums = new LinkedHashMap<>();
+            Map<String, Double> averages = new LinkedHashMap<>();
+            for (int i = 0; i < measures.size(); i++) {
+                String name = measures.get(i).name().toLowerCase(Locale.ROOT);
+                groupSums.put(name, group.sums()[i]);
+                averages.put(name, group.average(i));
+            }
+            rows.add(new InspectAnalyticsRowDTO(key(groupBy, group.key()), group.count(), groupSums, averages));
+        }
+        return rows;
+    }
+
+    private static Object key(Dimension groupBy, Integer key) {
+        if (key == null || key == InspectColumns.NULL || (groupBy == Dimension.HOUR && key < 0)) {
+            return null;
+        }
+        return groupBy == Dimension.DATE ? LocalDate.ofEpochDay(key) : key;
+    }
+
+    public int rows() {
+        InspectColumns snapshot = columns;
+        return snapshot != null ? snapshot.rows() : 0;
+    }
+
+    private static <E extends Enum<E>> E parseEnum(Class<E> type, String value, String name) {
+        try {
+            return Enum.valueOf(type, value.trim().toUpperCase(Locale.ROOT));
+        } catch (IllegalArgumentException e) {
+            throw new IllegalArgumentException("Unknown " + name + " '" + value + "'");
+        }
+    }
+}
@@ -0,0 +1,447 @@
+package com.example.onlineticketingsystem.service;
+
+import java.io.Serial;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+// The inspect table as one primitive int array per column: 32 bytes a row, against about 100 for a detached
+// Inspect with its Date and Time and several times that for a managed one. Dates are epoch days and times
+// seconds of the day, with NULL stored as Integer.MIN_VALUE. Rows are kept in inspect id order, so an update
+// finds its row with a binary search; a delete only clears the row's live bit until compactIfNeeded() drops it.
+//
+// aggregate() filters on inclusive value ranges, groups by one column and sums any others, splitting the rows
+// over a ForkJoinPool. Each task fills its own group table, which are merged at the end. Writers take the
+// write lock, queries the read lock.
+public final class InspectColumns {
+
+    public static final int NULL = Integer.MIN_VALUE;
+
+    public enum Column {
+        INSPECT_ID, INSPECTOR_ID, BUS_ID, ROUTE_ID, INSPECT_DATE, INSPECT_TIME, FRAUD, PASSENGERS,
+        // Derived from INSPECT_TIME: 0..23, or -1 when the time is not set
+        INSPECT_HOUR;
+
+        private int stored() {
+            return this == INSPECT_HOUR ? INSPECT_TIME.ordinal() : ordinal();
+        }
+    }
+
+    private static final int STORED = 8;
+    // Group keys spanning at most this many values are counted in plain arrays instead of a hash table
+    private static final int DENSE_RANGE = 1 << 16;
+    private static final int MIN_TASK_ROWS = 1 << 15;
+
+    private final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+    private int[][] columns = new int[STORED][];
+    private long[] live;
+    private int size;
+    private int deleted;
+    private final int[] min = new int[STORED];
+    private final int[] max = new int[STORED];
+
+    public InspectColumns(int initialCapacity) {
+        int capacity = Math.max(16, initialCapacity);
+        for (int c = 0; c < STORED; c++) {
+            columns[c] = new int[capacity];
+        }
+        live = new long[(capacity + 63) >>> 6];
+        Arrays.fill(min, Integer.MAX_VALUE);
+        Arrays.fill(max, Integer.MIN_VALUE);
+    }
+
+    // Inclusive range on one column; NULL values only match a range that starts at NULL
+    public record Filter(Column column, int min, int max) {
+
+        public static Filter equal(Column column, int value) {
+            return new Filter(column, value, value);
+        }
+    }
+
+    // key is null when the query has no group-by column; sums follow the order of the query's sum columns
+    public record Group(Integer key, long count, long[] sums) {
+
+        public double average(int sum) {
+            return count > 0 ? (double) sums[sum] / count : 0;
+        }
+    }
+
+    // Insert or overwrite the row with this inspect id
+    public void upsert(int inspectId, int inspectorId, int busId, int routeId, int epochDay, int secondOfDay,
+                       int fraud, int passengers) {
+        int[] values = {inspectId, inspectorId, busId, routeId, epochDay, secondOfDay, fraud, passengers};
+        lock.writeLock().lock();
+        try {
+            int row = size > 0 && inspectId > columns[0][size - 1] ? -(size + 1) : find(inspectId);
+            if (row >= 0) {
+                if (!isLive(row)) {
+                    setLive(row, true);
+                    deleted--;
+                }
+            } else {
+                // Ids normally arrive in increasing order and land at the end; a late commit of a lower id
+                // shifts the rows after it
+                row = -row - 1;
+                ensureCapacity(size + 1);
+                if (row < size) {
+                    for (int c = 0; c < STORED; c++) {
+                        System.arraycopy(columns[c], row, columns[c], row + 1, size - row);
+                    }
+                    for (int r = size; r > row; r--) {
+                        setLive(r, isLive(r - 1));
+                    }
+                }
+                setLive(row, true);
+                size++;
+            }
+            for (int c = 0; c < STORED; c++) {
+                columns[c][row] = values[c];
+                if (values[c] != NULL) {
+                    min[c] = Math.min(min[c], values[c]);
+                    max[c] = Math.max(max[c], values[c]);
+                }
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    public boolean delete(int inspectId) {
+        lock.writeLock().lock();
+        try {
+            int row = find(inspectId);
+            if (row < 0 || !isLive(row)) {
+                return false;
+            }
+            setLive(row, false);
+            deleted++;
+            return true;
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    // Drop deleted rows once they make up a quarter of the arrays
+    public void compactIfNeeded() {
+        lock.writeLock().lock();
+        try {
+            if (deleted == 0 || deleted * 4L < size) {
+                return;
+            }
+            int kept = 0;
+            for (int row = 0; row < size; row++) {
+                if (isLive(row)) {
+                    for (int c = 0; c < STORED; c++) {
+                        columns[c][kept] = columns[c][row];
+                    }
+                    kept++;
+                }
+            }
+            Arrays.fill(live, 0);
+            for (int row = 0; row < kept; row++) {
+                setLive(row, true);
+            }
+            size = kept;
+            deleted = 0;
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    public int rows() {
+        lock.readLock().lock();
+        try {
+            return size - deleted;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    // Bytes held by the arrays, including unused capacity
+    public long bytes() {
+        lock.readLock().lock();
+        try {
+            return (long) columns[0].length * STORED * Integer.BYTES + (long) live.length * Long.BYTES;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    public List<Group> aggregate(List<Filter> filters, Column groupBy, List<Column> sums, ForkJoinPool pool) {
+        lock.readLock().lock();
+        try {
+            Plan plan = new Plan(filters, groupBy, sums);
+            int tasks = Math.max(1, pool.getParallelism() * 4);
+            int chunk = Math.max(MIN_TASK_ROWS, (size + tasks - 1) / tasks);
+            Partial result = pool.invoke(new Scan(plan, 0, size, chunk));
+            return result.groups(groupBy != null);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    // The query compiled against the current arrays
+    private final class Plan {
+        private final int[][] filterColumns;
+        private final boolean[] filterHour;
+        private final int[] filterMin;
+        private final int[] filterMax;
+        private final int[] groupColumn;
+        private final boolean groupHour;
+        private final int denseBase;
+        private final int denseRange;
+        // Slot 0 of a dense table holds NULL keys, except for the derived hour, which has none
+        private final boolean nullSlot;
+        private final int[][] sumColumns;
+
+        private Plan(List<Filter> filters, Column groupBy, List<Column> sums) {
+            filterColumns = new int[filters.size()][];
+            filterHour = new boolean[filters.size()];
+            filterMin = new int[filters.size()];
+            filterMax = new int[filters.size()];
+            for (int i = 0; i < filters.size(); i++) {
+                Filter filter = filters.get(i);
+                filterColumns[i] = columns[filter.column().stored()];
+                filterHour[i] = filter.column() == Column.INSPECT_HOUR;
+                filterMin[i] = filter.min();
+                filterMax[i] = filter.max();
+            }
+            groupColumn = groupBy != null ? columns[groupBy.stored()] : null;
+            groupHour = groupBy == Column.INSPECT_HOUR;
+            nullSlot = groupBy != null && !groupHour;
+            if (groupBy == null) {
+                denseBase = 0;
+                denseRange = 1;
+            } else if (groupHour) {
+                denseBase = -1;
+                denseRange = 25;
+            } else {
+                int c = groupBy.stored();
+                long range = (long) max[c] - min[c] + 2;
+                // One extra slot in front for NULL
+                denseBase = min[c] == Integer.MAX_VALUE ? 0 : min[c] - 1;
+                denseRange = max[c] >= min[c] && range <= DENSE_RANGE ? (int) range : 0;
+            }
+            sumColumns = new int[sums.size()][];
+            for (int i = 0; i < sums.size(); i++) {
+                if (sums.get(i) == Column.INSPECT_HOUR) {
+                    throw new IllegalArgumentException("INSPECT_HOUR cannot be summed");
+                }
+                sumColumns[i] = columns[sums.get(i).stored()];
+            }
+        }
+
+        private boolean matches(int row) {
+            for (int f = 0; f < filterColumns.length; f++) {
+                int value = filterColumns[f][row];
+                if (filterHour[f]) {
+                    value = hour(value);
+                }
+                if (value < filterMin[f] || value > filterMax[f]) {
+                    return false;
+                }
+            }
+            return true;
+        }
+
+        private int key(int row) {
+            if (groupColumn == null) {
+                return 0;
+            }
+            int value = groupColumn[row];
+            return groupHour ? hour(value) : value;
+        }
+    }
+
+    private static int hour(int secondOfDay) {
+        return secondOfDay < 0 ? -1 : secondOfDay / 3600;
+    }
+
+    private final class Scan extends RecursiveTask<Partial> {
+        @Serial
+        private static final long serialVersionUID = 1L;
+
+        private final Plan plan;
+        private final int from;
+        private final int to;
+        private final int chunk;
+
+        private Scan(Plan plan, int from, int to, int chunk) {
+            this.plan = plan;
+            this.from = from;
+            this.to = to;
+            this.chunk = chunk;
+        }
+
+        @Override
+        protected Partial compute() {
+            if (to - from <= chunk) {
+                Partial partial = new Partial(plan);
+                for (int row = from; row < to; row++) {
+                    if (isLive(row) && plan.matches(row)) {
+                        partial.add(plan.key(row), row);
+                    }
+                }
+                return partial;
+            }
+            int middle = (from + to) >>> 1;
+            Scan left = new Scan(plan, from, middle, chunk);
+            left.fork();
+            Partial right = new Scan(plan, middle, to, chunk).compute();
+            return left.join().merge(right);
+        }
+    }
+
+    // Counts and sums per group key: indexed by key - base when the key range is small, otherwise through an
+    // open-addressing table from key to slot
+    private static final class Partial {
+        private final Plan plan;
+        private final boolean dense;
+        private int[] keys;
+        private int[] slots;
+        private int groups;
+        private long[] counts;
+        private long[][] sums;
+
+        private Partial(Plan plan) {
+            this.plan = plan;
+            this.dense = plan.denseRange > 0;
+            int capacity = dense ? plan.denseRange : 64;
+            counts = new long[capacity];
+            sums = new long[plan.sumColumns.length][capacity];
+            if (!dense) {
+                keys = new int[capacity];
+                slots = new int[capacity * 2];
+                Arrays.fill(slots, -1);
+            }
+        }
+
+        private void add(int key, int row) {
+            int slot = dense ? (plan.nullSlot && key == NULL ? 0 : key - plan.denseBase) : slot(key);
+            counts[slot]++;
+            for (int s = 0; s < sums.length; s++) {
+                int value = plan.sumColumns[s][row];
+                if (value != NULL) {
+                    sums[s][slot] += value;
+                }
+            }
+        }
+
+        private int slot(int key) {
+            int mask = slots.length - 1;
+            for (int i = mix(key) & mask; ; i = (i + 1) & mask) {
+                int slot = slots[i];
+                if (slot < 0) {
+                    if (groups == keys.length) {
+                        grow();
+                        return slot(key);
+                    }
+                    slots[i] = groups;
+                    keys[groups] = key;
+                    return groups++;
+                }
+                if (keys[slot] == key) {
+                    return slot;
+                }
+            }
+        }
+
+        private void grow() {
+            int capacity = keys.length * 2;
+            keys = Arrays.copyOf(keys, capacity);
+            counts = Arrays.copyOf(counts, capacity);
+            for (int s = 0; s < sums.length; s++) {
+                sums[s] = Arrays.copyOf(sums[s], capacity);
+            }
+            slots = new int[capacity * 2];
+            Arrays.fill(slots, -1);
+            int mask = slots.length - 1;
+            for (int slot = 0; slot < groups; slot++) {
+                int i = mix(keys[slot]) & mask;
+                while (slots[i] >= 0) {
+                    i = (i + 1) & mask;
+                }
+                slots[i] = slot;
+            }
+        }
+
+        private static int mix(int key) {
+            int h = key * 0x9E3779B9;
+            return h ^ (h >>> 16);
+        }
+
+        private Partial merge(Partial other) {
+            if (dense) {
+                for (int slot = 0; slot < counts.length; slot++) {
+                    counts[slot] += other.counts[slot];
+                    for (int s = 0; s < sums.length; s++) {
+                        sums[s][slot] += other.sums[s][slot];
+                    }
+                }
+            } else {
+                for (int from = 0; from < other.groups; from++) {
+                    int slot = slot(other.keys[from]);
+                    counts[slot] += other.counts[from];
+                    for (int s = 0; s < sums.length; s++) {
+                        sums[s][slot] += other.sums[s][from];
+                    }
+                }
+            }
+            return this;
+        }
+
+        private List<Group> groups(boolean grouped) {
+            List<Group> result = new ArrayList<>();
+            int slotCount = dense ? counts.length : groups;
+            for (int slot = 0; slot < slotCount; slot++) {
+                if (counts[slot] == 0) {
+                    continue;
+                }
+                long[] groupSums = new long[sums.length];
+                for (int s = 0; s < sums.length; s++) {
+                    groupSums[s] = sums[s][slot];
+                }
+                Integer key = null;
+                if (grouped) {
+                    key = dense ? (slot == 0 && plan.nullSlot ? NULL : slot + plan.denseBase) : keys[slot];
+                }
+                result.add(new Group(key, counts[slot], groupSums));
+            }
+            if (grouped) {
+                result.sort(Comparator.comparing(Group::key));
+            }
+            return result;
+        }
+    }
+
+    private int find(int inspectId) {
+        return Arrays.binarySearch(columns[0], 0, size, inspectId);
+    }
+
+    private void ensureCapacity(int capacity) {
+        if (capacity <= columns[0].length) {
+            return;
+        }
+        int grown = Math.max(capacity, columns[0].length + (columns[0].length >> 1));
+        for (int c = 0; c < STORED; c++) {
+            columns[c] = Arrays.copyOf(columns[c], grown);
+        }
+        live = Arrays.copyOf(live, (grown + 63) >>> 6);
+    }
+
+    private boolean isLive(int row) {
+        return (live[row >>> 6] & (1L << row)) != 0;
+    }
+
+    private void setLive(int row, boolean value) {
+        if (value) {
+            live[row >>> 6] |= 1L << row;
+        } else {
+            live[row >>> 6] &= ~(1L << row);
+        }
+    }
+}
@@ -0,0 +1,386 @@
+package com.example.onlineticketingsystem.service;
+
+import com.example.onlineticketingsystem.DTO.InspectRollupDTO;
+import com.example.onlineticketingsystem.DTO.InspectRollupReportDTO;
+import com.example.onlineticketingsystem.DTO.RollupBackfillDTO;
+import com.example.onlineticketingsystem.entity.Inspect;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.dao.ConcurrencyFailureException;
+import org.springframework.dao.DuplicateKeyException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.sql.Date;
+import java.time.DayOfWeek;
+import java.time.LocalDate;
+import java.time.temporal.ChronoUnit;
+import java.time.temporal.TemporalAdjusters;
+import java.util.*;
+
+// Daily inspection totals per (date, route, bus, inspector) in inspect_daily_rollup, so range reports read
+// at most one row per day and combination instead of every inspection. InspectService applies each write's
+// difference in the same transaction as the inspect row. A backfill rebuilds the rollups of past days from
+// the inspect table a few days per transaction, recording its progress in rollup_backfill_checkpoint so it
+// resumes where it stopped after a restart.
+@Service
+public class InspectRollupService {
+
+    private static final Logger logger = LoggerFactory.getLogger(InspectRollupService.class);
+    private static final String BACKFILL_JOB = "inspect_daily_rollup";
+    private static final int BACKFILL_RETRIES = 3;
+
+    public enum Granularity {
+        DAY, WEEK;
+
+        public static Granularity parse(String value) {
+            return value == null ? DAY : parseEnum(Granularity.class, value, "granularity");
+        }
+    }
+
+    public enum GroupBy {
+        NONE(null), ROUTE("route_id"), BUS("bus_id"), INSPECTOR("inspector_id");
+
+        private final String column;
+
+        GroupBy(String column) {
+            this.column = column;
+        }
+
+        public static GroupBy parse(String value) {
+            return value == null ? NONE : parseEnum(GroupBy.class, value, "groupBy");
+        }
+    }
+
+    private final JdbcTemplate jdbcTemplate;
+    private final TransactionTemplate transactionTemplate;
+    private final boolean backfillOnStartup;
+    private final int daysPerBatch;
+    private final int maxRangeDays;
+    private final Counter deltas;
+    private final Counter rebuiltDays;
+
+    private volatile Boolean backfillComplete;
+    private volatile long daysRebuilt;
+    private volatile boolean stopping;
+    private Thread backfillThread;
+
+    private record Key(LocalDate date, int routeId, int busId, int inspectorId) implements Comparable<Key> {
+
+        private static final Comparator<Key> ORDER = Comparator.comparing(Key::date).thenComparingInt(Key::routeId)
+                .thenComparingInt(Key::busId).thenComparingInt(Key::inspectorId);
+
+        @Override
+        public int compareTo(Key other) {
+            return ORDER.compare(this, other);
+        }
+    }
+
+    @Autowired
+    public InspectRollupService(JdbcTemplate jdbcTemplate, PlatformTransactionManager transactionManager,
+                                @Value("${inspect.rollup.backfill-on-startup:true}") boolean backfillOnStartup,
+                                @Value("${inspect.rollup.backfill-days-per-batch:7}") int daysPerBatch,
+                                @Value("${inspect.rollup.max-range-days:1100}") int maxRangeDays,
+                                MeterRegistry meterRegistry) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.backfillOnStartup = backfillOnStartup;
+        this.daysPerBatch = Math.max(1, daysPerBatch);
+        this.maxRangeDays = maxRangeDays;
+        this.deltas = Counter.builder("inspect.rollup.deltas").register(meterRegistry);
+        this.rebuiltDays = Counter.builder("inspect.rollup.backfill.days").register(meterRegistry);
+    }
+
+    // Replace one inspection's contribution with another; either may be null for an insert or a delete. Must
+    // run in the transaction that changes the inspect row. Rows are locked in key order to avoid deadlocks.
+    public void apply(Inspect removed, Inspect added) {
+        Map<Key, long[]> changes = new TreeMap<>();
+        collect(changes, removed, -1);
+        collect(changes, added, 1);
+        changes.forEach((key, change) -> {
+            if (change[0] != 0 || change[1] != 0 || change[2] != 0) {
+                add(key, change);
+            }
+        });
+    }
+
+    // Several inserts at once, as bulk ingestion writes them: one rollup update per key
+    public void addAll(List<Inspect> added) {
+        Map<Key, long[]> changes = new TreeMap<>();
+        for (Inspect inspect : added) {
+            collect(changes, inspect, 1);
+        }
+        changes.forEach(this::add);
+    }
+
+    private static void collect(Map<Key, long[]> changes, Inspect inspect, int sign) {
+        if (inspect == null || inspect.getInspectDate() == null) {
+            return;
+        }
+        Key key = new Key(inspect.getInspectDate().toLocalDate(), inspect.getRouteId(), inspect.getBusId(), inspect.getInspectorId());
+        long[] change = changes.computeIfAbsent(key, k -> new long[3]);
+        change[0] += sign;
+        change[1] += (long) sign * inspect.getNoFraudDetected();
+        change[2] += (long) sign * inspect.getNoOfPassengers();
+    }
+
+    private void add(Key key, long[] change) {
+        Object[] keyArgs = {Date.valueOf(key.date()), key.routeId(), key.busId(), key.inspectorId()};
+        String where = " WHERE inspect_date = ? AND route_id = ? AND bus_id = ? AND inspector_id = ?";
+        String update = "UPDATE inspect_daily_rollup SET inspections = inspections + ?, fraud_count = fraud_count + ?,"
+                + " passengers = passengers + ?" + where;
+        Object[] updateArgs = {change[0], change[1], change[2], keyArgs[0], keyArgs[1], keyArgs[2], keyArgs[3]};
+        if (jdbcTemplate.update(update, updateArgs) == 0) {
+            try {
+                jdbcTemplate.update("INSERT INTO inspect_daily_rollup (inspect_date, route_id, bus_id, inspector_id,"
+                        + " inspections, fraud_count, passengers) VALUES (?, ?, ?, ?, ?, ?, ?)",
+                        keyArgs[0], keyArgs[1], keyArgs[2], keyArgs[3], change[0], change[1], change[2]);
+            } catch (DuplicateKeyException e) {
+                jdbcTemplate.update(update, updateArgs);
+            }
+        }
+        if (change[0] < 0) {
+            jdbcTemplate.update("DELETE FROM inspect_daily_rollup" + where + " AND inspections = 0", keyArgs);
+        }
+        deltas.increment();
+    }
+
+    // Totals per day or week between from and to (inclusive), optionally grouped by route, bus or inspector
+    // and filtered to one of each
+    public InspectRollupReportDTO report(LocalDate from, LocalDate to, Granularity granularity, GroupBy groupBy,
+                                         Integer routeId, Integer busId, Integer inspectorId) {
+        if (from == null || to == null) {
+            throw new IllegalArgumentException("from and to are required");
+        }
+        if (from.isAfter(to)) {
+            throw new IllegalArgumentException("from must not be after to");
+        }
+        if (ChronoUnit.DAYS.between(from, to) >= maxRangeDays) {
+            throw new IllegalArgumentException("The range may cover at most " + maxRangeDays + " days");
+        }
+
+        StringBuilder sql = new StringBuilder("SELECT inspect_date, ")
+                .append(groupBy.column != null ? groupBy.column : "NULL")
+                .append(", SUM(inspections), SUM(fraud_count), SUM(passengers) FROM inspect_daily_rollup"
+                        + " WHERE inspect_date >= ? AND inspect_date <= ?");
+        List<Object> args = new ArrayList<>(List.of(Date.valueOf(from), Date.valueOf(to)));
+        filter(sql, args, "route_id", routeId);
+        filter(sql, args, "bus_id", busId);
+        filter(sql, args, "inspector_id", inspectorId);
+        sql.append(" GROUP BY inspect_date");
+        if (groupBy.column != null) {
+            sql.append(", ").append(groupBy.column);
+        }
+
+        // Days are folded into their week here, which keeps the SQL the same on every database
+        Comparator<InspectRollupDTO> order = Comparator.comparing(InspectRollupDTO::getPeriodStart)
+                .thenComparing(InspectRollupDTO::getGroupId, Comparator.nullsFirst(Comparator.naturalOrder()));
+        Map<InspectRollupDTO, InspectRollupDTO> periods = new TreeMap<>(order);
+        jdbcTemplate.query(sql.toString(), row -> {
+            LocalDate day = row.getDate(1).toLocalDate();
+            LocalDate start = granularity == Granularity.WEEK ? day.with(TemporalAdjusters.previousOrSame(DayOfWeek.MONDAY)) : day;
+            Integer groupId = groupBy.column != null ? row.getInt(2) : null;
+            InspectRollupDTO period = new InspectRollupDTO(start, groupId, 0, 0, 0, 0);
+            period = periods.computeIfAbsent(period, p -> p);
+            period.setInspections(period.getInspections() + row.getLong(3));
+            period.setFraudCount(period.getFraudCount() + row.getLong(4));
+            period.setPassengers(period.getPassengers() + row.getLong(5));
+        }, args.toArray());
+
+        List<InspectRollupDTO> rows = new ArrayList<>(periods.keySet());
+        rows.forEach(period -> period.setFraudRate(period.getPassengers() > 0
+                ? (double) period.getFraudCount() / period.getPassengers() : 0));
+        return new InspectRollupReportDTO(from, to, granularity.name().toLowerCase(Locale.ROOT),
+                groupBy.name().toLowerCase(Locale.ROOT), isBackfillComplete(), rows);
+    }
+
+    private static void filter(StringBuilder sql, List<Object> args, String column, Integer value) {
+        if (value != null) {
+            sql.append(" AND ").append(column).append(" = ?");
+            args.add(value);
+        }
+    }
+
+    // Inspections per route on one day, for routes that had any
+    public Map<Integer, Long> inspectionsByRoute(LocalDate day) {
+        Map<Integer, Long> byRoute = new LinkedHashMap<>();
+        jdbcTemplate.query("SELECT route_id, SUM(inspections) FROM inspect_daily_rollup WHERE inspect_date = ?"
+                + " GROUP BY route_id ORDER BY route_id", row -> {
+            byRoute.put(row.getInt(1), row.getLong(2));
+        }, Date.valueOf(day));
+        return byRoute;
+    }
+
+    // True once every day that existed when the backfill started has been rebuilt; later days are kept
+    // current by apply()
+    public boolean isBackfillComplete() {
+        Boolean complete = backfillComplete;
+        if (complete == null) {
+            complete = backfillStatus().isComplete();
+            backfillComplete = complete;
+        }
+        return complete;
+    }
+
+    public RollupBackfillDTO backfillStatus() {
+        List<RollupBackfillDTO> found = jdbcTemplate.query(
+                "SELECT next_date, end_date FROM rollup_backfill_checkpoint WHERE job = ?", (row, i) -> {
+                    LocalDate next = row.getDate(1).toLocalDate();
+                    LocalDate end = row.getDate(2).toLocalDate();
+                    return new RollupBackfillDTO(isRunning(), next.isAfter(end), next, end, daysRebuilt);
+                }, BACKFILL_JOB);
+        return found.isEmpty() ? new RollupBackfillDTO(isRunning(), false, null, null, daysRebuilt) : found.get(0);
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void backfillOnStartup() {
+        if (backfillOnStartup) {
+            startBackfill(false);
+        }
+    }
+
+    // Start the backfill in the background. Without restart an unfinished run continues and a finished one is
+    // left alone; with restart every day from the first to the last inspection is rebuilt again.
+    public synchronized RollupBackfillDTO startBackfill(boolean restart) {
+        if (!isRunning()) {
+            plan(restart);
+            if (!isBackfillComplete()) {
+                stopping = false;
+                backfillThread = new Thread(() -> {
+                    try {
+                        runBackfill();
+                    } catch (RuntimeException e) {
+                        logger.error("Inspection rollup backfill failed; it resumes on the next start", e);
+                    }
+                }, "inspect-rollup-backfill");
+                backfillThread.setDaemon(true);
+                backfillThread.start();
+            }
+        }
+        return backfillStatus();
+    }
+
+    // Record the range to rebuild unless a run is already recorded
+    public void plan(boolean restart) {
+        transactionTemplate.executeWithoutResult(status -> {
+            boolean exists = jdbcTemplate.queryForObject(
+                    "SELECT COUNT(*) FROM rollup_backfill_checkpoint WHERE job = ?", Integer.class, BACKFILL_JOB) > 0;
+            if (exists && !restart) {
+                return;
+            }
+            Map<String, Object> range = jdbcTemplate.queryForMap("SELECT MIN(inspect_date) AS first_day, MAX(inspect_date) AS last_day FROM inspect");
+            Date first = (Date) range.get("first_day");
+            Date last = (Date) range.get("last_day");
+            if (first == null) {
+                // Nothing to rebuild: an empty range is already complete
+                first = Date.valueOf(LocalDate.now());
+                last = Date.valueOf(LocalDate.now().minusDays(1));
+            }
+            long now = System.currentTimeMillis();
+            if (exists) {
+                jdbcTemplate.update("UPDATE rollup_backfill_checkpoint SET next_date = ?, end_date = ?, updated_at = ? WHERE job = ?",
+                        first, last, now, BACKFILL_JOB);
+            } else {
+                jdbcTemplate.update("INSERT INTO rollup_backfill_checkpoint (job, next_date, end_date, updated_at) VALUES (?, ?, ?, ?)",
+                        BACKFILL_JOB, first, last, now);
+            }
+            logger.info("Inspection rollup backfill planned from {} to {}", first, last);
+        });
+        backfillComplete = null;
+    }
+
+    // Rebuild the planned days on the calling thread; returns how many days were rebuilt. Each batch replaces
+    // the rollups of its days with sums from the inspect table and moves the checkpoint in one transaction.
+    public long runBackfill() {
+        long days = 0;
+        int failures = 0;
+        while (!stopping) {
+            long rebuilt;
+            try {
+                rebuilt = transactionTemplate.execute(status -> rebuildNextBatch());
+                failures = 0;
+            } catch (ConcurrencyFailureException e) {
+                // Lost a lock to inspection writes on the same days; the batch is simply run again
+                if (++failures > BACKFILL_RETRIES) {
+                    throw e;
+                }
+                logger.warn("Inspection rollup backfill batch conflicted with concurrent writes; retrying", e);
+                continue;
+            }
+            if (rebuilt == 0) {
+                backfillComplete = true;
+                logger.info("Inspection rollup backfill complete");
+                break;
+            }
+            days += rebuilt;
+            daysRebuilt += rebuilt;
+        }
+        return days;
+    }
+
+    private long rebuildNextBatch() {
+        List<Date[]> checkpoint = jdbcTemplate.query(
+                "SELECT next_date, end_date FROM rollup_backfill_checkpoint WHERE job = ? FOR UPDATE",
+                (row, i) -> new Date[]{row.getDate(1), row.getDate(2)}, BACKFILL_JOB);
+        if (checkpoint.isEmpty()) {
+            return 0;
+        }
+        LocalDate next = checkpoint.get(0)[0].toLocalDate();
+        LocalDate end = checkpoint.get(0)[1].toLocalDate();
+        if (next.isAfter(end)) {
+            return 0;
+        }
+        LocalDate batchEnd = next.plusDays(daysPerBatch - 1L);
+        if (batchEnd.isAfter(end)) {
+            batchEnd = end;
+        }
+        Date first = Date.valueOf(next);
+        Date last = Date.valueOf(batchEnd);
+        jdbcTemplate.update("DELETE FROM inspect_daily_rollup WHERE inspect_date >= ? AND inspect_date <= ?", first, last);
+        jdbcTemplate.update("INSERT INTO inspect_daily_rollup (inspect_date, route_id, bus_id, inspector_id, inspections,"
+                + " fraud_count, passengers) SELECT inspect_date, route_id, bus_id, inspector_id, COUNT(*),"
+                + " SUM(no_fraud_detected), SUM(no_of_passengers) FROM inspect WHERE inspect_date >= ? AND inspect_date <= ?"
+                + " GROUP BY inspect_date, route_id, bus_id, inspector_id", first, last);
+        jdbcTemplate.update("UPDATE rollup_backfill_checkpoint SET next_date = ?, updated_at = ? WHERE job = ?",
+                Date.valueOf(batchEnd.plusDays(1)), System.currentTimeMillis(), BACKFILL_JOB);
+        long rebuilt = ChronoUnit.DAYS.between(next, batchEnd) + 1;
+        rebuiltDays.increment(rebuilt);
+        return rebuilt;
+    }
+
+    // The current batch is left to finish; whatever is not committed is rebuilt on the next start
+    @PreDestroy
+    public void shutdown() {
+        stopping = true;
+        Thread thread = backfillThread;
+        if (thread != null) {
+            try {
+                thread.join(30_000);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+    }
+
+    private boolean isRunning() {
+        Thread thread = backfillThread;
+        return thread != null && thread.isAlive();
+    }
+
+    private static <E extends Enum<E>> E parseEnum(Class<E> type, String value, String name) {
+        try {
+            return Enum.valueOf(type, value.trim().toUpperCase(Locale.ROOT));
+        } catch (IllegalArgumentException e) {
+            throw new IllegalArgumentException("Unknown " + name + " '" + value + "'");
+        }
+    }
+}
@@ -1,17 +1,21 @@
 package com.example.onlineticketingsystem.service;
 
 import com.example.onlineticketingsystem.DTO.InspectDTO;
+import com.example.onlineticketingsystem.DTO.InspectHistoryPageDTO;
 import com.example.onlineticketingsystem.entity.Inspect;
 import com.example.onlineticketingsystem.repo.InspectRepo;
+import com.example.onlineticketingsystem.repo.JdbcInspectHistoryRepo;
 import jakarta.transaction.Transactional;
 import org.modelmapper.ModelMapper;
 import org.modelmapper.TypeToken;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
 
 import java.sql.Date;
 import java.time.LocalDate;
 import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 
@@ -23,9 +27,25 @@ public class InspectService {
     private InspectRepo inspectRepo;
     @Autowired
     private ModelMapper modelMapper;
+    @Autowired
+    private FraudCounterService fraudCounterService;
+    @Autowired
+    private InspectRollupService inspectRollupService;
+    @Autowired
+    private InspectColumnStore inspectColumnStore;
+    @Autowired
+    private FraudRateSketchService fraudRateSketchService;
+    @Autowired
+    private JdbcInspectHistoryRepo jdbcInspectHistoryRepo;
+
+    @Value("${inspect.history.default-limit:50}")
+    private int historyDefaultLimit;
+
+    @Value("${inspect.history.max-limit:500}")
+    private int historyMaxLimit;
 
     public InspectDTO saveInspect(InspectDTO inspectDTO){
-        inspectRepo.save(modelMapper.map(inspectDTO, Inspect.class));
+        store(modelMapper.map(inspectDTO, Inspect.class));
         return inspectDTO;
     }
 
@@ -34,45 +54,84 @@ public class InspectService {
         return modelMapper.map(inspectList, new TypeToken<List<Inspect>>(){}.getType());
     }
 
+    // The stored row, not the request body, decides what comes off the fraud counters, rollups and sketches
     public boolean delete(InspectDTO inspectDTO){
-        inspectRepo.delete(modelMapper.map(inspectDTO, Inspect.class));
+        inspectRepo.findForUpdate(inspectDTO.getInspectId()).ifPresent(existing -> {
+            inspectRepo.delete(existing);
+            fraudCounterService.apply(FraudCounterService.Contribution.of(existing), null);
+            inspectRollupService.apply(existing, null);
+            fraudRateSketchService.apply(existing, null);
+            inspectColumnStore.recordChange(existing.getInspectId());
+        });
         return true;
     }
 
-    public List<Inspect> getInspectsByInspectorId(int inspectorId) {
-        return inspectRepo.findByInspectorId(inspectorId);
+    // The inspector's whole history, newest first, one page at a time
+    public InspectHistoryPageDTO getInspectsByInspectorId(int inspectorId, String cursor, Integer limit) {
+        return jdbcInspectHistoryRepo.page(inspectorId, null, null, true, cursor, historyLimit(limit));
     }
 
     public InspectDTO updateInspect(InspectDTO inspectDTO){
-        inspectRepo.save(modelMapper.map(inspectDTO,Inspect.class));
+        store(modelMapper.map(inspectDTO,Inspect.class));
         return inspectDTO;
     }
 
-    public int fraudCount() {
-        int sum = 0;
-        List<Inspect> inspectList = inspectRepo.findAll();
-        for (Inspect inspect : inspectList) {
-            sum += inspect.getNoFraudDetected();
+    // save() with an existing id overwrites that row, so its old values are taken off the counters and
+    // rollups first. They are copied before save() writes the new values onto the loaded entity (ModelMapper
+    // would hand back the same instance).
+    private void store(Inspect inspect) {
+        Inspect previous = null;
+        if (inspect.getInspectId() != 0) {
+            previous = inspectRepo.findForUpdate(inspect.getInspectId())
+                    .map(existing -> new Inspect(existing.getInspectId(), existing.getInspectorId(), existing.getBusId(),
+                            existing.getRouteId(), existing.getInspectDate(), existing.getInspectTime(),
+                            existing.getNoFraudDetected(), existing.getNoOfPassengers()))
+                    .orElse(null);
         }
-        return sum;
+        inspectRepo.save(inspect);
+        fraudCounterService.apply(FraudCounterService.Contribution.of(previous), FraudCounterService.Contribution.of(inspect));
+        inspectRollupService.apply(previous, inspect);
+        fraudRateSketchService.apply(previous, inspect);
+        inspectColumnStore.recordChange(inspect.getInspectId());
     }
 
-    public Map<Integer, Integer> fraudByRoute() {
-        Map<Integer, Integer> fraudCountByRouteId = new HashMap<>();
+    // Unfiltered reports come from the fraud counters; filtered ones are summed by the database. from and to
+    // are inclusive and every filter is optional.
+    public long fraudCount(LocalDate from, LocalDate to, Integer inspectorId) {
+        checkRange(from, to);
+        if (from == null && to == null && inspectorId == null) {
+            return fraudCounterService.totalFraudCount();
+        }
+        return inspectRepo.sumFraud(sqlDate(from), sqlDate(to), inspectorId);
+    }
 
-        List<Inspect> inspectList = inspectRepo.findAll();
+    public Map<Integer, Long> fraudByRoute(LocalDate from, LocalDate to, Integer inspectorId) {
+        checkRange(from, to);
+        if (from == null && to == null && inspectorId == null) {
+            return fraudCounterService.fraudCountByRoute();
+        }
+        Map<Integer, Long> fraudCountByRouteId = new LinkedHashMap<>();
+        for (InspectRepo.RouteFraud route : inspectRepo.sumFraudByRoute(sqlDate(from), sqlDate(to), inspectorId)) {
+            fraudCountByRouteId.put(route.getRouteId(), route.getFraudCount());
+        }
+        return fraudCountByRouteId;
+    }
 
-        for (Inspect inspect : inspectList) {
-            int routeId = inspect.getRouteId();
-            int currentCount = fraudCountByRouteId.getOrDefault(routeId, 0);
-            int newCount = currentCount + inspect.getNoFraudDetected();
-            fraudCountByRouteId.put(routeId, newCount);
+    private static void checkRange(LocalDate from, LocalDate to) {
+        if (from != null && to != null && from.isAfter(to)) {
+            throw new IllegalArgumentException("from must not be after to");
         }
+    }
 
-        return fraudCountByRouteId;
+    private static Date sqlDate(LocalDate date) {
+        return date != null ? Date.valueOf(date) : null;
     }
 
+    // Read from the daily rollups once they have been backfilled
     public Map<Integer, Long> getCountOfInspectorIdByRouteToday() {
+        if (inspectRollupService.isBackfillComplete()) {
+            return inspectRollupService.inspectionsByRoute(LocalDate.now());
+        }
         Map<Integer, Long> countByRoute = new HashMap<>();
 
         List<Inspect> inspectList = inspectRepo.findByInspectDate(Date.valueOf(LocalDate.now()));
@@ -84,22 +143,26 @@ public class InspectService {
 
         return countByRoute;
     }
-    public List<Inspect> getInspectHistoryByInspectorId(int inspectorId) {
-        LocalDate firstDayOfYear = LocalDate.of(LocalDate.now().getYear(), 1, 1);
-        Date sqlFirstDayOfYear = Date.valueOf(firstDayOfYear);
-        Date sqlNow = Date.valueOf(LocalDate.now());
 
-        return inspectRepo.findByInspectorIdAndInspectDateBetween(inspectorId, sqlFirstDayOfYear, sqlNow);
+    // This year up to today, newest first
+    public InspectHistoryPageDTO getInspectHistoryByInspectorId(int inspectorId, String cursor, Integer limit) {
+        LocalDate today = LocalDate.now();
+        return jdbcInspectHistoryRepo.page(inspectorId, today.withDayOfYear(1), today, true, cursor, historyLimit(limit));
     }
 
-    public List<Inspect> getUpcomingInspectByInspectorId(int id) {
-        LocalDate tomorrow = LocalDate.now().plusDays(1);
-        LocalDate endOfYear = LocalDate.of(LocalDate.now().getYear(), 12, 31);
-
-        Date sqlTomorrow = Date.valueOf(tomorrow);
-        Date sqlEndOfYear = Date.valueOf(endOfYear);
+    // From tomorrow to the end of the year, soonest first
+    public InspectHistoryPageDTO getUpcomingInspectByInspectorId(int inspectorId, String cursor, Integer limit) {
+        LocalDate today = LocalDate.now();
+        return jdbcInspectHistoryRepo.page(inspectorId, today.plusDays(1), LocalDate.of(today.getYear(), 12, 31),
+                false, cursor, historyLimit(limit));
+    }
 
-        return inspectRepo.findByInspectorIdAndInspectDateBetween(id, sqlTomorrow, sqlEndOfYear);
+    private int historyLimit(Integer requested) {
+        int limit = requested != null ? requested : historyDefaultLimit;
+        if (limit < 1 || limit > historyMaxLimit) {
+            throw new IllegalArgumentException("limit must be between 1 and " + historyMaxLimit);
+        }
+        return limit;
     }
 
 
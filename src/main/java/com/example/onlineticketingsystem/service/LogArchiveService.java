@@ -0,0 +1,182 @@
+package com.example.onlineticketingsystem.service;
+
+import com.example.onlineticketingsystem.DTO.LogArchiveDTO;
+import com.example.onlineticketingsystem.DTO.LogQueryDTO;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import org.springframework.util.StringUtils;
+
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.time.Instant;
+import java.time.YearMonth;
+import java.time.ZoneId;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.LongConsumer;
+import java.util.stream.Stream;
+import java.util.zip.GZIPInputStream;
+
+// Archived months of audit_log and security_log, one gzipped NDJSON file per table and month
+// (<dir>/<table>/<table>-yyyy-MM.ndjson.gz) in the same format as the export endpoints. Archives are
+// written by LogRetentionService before it drops a month from the database and can still be queried here.
+@Service
+public class LogArchiveService {
+
+    private static final Logger logger = LoggerFactory.getLogger(LogArchiveService.class);
+    private static final ObjectMapper objectMapper = new ObjectMapper();
+    private static final String SUFFIX = ".ndjson.gz";
+    public static final List<String> TABLES = List.of("audit_log", "security_log");
+
+    private final Path directory;
+    private final LogExportService logExportService;
+
+    // Rows added to a month's archive by one run: their count and the id range (afterId, maxId] they came from
+    public record Archived(long rows, long afterId, long maxId) {
+    }
+
+    @Autowired
+    public LogArchiveService(@Value("${logs.archive.dir:log-archive}") String directory, LogExportService logExportService) {
+        this.directory = Path.of(directory);
+        this.logExportService = logExportService;
+    }
+
+    // Write every row of the table older than before into the month's archive. The file is written aside and
+    // moved into place, so a run that fails halfway leaves the archive as it was. If the month has an archive
+    // already, it is kept and only rows with a higher id than any it holds are added, as another gzip member:
+    // rows that arrived late with an old timestamp, or were left by a run whose delete did not finish, are
+    // then archived once each.
+    public Archived archive(String table, YearMonth month, Instant before) throws IOException {
+        Path target = path(table, month);
+        Path temp = target.resolveSibling(target.getFileName() + ".tmp");
+        Files.createDirectories(target.getParent());
+        boolean existing = Files.exists(target);
+        long afterId = existing ? maxId(target) : 0;
+
+        LogQueryDTO query = new LogQueryDTO();
+        query.setTo(before);
+        long[] maxId = {afterId};
+        LongConsumer written = id -> maxId[0] = Math.max(maxId[0], id);
+        long rows;
+        try (FileOutputStream out = new FileOutputStream(temp.toFile())) {
+            if (existing) {
+                Files.copy(target, out);
+            }
+            rows = switch (table) {
+                case "audit_log" -> logExportService.exportAuditLogs(query, LogExportService.Format.NDJSON, true, out, afterId, written);
+                case "security_log" -> logExportService.exportSecurityLogs(query, LogExportService.Format.NDJSON, true, out, afterId, written);
+                default -> throw new IllegalArgumentException("Unknown log table " + table);
+            };
+            out.getFD().sync();
+        }
+        Files.move(temp, target, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        logger.info("Archived {} rows of {} for {} to {}", rows, table, month, target);
+        return new Archived(rows, afterId, maxId[0]);
+    }
+
+    public List<LogArchiveDTO> list() throws IOException {
+        List<LogArchiveDTO> archives = new ArrayList<>();
+        for (String table : TABLES) {
+            for (Map.Entry<YearMonth, Path> archive : archives(table).entrySet()) {
+                archives.add(new LogArchiveDTO(table, archive.getKey().toString(), Files.size(archive.getValue())));
+            }
+        }
+        return archives;
+    }
+
+    // Stream the archived rows that match the query to out as NDJSON, oldest month first, and return how
+    // many matched. Filters are the same as for the live tables; limit, when given, caps the row count.
+    public long query(String table, LogQueryDTO query, OutputStream out) throws IOException {
+        Map<String, String> filters = new LinkedHashMap<>();
+        if ("audit_log".equals(table)) {
+            filters.put("performedBy", query.getPerformedBy());
+            filters.put("action", query.getAction());
+        } else {
+            filters.put("username", query.getUsername());
+            filters.put("action", query.getAction());
+            filters.put("status", query.getStatus());
+            filters.put("ipAddress", query.getIpAddress());
+        }
+        filters.values().removeIf(value -> !StringUtils.hasText(value));
+        long limit = query.getLimit() != null ? query.getLimit() : Long.MAX_VALUE;
+
+        Writer writer = new BufferedWriter(new OutputStreamWriter(out, StandardCharsets.UTF_8), 64 * 1024);
+        long matched = 0;
+        for (Map.Entry<YearMonth, Path> archive : archives(table).entrySet()) {
+            // A month's file only holds rows from before the end of that month
+            Instant end = archive.getKey().plusMonths(1).atDay(1).atStartOfDay(ZoneId.systemDefault()).toInstant();
+            if (query.getFrom() != null && !end.isAfter(query.getFrom())) {
+                continue;
+            }
+            try (BufferedReader reader = new BufferedReader(new InputStreamReader(
+                    new GZIPInputStream(Files.newInputStream(archive.getValue()), 64 * 1024), StandardCharsets.UTF_8))) {
+                for (String line; matched < limit && (line = reader.readLine()) != null; ) {
+                    if (matches(objectMapper.readTree(line), query, filters)) {
+                        writer.write(line);
+                        writer.write('\n');
+                        matched++;
+                    }
+                }
+            }
+        }
+        writer.flush();
+        return matched;
+    }
+
+    private static boolean matches(JsonNode row, LogQueryDTO query, Map<String, String> filters) {
+        for (Map.Entry<String, String> filter : filters.entrySet()) {
+            if (!filter.getValue().equals(row.path(filter.getKey()).asText(null))) {
+                return false;
+            }
+        }
+        if (query.getFrom() != null || query.getTo() != null) {
+            Instant timestamp = Instant.parse(row.path("timestamp").asText());
+            return (query.getFrom() == null || !timestamp.isBefore(query.getFrom()))
+                    && (query.getTo() == null || timestamp.isBefore(query.getTo()));
+        }
+        return true;
+    }
+
+    private static long maxId(Path archive) throws IOException {
+        long maxId = 0;
+        try (BufferedReader reader = new BufferedReader(new InputStreamReader(
+                new GZIPInputStream(Files.newInputStream(archive), 64 * 1024), StandardCharsets.UTF_8))) {
+            for (String line; (line = reader.readLine()) != null; ) {
+                maxId = Math.max(maxId, objectMapper.readTree(line).path("id").asLong());
+            }
+        }
+        return maxId;
+    }
+
+    // The table's archive files by month, oldest first
+    private Map<YearMonth, Path> archives(String table) throws IOException {
+        Map<YearMonth, Path> archives = new LinkedHashMap<>();
+        Path tableDirectory = directory.resolve(table);
+        if (Files.notExists(tableDirectory)) {
+            return archives;
+        }
+        String prefix = table + "-";
+        try (Stream<Path> files = Files.list(tableDirectory)) {
+            files.map(path -> path.getFileName().toString())
+                    .filter(name -> name.startsWith(prefix) && name.endsWith(SUFFIX))
+                    .map(name -> YearMonth.parse(name.substring(prefix.length(), name.length() - SUFFIX.length())))
+                    .sorted()
+                    .forEach(month -> archives.put(month, path(table, month)));
+        }
+        return archives;
+    }
+
+    private Path path(String table, YearMonth month) {
+        return directory.resolve(table).resolve(table + "-" + month + SUFFIX);
+    }
+}
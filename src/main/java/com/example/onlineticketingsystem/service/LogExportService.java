@@ -0,0 +1,284 @@
+package com.example.onlineticketingsystem.service;
+
+import com.example.onlineticketingsystem.DTO.LogQueryDTO;
+import com.example.onlineticketingsystem.repo.JdbcLogQueryRepo;
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonGenerator;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.RowCallbackHandler;
+import org.springframework.stereotype.Service;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
+
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.sql.ResultSet;
+import java.sql.ResultSetMetaData;
+import java.sql.SQLException;
+import java.sql.Timestamp;
+import java.sql.Types;
+import java.util.Locale;
+import java.util.function.Consumer;
+import java.util.function.LongConsumer;
+import java.util.zip.GZIPOutputStream;
+
+// Full exports of audit_log and security_log for compliance. Rows go straight from the JDBC cursor to the
+// response as NDJSON or CSV, optionally gzipped, without being collected, so heap use stays flat.
+@Service
+public class LogExportService {
+
+    private static final Logger logger = LoggerFactory.getLogger(LogExportService.class);
+    private static final JsonFactory jsonFactory = new JsonFactory();
+    private static final int BUFFER_BYTES = 64 * 1024;
+
+    public enum Format {
+        NDJSON("application/x-ndjson", "ndjson"),
+        CSV("text/csv", "csv");
+
+        private final String contentType;
+        private final String extension;
+
+        Format(String contentType, String extension) {
+            this.contentType = contentType;
+            this.extension = extension;
+        }
+
+        public String getContentType() {
+            return contentType;
+        }
+
+        public String getExtension() {
+            return extension;
+        }
+
+        public static Format parse(String value) {
+            try {
+                return valueOf(value.trim().toUpperCase(Locale.ROOT));
+            } catch (IllegalArgumentException e) {
+                throw new IllegalArgumentException("format must be ndjson or csv");
+            }
+        }
+    }
+
+    private final JdbcLogQueryRepo jdbcLogQueryRepo;
+    private final int fetchSize;
+    private final MeterRegistry meterRegistry;
+
+    // MySQL Connector/J streams row by row only with Integer.MIN_VALUE, or with a positive value and useCursorFetch=true
+    @Autowired
+    public LogExportService(JdbcLogQueryRepo jdbcLogQueryRepo,
+                            @Value("${logs.export.fetch-size:-2147483648}") int fetchSize,
+                            MeterRegistry meterRegistry) {
+        this.jdbcLogQueryRepo = jdbcLogQueryRepo;
+        this.fetchSize = fetchSize;
+        this.meterRegistry = meterRegistry;
+    }
+
+    public StreamingResponseBody exportAuditLogs(LogQueryDTO query, Format format, boolean gzip) {
+        return out -> exportAuditLogs(query, format, gzip, out);
+    }
+
+    public StreamingResponseBody exportSecurityLogs(LogQueryDTO query, Format format, boolean gzip) {
+        return out -> exportSecurityLogs(query, format, gzip, out);
+    }
+
+    // Write the matching rows to the stream and return how many there were
+    public long exportAuditLogs(LogQueryDTO query, Format format, boolean gzip, OutputStream out) throws IOException {
+        return write("audit_log", out, format, gzip, handler -> jdbcLogQueryRepo.exportAuditLogs(query, fetchSize, handler));
+    }
+
+    public long exportSecurityLogs(LogQueryDTO query, Format format, boolean gzip, OutputStream out) throws IOException {
+        return write("security_log", out, format, gzip, handler -> jdbcLogQueryRepo.exportSecurityLogs(query, fetchSize, handler));
+    }
+
+    // As above, but only rows with an id above afterId are written, and the id of each one is passed to written
+    public long exportAuditLogs(LogQueryDTO query, Format format, boolean gzip, OutputStream out, long afterId,
+                                LongConsumer written) throws IOException {
+        return write("audit_log", out, format, gzip,
+                handler -> jdbcLogQueryRepo.exportAuditLogs(query, fetchSize, after(afterId, written, handler)));
+    }
+
+    public long exportSecurityLogs(LogQueryDTO query, Format format, boolean gzip, OutputStream out, long afterId,
+                                   LongConsumer written) throws IOException {
+        return write("security_log", out, format, gzip,
+                handler -> jdbcLogQueryRepo.exportSecurityLogs(query, fetchSize, after(afterId, written, handler)));
+    }
+
+    private static RowCallbackHandler after(long afterId, LongConsumer written, RowCallbackHandler handler) {
+        return resultSet -> {
+            long id = resultSet.getLong("id");
+            if (id > afterId) {
+                handler.processRow(resultSet);
+                written.accept(id);
+            }
+        };
+    }
+
+    private long write(String table, OutputStream out, Format format, boolean gzip, Consumer<RowCallbackHandler> source) throws IOException {
+        long started = System.nanoTime();
+        OutputStream target = gzip ? new GZIPOutputStream(out, BUFFER_BYTES) : out;
+        Writer writer = new BufferedWriter(new OutputStreamWriter(target, StandardCharsets.UTF_8), BUFFER_BYTES);
+        RowWriter rowWriter = format == Format.NDJSON ? new NdjsonRowWriter(writer) : new CsvRowWriter(writer);
+
+        try {
+            source.accept(resultSet -> {
+                try {
+                    rowWriter.write(resultSet);
+                } catch (IOException e) {
+                    // The client went away: stop reading from the database
+                    throw new UncheckedIOException(e);
+                }
+            });
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
+        }
+        rowWriter.finish();
+        writer.flush();
+        if (target instanceof GZIPOutputStream gzipStream) {
+            gzipStream.finish();
+        }
+        out.flush();
+
+        meterRegistry.counter("logs.export.rows", "table", table).increment(rowWriter.rows);
+        logger.info("Exported {} rows of {} as {}{} in {} ms", rowWriter.rows, table, format.getExtension(),
+                gzip ? ".gz" : "", (System.nanoTime() - started) / 1_000_000);
+        return rowWriter.rows;
+    }
+
+    private abstract static class RowWriter {
+        protected final Writer writer;
+        protected String[] names;
+        protected int[] types;
+        private long rows;
+
+        RowWriter(Writer writer) {
+            this.writer = writer;
+        }
+
+        void write(ResultSet resultSet) throws IOException {
+            try {
+                if (names == null) {
+                    ResultSetMetaData metaData = resultSet.getMetaData();
+                    names = new String[metaData.getColumnCount()];
+                    types = new int[names.length];
+                    for (int i = 0; i < names.length; i++) {
+                        names[i] = camelCase(metaData.getColumnLabel(i + 1));
+                        types[i] = metaData.getColumnType(i + 1);
+                    }
+                    header();
+                }
+                row(resultSet);
+                rows++;
+            } catch (SQLException e) {
+                throw new IOException(e);
+            }
+        }
+
+        void header() throws IOException {
+        }
+
+        void finish() throws IOException {
+        }
+
+        abstract void row(ResultSet resultSet) throws SQLException, IOException;
+
+        // Timestamps as ISO-8601 instants, everything else as text
+        static String text(ResultSet resultSet, int column, int type) throws SQLException {
+            if (type == Types.TIMESTAMP || type == Types.TIMESTAMP_WITH_TIMEZONE) {
+                Timestamp timestamp = resultSet.getTimestamp(column);
+                return timestamp != null ? timestamp.toInstant().toString() : null;
+            }
+            return resultSet.getString(column);
+        }
+
+        static String camelCase(String column) {
+            String lower = column.toLowerCase(Locale.ROOT);
+            StringBuilder name = new StringBuilder(lower.length());
+            boolean upper = false;
+            for (char c : lower.toCharArray()) {
+                if (c == '_') {
+                    upper = true;
+                } else {
+                    name.append(upper ? Character.toUpperCase(c) : c);
+                    upper = false;
+                }
+            }
+            return name.toString();
+        }
+    }
+
+    private static final class NdjsonRowWriter extends RowWriter {
+        private final JsonGenerator generator;
+
+        NdjsonRowWriter(Writer writer) throws IOException {
+            super(writer);
+            this.generator = jsonFactory.createGenerator(writer);
+            generator.disable(JsonGenerator.Feature.AUTO_CLOSE_TARGET);
+        }
+
+        @Override
+        void row(ResultSet resultSet) throws SQLException, IOException {
+            generator.writeStartObject();
+            for (int i = 0; i < names.length; i++) {
+                if (types[i] == Types.INTEGER || types[i] == Types.BIGINT) {
+                    long value = resultSet.getLong(i + 1);
+                    if (resultSet.wasNull()) {
+                        generator.writeNullField(names[i]);
+                    } else {
+                        generator.writeNumberField(names[i], value);
+                    }
+                } else {
+                    generator.writeStringField(names[i], text(resultSet, i + 1, types[i]));
+                }
+            }
+            generator.writeEndObject();
+            generator.writeRaw('\n');
+        }
+
+        @Override
+        void finish() throws IOException {
+            generator.flush();
+        }
+    }
+
+    private static final class CsvRowWriter extends RowWriter {
+
+        CsvRowWriter(Writer writer) {
+            super(writer);
+        }
+
+        @Override
+        void header() throws IOException {
+            writer.write(String.join(",", names));
+            writer.write("\r\n");
+        }
+
+        @Override
+        void row(ResultSet resultSet) throws SQLException, IOException {
+            for (int i = 0; i < names.length; i++) {
+                if (i > 0) {
+                    writer.write(',');
+                }
+                String value = text(resultSet, i + 1, types[i]);
+                if (value != null) {
+                    writer.write(escape(value));
+                }
+            }
+            writer.write("\r\n");
+        }
+
+        // RFC 4180 quoting. Cells that a spreadsheet would run as a formula get a leading apostrophe.
+        private static String escape(String value) {
+            if (!value.isEmpty() && "=+-@".indexOf(value.charAt(0)) >= 0) {
+                value = "'" + value;
+            }
+            if (value.indexOf(',') >= 0 || value.indexOf('"') >= 0 || value.indexOf('\n') >= 0 || value.indexOf('\r') >= 0) {
+                return '"' + value.replace("\"", "\"\"") + '"';
+            }
+            return value;
+        }
+    }
+}
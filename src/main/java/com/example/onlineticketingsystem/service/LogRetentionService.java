@@ -0,0 +1,226 @@
+package com.example.onlineticketingsystem.service;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DataAccessException;
+import org.springframework.jdbc.core.ConnectionCallback;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.io.IOException;
+import java.sql.Timestamp;
+import java.time.LocalDate;
+import java.time.Period;
+import java.time.YearMonth;
+import java.time.format.DateTimeFormatter;
+import java.util.List;
+import java.util.Locale;
+import java.util.stream.Collectors;
+
+// Keeps audit_log and security_log to the last retention-months months. On MySQL a table that is
+// range-partitioned by month gets partitions created ahead of time, and an expired month is archived by
+// LogArchiveService and then removed with DROP PARTITION, which is a metadata change instead of millions of
+// row deletes. Recent queries with a time range only touch the partitions they cover, so inserts and queries
+// cost the same however much history has been kept. Converting a table rebuilds it and changes its primary
+// key, so it only happens when logs.retention.partition-conversion is switched on. Unpartitioned tables,
+// and other databases (H2 in tests), have an expired month archived and then deleted delete-batch-size rows
+// at a time, only up to the highest id the archive holds.
+@Service
+public class LogRetentionService {
+
+    private static final Logger logger = LoggerFactory.getLogger(LogRetentionService.class);
+    private static final DateTimeFormatter PARTITION_NAME = DateTimeFormatter.ofPattern("'p'yyyyMM");
+    private static final DateTimeFormatter BOUND = DateTimeFormatter.ofPattern("yyyy-MM-dd HH:mm:ss");
+    private static final String FUTURE_PARTITION = "pfuture";
+
+    private final JdbcTemplate jdbcTemplate;
+    private final LogArchiveService logArchiveService;
+    private final boolean enabled;
+    private final boolean convert;
+    private final int retentionMonths;
+    private final int aheadMonths;
+    private final int deleteBatchSize;
+    private final Counter archivedRows;
+    private final Counter droppedMonths;
+    private Boolean mySql;
+
+    @Autowired
+    public LogRetentionService(JdbcTemplate jdbcTemplate, LogArchiveService logArchiveService,
+                               @Value("${logs.retention.enabled:true}") boolean enabled,
+                               @Value("${logs.retention.partition-conversion:false}") boolean convert,
+                               @Value("${logs.retention.months:12}") int retentionMonths,
+                               @Value("${logs.retention.partition-ahead-months:3}") int aheadMonths,
+                               @Value("${logs.retention.delete-batch-size:10000}") int deleteBatchSize,
+                               MeterRegistry meterRegistry) {
+        if (retentionMonths < 1) {
+            throw new IllegalArgumentException("logs.retention.months must be at least 1");
+        }
+        this.jdbcTemplate = jdbcTemplate;
+        this.logArchiveService = logArchiveService;
+        this.enabled = enabled;
+        this.convert = convert;
+        this.retentionMonths = retentionMonths;
+        this.aheadMonths = aheadMonths;
+        this.deleteBatchSize = deleteBatchSize;
+        this.archivedRows = Counter.builder("logs.retention.archived.rows").register(meterRegistry);
+        this.droppedMonths = Counter.builder("logs.retention.dropped.months").register(meterRegistry);
+    }
+
+    @Scheduled(fixedDelayString = "${logs.retention.interval-ms:3600000}", initialDelayString = "${logs.retention.initial-delay-ms:60000}")
+    public void enforce() {
+        if (!enabled) {
+            return;
+        }
+        for (String table : LogArchiveService.TABLES) {
+            try {
+                enforce(table, LocalDate.now());
+            } catch (DataAccessException | IOException e) {
+                logger.error("Log retention for {} failed; it is retried on the next run", table, e);
+            }
+        }
+    }
+
+    // Archive and remove every month of the table before the retention window; returns the months removed
+    public int enforce(String table, LocalDate today) throws IOException {
+        YearMonth oldestKept = YearMonth.from(today).minusMonths(retentionMonths - 1);
+        int removed = 0;
+
+        List<YearMonth> partitions = isMySql() ? partitions(table) : List.of();
+        if (partitions.isEmpty() && isMySql() && convert && partition(table, YearMonth.from(today))) {
+            partitions = partitions(table);
+        }
+        if (!partitions.isEmpty()) {
+            addPartitions(table, partitions.get(partitions.size() - 1), YearMonth.from(today).plusMonths(aheadMonths));
+            for (YearMonth month : partitions) {
+                if (!month.isBefore(oldestKept) || archive(table, month, false) < 0) {
+                    break;
+                }
+                jdbcTemplate.execute("ALTER TABLE " + table + " DROP PARTITION " + PARTITION_NAME.format(month));
+                droppedMonths.increment();
+                removed++;
+            }
+        } else {
+            YearMonth previous = null;
+            for (YearMonth month = oldestMonth(table); month != null && month.isBefore(oldestKept); month = oldestMonth(table)) {
+                long maxId = archive(table, month, true);
+                if (maxId < 0) {
+                    break;
+                }
+                delete(table, end(month), maxId);
+                // Rows that arrived late for the month are left behind and added to its archive on the next pass
+                if (!month.equals(previous)) {
+                    droppedMonths.increment();
+                    removed++;
+                }
+                previous = month;
+            }
+        }
+        if (removed > 0) {
+            logger.info("Log retention removed {} month(s) of {} before {}", removed, table, oldestKept);
+        }
+        return removed;
+    }
+
+    // Archive everything before the end of the month. Older months are gone already, so that is exactly the
+    // month's rows (plus any that arrived late with an older timestamp). Returns the highest id the archive
+    // holds, or -1, leaving the month in place, if rows the archive should hold are missing from it. A row
+    // that arrives during the archive with a higher id than it reached is only missing when the whole
+    // partition is about to be dropped; a range delete stops below it.
+    private long archive(String table, YearMonth month, boolean bounded) throws IOException {
+        Timestamp end = end(month);
+        LogArchiveService.Archived archived = logArchiveService.archive(table, month, end.toInstant());
+        Long rows = bounded
+                ? jdbcTemplate.queryForObject("SELECT COUNT(*) FROM " + table + " WHERE timestamp < ? AND id > ? AND id <= ?",
+                        Long.class, end, archived.afterId(), archived.maxId())
+                : jdbcTemplate.queryForObject("SELECT COUNT(*) FROM " + table + " WHERE timestamp < ? AND id > ?",
+                        Long.class, end, archived.afterId());
+        if (rows == null || rows != archived.rows()) {
+            logger.warn("Rows of {} for {} changed while archiving ({} archived, {} now); retrying later",
+                    table, month, archived.rows(), rows);
+            return -1;
+        }
+        archivedRows.increment(archived.rows());
+        return archived.maxId();
+    }
+
+    // Delete the archived rows a batch at a time, so that no transaction holds a month of row locks and undo
+    private void delete(String table, Timestamp end, long maxId) {
+        String sql = "DELETE FROM " + table + " WHERE timestamp < ? AND id <= ?"
+                + (isMySql() ? " ORDER BY timestamp, id" : "") + " LIMIT ?";
+        int deleted;
+        do {
+            deleted = jdbcTemplate.update(sql, end, maxId, deleteBatchSize);
+        } while (deleted == deleteBatchSize);
+    }
+
+    // The table's monthly partitions, oldest first, without the catch-all future partition
+    private List<YearMonth> partitions(String table) {
+        return jdbcTemplate.queryForList("SELECT PARTITION_NAME FROM information_schema.PARTITIONS WHERE TABLE_SCHEMA = DATABASE() "
+                        + "AND TABLE_NAME = ? AND PARTITION_NAME IS NOT NULL ORDER BY PARTITION_ORDINAL_POSITION", String.class, table)
+                .stream()
+                .filter(name -> !name.equalsIgnoreCase(FUTURE_PARTITION))
+                .map(name -> YearMonth.parse(name.toLowerCase(Locale.ROOT), PARTITION_NAME))
+                .toList();
+    }
+
+    // One-off conversion of an unpartitioned table, done only when partition-conversion is on. MySQL requires
+    // the partitioning column in every unique key, so the primary key becomes (id, timestamp); id stays
+    // AUTO_INCREMENT and unique in practice. A row without a timestamp has no partition to go to, and making one
+    // up would misdate it, so the table is left as it is until those rows have been dealt with by hand.
+    private boolean partition(String table, YearMonth current) {
+        Long undated = jdbcTemplate.queryForObject("SELECT COUNT(*) FROM " + table + " WHERE timestamp IS NULL", Long.class);
+        if (undated != null && undated > 0) {
+            logger.error("Not partitioning {}: {} row(s) have no timestamp. Set or remove them, and retention "
+                    + "deletes expired months by range until then", table, undated);
+            return false;
+        }
+        YearMonth first = oldestMonth(table);
+        if (first == null || first.isAfter(current)) {
+            first = current;
+        }
+        YearMonth last = current.plusMonths(aheadMonths);
+        logger.info("Partitioning {} by month from {} to {}", table, first, last);
+        jdbcTemplate.execute("ALTER TABLE " + table + " MODIFY timestamp DATETIME(6) NOT NULL, DROP PRIMARY KEY, ADD PRIMARY KEY (id, timestamp)");
+        jdbcTemplate.execute("ALTER TABLE " + table + " PARTITION BY RANGE COLUMNS(timestamp) (" + definitions(first, last) + ")");
+        return true;
+    }
+
+    // Split empty months off the future partition up to and including last
+    private void addPartitions(String table, YearMonth newest, YearMonth last) {
+        if (newest.isBefore(last)) {
+            jdbcTemplate.execute("ALTER TABLE " + table + " REORGANIZE PARTITION " + FUTURE_PARTITION + " INTO ("
+                    + definitions(newest.plusMonths(1), last) + ")");
+        }
+    }
+
+    private static String definitions(YearMonth first, YearMonth last) {
+        return first.atDay(1).datesUntil(last.plusMonths(1).atDay(1), Period.ofMonths(1))
+                .map(YearMonth::from)
+                .map(month -> "PARTITION " + PARTITION_NAME.format(month) + " VALUES LESS THAN ('"
+                        + BOUND.format(month.plusMonths(1).atDay(1).atStartOfDay()) + "')")
+                .collect(Collectors.joining(", ", "", ", PARTITION " + FUTURE_PARTITION + " VALUES LESS THAN (MAXVALUE)"));
+    }
+
+    private YearMonth oldestMonth(String table) {
+        Timestamp oldest = jdbcTemplate.queryForObject("SELECT MIN(timestamp) FROM " + table, Timestamp.class);
+        return oldest != null ? YearMonth.from(oldest.toLocalDateTime()) : null;
+    }
+
+    // Timestamps are written in the JVM's zone, so month boundaries are local midnights
+    private static Timestamp end(YearMonth month) {
+        return Timestamp.valueOf(month.plusMonths(1).atDay(1).atStartOfDay());
+    }
+
+    private boolean isMySql() {
+        if (mySql == null) {
+            mySql = jdbcTemplate.execute((ConnectionCallback<Boolean>) connection ->
+                    connection.getMetaData().getDatabaseProductName().toLowerCase(Locale.ROOT).contains("mysql"));
+        }
+        return Boolean.TRUE.equals(mySql);
+    }
+}
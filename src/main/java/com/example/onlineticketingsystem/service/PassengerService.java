@@ -3,6 +3,7 @@ package com.example.onlineticketingsystem.service;
 import com.example.onlineticketingsystem.DTO.PassengerDTO;
 import com.example.onlineticketingsystem.entity.Passenger;
 import com.example.onlineticketingsystem.repo.PassengerRepo;
+import com.example.onlineticketingsystem.security.UserDetailsCache;
 import jakarta.transaction.Transactional;
 import org.modelmapper.ModelMapper;
 import org.springframework.beans.factory.annotation.Autowired;
@@ -18,9 +19,15 @@ public class PassengerService {
     private PassengerRepo passengerRepo;
     @Autowired
     private ModelMapper modelMapper;
+    @Autowired
+    private UserDetailsCache userDetailsCache;
+    @Autowired
+    private UserDirectoryService userDirectoryService;
 
     public PassengerDTO savePassenger(PassengerDTO passengerDTO){
-        passengerRepo.save(modelMapper.map(passengerDTO, Passenger.class));
+        Passenger passenger = passengerRepo.save(modelMapper.map(passengerDTO, Passenger.class));
+        userDirectoryService.record(UserDirectoryService.PASSENGER, passenger);
+        userDetailsCache.removeUserFromCache(passengerDTO.getEmail());
         return passengerDTO;
     }
 
@@ -0,0 +1,211 @@
+package com.example.onlineticketingsystem.service;
+
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+import java.util.concurrent.ThreadLocalRandom;
+
+// A KLL quantile sketch: values sit in levels of compactors, a value on level h standing for 2^h inputs.
+// When the sketch outgrows its capacity the lowest full level is sorted and every other value (from a random
+// offset) moves up a level. Level capacities shrink by 2/3 going down from the top, so the sketch keeps about
+// 3k values however many it has seen, and answers any quantile within roughly 1.7% of the rank for k = 200.
+// Sketches merge by concatenating levels and compacting, so day sketches add up to any range. Until the
+// first compaction every value is kept and quantiles are exact.
+public final class QuantileSketch {
+
+    private static final byte FORMAT = 1;
+    private static final double CAPACITY_DECAY = 2.0 / 3.0;
+    private static final int MIN_CAPACITY = 2;
+
+    private final int k;
+    private long count;
+    private float min = Float.NaN;
+    private float max = Float.NaN;
+    private float[][] levels = {new float[8]};
+    private int[] sizes = new int[1];
+
+    public QuantileSketch(int k) {
+        if (k < 8 || k > Short.MAX_VALUE) {
+            throw new IllegalArgumentException("k must be between 8 and " + Short.MAX_VALUE);
+        }
+        this.k = k;
+    }
+
+    public long count() {
+        return count;
+    }
+
+    public void update(float value) {
+        if (Float.isNaN(value)) {
+            return;
+        }
+        append(0, value);
+        count++;
+        min = Float.isNaN(min) ? value : Math.min(min, value);
+        max = Float.isNaN(max) ? value : Math.max(max, value);
+        compress();
+    }
+
+    public void merge(QuantileSketch other) {
+        if (other.count == 0) {
+            return;
+        }
+        for (int level = 0; level < other.levels.length; level++) {
+            for (int i = 0; i < other.sizes[level]; i++) {
+                append(level, other.levels[level][i]);
+            }
+        }
+        count += other.count;
+        min = Float.isNaN(min) ? other.min : Math.min(min, other.min);
+        max = Float.isNaN(max) ? other.max : Math.max(max, other.max);
+        compress();
+    }
+
+    // The value at each rank (0 to 1); NaN for an empty sketch
+    public double[] quantiles(double... ranks) {
+        double[] result = new double[ranks.length];
+        if (count == 0) {
+            Arrays.fill(result, Double.NaN);
+            return result;
+        }
+        // Each retained value with its level in the low byte, sorted by value
+        long[] entries = new long[retained()];
+        int n = 0;
+        for (int level = 0; level < levels.length; level++) {
+            for (int i = 0; i < sizes[level]; i++) {
+                entries[n++] = ((long) sortable(levels[level][i]) << 8) | level;
+            }
+        }
+        Arrays.sort(entries);
+        for (int r = 0; r < ranks.length; r++) {
+            double rank = Math.max(0, Math.min(1, ranks[r]));
+            if (rank == 0) {
+                result[r] = min;
+                continue;
+            }
+            if (rank == 1) {
+                result[r] = max;
+                continue;
+            }
+            long target = (long) Math.ceil(rank * count);
+            long cumulative = 0;
+            float value = max;
+            for (long entry : entries) {
+                cumulative += 1L << (entry & 0xff);
+                if (cumulative >= target) {
+                    value = unsortable((int) (entry >> 8));
+                    break;
+                }
+            }
+            result[r] = value;
+        }
+        return result;
+    }
+
+    // Float bits reordered so that comparing the ints compares the floats
+    private static int sortable(float value) {
+        int bits = Float.floatToIntBits(value);
+        return bits ^ ((bits >> 31) & 0x7fffffff);
+    }
+
+    private static float unsortable(int bits) {
+        return Float.intBitsToFloat(bits ^ ((bits >> 31) & 0x7fffffff));
+    }
+
+    public byte[] toBytes() {
+        ByteBuffer buffer = ByteBuffer.allocate(1 + 2 + 8 + 4 + 4 + 1 + levels.length * 4 + retained() * 4);
+        buffer.put(FORMAT).putShort((short) k).putLong(count).putFloat(min).putFloat(max).put((byte) levels.length);
+        for (int level = 0; level < levels.length; level++) {
+            buffer.putInt(sizes[level]);
+            for (int i = 0; i < sizes[level]; i++) {
+                buffer.putFloat(levels[level][i]);
+            }
+        }
+        return buffer.array();
+    }
+
+    public static QuantileSketch fromBytes(byte[] bytes) {
+        ByteBuffer buffer = ByteBuffer.wrap(bytes);
+        if (buffer.get() != FORMAT) {
+            throw new IllegalArgumentException("Unknown sketch format");
+        }
+        QuantileSketch sketch = new QuantileSketch(buffer.getShort());
+        sketch.count = buffer.getLong();
+        sketch.min = buffer.getFloat();
+        sketch.max = buffer.getFloat();
+        int levelCount = buffer.get();
+        sketch.levels = new float[levelCount][];
+        sketch.sizes = new int[levelCount];
+        for (int level = 0; level < levelCount; level++) {
+            int size = buffer.getInt();
+            sketch.levels[level] = new float[Math.max(8, size)];
+            sketch.sizes[level] = size;
+            for (int i = 0; i < size; i++) {
+                sketch.levels[level][i] = buffer.getFloat();
+            }
+        }
+        return sketch;
+    }
+
+    private void append(int level, float value) {
+        if (level >= levels.length) {
+            addLevel();
+        }
+        if (sizes[level] == levels[level].length) {
+            levels[level] = Arrays.copyOf(levels[level], levels[level].length * 2);
+        }
+        levels[level][sizes[level]++] = value;
+    }
+
+    private void addLevel() {
+        levels = Arrays.copyOf(levels, levels.length + 1);
+        levels[levels.length - 1] = new float[8];
+        sizes = Arrays.copyOf(sizes, sizes.length + 1);
+    }
+
+    private int capacity(int level) {
+        int depth = levels.length - 1 - level;
+        return Math.max(MIN_CAPACITY, (int) Math.ceil(k * Math.pow(CAPACITY_DECAY, depth)));
+    }
+
+    private int retained() {
+        int retained = 0;
+        for (int size : sizes) {
+            retained += size;
+        }
+        return retained;
+    }
+
+    private void compress() {
+        while (true) {
+            int capacity = 0;
+            for (int level = 0; level < levels.length; level++) {
+                capacity += capacity(level);
+            }
+            if (retained() <= capacity) {
+                return;
+            }
+            for (int level = 0; level < levels.length; level++) {
+                if (sizes[level] >= capacity(level)) {
+                    compact(level);
+                    break;
+                }
+            }
+        }
+    }
+
+    // Sort the level and promote every other value; with an odd count the smallest value stays behind
+    private void compact(int level) {
+        if (level + 1 >= levels.length) {
+            addLevel();
+        }
+        float[] items = levels[level];
+        int size = sizes[level];
+        Arrays.sort(items, 0, size);
+        int start = size % 2;
+        int offset = ThreadLocalRandom.current().nextInt(2);
+        for (int i = start + offset; i < size; i += 2) {
+            append(level + 1, items[i]);
+        }
+        sizes[level] = start;
+    }
+}
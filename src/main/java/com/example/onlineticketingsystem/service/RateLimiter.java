@@ -0,0 +1,18 @@
+package com.example.onlineticketingsystem.service;
+
+// Login throttling keyed by client IP. Select the implementation with rate-limiter.store:
+// "memory" (InMemoryRateLimiter, per node) or "shared" (SharedRateLimiter, consistent across nodes).
+public interface RateLimiter {
+
+    // Check if the IP is blocked
+    boolean isBlocked(String ipAddress);
+
+    // Record a failed login attempt
+    void recordFailedAttempt(String ipAddress);
+
+    // Reset the attempt counter on successful login
+    void resetAttempts(String ipAddress);
+
+    // Retrieve the remaining attempts for a given IP address (useful for debugging)
+    int getRemainingAttempts(String ipAddress);
+}
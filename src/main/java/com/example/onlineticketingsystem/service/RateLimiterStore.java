@@ -0,0 +1,20 @@
+package com.example.onlineticketingsystem.service;
+
+import java.util.Collection;
+import java.util.Map;
+
+// Shared attempt counters behind SharedRateLimiter. Every call carries a whole batch so a node
+// talks to the store once per sync interval instead of once per login.
+public interface RateLimiterStore {
+
+    // Atomically add the failed attempts per IP; an IP whose total reaches maxAttempts is blocked until blockUntil
+    void addAttempts(Map<String, Integer> attempts, int maxAttempts, long now, long windowStart, long blockUntil);
+
+    void reset(Collection<String> ipAddresses);
+
+    // IPs whose block is still running, with the time it ends
+    Map<String, Long> findBlocked(long now);
+
+    // Drop counters that are neither blocked nor updated since the cutoff
+    int purgeIdle(long cutoff, long now);
+}
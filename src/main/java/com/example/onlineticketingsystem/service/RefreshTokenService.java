@@ -0,0 +1,152 @@
+package com.example.onlineticketingsystem.service;
+
+import com.example.onlineticketingsystem.entity.RefreshToken;
+import com.example.onlineticketingsystem.exception.InvalidRefreshTokenException;
+import com.example.onlineticketingsystem.repo.RefreshTokenRepo;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.transaction.Transactional;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.security.SecureRandom;
+import java.util.Base64;
+import java.util.HexFormat;
+import java.util.List;
+import java.util.UUID;
+
+// Issues and rotates opaque refresh tokens. Each refresh hands out a new token and retires the old one;
+// a retired token that comes back means it was copied, so every token of that login is revoked.
+// Tokens carry 256 random bits, so a plain SHA-256 is enough to store them and no BCrypt is involved.
+@Service
+public class RefreshTokenService {
+
+    private static final Logger logger = LoggerFactory.getLogger(RefreshTokenService.class);
+    private static final int TOKEN_BYTES = 32;
+
+    private final SecureRandom secureRandom = new SecureRandom();
+    private final RefreshTokenRepo refreshTokenRepo;
+    private final long ttlMillis;
+    private final int cleanupBatchSize;
+    private final Counter refreshed;
+    private final Counter rejected;
+    private final Counter reused;
+    private final Counter purged;
+
+    @Autowired
+    public RefreshTokenService(RefreshTokenRepo refreshTokenRepo,
+                               @Value("${security.refresh-token.ttl-ms:1209600000}") long ttlMillis,
+                               @Value("${security.refresh-token.cleanup-batch-size:1000}") int cleanupBatchSize,
+                               MeterRegistry meterRegistry) {
+        this.refreshTokenRepo = refreshTokenRepo;
+        this.ttlMillis = ttlMillis;
+        this.cleanupBatchSize = cleanupBatchSize;
+        // Every successful refresh is a password login, and so a BCrypt check, that did not happen
+        this.refreshed = Counter.builder("auth.refresh").tag("result", "success").register(meterRegistry);
+        this.rejected = Counter.builder("auth.refresh").tag("result", "invalid").register(meterRegistry);
+        this.reused = Counter.builder("auth.refresh").tag("result", "reuse").register(meterRegistry);
+        this.purged = Counter.builder("auth.refresh.purged").register(meterRegistry);
+    }
+
+    public record IssuedToken(String username, String token, long expiresAt) {
+    }
+
+    // Start a new token family after a password (or OAuth2) login
+    @Transactional
+    public IssuedToken issue(String username) {
+        return issue(username, UUID.randomUUID().toString(), System.currentTimeMillis());
+    }
+
+    // Exchange a refresh token for a new one in the same family. The revocation done on reuse must
+    // survive the exception, hence dontRollbackOn.
+    @Transactional(dontRollbackOn = InvalidRefreshTokenException.class)
+    public IssuedToken rotate(String rawToken) {
+        if (rawToken == null || rawToken.isBlank()) {
+            rejected.increment();
+            throw new InvalidRefreshTokenException("Refresh token is missing");
+        }
+        long now = System.currentTimeMillis();
+        RefreshToken token = refreshTokenRepo.findByTokenHash(hash(rawToken)).orElse(null);
+        if (token == null || token.isRevoked() || token.getExpiresAt() <= now) {
+            rejected.increment();
+            throw new InvalidRefreshTokenException("Refresh token is invalid or expired");
+        }
+        if (token.getRotatedAt() != 0 || refreshTokenRepo.markRotated(token.getId(), now) == 0) {
+            int revoked = refreshTokenRepo.revokeFamily(token.getFamilyId());
+            reused.increment();
+            logger.warn("Refresh token reuse for '{}': revoked {} token(s) of family {}", token.getUsername(), revoked, token.getFamilyId());
+            throw new InvalidRefreshTokenException("Refresh token has already been used");
+        }
+
+        refreshed.increment();
+        return issue(token.getUsername(), token.getFamilyId(), now);
+    }
+
+    // Revoke every token descending from the same login as the given one; unknown tokens are ignored
+    @Transactional
+    public void revoke(String rawToken) {
+        if (rawToken == null || rawToken.isBlank()) {
+            return;
+        }
+        refreshTokenRepo.findByTokenHash(hash(rawToken))
+                .ifPresent(token -> refreshTokenRepo.revokeFamily(token.getFamilyId()));
+    }
+
+    // Revoke every refresh token the user holds, e.g. after a password change or a lost device
+    @Transactional
+    public int revokeAllForUser(String username) {
+        return refreshTokenRepo.revokeAllForUser(username);
+    }
+
+    // Delete expired tokens a batch at a time so no single statement holds locks on the whole table
+    @Scheduled(fixedDelayString = "${security.refresh-token.cleanup-interval-ms:3600000}")
+    public int purgeExpired() {
+        long now = System.currentTimeMillis();
+        int total = 0;
+        List<Long> ids;
+        do {
+            ids = refreshTokenRepo.findExpiredIds(now, cleanupBatchSize);
+            if (!ids.isEmpty()) {
+                refreshTokenRepo.deleteAllByIdInBatch(ids);
+                total += ids.size();
+            }
+        } while (ids.size() == cleanupBatchSize);
+
+        if (total > 0) {
+            purged.increment(total);
+            logger.info("Purged {} expired refresh tokens", total);
+        }
+        return total;
+    }
+
+    private IssuedToken issue(String username, String familyId, long now) {
+        byte[] bytes = new byte[TOKEN_BYTES];
+        secureRandom.nextBytes(bytes);
+        String rawToken = Base64.getUrlEncoder().withoutPadding().encodeToString(bytes);
+
+        RefreshToken token = new RefreshToken();
+        token.setTokenHash(hash(rawToken));
+        token.setFamilyId(familyId);
+        token.setUsername(username);
+        token.setIssuedAt(now);
+        token.setExpiresAt(now + ttlMillis);
+        refreshTokenRepo.save(token);
+        return new IssuedToken(username, rawToken, token.getExpiresAt());
+    }
+
+    private static String hash(String rawToken) {
+        try {
+            MessageDigest sha256 = MessageDigest.getInstance("SHA-256");
+            return HexFormat.of().formatHex(sha256.digest(rawToken.getBytes(StandardCharsets.UTF_8)));
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 not available", e);
+        }
+    }
+}
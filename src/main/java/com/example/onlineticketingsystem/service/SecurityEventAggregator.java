@@ -0,0 +1,339 @@
+package com.example.onlineticketingsystem.service;
+
+import com.example.onlineticketingsystem.DTO.SecurityEventStatsDTO;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.time.Instant;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.LongSupplier;
+
+// Live counts of security events for the dashboard, fed by SecurityLogService.logAccess so that nobody has
+// to scan security_log to spot a failed-login spike. Each window (1 minute, 15 minutes, 1 hour) is a ring of
+// time buckets; a bucket holds a count per status and per action and a count-min sketch of IP addresses,
+// and is cleared when the ring comes round to it again, so windows slide with bucket granularity.
+// Heavy-hitter IPs are found with a space-saving summary per window length and counted with the sketch.
+// Memory is fixed by the configuration whatever the traffic or the number of distinct IPs.
+@Service
+public class SecurityEventAggregator {
+
+    private static final int MAX_KEYS = 64;
+    private static final String OTHER = "OTHER";
+    private static final int OTHER_STATUS_KEY = MAX_KEYS - 2;
+    private static final int OTHER_ACTION_KEY = MAX_KEYS - 1;
+
+    private final LongSupplier clock;
+    private final int topIps;
+    private final long refreshMillis;
+    private final List<Window> windows;
+
+    // Status and action names share one index space: 0 is the total, then one slot per name, then the two OTHERs
+    private final Map<String, Integer> statusKeys = new ConcurrentHashMap<>();
+    private final Map<String, Integer> actionKeys = new ConcurrentHashMap<>();
+    private final Object keyLock = new Object();
+    private int nextKey = 1;
+
+    private volatile SecurityEventStatsDTO snapshot;
+    private volatile long snapshotAt;
+
+    @Autowired
+    public SecurityEventAggregator(@Value("${security-log.stats.top-ips:10}") int topIps,
+                                   @Value("${security-log.stats.heavy-hitter-capacity:100}") int heavyHitterCapacity,
+                                   @Value("${security-log.stats.sketch-width:1024}") int sketchWidth,
+                                   @Value("${security-log.stats.sketch-depth:4}") int sketchDepth,
+                                   @Value("${security-log.stats.refresh-ms:1000}") long refreshMillis) {
+        this(System::currentTimeMillis, topIps, heavyHitterCapacity, sketchWidth, sketchDepth, refreshMillis);
+    }
+
+    public SecurityEventAggregator(LongSupplier clock, int topIps, int heavyHitterCapacity, int sketchWidth,
+                                   int sketchDepth, long refreshMillis) {
+        this.clock = clock;
+        this.topIps = topIps;
+        this.refreshMillis = refreshMillis;
+        statusKeys.put(OTHER, OTHER_STATUS_KEY);
+        actionKeys.put(OTHER, OTHER_ACTION_KEY);
+        this.windows = List.of(
+                new Window("1m", 5_000, 12, heavyHitterCapacity, sketchWidth, sketchDepth),
+                new Window("15m", 60_000, 15, heavyHitterCapacity, sketchWidth, sketchDepth),
+                new Window("1h", 300_000, 12, heavyHitterCapacity, sketchWidth, sketchDepth));
+    }
+
+    public void record(String action, String status, String ipAddress) {
+        long now = clock.getAsLong();
+        int statusKey = status != null ? key(statusKeys, status, OTHER_STATUS_KEY) : OTHER_STATUS_KEY;
+        int actionKey = action != null ? key(actionKeys, action, OTHER_ACTION_KEY) : OTHER_ACTION_KEY;
+        for (Window window : windows) {
+            window.add(now, statusKey, actionKey, ipAddress);
+        }
+    }
+
+    // Computed at most once per refresh-ms however often it is polled; the work is bounded by the number of
+    // buckets and the heavy-hitter capacity, not by the number of events
+    public SecurityEventStatsDTO stats() {
+        long now = clock.getAsLong();
+        SecurityEventStatsDTO current = snapshot;
+        if (current != null && now - snapshotAt < refreshMillis) {
+            return current;
+        }
+        Map<String, SecurityEventStatsDTO.WindowStats> stats = new LinkedHashMap<>();
+        for (Window window : windows) {
+            stats.put(window.name, window.stats(now));
+        }
+        current = new SecurityEventStatsDTO(Instant.ofEpochMilli(now), stats);
+        snapshot = current;
+        snapshotAt = now;
+        return current;
+    }
+
+    // Registers a new name while there is room; after that unknown names are counted as OTHER (statuses come
+    // from a fixed set in the controllers, so only actions can realistically overflow)
+    private int key(Map<String, Integer> keys, String name, int overflowKey) {
+        Integer key = keys.get(name);
+        if (key != null) {
+            return key;
+        }
+        synchronized (keyLock) {
+            key = keys.get(name);
+            if (key == null) {
+                if (nextKey >= OTHER_STATUS_KEY) {
+                    return overflowKey;
+                }
+                key = nextKey++;
+                keys.put(name, key);
+            }
+            return key;
+        }
+    }
+
+    private Map<String, Long> counts(Map<String, Integer> keys, long[] totals) {
+        Map<String, Long> counts = new TreeMap<>();
+        keys.forEach((name, key) -> {
+            if (totals[key] > 0) {
+                counts.put(name, totals[key]);
+            }
+        });
+        return counts;
+    }
+
+    private final class Window {
+        private final String name;
+        private final long bucketMillis;
+        private final int buckets;
+        private final long[] epochs;
+        private final long[][] counts;
+        private final CountMinSketch[] ipSketches;
+        private final int heavyHitterCapacity;
+        private SpaceSaving currentHitters;
+        private SpaceSaving previousHitters;
+        private long hitterGeneration = -1;
+
+        private Window(String name, long bucketMillis, int buckets, int heavyHitterCapacity, int sketchWidth, int sketchDepth) {
+            this.name = name;
+            this.bucketMillis = bucketMillis;
+            this.buckets = buckets;
+            this.epochs = new long[buckets];
+            Arrays.fill(epochs, -1);
+            this.counts = new long[buckets][MAX_KEYS];
+            this.ipSketches = new CountMinSketch[buckets];
+            for (int i = 0; i < buckets; i++) {
+                ipSketches[i] = new CountMinSketch(sketchWidth, sketchDepth);
+            }
+            this.heavyHitterCapacity = heavyHitterCapacity;
+            this.currentHitters = new SpaceSaving(heavyHitterCapacity);
+            this.previousHitters = new SpaceSaving(heavyHitterCapacity);
+        }
+
+        private synchronized void add(long now, int statusKey, int actionKey, String ipAddress) {
+            long epoch = now / bucketMillis;
+            int slot = (int) (epoch % buckets);
+            if (epochs[slot] != epoch) {
+                epochs[slot] = epoch;
+                Arrays.fill(counts[slot], 0);
+                ipSketches[slot].clear();
+            }
+            counts[slot][0]++;
+            counts[slot][statusKey]++;
+            counts[slot][actionKey]++;
+            if (ipAddress != null) {
+                ipSketches[slot].add(ipAddress);
+                hitters(now).offer(ipAddress);
+            }
+        }
+
+        private synchronized SecurityEventStatsDTO.WindowStats stats(long now) {
+            long oldestLive = now / bucketMillis - buckets + 1;
+            long[] totals = new long[MAX_KEYS];
+            List<CountMinSketch> live = new ArrayList<>(buckets);
+            for (int slot = 0; slot < buckets; slot++) {
+                if (epochs[slot] >= oldestLive) {
+                    for (int key = 0; key < MAX_KEYS; key++) {
+                        totals[key] += counts[slot][key];
+                    }
+                    live.add(ipSketches[slot]);
+                }
+            }
+
+            // Anything heavy in the last window length was tracked by the current or the previous summary
+            hitters(now);
+            Set<String> candidates = new HashSet<>(currentHitters.keys());
+            candidates.addAll(previousHitters.keys());
+            List<SecurityEventStatsDTO.IpCount> ips = new ArrayList<>(candidates.size());
+            for (String ip : candidates) {
+                long count = CountMinSketch.estimate(live, ip);
+                if (count > 0) {
+                    ips.add(new SecurityEventStatsDTO.IpCount(ip, count));
+                }
+            }
+            ips.sort(Comparator.comparingLong(SecurityEventStatsDTO.IpCount::getCount).reversed()
+                    .thenComparing(SecurityEventStatsDTO.IpCount::getIpAddress));
+
+            return new SecurityEventStatsDTO.WindowStats(totals[0], counts(statusKeys, totals), counts(actionKeys, totals),
+                    ips.size() > topIps ? new ArrayList<>(ips.subList(0, topIps)) : ips);
+        }
+
+        // The summary for the current window length, rotating the previous one out
+        private SpaceSaving hitters(long now) {
+            long generation = now / (bucketMillis * buckets);
+            if (generation != hitterGeneration) {
+                previousHitters = generation == hitterGeneration + 1 ? currentHitters : new SpaceSaving(heavyHitterCapacity);
+                currentHitters = new SpaceSaving(heavyHitterCapacity);
+                hitterGeneration = generation;
+            }
+            return currentHitters;
+        }
+    }
+
+    // Count-min sketch: depth rows of width counters; an estimate is the smallest of the key's counters
+    private static final class CountMinSketch {
+        private final int width;
+        private final int depth;
+        private final int[] table;
+
+        private CountMinSketch(int width, int depth) {
+            this.width = width;
+            this.depth = depth;
+            this.table = new int[width * depth];
+        }
+
+        private void add(String key) {
+            int hash1 = mix(key.hashCode());
+            int hash2 = mix(hash1) | 1;
+            for (int row = 0; row < depth; row++) {
+                table[row * width + Math.floorMod(hash1 + row * hash2, width)]++;
+            }
+        }
+
+        private void clear() {
+            Arrays.fill(table, 0);
+        }
+
+        // Estimate over the sum of several sketches of the same shape
+        private static long estimate(List<CountMinSketch> sketches, String key) {
+            if (sketches.isEmpty()) {
+                return 0;
+            }
+            int hash1 = mix(key.hashCode());
+            int hash2 = mix(hash1) | 1;
+            CountMinSketch shape = sketches.get(0);
+            long estimate = Long.MAX_VALUE;
+            for (int row = 0; row < shape.depth; row++) {
+                int index = row * shape.width + Math.floorMod(hash1 + row * hash2, shape.width);
+                long sum = 0;
+                for (CountMinSketch sketch : sketches) {
+                    sum += sketch.table[index];
+                }
+                estimate = Math.min(estimate, sum);
+            }
+            return estimate;
+        }
+
+        private static int mix(int hash) {
+            hash ^= hash >>> 16;
+            hash *= 0x85ebca6b;
+            hash ^= hash >>> 13;
+            hash *= 0xc2b2ae35;
+            return hash ^ (hash >>> 16);
+        }
+    }
+
+    // Space-saving heavy hitters: at most capacity keys; a new key replaces the smallest one, so every key
+    // seen more than total / capacity times is guaranteed to be in the summary. The keys are kept in a
+    // min-heap by count, so both an increment and a replacement are O(log capacity).
+    private static final class SpaceSaving {
+        private final String[] keys;
+        private final long[] counts;
+        private final Map<String, Integer> positions;
+        private int size;
+
+        private SpaceSaving(int capacity) {
+            this.keys = new String[capacity];
+            this.counts = new long[capacity];
+            this.positions = new HashMap<>(capacity * 2);
+        }
+
+        private void offer(String key) {
+            Integer position = positions.get(key);
+            if (position != null) {
+                counts[position]++;
+                siftDown(position);
+            } else if (size < keys.length) {
+                keys[size] = key;
+                counts[size] = 1;
+                positions.put(key, size);
+                siftUp(size++);
+            } else {
+                positions.remove(keys[0]);
+                keys[0] = key;
+                counts[0]++;
+                positions.put(key, 0);
+                siftDown(0);
+            }
+        }
+
+        private Set<String> keys() {
+            return positions.keySet();
+        }
+
+        private void siftUp(int position) {
+            while (position > 0) {
+                int parent = (position - 1) / 2;
+                if (counts[parent] <= counts[position]) {
+                    return;
+                }
+                swap(position, parent);
+                position = parent;
+            }
+        }
+
+        private void siftDown(int position) {
+            while (true) {
+                int smallest = position;
+                int left = 2 * position + 1;
+                if (left < size && counts[left] < counts[smallest]) {
+                    smallest = left;
+                }
+                if (left + 1 < size && counts[left + 1] < counts[smallest]) {
+                    smallest = left + 1;
+                }
+                if (smallest == position) {
+                    return;
+                }
+                swap(position, smallest);
+                position = smallest;
+            }
+        }
+
+        private void swap(int a, int b) {
+            String key = keys[a];
+            keys[a] = keys[b];
+            keys[b] = key;
+            long count = counts[a];
+            counts[a] = counts[b];
+            counts[b] = count;
+            positions.put(keys[a], a);
+            positions.put(keys[b], b);
+        }
+    }
+}
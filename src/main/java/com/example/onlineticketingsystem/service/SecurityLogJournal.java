@@ -0,0 +1,351 @@
+package com.example.onlineticketingsystem.service;
+
+import com.example.onlineticketingsystem.entity.SecurityLog;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.ClosedChannelException;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.sql.Timestamp;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.Stream;
+import java.util.zip.CRC32;
+
+// Append-only local journal for security log records. A record is acknowledged once it is on disk,
+// which is much cheaper than a database INSERT; SecurityLogShipper copies the journal into security_log.
+// The journal is a sequence of segment files named by the offset of their first byte, so a position in
+// the journal is one long. Each record is [int length][int crc32][JSON]. Concurrent appends share one
+// fsync: whoever syncs first covers every record written before it (group commit). A journal-id file created
+// with the directory names the journal, so its shipping checkpoint follows the files rather than the host.
+@Service
+public class SecurityLogJournal {
+
+    private static final Logger logger = LoggerFactory.getLogger(SecurityLogJournal.class);
+    private static final ObjectMapper objectMapper = new ObjectMapper();
+    private static final String SEGMENT_SUFFIX = ".log";
+    private static final String ID_FILE = "journal-id";
+    private static final int HEADER_BYTES = 8;
+
+    private final Path directory;
+    private final long segmentBytes;
+    private final boolean fsync;
+    private final String id;
+
+    private final Object appendLock = new Object();
+    private final Object syncLock = new Object();
+    private FileChannel channel;
+    private long segmentBase;
+    private long segmentSize;
+    private volatile long writtenOffset;
+    private final AtomicLong durableOffset = new AtomicLong();
+
+    private final Timer appendTime;
+    private final Counter appends;
+    private final Counter fsyncs;
+
+    @Autowired
+    public SecurityLogJournal(@Value("${security-log.journal.dir:security-log-journal}") String directory,
+                              @Value("${security-log.journal.segment-bytes:16777216}") long segmentBytes,
+                              @Value("${security-log.journal.fsync:true}") boolean fsync,
+                              MeterRegistry meterRegistry) throws IOException {
+        this.directory = Path.of(directory);
+        this.segmentBytes = segmentBytes;
+        this.fsync = fsync;
+        this.appendTime = Timer.builder("security.log.journal.append").register(meterRegistry);
+        this.appends = Counter.builder("security.log.journal.appends").register(meterRegistry);
+        this.fsyncs = Counter.builder("security.log.journal.fsyncs").register(meterRegistry);
+        Gauge.builder("security.log.journal.segments", this, journal -> journal.segmentBases().size()).register(meterRegistry);
+
+        Files.createDirectories(this.directory);
+        this.id = readOrCreateId();
+        open();
+    }
+
+    public record ReadBatch(List<SecurityLog> records, long endOffset) {
+    }
+
+    // Write the record and return once it is durable. Returns the journal offset just past the record.
+    public long append(SecurityLog securityLog) {
+        long started = System.nanoTime();
+        byte[] payload = encode(securityLog);
+        CRC32 crc = new CRC32();
+        crc.update(payload);
+        ByteBuffer buffer = ByteBuffer.allocate(HEADER_BYTES + payload.length);
+        buffer.putInt(payload.length).putInt((int) crc.getValue()).put(payload).flip();
+
+        long end;
+        try {
+            synchronized (appendLock) {
+                if (segmentSize > 0 && segmentSize + buffer.remaining() > segmentBytes) {
+                    roll();
+                }
+                while (buffer.hasRemaining()) {
+                    channel.write(buffer);
+                }
+                segmentSize += HEADER_BYTES + payload.length;
+                end = segmentBase + segmentSize;
+                writtenOffset = end;
+            }
+            awaitDurable(end);
+        } catch (IOException e) {
+            throw new UncheckedIOException("Could not append to the security log journal", e);
+        }
+        appends.increment();
+        appendTime.record(System.nanoTime() - started, TimeUnit.NANOSECONDS);
+        return end;
+    }
+
+    // Identifies this journal's offsets: it stays the same across restarts and host renames, and a wiped
+    // directory starts a new journal with a new id
+    public String id() {
+        return id;
+    }
+
+    // Everything before this offset has been fsynced (or written, when fsync is off) and may be shipped
+    public long durableOffset() {
+        return durableOffset.get();
+    }
+
+    public long startOffset() {
+        List<Long> bases = segmentBases();
+        return bases.isEmpty() ? segmentBase : bases.get(0);
+    }
+
+    // Read up to maxRecords durable records starting at the given offset, crossing segment boundaries
+    public ReadBatch read(long fromOffset, int maxRecords) throws IOException {
+        long limit = durableOffset.get();
+        List<SecurityLog> records = new ArrayList<>();
+        long offset = fromOffset;
+        List<Long> bases = segmentBases();
+
+        for (int i = 0; i < bases.size(); i++) {
+            long base = bases.get(i);
+            long nextBase = i + 1 < bases.size() ? bases.get(i + 1) : Long.MAX_VALUE;
+            if (offset >= nextBase) {
+                continue;
+            }
+            // Only reachable if segments were removed by hand; their records are gone
+            offset = Math.max(offset, base);
+            try (FileChannel reader = FileChannel.open(segmentPath(base), StandardOpenOption.READ)) {
+                long segmentLimit = Math.min(limit, base + reader.size());
+                ByteBuffer header = ByteBuffer.allocate(HEADER_BYTES);
+                while (records.size() < maxRecords && offset + HEADER_BYTES <= segmentLimit) {
+                    header.clear();
+                    readFully(reader, header, offset - base);
+                    int length = header.getInt(0);
+                    if (length < 0 || offset + HEADER_BYTES + length > segmentLimit) {
+                        break;
+                    }
+                    ByteBuffer payload = ByteBuffer.allocate(length);
+                    readFully(reader, payload, offset - base + HEADER_BYTES);
+                    CRC32 crc = new CRC32();
+                    crc.update(payload.array());
+                    if ((int) crc.getValue() != header.getInt(4)) {
+                        throw new IOException("Corrupt security log journal record at offset " + offset);
+                    }
+                    records.add(decode(payload.array()));
+                    offset += HEADER_BYTES + length;
+                }
+            }
+            // Segments before the last one were fsynced in full when they were rolled, so unless a
+            // limit stopped us the offset is now the next segment's base
+            if (records.size() >= maxRecords || offset >= limit) {
+                break;
+            }
+        }
+        return new ReadBatch(records, offset);
+    }
+
+    // Remove segments that lie entirely before the offset; the segment being written is always kept
+    public int deleteSegmentsBefore(long offset) {
+        List<Long> bases = segmentBases();
+        int deleted = 0;
+        for (int i = 0; i + 1 < bases.size(); i++) {
+            if (bases.get(i + 1) <= offset) {
+                try {
+                    Files.deleteIfExists(segmentPath(bases.get(i)));
+                    deleted++;
+                } catch (IOException e) {
+                    logger.warn("Could not delete journal segment {}", segmentPath(bases.get(i)), e);
+                }
+            }
+        }
+        return deleted;
+    }
+
+    @PreDestroy
+    public void close() throws IOException {
+        synchronized (appendLock) {
+            if (channel.isOpen()) {
+                channel.force(false);
+                channel.close();
+            }
+        }
+    }
+
+    // Only the first thread through syncs; the others find their record already covered and return.
+    // The position is read before force(), so a sync never claims more than it actually flushed.
+    private void awaitDurable(long offset) throws IOException {
+        if (!fsync) {
+            durableOffset.accumulateAndGet(offset, Math::max);
+            return;
+        }
+        synchronized (syncLock) {
+            if (durableOffset.get() >= offset) {
+                return;
+            }
+            FileChannel current;
+            long target;
+            synchronized (appendLock) {
+                current = channel;
+                target = writtenOffset;
+            }
+            try {
+                current.force(false);
+            } catch (ClosedChannelException e) {
+                // The segment was rolled in the meantime, and roll() forces it before closing
+            }
+            fsyncs.increment();
+            durableOffset.accumulateAndGet(target, Math::max);
+        }
+    }
+
+    private void roll() throws IOException {
+        channel.force(false);
+        channel.close();
+        durableOffset.accumulateAndGet(segmentBase + segmentSize, Math::max);
+        segmentBase += segmentSize;
+        segmentSize = 0;
+        channel = FileChannel.open(segmentPath(segmentBase), StandardOpenOption.CREATE_NEW, StandardOpenOption.WRITE);
+    }
+
+    // Continue the last segment after cutting off a torn record left by a crash, or start the first one
+    private void open() throws IOException {
+        List<Long> bases = segmentBases();
+        if (bases.isEmpty()) {
+            segmentBase = 0;
+            segmentSize = 0;
+            channel = FileChannel.open(segmentPath(0), StandardOpenOption.CREATE_NEW, StandardOpenOption.WRITE);
+        } else {
+            segmentBase = bases.get(bases.size() - 1);
+            channel = FileChannel.open(segmentPath(segmentBase), StandardOpenOption.READ, StandardOpenOption.WRITE);
+            segmentSize = validLength(channel);
+            if (segmentSize < channel.size()) {
+                logger.warn("Truncating {} bytes of incomplete records from journal segment {}",
+                        channel.size() - segmentSize, segmentPath(segmentBase));
+                channel.truncate(segmentSize);
+                channel.force(false);
+            }
+            channel.position(segmentSize);
+        }
+        writtenOffset = segmentBase + segmentSize;
+        durableOffset.set(writtenOffset);
+        logger.info("Security log journal opened at offset {} in {}", writtenOffset, directory.toAbsolutePath());
+    }
+
+    // Written to a temporary file and moved into place, so a crash never leaves an empty or partial id
+    private String readOrCreateId() throws IOException {
+        Path idFile = directory.resolve(ID_FILE);
+        if (Files.exists(idFile)) {
+            return Files.readString(idFile).trim();
+        }
+        String created = UUID.randomUUID().toString();
+        Path temporary = directory.resolve(ID_FILE + ".tmp");
+        try (FileChannel file = FileChannel.open(temporary, StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING,
+                StandardOpenOption.WRITE)) {
+            file.write(ByteBuffer.wrap(created.getBytes(StandardCharsets.UTF_8)));
+            file.force(true);
+        }
+        Files.move(temporary, idFile, StandardCopyOption.ATOMIC_MOVE);
+        logger.info("Created security log journal {} in {}", created, directory.toAbsolutePath());
+        return created;
+    }
+
+    private static long validLength(FileChannel segment) throws IOException {
+        long size = segment.size();
+        long position = 0;
+        ByteBuffer header = ByteBuffer.allocate(HEADER_BYTES);
+        while (position + HEADER_BYTES <= size) {
+            header.clear();
+            readFully(segment, header, position);
+            int length = header.getInt(0);
+            if (length < 0 || position + HEADER_BYTES + length > size) {
+                break;
+            }
+            ByteBuffer payload = ByteBuffer.allocate(length);
+            readFully(segment, payload, position + HEADER_BYTES);
+            CRC32 crc = new CRC32();
+            crc.update(payload.array());
+            if ((int) crc.getValue() != header.getInt(4)) {
+                break;
+            }
+            position += HEADER_BYTES + length;
+        }
+        return position;
+    }
+
+    private static void readFully(FileChannel channel, ByteBuffer buffer, long position) throws IOException {
+        while (buffer.hasRemaining()) {
+            if (channel.read(buffer, position + buffer.position()) < 0) {
+                throw new IOException("Unexpected end of journal segment");
+            }
+        }
+    }
+
+    private List<Long> segmentBases() {
+        try (Stream<Path> files = Files.list(directory)) {
+            return files.map(path -> path.getFileName().toString())
+                    .filter(name -> name.endsWith(SEGMENT_SUFFIX))
+                    .map(name -> Long.parseLong(name.substring(0, name.length() - SEGMENT_SUFFIX.length())))
+                    .sorted()
+                    .toList();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private Path segmentPath(long base) {
+        return directory.resolve(String.format("%020d%s", base, SEGMENT_SUFFIX));
+    }
+
+    private static byte[] encode(SecurityLog log) {
+        try {
+            return objectMapper.writeValueAsBytes(new JournalRecord(log.getAction(), log.getUsername(), log.getStatus(),
+                    log.getIpAddress(), log.getTimestamp() != null ? log.getTimestamp().getTime() : System.currentTimeMillis(),
+                    log.getDetails()));
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private static SecurityLog decode(byte[] payload) throws IOException {
+        JournalRecord record = objectMapper.readValue(payload, JournalRecord.class);
+        return new SecurityLog(0, record.action(), record.username(), record.status(), record.ipAddress(),
+                new Timestamp(record.timestamp()), record.details());
+    }
+
+    private record JournalRecord(String action, String username, String status, String ipAddress, long timestamp,
+                                 String details) {
+    }
+}
@@ -1,11 +1,17 @@
 package com.example.onlineticketingsystem.service;
 
 import com.example.onlineticketingsystem.DTO.BusDTO;
+import com.example.onlineticketingsystem.DTO.CountEstimateDTO;
+import com.example.onlineticketingsystem.DTO.LogPageDTO;
+import com.example.onlineticketingsystem.DTO.LogQueryDTO;
+import com.example.onlineticketingsystem.DTO.SecurityEventStatsDTO;
 import com.example.onlineticketingsystem.entity.Bus;
 import com.example.onlineticketingsystem.entity.SecurityLog;
+import com.example.onlineticketingsystem.repo.JdbcLogQueryRepo;
 import com.example.onlineticketingsystem.repo.SecurityLogRepo;
 import org.modelmapper.TypeToken;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
 
 import java.sql.Timestamp;
@@ -18,7 +24,30 @@ public class SecurityLogService {
     @Autowired
     private SecurityLogRepo securityLogRepo;
 
+    @Autowired
+    private JdbcLogQueryRepo jdbcLogQueryRepo;
+
+    @Value("${logs.query.default-limit:100}")
+    private int defaultLimit;
+
+    @Value("${logs.query.max-limit:1000}")
+    private int maxLimit;
+
+    @Value("${logs.query.count-cap:100000}")
+    private int countCap;
+
+    @Autowired
+    private SecurityLogJournal securityLogJournal;
+
+    // true: records are acknowledged once fsynced to the local journal and shipped to the table in batches
+    @Value("${security-log.journal.enabled:true}")
+    private boolean journalEnabled;
+
+    @Autowired
+    private SecurityEventAggregator securityEventAggregator;
+
     public void logAccess(String action, String username, String status, String ipAddress, String details){
+        securityEventAggregator.record(action, status, ipAddress);
         SecurityLog log = new SecurityLog();
         log.setAction(action);
         log.setUsername(username);
@@ -26,11 +55,33 @@ public class SecurityLogService {
         log.setIpAddress(ipAddress);
         log.setTimestamp(Timestamp.from(Instant.now()));
         log.setDetails(details);
-        securityLogRepo.save(log);
+        if (journalEnabled) {
+            securityLogJournal.append(log);
+        } else {
+            securityLogRepo.save(log);
+        }
+    }
+
+    // One page of logs matching the query, newest first; limit defaults to logs.query.default-limit
+    public LogPageDTO<SecurityLog> findSecurityLogs(LogQueryDTO query) {
+        return jdbcLogQueryRepo.findSecurityLogs(query, pageLimit(query));
+    }
+
+    public CountEstimateDTO countEstimate(LogQueryDTO query) {
+        return jdbcLogQueryRepo.estimateSecurityLogs(query, countCap);
+    }
+
+    // Event counts over the last minute, 15 minutes and hour, from memory
+    public SecurityEventStatsDTO stats() {
+        return securityEventAggregator.stats();
     }
 
-    public List<SecurityLog> getAllSecurityLogs(){
-        return securityLogRepo.findAll();
+    private int pageLimit(LogQueryDTO query) {
+        int limit = query.getLimit() != null ? query.getLimit() : defaultLimit;
+        if (limit < 1 || limit > maxLimit) {
+            throw new IllegalArgumentException("limit must be between 1 and " + maxLimit);
+        }
+        return limit;
     }
 
 
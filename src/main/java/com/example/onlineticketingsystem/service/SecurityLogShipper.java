@@ -0,0 +1,182 @@
+package com.example.onlineticketingsystem.service;
+
+import com.example.onlineticketingsystem.entity.SecurityLog;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.io.IOException;
+import java.util.List;
+
+// Copies the security log journal into the security_log table. Each batch of rows and the new
+// checkpoint are committed together, so a crash at any point neither loses nor duplicates records:
+// on restart shipping continues from the last committed checkpoint. The checkpoint is keyed by the journal's
+// own id, so renaming the host or moving the journal directory to another one keeps the position.
+@Service
+public class SecurityLogShipper {
+
+    private static final Logger logger = LoggerFactory.getLogger(SecurityLogShipper.class);
+    private static final String INSERT =
+            "INSERT INTO security_log (action, username, status, ip_address, timestamp, details) VALUES (?, ?, ?, ?, ?, ?)";
+
+    private final SecurityLogJournal journal;
+    private final JdbcTemplate jdbcTemplate;
+    private final TransactionTemplate transactionTemplate;
+    private final String journalId;
+    private final int batchSize;
+    private final long intervalMillis;
+
+    private final Counter shipped;
+    private final Counter failures;
+    private volatile long checkpoint = -1;
+    private volatile boolean running;
+    private Thread shipperThread;
+
+    @Autowired
+    public SecurityLogShipper(SecurityLogJournal journal, JdbcTemplate jdbcTemplate,
+                              PlatformTransactionManager transactionManager,
+                              @Value("${security-log.journal.ship-batch-size:1000}") int batchSize,
+                              @Value("${security-log.journal.ship-interval-ms:500}") long intervalMillis,
+                              MeterRegistry meterRegistry) {
+        this.journal = journal;
+        this.jdbcTemplate = jdbcTemplate;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.journalId = journal.id();
+        this.batchSize = batchSize;
+        this.intervalMillis = intervalMillis;
+        this.shipped = Counter.builder("security.log.shipped").register(meterRegistry);
+        this.failures = Counter.builder("security.log.ship.failures").register(meterRegistry);
+        // Bytes that are durable in the journal but not yet in the table
+        Gauge.builder("security.log.journal.backlog", this,
+                shipper -> shipper.checkpoint < 0 ? 0 : shipper.journal.durableOffset() - shipper.checkpoint)
+                .baseUnit("bytes").register(meterRegistry);
+    }
+
+    @PostConstruct
+    public void start() {
+        running = true;
+        shipperThread = new Thread(this::run, "security-log-shipper");
+        shipperThread.setDaemon(true);
+        shipperThread.start();
+    }
+
+    // Ship whatever is left before the journal is closed
+    @PreDestroy
+    public void shutdown() {
+        running = false;
+        if (shipperThread != null) {
+            // Not interrupted: that could land in the middle of a JDBC call. The thread sleeps at most one interval.
+            try {
+                shipperThread.join(intervalMillis + 10_000);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+        try {
+            shipPending();
+        } catch (RuntimeException | IOException e) {
+            logger.warn("Could not ship the security log journal on shutdown; it will be replayed at startup", e);
+        }
+    }
+
+    // Ship batches until the durable end of the journal is reached. Returns the number of records shipped.
+    public synchronized int shipPending() throws IOException {
+        if (checkpoint < 0) {
+            checkpoint = recover();
+        }
+        int total = 0;
+        while (checkpoint < journal.durableOffset()) {
+            SecurityLogJournal.ReadBatch batch = journal.read(checkpoint, batchSize);
+            if (batch.endOffset() == checkpoint) {
+                break;
+            }
+            long endOffset = batch.endOffset();
+            transactionTemplate.executeWithoutResult(status -> {
+                insert(batch.records());
+                saveCheckpoint(endOffset);
+            });
+            checkpoint = endOffset;
+            total += batch.records().size();
+            shipped.increment(batch.records().size());
+        }
+        if (total > 0) {
+            journal.deleteSegmentsBefore(checkpoint);
+        }
+        return total;
+    }
+
+    public String getJournalId() {
+        return journalId;
+    }
+
+    private void run() {
+        while (running) {
+            try {
+                shipPending();
+            } catch (RuntimeException | IOException e) {
+                failures.increment();
+                logger.error("Shipping the security log journal failed; retrying in {} ms", intervalMillis, e);
+            }
+            try {
+                Thread.sleep(intervalMillis);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            }
+        }
+    }
+
+    // Where to resume: the committed checkpoint, unless the journal no longer reaches back that far
+    // (for instance its directory was wiped), in which case shipping restarts from what is on disk
+    private long recover() {
+        List<Long> stored = jdbcTemplate.queryForList(
+                "SELECT journal_offset FROM security_log_checkpoint WHERE node_id = ?", Long.class, journalId);
+        long start = journal.startOffset();
+        long end = journal.durableOffset();
+        if (stored.isEmpty()) {
+            logger.info("No security log checkpoint for journal {}; shipping from offset {}", journalId, start);
+            return start;
+        }
+        long offset = stored.get(0);
+        if (offset < start || offset > end) {
+            logger.warn("Security log checkpoint {} for journal {} is outside the journal [{}, {}]; shipping from {}",
+                    offset, journalId, start, end, start);
+            return start;
+        }
+        if (offset < end) {
+            logger.info("Replaying security log journal {} from offset {} to {}", journalId, offset, end);
+        }
+        return offset;
+    }
+
+    private void insert(List<SecurityLog> records) {
+        jdbcTemplate.batchUpdate(INSERT, records, records.size(), (statement, log) -> {
+            statement.setString(1, log.getAction());
+            statement.setString(2, log.getUsername());
+            statement.setString(3, log.getStatus());
+            statement.setString(4, log.getIpAddress());
+            statement.setTimestamp(5, log.getTimestamp());
+            statement.setString(6, log.getDetails());
+        });
+    }
+
+    private void saveCheckpoint(long offset) {
+        long now = System.currentTimeMillis();
+        int updated = jdbcTemplate.update(
+                "UPDATE security_log_checkpoint SET journal_offset = ?, updated_at = ? WHERE node_id = ?", offset, now, journalId);
+        if (updated == 0) {
+            jdbcTemplate.update(
+                    "INSERT INTO security_log_checkpoint (node_id, journal_offset, updated_at) VALUES (?, ?, ?)", journalId, offset, now);
+        }
+    }
+}
@@ -0,0 +1,152 @@
+package com.example.onlineticketingsystem.service;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+
+// Cluster-wide limiter. Logins only touch local state: failed attempts are queued and pushed to the
+// shared store in one batch per sync, and the store's list of blocked IPs is pulled back on the same
+// schedule. A node therefore learns about a block raised elsewhere within one sync interval.
+@Service
+@ConditionalOnProperty(name = "rate-limiter.store", havingValue = "shared")
+public class SharedRateLimiter implements RateLimiter {
+
+    private static final Logger logger = LoggerFactory.getLogger(SharedRateLimiter.class);
+
+    private final int maxAttempts;
+    private final long blockDuration;
+    private final RateLimiterStore store;
+
+    // Failed attempts not yet sent to the store, and IPs whose counter must be cleared there
+    private final Map<String, Integer> pendingAttempts = new ConcurrentHashMap<>();
+    private final Set<String> pendingResets = ConcurrentHashMap.newKeySet();
+
+    // Blocks read from the store at the last sync, plus blocks this node raised on its own since then
+    private volatile Map<String, Long> storeBlocks = Map.of();
+    private final Map<String, Long> localBlocks = new ConcurrentHashMap<>();
+
+    private final Counter rejections;
+    private final Counter syncFailures;
+
+    @Autowired
+    public SharedRateLimiter(@Value("${rate-limiter.max-attempts:5}") int maxAttempts,
+                             @Value("${rate-limiter.block-duration-ms:600000}") long blockDuration,
+                             RateLimiterStore store,
+                             MeterRegistry meterRegistry) {
+        this.maxAttempts = maxAttempts;
+        this.blockDuration = blockDuration;
+        this.store = store;
+
+        meterRegistry.gaugeMapSize("rate.limiter.shared.pending", Collections.emptyList(), pendingAttempts);
+        Gauge.builder("rate.limiter.shared.blocked", this, limiter -> limiter.storeBlocks.size()).register(meterRegistry);
+        this.rejections = Counter.builder("rate.limiter.rejections").register(meterRegistry);
+        this.syncFailures = Counter.builder("rate.limiter.shared.sync.failures").register(meterRegistry);
+    }
+
+    @Override
+    public boolean isBlocked(String ipAddress) {
+        long currentTime = System.currentTimeMillis();
+        if (isActive(storeBlocks.get(ipAddress), currentTime) || isActive(localBlocks.get(ipAddress), currentTime)) {
+            rejections.increment();
+            return true;
+        }
+        return false;
+    }
+
+    @Override
+    public void recordFailedAttempt(String ipAddress) {
+        int unsent = pendingAttempts.merge(ipAddress, 1, Integer::sum);
+
+        // Enough failures reached this node alone: block right away instead of waiting for the store
+        if (unsent >= maxAttempts) {
+            localBlocks.put(ipAddress, System.currentTimeMillis() + blockDuration);
+        }
+    }
+
+    @Override
+    public void resetAttempts(String ipAddress) {
+        pendingAttempts.remove(ipAddress);
+        localBlocks.remove(ipAddress);
+        pendingResets.add(ipAddress);
+    }
+
+    @Override
+    public int getRemainingAttempts(String ipAddress) {
+        long currentTime = System.currentTimeMillis();
+        if (isActive(storeBlocks.get(ipAddress), currentTime) || isActive(localBlocks.get(ipAddress), currentTime)) {
+            return 0;
+        }
+        return Math.max(0, maxAttempts - pendingAttempts.getOrDefault(ipAddress, 0));
+    }
+
+    // Push queued resets and attempts to the store, then refresh the local copy of active blocks
+    @Scheduled(fixedDelayString = "${rate-limiter.shared.sync-interval-ms:1000}")
+    public void sync() {
+        long currentTime = System.currentTimeMillis();
+
+        List<String> resets = new ArrayList<>();
+        for (Iterator<String> it = pendingResets.iterator(); it.hasNext(); ) {
+            resets.add(it.next());
+            it.remove();
+        }
+
+        Map<String, Integer> attempts = new HashMap<>();
+        for (String ipAddress : pendingAttempts.keySet()) {
+            Integer unsent = pendingAttempts.remove(ipAddress);
+            if (unsent != null) {
+                attempts.put(ipAddress, unsent);
+            }
+        }
+
+        try {
+            if (!resets.isEmpty()) {
+                store.reset(resets);
+                resets.clear();
+            }
+            if (!attempts.isEmpty()) {
+                store.addAttempts(attempts, maxAttempts, currentTime, currentTime - blockDuration,
+                        currentTime + blockDuration);
+                attempts.clear();
+            }
+            storeBlocks = store.findBlocked(currentTime);
+            localBlocks.entrySet().removeIf(entry -> !isActive(entry.getValue(), currentTime)
+                    || storeBlocks.containsKey(entry.getKey()));
+        } catch (RuntimeException e) {
+            // Keep whatever was not written so the next sync retries it
+            syncFailures.increment();
+            pendingResets.addAll(resets);
+            attempts.forEach((ipAddress, unsent) -> pendingAttempts.merge(ipAddress, unsent, Integer::sum));
+            logger.warn("Rate limiter sync with the shared store failed: {}", e.getMessage());
+        }
+    }
+
+    @Scheduled(fixedDelayString = "${rate-limiter.shared.purge-interval-ms:300000}")
+    public void purge() {
+        long currentTime = System.currentTimeMillis();
+        try {
+            store.purgeIdle(currentTime - blockDuration, currentTime);
+        } catch (RuntimeException e) {
+            logger.warn("Rate limiter purge failed: {}", e.getMessage());
+        }
+    }
+
+    @PreDestroy
+    public void flush() {
+        sync();
+    }
+
+    private static boolean isActive(Long blockedUntil, long currentTime) {
+        return blockedUntil != null && currentTime < blockedUntil;
+    }
+}
@@ -0,0 +1,143 @@
+package com.example.onlineticketingsystem.service;
+
+import com.example.onlineticketingsystem.entity.RevokedToken;
+import com.example.onlineticketingsystem.repo.RevokedTokenRepo;
+import com.example.onlineticketingsystem.security.RevocationList;
+import com.example.onlineticketingsystem.security.SecurityConstants;
+import io.jsonwebtoken.Claims;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PostConstruct;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.util.Date;
+import java.util.List;
+
+// Revokes access tokens before they expire. The revoked_token table is the source of truth; the
+// RevocationList in memory answers the per-request check in JWTAuthenticationFilter without a query.
+@Service
+public class TokenRevocationService {
+
+    private static final Logger logger = LoggerFactory.getLogger(TokenRevocationService.class);
+
+    private final RevokedTokenRepo revokedTokenRepo;
+    private final RefreshTokenService refreshTokenService;
+    private final RevocationList revocationList;
+    private final int purgeBatchSize;
+    private final long syncOverlapMillis;
+    private final Counter rejected;
+    private volatile long lastSync;
+
+    @Autowired
+    public TokenRevocationService(RevokedTokenRepo revokedTokenRepo, RefreshTokenService refreshTokenService,
+                                  @Value("${security.revocation.expected-entries:100000}") int expectedEntries,
+                                  @Value("${security.revocation.false-positive-rate:0.001}") double falsePositiveRate,
+                                  @Value("${security.revocation.purge-batch-size:1000}") int purgeBatchSize,
+                                  @Value("${security.revocation.sync-overlap-ms:5000}") long syncOverlapMillis,
+                                  MeterRegistry meterRegistry) {
+        this.revokedTokenRepo = revokedTokenRepo;
+        this.refreshTokenService = refreshTokenService;
+        this.revocationList = new RevocationList(expectedEntries, falsePositiveRate);
+        this.purgeBatchSize = purgeBatchSize;
+        this.syncOverlapMillis = syncOverlapMillis;
+        this.rejected = Counter.builder("jwt.revocation.rejections").register(meterRegistry);
+        Gauge.builder("jwt.revocation.entries", revocationList, RevocationList::size).register(meterRegistry);
+    }
+
+    // Load every revocation that still matters before the first request is authenticated
+    @PostConstruct
+    public void load() {
+        long now = System.currentTimeMillis();
+        List<RevokedToken> rows = revokedTokenRepo.findByExpiresAtGreaterThan(now);
+        rows.forEach(this::addToList);
+        lastSync = now;
+        logger.info("Loaded {} token revocations", rows.size());
+    }
+
+    public boolean isRevoked(Claims claims) {
+        Date issuedAt = claims.getIssuedAt();
+        boolean revoked = revocationList.isRevoked(claims.getId(), claims.getSubject(),
+                issuedAt != null ? issuedAt.getTime() : 0);
+        if (revoked) {
+            rejected.increment();
+        }
+        return revoked;
+    }
+
+    // Revoke one access token (logout, or a single stolen token)
+    public void revokeToken(Claims claims, String reason) {
+        long expiresAt = claims.getExpiration() != null
+                ? claims.getExpiration().getTime()
+                : System.currentTimeMillis() + SecurityConstants.JWT_EXPIRATION;
+        if (claims.getId() == null) {
+            // Issued before tokens carried a jti: cut off the user's tokens up to this one instead
+            long issuedAt = claims.getIssuedAt() != null ? claims.getIssuedAt().getTime() : System.currentTimeMillis();
+            save(RevocationList.userKey(claims.getSubject()), claims.getSubject(), issuedAt, expiresAt, reason);
+            return;
+        }
+        save(RevocationList.jtiKey(claims.getId()), claims.getSubject(), Long.MAX_VALUE, expiresAt, reason);
+    }
+
+    // Revoke every access and refresh token the user holds, e.g. after a password change or a lost device.
+    // Tokens issued from the next second on are unaffected (iat only has one-second resolution).
+    public void revokeUser(String username, String reason) {
+        long now = System.currentTimeMillis();
+        save(RevocationList.userKey(username), username, now, now + SecurityConstants.JWT_EXPIRATION, reason);
+        int refreshTokens = refreshTokenService.revokeAllForUser(username);
+        logger.info("Revoked all tokens of '{}' ({} refresh tokens): {}", username, refreshTokens, reason);
+    }
+
+    // Pick up revocations made on other nodes. The window overlaps the previous one to cover clock skew.
+    @Scheduled(fixedDelayString = "${security.revocation.sync-interval-ms:5000}")
+    public void sync() {
+        long now = System.currentTimeMillis();
+        List<RevokedToken> rows = revokedTokenRepo
+                .findByRevokedAtGreaterThanEqualAndExpiresAtGreaterThan(lastSync - syncOverlapMillis, now);
+        rows.forEach(this::addToList);
+        lastSync = now;
+    }
+
+    // Forget revocations whose tokens have expired, in memory and in batches in the table
+    @Scheduled(fixedDelayString = "${security.revocation.purge-interval-ms:300000}")
+    public int purgeExpired() {
+        long now = System.currentTimeMillis();
+        revocationList.purgeExpired(now);
+
+        int total = 0;
+        List<String> keys;
+        do {
+            keys = revokedTokenRepo.findExpiredKeys(now, purgeBatchSize);
+            if (!keys.isEmpty()) {
+                revokedTokenRepo.deleteAllByIdInBatch(keys);
+                total += keys.size();
+            }
+        } while (keys.size() == purgeBatchSize);
+        return total;
+    }
+
+    public int size() {
+        return revocationList.size();
+    }
+
+    private void save(String key, String username, long issuedBefore, long expiresAt, String reason) {
+        RevokedToken row = revokedTokenRepo.findById(key).orElseGet(RevokedToken::new);
+        row.setTokenKey(key);
+        row.setUsername(username);
+        row.setIssuedBefore(Math.max(row.getIssuedBefore(), issuedBefore));
+        row.setExpiresAt(Math.max(row.getExpiresAt(), expiresAt));
+        row.setRevokedAt(System.currentTimeMillis());
+        row.setReason(reason);
+        revokedTokenRepo.save(row);
+        addToList(row);
+    }
+
+    private void addToList(RevokedToken row) {
+        revocationList.add(row.getTokenKey(), new RevocationList.Entry(row.getIssuedBefore(), row.getExpiresAt()));
+    }
+}
@@ -0,0 +1,135 @@
+package com.example.onlineticketingsystem.service;
+
+import com.example.onlineticketingsystem.entity.User;
+import com.example.onlineticketingsystem.entity.UserDirectory;
+import com.example.onlineticketingsystem.entity.UserDirectoryBackfill;
+import com.example.onlineticketingsystem.repo.*;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.stereotype.Service;
+
+import java.util.Optional;
+
+@Service
+public class UserDirectoryService {
+
+    private static final Logger logger = LoggerFactory.getLogger(UserDirectoryService.class);
+
+    // Same type codes as RegisterDTO.type
+    public static final String PASSENGER = "P";
+    public static final String BUS_OWNER = "B";
+    public static final String TICKET_INSPECTOR = "T";
+    public static final String ADMIN = "A";
+
+    private static final int BACKFILL_PAGE_SIZE = 500;
+    private static final int BACKFILL_MARKER = 1;
+
+    @Autowired
+    private UserDirectoryRepo userDirectoryRepo;
+    @Autowired
+    private UserDirectoryBackfillRepo userDirectoryBackfillRepo;
+    @Autowired
+    private PassengerRepo passengerRepo;
+    @Autowired
+    private BusOwnerRepo busOwnerRepo;
+    @Autowired
+    private TicketInspectorRepo ticketInspectorRepo;
+    @Autowired
+    private AdminRepo adminRepo;
+
+    @Value("${security.user-directory.backfill-on-startup:true}")
+    private boolean backfillOnStartup;
+
+    // Set once the backfill has completed, here or on another node; until then some users are only in their own table
+    private volatile boolean backfilled;
+
+    public Optional<UserDirectory> findByEmail(String email) {
+        return userDirectoryRepo.findByEmail(email);
+    }
+
+    public boolean isBackfilled() {
+        return backfilled;
+    }
+
+    // True when any kind of user already holds this email. Until the backfill has completed, users that predate
+    // the directory may only be in their own table, so those are checked too.
+    public boolean isRegistered(String email) {
+        if (userDirectoryRepo.existsByEmail(email)) {
+            return true;
+        }
+        if (backfilled) {
+            return false;
+        }
+        return passengerRepo.findByEmail(email).isPresent()
+                || busOwnerRepo.findByEmail(email).isPresent()
+                || ticketInspectorRepo.findByEmail(email).isPresent()
+                || adminRepo.findByEmail(email).isPresent();
+    }
+
+    // Insert or refresh the directory entry for a user that was just saved to its own table. An entry that belongs
+    // to a different user is left alone: the first user recorded for an email keeps it, as in backfill().
+    public void record(String userType, User user) {
+        Optional<UserDirectory> existing = userDirectoryRepo.findByEmail(user.getEmail());
+        if (existing.isPresent() && (!existing.get().getUserType().equals(userType)
+                || existing.get().getUserId() != user.getUserID())) {
+            logger.warn("Email {} already belongs to user {}:{}; not recording {}:{}", user.getEmail(),
+                    existing.get().getUserType(), existing.get().getUserId(), userType, user.getUserID());
+            return;
+        }
+        UserDirectory entry = existing.orElseGet(UserDirectory::new);
+        entry.setEmail(user.getEmail());
+        entry.setUserType(userType);
+        entry.setUserId(user.getUserID());
+        entry.setPassword(user.getPassword());
+        entry.setRoleName(user.getRole() != null ? user.getRole().getName() : null);
+        userDirectoryRepo.save(entry);
+    }
+
+    // Every user created since the directory exists is recorded as it is saved, so once a backfill has completed
+    // anywhere there is nothing left to copy
+    @EventListener(ApplicationReadyEvent.class)
+    public void backfillOnStartup() {
+        backfilled = userDirectoryBackfillRepo.existsById(BACKFILL_MARKER);
+        if (!backfilled && backfillOnStartup) {
+            backfill();
+        }
+    }
+
+    // Copy any user that predates the directory into it, then write the marker. Safe to run repeatedly: existing
+    // emails are skipped.
+    public int backfill() {
+        int added = backfill(PASSENGER, passengerRepo)
+                + backfill(BUS_OWNER, busOwnerRepo)
+                + backfill(TICKET_INSPECTOR, ticketInspectorRepo)
+                + backfill(ADMIN, adminRepo);
+        userDirectoryBackfillRepo.save(new UserDirectoryBackfill(BACKFILL_MARKER, added, System.currentTimeMillis()));
+        backfilled = true;
+        logger.info("User directory backfill complete; {} entries added", added);
+        return added;
+    }
+
+    private int backfill(String userType, JpaRepository<? extends User, Integer> repo) {
+        int added = 0;
+        Pageable pageable = PageRequest.of(0, BACKFILL_PAGE_SIZE);
+        Page<? extends User> page;
+        do {
+            page = repo.findAll(pageable);
+            for (User user : page) {
+                if (user.getEmail() != null && !userDirectoryRepo.existsByEmail(user.getEmail())) {
+                    record(userType, user);
+                    added++;
+                }
+            }
+            pageable = page.nextPageable();
+        } while (page.hasNext());
+        return added;
+    }
+}
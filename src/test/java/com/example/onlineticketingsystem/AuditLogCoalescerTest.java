@@ -0,0 +1,126 @@
+package com.example.onlineticketingsystem;
+
+import com.example.onlineticketingsystem.entity.AuditLog;
+import com.example.onlineticketingsystem.service.AuditLogCoalescer;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+
+import java.sql.Timestamp;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class AuditLogCoalescerTest {
+
+    private static final long WINDOW = TimeUnit.SECONDS.toMillis(60);
+
+    private final AtomicLong now = new AtomicLong(1_700_000_000_000L);
+    private final AuditLogCoalescer coalescer = new AuditLogCoalescer(now::get, WINDOW, 10_000, "READ", new SimpleMeterRegistry());
+
+    private AuditLog event(String action, String user, String details) {
+        return new AuditLog(0, action, user, "[admin]", new Timestamp(now.get()), details, 1, null);
+    }
+
+    @Test
+    void repeatedReadsBecomeOneRowPerWindow() {
+        for (int i = 0; i < 30; i++) {
+            assertTrue(coalescer.offer(event("Read", "a@test.com", "Accessed all buses")));
+            assertTrue(coalescer.offer(event("READ", "a@test.com", "Accessed all inspections")));
+            now.addAndGet(1000);
+        }
+        assertTrue(coalescer.drain(false).isEmpty());
+
+        now.addAndGet(WINDOW);
+        List<AuditLog> rows = coalescer.drain(false);
+        assertEquals(2, rows.size());
+        AuditLog buses = rows.stream().filter(row -> row.getDetails().equals("Accessed all buses")).findFirst().orElseThrow();
+        assertEquals(30, buses.getEventCount());
+        assertEquals("Read", buses.getAction());
+        assertEquals(29_000, buses.getTimestamp().getTime() - buses.getFirstTimestamp().getTime());
+        assertEquals(0, coalescer.getOpenGroups());
+    }
+
+    @Test
+    void writesAreNeverCoalesced() {
+        assertFalse(coalescer.offer(event("Create", "a@test.com", "Created bus with ID 1")));
+        assertFalse(coalescer.offer(event("UPDATE", "a@test.com", "Updated bus with ID 1")));
+        assertFalse(coalescer.offer(event("Delete", "a@test.com", "Deleted bus with ID 1")));
+        assertEquals(0, coalescer.getOpenGroups());
+    }
+
+    @Test
+    void differentUsersRolesAndDetailsStayApart() {
+        coalescer.offer(event("Read", "a@test.com", "Accessed all buses"));
+        coalescer.offer(event("Read", "b@test.com", "Accessed all buses"));
+        coalescer.offer(event("Read", "a@test.com", "Accessed inspections for inspector 7"));
+        AuditLog otherRole = event("Read", "a@test.com", "Accessed all buses");
+        otherRole.setRole("[user]");
+        coalescer.offer(otherRole);
+
+        List<AuditLog> rows = coalescer.drain(true);
+        assertEquals(4, rows.size());
+        assertTrue(rows.stream().allMatch(row -> row.getEventCount() == 1 && row.getFirstTimestamp() == null));
+    }
+
+    @Test
+    void newGroupsAreRefusedWhenFull() {
+        AuditLogCoalescer small = new AuditLogCoalescer(now::get, WINDOW, 2, "READ", new SimpleMeterRegistry());
+        assertTrue(small.offer(event("Read", "a@test.com", "x")));
+        assertTrue(small.offer(event("Read", "b@test.com", "x")));
+        assertFalse(small.offer(event("Read", "c@test.com", "x")));
+        assertTrue(small.offer(event("Read", "a@test.com", "x")));
+    }
+
+    // 200 clients polling two lists every 5 seconds for an hour
+    @Test
+    void pollingTrafficShrinksByMoreThanAnOrderOfMagnitude() {
+        long events = 0;
+        long rows = 0;
+        long counted = 0;
+        for (int second = 0; second < 3600; second += 5) {
+            for (int client = 0; client < 200; client++) {
+                coalescer.offer(event("Read", "client" + client + "@test.com", "Accessed all buses"));
+                coalescer.offer(event("Read", "client" + client + "@test.com", "Accessed all routes"));
+                events += 2;
+            }
+            now.addAndGet(5000);
+            List<AuditLog> drained = coalescer.drain(false);
+            rows += drained.size();
+            counted += drained.stream().mapToLong(AuditLog::getEventCount).sum();
+        }
+        List<AuditLog> drained = coalescer.drain(true);
+        rows += drained.size();
+        counted += drained.stream().mapToLong(AuditLog::getEventCount).sum();
+        assertEquals(events, counted);
+        assertTrue(events / rows >= 10);
+    }
+
+    @Test
+    void noEventIsLostWhileDrainingConcurrently() throws Exception {
+        ExecutorService threads = Executors.newFixedThreadPool(4);
+        List<Future<?>> writers = new ArrayList<>();
+        for (int t = 0; t < 4; t++) {
+            writers.add(threads.submit(() -> {
+                for (int i = 0; i < 20_000; i++) {
+                    coalescer.offer(event("Read", "user" + (i % 10) + "@test.com", "Accessed all buses"));
+                }
+            }));
+        }
+        long counted = 0;
+        while (!writers.stream().allMatch(Future::isDone)) {
+            counted += coalescer.drain(true).stream().mapToLong(AuditLog::getEventCount).sum();
+        }
+        for (Future<?> writer : writers) {
+            writer.get();
+        }
+        counted += coalescer.drain(true).stream().mapToLong(AuditLog::getEventCount).sum();
+        threads.shutdown();
+        assertEquals(80_000, counted);
+    }
+}
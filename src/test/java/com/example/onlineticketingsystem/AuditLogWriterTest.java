@@ -0,0 +1,110 @@
+package com.example.onlineticketingsystem;
+
+import com.example.onlineticketingsystem.entity.AuditLog;
+import com.example.onlineticketingsystem.repo.AuditLogRepo;
+import com.example.onlineticketingsystem.service.AuditLogWriter;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.sql.Timestamp;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+// The writer commits on its own connection, so the test runs outside the usual rolled-back transaction
+@DataJpaTest(showSql = false, properties = {"logging.level.org.springframework.security=INFO"})
+@Transactional(propagation = Propagation.NOT_SUPPORTED)
+class AuditLogWriterTest {
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+    @Autowired
+    private AuditLogRepo auditLogRepo;
+
+    @TempDir
+    Path dir;
+
+    private final SimpleMeterRegistry registry = new SimpleMeterRegistry();
+
+    @AfterEach
+    void cleanUp() {
+        auditLogRepo.deleteAllInBatch();
+    }
+
+    private AuditLogWriter writer(int capacity, String policy) {
+        return new AuditLogWriter(jdbcTemplate, capacity, 100, 20, policy, 20,
+                dir.resolve("spill.ndjson").toString(), 10_000, registry);
+    }
+
+    private static AuditLog record(int i) {
+        return new AuditLog(0, "Read", "user" + i + "@test.com", "[admin]", new Timestamp(System.currentTimeMillis()), "Accessed all buses", 1, null);
+    }
+
+    @Test
+    void writesEverythingInBatchesAndFlushesOnShutdown() {
+        AuditLogWriter writer = writer(10_000, "drop");
+        writer.start();
+        for (int i = 0; i < 2_000; i++) {
+            writer.enqueue(record(i));
+        }
+        writer.shutdown();
+
+        assertEquals(2_000, auditLogRepo.count());
+        assertEquals(2_000, registry.get("audit.log.written").counter().count());
+        assertTrue(registry.get("audit.log.flush").timer().count() < 2_000 / 10);
+        assertEquals(0, writer.getQueueDepth());
+    }
+
+    @Test
+    void dropPolicyCountsWhatDoesNotFit() {
+        AuditLogWriter writer = writer(10, "drop");
+        // The writer is not started yet, so the queue fills up
+        for (int i = 0; i < 15; i++) {
+            writer.enqueue(record(i));
+        }
+        assertEquals(5, registry.get("audit.log.dropped").counter().count());
+
+        writer.start();
+        writer.shutdown();
+        assertEquals(10, auditLogRepo.count());
+    }
+
+    @Test
+    void blockPolicyGivesUpAfterTheTimeout() {
+        AuditLogWriter writer = writer(1, "block");
+        writer.enqueue(record(0));
+        long started = System.nanoTime();
+        writer.enqueue(record(1));
+
+        assertTrue(TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - started) >= 15);
+        assertEquals(1, registry.get("audit.log.dropped").counter().count());
+        writer.start();
+        writer.shutdown();
+    }
+
+    @Test
+    void spillPolicyWritesOverflowBackOnceTheQueueDrains() throws Exception {
+        AuditLogWriter writer = writer(10, "spill");
+        for (int i = 0; i < 25; i++) {
+            writer.enqueue(record(i));
+        }
+        assertEquals(15, registry.get("audit.log.spilled").counter().count());
+        assertTrue(Files.size(dir.resolve("spill.ndjson")) > 0);
+
+        writer.start();
+        writer.shutdown();
+
+        assertEquals(25, auditLogRepo.count());
+        assertEquals(0, registry.get("audit.log.dropped").counter().count());
+        assertTrue(Files.notExists(dir.resolve("spill.ndjson.replay")));
+    }
+}
@@ -0,0 +1,167 @@
+package com.example.onlineticketingsystem;
+
+import com.example.onlineticketingsystem.service.AuditSearchIndex;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.sql.Timestamp;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@DataJpaTest(showSql = false, properties = {"logging.level.org.springframework.security=INFO"})
+class AuditSearchIndexTest {
+
+    // One row a minute; every fourth row touches a bus, the others routes, inspections and reads
+    private static final int ROWS = 100_000;
+    private static final long START = Instant.parse("2024-01-01T00:00:00Z").toEpochMilli();
+    private static final long MINUTE = 60_000;
+    private static final int LOOKBACK = 100;
+
+    @TempDir
+    private Path directory;
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @BeforeEach
+    void setUp() {
+        insert(0, ROWS);
+    }
+
+    private void insert(int from, int to) {
+        List<Object[]> rows = new ArrayList<>();
+        for (int i = from; i < to; i++) {
+            String details = switch (i % 4) {
+                case 0 -> "Updated bus with ID " + (i % 500);
+                case 1 -> "Deleted route with ID " + (i % 300);
+                case 2 -> "Created inspection with ID " + i;
+                default -> "Accessed all buses";
+            };
+            String action = switch (i % 4) {
+                case 0 -> "Update";
+                case 1 -> "Delete";
+                case 2 -> "Create";
+                default -> "Read";
+            };
+            rows.add(new Object[]{action, "user" + (i % 50) + "@test.com", "[admin]", new Timestamp(START + i * MINUTE), details});
+        }
+        jdbcTemplate.batchUpdate("INSERT INTO audit_log (action, performed_by, role, timestamp, details) VALUES (?, ?, ?, ?, ?)", rows);
+    }
+
+    private AuditSearchIndex index() throws Exception {
+        AuditSearchIndex index = new AuditSearchIndex(jdbcTemplate, directory.toString(), true, 20_000, 4, 5000, 5000,
+                LOOKBACK, new SimpleMeterRegistry());
+        index.open();
+        return index;
+    }
+
+    private List<Integer> sqlIds(String where, Object... args) {
+        return jdbcTemplate.queryForList("SELECT id FROM audit_log WHERE " + where + " ORDER BY id DESC", Integer.class, args);
+    }
+
+    @Test
+    void termsPhrasesFiltersAndTimeRangesMatchSql() throws Exception {
+        AuditSearchIndex index = index();
+        assertEquals(ROWS, index.catchUp());
+
+        // A phrase only matches the words in order: "bus with ID 42" but not "bus with ID 420"
+        AuditSearchIndex.SearchResult phrase = index.search("\"bus with id 42\"", null, null, null, null, null, 1000);
+        assertEquals(sqlIds("details = ?", "Updated bus with ID 42"), phrase.ids());
+        assertEquals(phrase.ids().size(), phrase.total());
+
+        // Words are ANDed, in any order and case
+        AuditSearchIndex.SearchResult words = index.search("ROUTE deleted", null, null, null, null, null, 10);
+        assertEquals(ROWS / 4, words.total());
+        assertEquals(sqlIds("details LIKE 'Deleted route%'").subList(0, 10), words.ids());
+
+        // performedBy and action are exact keywords, and from is inclusive while to is exclusive
+        Instant from = Instant.ofEpochMilli(START + 10_000 * MINUTE);
+        Instant to = Instant.ofEpochMilli(START + 60_000 * MINUTE);
+        AuditSearchIndex.SearchResult filtered = index.search("buses", "user3@test.com", "read", from, to, null, 10_000);
+        List<Integer> expected = sqlIds("details LIKE '%buses%' AND performed_by = ? AND action = 'Read' AND timestamp >= ? AND timestamp < ?",
+                "user3@test.com", Timestamp.from(from), Timestamp.from(to));
+        assertEquals(expected, filtered.ids());
+        assertEquals(expected.size(), filtered.total());
+
+        // The search syntax accepts the same filters inline
+        assertEquals(filtered.ids(), index.search("buses performedBy:user3@test.com action:Read", null, null, from, to, null, 10_000).ids());
+
+        // Paging with beforeId walks the same matches without repeating any
+        List<Integer> paged = new ArrayList<>();
+        Integer before = null;
+        while (true) {
+            AuditSearchIndex.SearchResult page = index.search("buses", "user3@test.com", "read", from, to, before, 100);
+            paged.addAll(page.ids());
+            if (page.total() <= page.ids().size()) {
+                break;
+            }
+            before = page.ids().get(page.ids().size() - 1);
+        }
+        assertEquals(expected, paged);
+
+        assertTrue(index.search("nothing-like-this", null, null, null, null, null, 10).ids().isEmpty());
+        assertThrows(IllegalArgumentException.class, () -> index.search("  ", null, null, null, null, null, 10));
+    }
+
+    @Test
+    void reopenedIndexResumesWithoutDuplicates() throws Exception {
+        AuditSearchIndex index = index();
+        index.catchUp();
+        index.shutdown();
+        try (Stream<Path> files = Files.list(directory)) {
+            assertTrue(files.count() < ROWS / 20_000, "segments should have been merged");
+        }
+
+        // The lookback window was left unwritten and is read again with the new rows
+        insert(ROWS, ROWS + 1000);
+        AuditSearchIndex reopened = index();
+        assertEquals(1000 + LOOKBACK, reopened.catchUp());
+        AuditSearchIndex.SearchResult all = reopened.search("\"all buses\"", null, null, null, null, null, 1);
+        assertEquals((ROWS + 1000) / 4, all.total());
+        assertEquals(sqlIds("details = 'Accessed all buses'").get(0), all.ids().get(0));
+    }
+
+    // A row whose id was taken before higher ids but which committed after they were indexed
+    @Test
+    void lateCommittedRowsInTheLookbackWindowAreIndexed() throws Exception {
+        int late = sqlIds("details = 'Accessed all buses'").get(LOOKBACK / 8);
+        jdbcTemplate.update("DELETE FROM audit_log WHERE id = ?", late);
+        AuditSearchIndex index = index();
+        assertEquals(ROWS - 1, index.catchUp());
+
+        jdbcTemplate.update("INSERT INTO audit_log (id, action, performed_by, role, timestamp, details) VALUES (?, 'Read', "
+                + "'late@test.com', '[admin]', ?, 'Accessed all buses')", late, new Timestamp(START));
+        assertEquals(1, index.catchUp());
+        assertEquals(0, index.catchUp());
+        assertEquals(List.of(late), index.search("\"all buses\"", "late@test.com", null, null, null, null, 10).ids());
+
+        // Still in id order among the rows around it
+        AuditSearchIndex.SearchResult all = index.search("\"all buses\"", null, null, null, null, null, LOOKBACK);
+        assertEquals(sqlIds("details = 'Accessed all buses'").subList(0, LOOKBACK), all.ids());
+    }
+
+    @Test
+    void phraseSearchFromADateMatchesTheLikeScan() throws Exception {
+        AuditSearchIndex index = index();
+        index.catchUp();
+        Instant from = Instant.ofEpochMilli(START + 20_000 * MINUTE);
+
+        for (int bus : new int[]{0, 8, 496}) {
+            List<Integer> like = sqlIds("details LIKE ? AND timestamp >= ?", "%bus with ID " + bus, Timestamp.from(from));
+            AuditSearchIndex.SearchResult result = index.search("\"bus with id " + bus + "\"", null, null, from, null, null, 50);
+            assertEquals(like.size(), result.total());
+            assertFalse(like.isEmpty());
+            assertEquals(like.subList(0, Math.min(50, like.size())), result.ids());
+        }
+    }
+}
@@ -0,0 +1,74 @@
+package com.example.onlineticketingsystem;
+
+import com.example.onlineticketingsystem.repo.*;
+import com.example.onlineticketingsystem.security.JWTGenerator;
+import com.example.onlineticketingsystem.security.PasswordHashingExecutor;
+import com.example.onlineticketingsystem.security.UserDetailsCache;
+import com.example.onlineticketingsystem.service.AuthService;
+import com.example.onlineticketingsystem.service.RefreshTokenService;
+import com.example.onlineticketingsystem.service.TokenRevocationService;
+import com.example.onlineticketingsystem.service.UserDirectoryService;
+import io.jsonwebtoken.Claims;
+import io.jsonwebtoken.Jwts;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.security.authentication.AuthenticationCredentialsNotFoundException;
+import org.springframework.security.authentication.AuthenticationManager;
+import org.springframework.security.crypto.password.PasswordEncoder;
+import org.springframework.transaction.PlatformTransactionManager;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.*;
+
+class AuthServiceLogoutTest {
+
+    private JWTGenerator jwtGenerator;
+    private RefreshTokenService refreshTokenService;
+    private TokenRevocationService tokenRevocationService;
+    private AuthService authService;
+
+    @BeforeEach
+    void setUp() {
+        jwtGenerator = mock(JWTGenerator.class);
+        refreshTokenService = mock(RefreshTokenService.class);
+        tokenRevocationService = mock(TokenRevocationService.class);
+        authService = new AuthService(mock(AuthenticationManager.class), mock(PassengerRepo.class),
+                mock(TicketInspectorRepo.class), mock(BusOwnerRepo.class), mock(AdminRepo.class), mock(RoleRepo.class),
+                mock(PasswordEncoder.class), jwtGenerator, mock(UserDetailsCache.class), mock(UserDirectoryService.class),
+                mock(PasswordHashingExecutor.class), refreshTokenService, tokenRevocationService,
+                mock(PlatformTransactionManager.class));
+    }
+
+    @Test
+    void revokesBothTokens() {
+        Claims claims = Jwts.claims().setSubject("user@test.com");
+        when(jwtGenerator.getClaimsFromJWT("access")).thenReturn(claims);
+
+        assertEquals("user@test.com", authService.logout("access", "refresh"));
+
+        verify(refreshTokenService).revoke("refresh");
+        verify(tokenRevocationService).revokeToken(claims, "logout");
+    }
+
+    @Test
+    void expiredAccessTokenStillRevokesTheRefreshToken() {
+        when(jwtGenerator.getClaimsFromJWT(anyString()))
+                .thenThrow(new AuthenticationCredentialsNotFoundException("Invalid or expired token"));
+
+        assertNull(authService.logout("expired", "refresh"));
+
+        verify(refreshTokenService).revoke("refresh");
+        verify(tokenRevocationService, never()).revokeToken(any(), anyString());
+    }
+
+    @Test
+    void refreshTokenAloneIsEnough() {
+        assertNull(authService.logout(null, "refresh"));
+
+        verify(refreshTokenService).revoke("refresh");
+        verifyNoInteractions(jwtGenerator, tokenRevocationService);
+    }
+}
@@ -0,0 +1,82 @@
+package com.example.onlineticketingsystem;
+
+import com.example.onlineticketingsystem.DTO.RegisterDTO;
+import com.example.onlineticketingsystem.entity.Passenger;
+import com.example.onlineticketingsystem.entity.Role;
+import com.example.onlineticketingsystem.repo.*;
+import com.example.onlineticketingsystem.security.JWTGenerator;
+import com.example.onlineticketingsystem.security.PasswordHashingExecutor;
+import com.example.onlineticketingsystem.security.UserDetailsCache;
+import com.example.onlineticketingsystem.service.AuthService;
+import com.example.onlineticketingsystem.service.RefreshTokenService;
+import com.example.onlineticketingsystem.service.TokenRevocationService;
+import com.example.onlineticketingsystem.service.UserDirectoryService;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.InOrder;
+import org.springframework.security.authentication.AuthenticationManager;
+import org.springframework.security.crypto.password.PasswordEncoder;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.SimpleTransactionStatus;
+
+import java.util.Optional;
+import java.util.function.Supplier;
+
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+class AuthServiceRegistrationTest {
+
+    private PassengerRepo passengerRepo;
+    private RoleRepo roleRepo;
+    private PasswordEncoder passwordEncoder;
+    private UserDirectoryService userDirectoryService;
+    private PasswordHashingExecutor passwordHashingExecutor;
+    private PlatformTransactionManager transactionManager;
+    private AuthService authService;
+
+    @BeforeEach
+    void setUp() {
+        passengerRepo = mock(PassengerRepo.class);
+        roleRepo = mock(RoleRepo.class);
+        passwordEncoder = mock(PasswordEncoder.class);
+        userDirectoryService = mock(UserDirectoryService.class);
+        passwordHashingExecutor = mock(PasswordHashingExecutor.class);
+        transactionManager = mock(PlatformTransactionManager.class);
+        authService = new AuthService(mock(AuthenticationManager.class), passengerRepo, mock(TicketInspectorRepo.class),
+                mock(BusOwnerRepo.class), mock(AdminRepo.class), roleRepo, passwordEncoder, mock(JWTGenerator.class),
+                mock(UserDetailsCache.class), userDirectoryService, passwordHashingExecutor, mock(RefreshTokenService.class),
+                mock(TokenRevocationService.class), transactionManager);
+
+        when(passwordHashingExecutor.execute(anyString(), any())).thenAnswer(call -> ((Supplier<?>) call.getArgument(1)).get());
+        when(passwordEncoder.encode("secret")).thenReturn("hashed");
+        when(transactionManager.getTransaction(any())).thenReturn(new SimpleTransactionStatus());
+        when(roleRepo.findById(2)).thenReturn(Optional.of(new Role(2, "ROLE_USER")));
+        when(passengerRepo.save(any())).thenAnswer(call -> call.getArgument(0));
+    }
+
+    private static RegisterDTO passenger(String email) {
+        return new RegisterDTO("Ann", email, "071-234 5678", "secret", new Role(2, "ROLE_USER"), 100, 0, 0, null, "p");
+    }
+
+    @Test
+    void passwordIsHashedBeforeTheTransactionStarts() {
+        authService.registerUser(passenger("ann@test.com"));
+
+        InOrder order = inOrder(passwordHashingExecutor, transactionManager, passengerRepo);
+        order.verify(passwordHashingExecutor).execute(eq("register"), any());
+        order.verify(transactionManager).getTransaction(any());
+        order.verify(passengerRepo).save(argThat((Passenger passenger) -> "hashed".equals(passenger.getPassword())));
+        order.verify(transactionManager).commit(any());
+    }
+
+    @Test
+    void takenEmailIsRefusedWithoutHashingOrATransaction() {
+        when(userDirectoryService.isRegistered("ann@test.com")).thenReturn(true);
+
+        assertThrows(IllegalArgumentException.class, () -> authService.registerUser(passenger("ann@test.com")));
+
+        verifyNoInteractions(passwordHashingExecutor, transactionManager, passengerRepo);
+    }
+}
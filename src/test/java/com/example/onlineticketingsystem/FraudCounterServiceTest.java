@@ -0,0 +1,171 @@
+package com.example.onlineticketingsystem;
+
+import com.example.onlineticketingsystem.DTO.FraudReconcileDTO;
+import com.example.onlineticketingsystem.DTO.InspectDTO;
+import com.example.onlineticketingsystem.repo.InspectRepo;
+import com.example.onlineticketingsystem.repo.JdbcInspectHistoryRepo;
+import com.example.onlineticketingsystem.service.FraudCounterService;
+import com.example.onlineticketingsystem.service.FraudRateSketchService;
+import com.example.onlineticketingsystem.service.InspectColumnStore;
+import com.example.onlineticketingsystem.service.InspectRollupService;
+import com.example.onlineticketingsystem.service.InspectService;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.modelmapper.ModelMapper;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.context.annotation.Import;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.sql.Date;
+import java.sql.Time;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadLocalRandom;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+// Writers commit on their own threads, so the test does not wrap each method in a rolled-back transaction
+@DataJpaTest(showSql = false, properties = {"logging.level.org.springframework.security=INFO",
+        "inspect.fraud-counters.reconcile-on-startup=false", "inspect.rollup.backfill-on-startup=false",
+        "inspect.fraud-sketch.background=false"})
+@Import({InspectService.class, FraudCounterService.class, InspectRollupService.class, InspectColumnStore.class,
+        FraudRateSketchService.class, JdbcInspectHistoryRepo.class, ModelMapper.class, SimpleMeterRegistry.class})
+@Transactional(propagation = Propagation.NOT_SUPPORTED)
+class FraudCounterServiceTest {
+
+    @Autowired
+    private InspectService inspectService;
+    @Autowired
+    private FraudCounterService fraudCounterService;
+    @Autowired
+    private InspectRepo inspectRepo;
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @BeforeEach
+    void clean() {
+        jdbcTemplate.update("DELETE FROM inspect");
+        jdbcTemplate.update("DELETE FROM fraud_counter");
+    }
+
+    private static InspectDTO inspection(int id, int routeId, int fraud) {
+        return new InspectDTO(id, 2, 4, routeId, Date.valueOf("2024-03-01"), Time.valueOf("12:30:00"), fraud, 100);
+    }
+
+    private int lastId() {
+        return jdbcTemplate.queryForObject("SELECT MAX(inspect_id) FROM inspect", Integer.class);
+    }
+
+    private Map<Integer, Long> aggregated() {
+        Map<Integer, Long> byRoute = new LinkedHashMap<>();
+        inspectRepo.sumFraudByRoute(null, null, null).forEach(route -> byRoute.put(route.getRouteId(), route.getFraudCount()));
+        return byRoute;
+    }
+
+    @Test
+    void everyWriteMovesTheCounters() {
+        inspectService.saveInspect(inspection(0, 1, 3));
+        int first = lastId();
+        inspectService.saveInspect(inspection(0, 1, 4));
+        int second = lastId();
+        inspectService.saveInspect(inspection(0, 2, 5));
+        assertEquals(Map.of(1, 7L, 2, 5L), fraudCounterService.fraudCountByRoute());
+        assertEquals(12, fraudCounterService.totalFraudCount());
+
+        // A new fraud count on the same route, then a move to another route
+        inspectService.updateInspect(inspection(first, 1, 10));
+        assertEquals(Map.of(1, 14L, 2, 5L), fraudCounterService.fraudCountByRoute());
+        inspectService.updateInspect(inspection(second, 2, 1));
+        assertEquals(Map.of(1, 10L, 2, 6L), fraudCounterService.fraudCountByRoute());
+
+        // saveInspect with an existing id overwrites that row as well
+        inspectService.saveInspect(inspection(first, 3, 2));
+        assertEquals(Map.of(2, 6L, 3, 2L), fraudCounterService.fraudCountByRoute());
+
+        // A delete takes off what is stored, whatever the request body says; a missing row changes nothing
+        inspectService.delete(inspection(first, 1, 999));
+        inspectService.delete(inspection(first, 1, 999));
+        assertEquals(Map.of(2, 6L), fraudCounterService.fraudCountByRoute());
+
+        assertEquals(aggregated(), fraudCounterService.fraudCountByRoute());
+        assertTrue(fraudCounterService.reconcile().getDrifted().isEmpty());
+        assertEquals(6, inspectService.fraudCount(null, null, null));
+    }
+
+    @Test
+    void reconcileReportsAndRepairsDrift() {
+        for (int i = 0; i < 30; i++) {
+            inspectService.saveInspect(inspection(0, i % 3, i % 5));
+        }
+        // A lost delta, a counter that disappeared and one for a route without inspections
+        jdbcTemplate.update("UPDATE fraud_counter SET fraud_count = fraud_count + 7 WHERE route_id = 0");
+        jdbcTemplate.update("DELETE FROM fraud_counter WHERE route_id = 1");
+        jdbcTemplate.update("INSERT INTO fraud_counter (route_id, fraud_count, inspections, updated_at) VALUES (99, 4, 1, 0)");
+
+        FraudReconcileDTO result = fraudCounterService.reconcile();
+        assertEquals(3, result.getRoutes());
+        assertEquals(List.of(0, 1, 99), result.getDrifted().stream().map(FraudReconcileDTO.RouteDrift::getRouteId).toList());
+        FraudReconcileDTO.RouteDrift route0 = result.getDrifted().get(0);
+        assertEquals(7, route0.getCountedFraudCount() - route0.getExpectedFraudCount());
+        assertEquals(0, result.getDrifted().get(1).getCountedInspections());
+        assertEquals(10, result.getDrifted().get(1).getExpectedInspections());
+
+        assertEquals(aggregated(), fraudCounterService.fraudCountByRoute());
+        assertTrue(fraudCounterService.reconcile().getDrifted().isEmpty());
+    }
+
+    @Test
+    void concurrentUpdatesKeepCountersExact() throws Exception {
+        List<Integer> ids = new ArrayList<>();
+        for (int i = 0; i < 40; i++) {
+            inspectService.saveInspect(inspection(0, i % 4, 1));
+            ids.add(lastId());
+        }
+        ExecutorService pool = Executors.newFixedThreadPool(4);
+        try {
+            List<Future<?>> futures = new ArrayList<>();
+            for (int t = 0; t < 4; t++) {
+                futures.add(pool.submit(() -> {
+                    ThreadLocalRandom random = ThreadLocalRandom.current();
+                    for (int i = 0; i < 150; i++) {
+                        int id = ids.get(random.nextInt(ids.size()));
+                        inspectService.updateInspect(inspection(id, random.nextInt(4), random.nextInt(10)));
+                    }
+                    return null;
+                }));
+            }
+            for (Future<?> future : futures) {
+                future.get();
+            }
+        } finally {
+            pool.shutdown();
+        }
+        assertEquals(aggregated(), fraudCounterService.fraudCountByRoute());
+        assertTrue(fraudCounterService.reconcile().getDrifted().isEmpty());
+    }
+
+    // Rows written straight to the table, as a restore or a migration would, are picked up by the next reconcile
+    @Test
+    void reconcileRebuildsCountersForRowsWrittenAroundTheService() {
+        int rows = 10_000;
+        List<Object[]> batch = new ArrayList<>();
+        for (int i = 0; i < rows; i++) {
+            batch.add(new Object[]{i % 25, i % 17, i % 40, Date.valueOf("2024-03-01"), Time.valueOf("12:30:00"), i % 7, 100});
+        }
+        jdbcTemplate.batchUpdate("INSERT INTO inspect (inspector_id, bus_id, route_id, inspect_date, inspect_time,"
+                + " no_fraud_detected, no_of_passengers) VALUES (?, ?, ?, ?, ?, ?, ?)", batch);
+        assertEquals(40, fraudCounterService.reconcile().getDrifted().size());
+
+        assertEquals(aggregated(), fraudCounterService.fraudCountByRoute());
+        assertTrue(fraudCounterService.reconcile().getDrifted().isEmpty());
+    }
+}
@@ -0,0 +1,225 @@
+package com.example.onlineticketingsystem;
+
+import com.example.onlineticketingsystem.DTO.FraudRatePercentilesDTO;
+import com.example.onlineticketingsystem.DTO.FraudRatePercentilesReportDTO;
+import com.example.onlineticketingsystem.DTO.InspectDTO;
+import com.example.onlineticketingsystem.repo.JdbcInspectHistoryRepo;
+import com.example.onlineticketingsystem.service.FraudCounterService;
+import com.example.onlineticketingsystem.service.FraudRateSketchService;
+import com.example.onlineticketingsystem.service.InspectColumnStore;
+import com.example.onlineticketingsystem.service.InspectRollupService;
+import com.example.onlineticketingsystem.service.InspectService;
+import com.example.onlineticketingsystem.service.QuantileSketch;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.modelmapper.ModelMapper;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.context.annotation.Import;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.sql.Date;
+import java.sql.Time;
+import java.time.LocalDate;
+import java.util.*;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+// InspectService commits its own transactions and the rebuild runs in transactions of its own
+@DataJpaTest(showSql = false, properties = {"logging.level.org.springframework.security=INFO",
+        "inspect.fraud-counters.reconcile-on-startup=false", "inspect.rollup.backfill-on-startup=false",
+        "inspect.fraud-sketch.background=false"})
+@Import({InspectService.class, FraudCounterService.class, InspectRollupService.class, InspectColumnStore.class,
+        FraudRateSketchService.class, JdbcInspectHistoryRepo.class, ModelMapper.class, SimpleMeterRegistry.class})
+@Transactional(propagation = Propagation.NOT_SUPPORTED)
+class FraudRateSketchServiceTest {
+
+    @Autowired
+    private InspectService inspectService;
+    @Autowired
+    private FraudRateSketchService sketches;
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @BeforeEach
+    void clean() {
+        jdbcTemplate.update("DELETE FROM inspect");
+        jdbcTemplate.update("DELETE FROM fraud_rate_sketch");
+        jdbcTemplate.update("DELETE FROM fraud_rate_sketch_seed");
+    }
+
+    // Largest distance between the rank a value really has among the sorted values and the rank asked for
+    private static double rankError(float[] sorted, double rank, double value) {
+        int below = 0;
+        while (below < sorted.length && sorted[below] < value) {
+            below++;
+        }
+        int atOrBelow = below;
+        while (atOrBelow < sorted.length && sorted[atOrBelow] <= value) {
+            atOrBelow++;
+        }
+        double low = (double) below / sorted.length;
+        double high = (double) atOrBelow / sorted.length;
+        return rank < low ? low - rank : rank > high ? rank - high : 0;
+    }
+
+    @Test
+    void sketchesMergeWithinTheirErrorBound() {
+        Random random = new Random(3);
+        int values = 1_000_000;
+        float[] all = new float[values];
+        QuantileSketch whole = new QuantileSketch(200);
+        QuantileSketch merged = new QuantileSketch(200);
+        QuantileSketch day = new QuantileSketch(200);
+        for (int i = 0; i < values; i++) {
+            // Mostly small rates with a long tail, like fraud per passenger
+            all[i] = random.nextInt(10) == 0 ? random.nextFloat() : (float) (random.nextGaussian() * 0.01 + 0.03);
+            whole.update(all[i]);
+            day.update(all[i]);
+            if (i % 2_740 == 2_739) {
+                merged.merge(QuantileSketch.fromBytes(day.toBytes()));
+                day = new QuantileSketch(200);
+            }
+        }
+        merged.merge(day);
+        Arrays.sort(all);
+
+        double[] ranks = {0.01, 0.1, 0.25, 0.5, 0.75, 0.9, 0.95, 0.99};
+        double[] fromWhole = whole.quantiles(ranks);
+        double[] fromMerged = merged.quantiles(ranks);
+        double worst = 0;
+        for (int i = 0; i < ranks.length; i++) {
+            worst = Math.max(worst, rankError(all, ranks[i], fromWhole[i]));
+            worst = Math.max(worst, rankError(all, ranks[i], fromMerged[i]));
+        }
+        assertEquals(values, merged.count());
+        assertTrue(worst < 0.02);
+        assertTrue(merged.toBytes().length < 4_096);
+        assertEquals(all[0], whole.quantiles(0)[0]);
+        assertEquals(all[values - 1], merged.quantiles(1)[0]);
+
+        // Small sketches keep every value, so their quantiles are exact
+        QuantileSketch small = new QuantileSketch(200);
+        for (int i = 1; i <= 100; i++) {
+            small.update(i);
+        }
+        assertArrayEquals(new double[]{50, 95, 100}, QuantileSketch.fromBytes(small.toBytes()).quantiles(0.5, 0.95, 0.999));
+    }
+
+    private static InspectDTO inspection(int id, int routeId, int inspectorId, String date, int fraud, int passengers) {
+        return new InspectDTO(id, inspectorId, 4, routeId, Date.valueOf(date), Time.valueOf("10:00:00"), fraud, passengers);
+    }
+
+    private int lastId() {
+        return jdbcTemplate.queryForObject("SELECT MAX(inspect_id) FROM inspect", Integer.class);
+    }
+
+    private static Map<Integer, Map<String, Double>> byGroup(FraudRatePercentilesReportDTO report) {
+        Map<Integer, Map<String, Double>> byGroup = new TreeMap<>();
+        for (FraudRatePercentilesDTO row : report.getRows()) {
+            byGroup.put(row.getGroupId(), row.getPercentiles());
+        }
+        return byGroup;
+    }
+
+    @Test
+    void writesKeepPercentilesCurrent() {
+        // Route 1: rates 0.1 .. 1.0 on days spread over two months; route 2 a single inspection
+        for (int i = 1; i <= 10; i++) {
+            inspectService.saveInspect(inspection(0, 1, 7, "2024-0" + (i <= 5 ? 3 : 4) + "-1" + (i % 5), i, 10));
+        }
+        inspectService.saveInspect(inspection(0, 2, 8, "2024-03-20", 1, 4));
+        inspectService.saveInspect(inspection(0, 2, 8, "2024-03-20", 1, 0));
+        int moved = lastId() - 1;
+
+        LocalDate from = LocalDate.of(2024, 3, 1);
+        LocalDate to = LocalDate.of(2024, 4, 30);
+        FraudRatePercentilesReportDTO report = sketches.percentiles(FraudRateSketchService.Dimension.ROUTE, from, to, null,
+                List.of(50.0, 90.0, 100.0));
+        assertEquals(Map.of(1, Map.of("p50", 0.5, "p90", 0.9, "p100", 1.0), 2, Map.of("p50", 0.25, "p90", 0.25, "p100", 0.25)),
+                byGroup(report));
+        assertEquals(List.of(10L, 1L), report.getRows().stream().map(FraudRatePercentilesDTO::getInspections).toList());
+
+        // Ranges that cut months read day sketches for the partial months
+        assertEquals(Map.of(1, Map.of("p50", 0.2)), byGroup(sketches.percentiles(
+                FraudRateSketchService.Dimension.ROUTE, LocalDate.of(2024, 3, 11), LocalDate.of(2024, 3, 13), 1, List.of(50.0))));
+        assertEquals(Set.of(7, 8), byGroup(sketches.percentiles(FraudRateSketchService.Dimension.INSPECTOR, from, to, null,
+                null)).keySet());
+
+        // An update and a delete leave stale sketches, which the next report rebuilds
+        inspectService.updateInspect(inspection(moved, 1, 7, "2024-03-20", 10, 10));
+        inspectService.delete(inspection(moved - 1, 0, 0, "2024-01-01", 0, 0));
+        assertTrue(jdbcTemplate.queryForObject("SELECT COUNT(*) FROM fraud_rate_sketch WHERE stale = TRUE", Integer.class) > 0);
+        report = sketches.percentiles(FraudRateSketchService.Dimension.ROUTE, from, to, null, List.of(50.0, 100.0));
+        assertEquals(0, report.getStaleSketches());
+        assertEquals(Map.of(1, Map.of("p50", 0.5, "p100", 1.0)), byGroup(report));
+        assertEquals(10, report.getRows().get(0).getInspections());
+
+        assertThrows(IllegalArgumentException.class, () -> sketches.percentiles(FraudRateSketchService.Dimension.ROUTE,
+                from, to, null, List.of(101.0)));
+        assertThrows(IllegalArgumentException.class, () -> FraudRateSketchService.Dimension.parse("bus"));
+    }
+
+    @Test
+    void seededSketchesMatchTheExactPercentiles() {
+        int routes = 20;
+        LocalDate first = LocalDate.of(2022, 1, 1);
+        int days = 731;
+        Random random = new Random(5);
+        List<Object[]> batch = new ArrayList<>();
+        for (int day = 0; day < days; day++) {
+            Date date = Date.valueOf(first.plusDays(day));
+            for (int i = 0; i < 5 * routes; i++) {
+                int passengers = 10 + random.nextInt(50);
+                int fraud = random.nextInt(8) == 0 ? random.nextInt(passengers / 2) : random.nextInt(3);
+                batch.add(new Object[]{i % 12, 1, i % routes, date, Time.valueOf("09:00:00"), fraud, passengers});
+            }
+        }
+        jdbcTemplate.batchUpdate("INSERT INTO inspect (inspector_id, bus_id, route_id, inspect_date, inspect_time,"
+                + " no_fraud_detected, no_of_passengers) VALUES (?, ?, ?, ?, ?, ?, ?)", batch);
+
+        assertFalse(sketches.isSeeded());
+        int marked = sketches.seed();
+        assertTrue(sketches.isSeeded());
+        assertEquals(marked, jdbcTemplate.queryForObject("SELECT sketches FROM fraud_rate_sketch_seed", Integer.class));
+        assertEquals(0, jdbcTemplate.queryForObject("SELECT COUNT(*) FROM rollup_backfill_checkpoint WHERE job = ?",
+                Integer.class, "fraud_rate_sketch"));
+        assertEquals(marked, sketches.rebuildStale());
+
+        LocalDate from = LocalDate.of(2022, 2, 10);
+        LocalDate to = LocalDate.of(2023, 12, 20);
+        FraudRatePercentilesReportDTO report = sketches.percentiles(FraudRateSketchService.Dimension.ROUTE, from, to, null,
+                List.of(50.0, 95.0));
+        Map<Integer, float[]> exact = exact(from, to);
+        assertEquals(routes, report.getRows().size());
+        assertEquals(0, report.getStaleSketches());
+        for (FraudRatePercentilesDTO row : report.getRows()) {
+            float[] sorted = exact.get(row.getGroupId());
+            assertEquals(sorted.length, row.getInspections());
+            assertTrue(rankError(sorted, 0.5, row.getPercentiles().get("p50")) < 0.02);
+            assertTrue(rankError(sorted, 0.95, row.getPercentiles().get("p95")) < 0.02);
+        }
+    }
+
+    // Every fraud rate per route, sorted: the exact answer the sketches approximate
+    private Map<Integer, float[]> exact(LocalDate from, LocalDate to) {
+        Map<Integer, List<Float>> rates = new TreeMap<>();
+        jdbcTemplate.query("SELECT route_id, no_fraud_detected, no_of_passengers FROM inspect WHERE inspect_date >= ?"
+                + " AND inspect_date <= ? AND no_of_passengers > 0", row -> {
+            rates.computeIfAbsent(row.getInt(1), route -> new ArrayList<>()).add((float) row.getInt(2) / row.getInt(3));
+        }, Date.valueOf(from), Date.valueOf(to));
+        Map<Integer, float[]> sorted = new TreeMap<>();
+        rates.forEach((route, values) -> {
+            float[] array = new float[values.size()];
+            for (int i = 0; i < array.length; i++) {
+                array[i] = values.get(i);
+            }
+            Arrays.sort(array);
+            sorted.put(route, array);
+        });
+        return sorted;
+    }
+}
@@ -0,0 +1,147 @@
+package com.example.onlineticketingsystem;
+
+import com.example.onlineticketingsystem.service.InMemoryRateLimiter;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class InMemoryRateLimiterStressTest {
+
+    private static final int THREADS = 16;
+
+    private final SimpleMeterRegistry registry = new SimpleMeterRegistry();
+
+    @Test
+    void blocksAfterMaxAttempts() {
+        InMemoryRateLimiter limiter = new InMemoryRateLimiter(5, 600_000, 1000, registry);
+        for (int i = 0; i < 4; i++) {
+            limiter.recordFailedAttempt("10.0.0.1");
+        }
+        assertFalse(limiter.isBlocked("10.0.0.1"));
+        assertEquals(1, limiter.getRemainingAttempts("10.0.0.1"));
+
+        limiter.recordFailedAttempt("10.0.0.1");
+        assertTrue(limiter.isBlocked("10.0.0.1"));
+        assertEquals(0, limiter.getRemainingAttempts("10.0.0.1"));
+
+        limiter.resetAttempts("10.0.0.1");
+        assertFalse(limiter.isBlocked("10.0.0.1"));
+        assertEquals(5, limiter.getRemainingAttempts("10.0.0.1"));
+    }
+
+    @Test
+    void concurrentFailuresFromOneIpAreNotLost() throws Exception {
+        InMemoryRateLimiter limiter = new InMemoryRateLimiter(THREADS * 100, 600_000, 1000, registry);
+        AtomicInteger blockedBeforeEnd = new AtomicInteger();
+
+        runConcurrently(thread -> {
+            for (int i = 0; i < 99; i++) {
+                limiter.recordFailedAttempt("10.0.0.2");
+                if (limiter.isBlocked("10.0.0.2")) {
+                    blockedBeforeEnd.incrementAndGet();
+                }
+            }
+        });
+
+        // 99 of the 100 attempts per thread are used, so exactly THREADS attempts remain
+        assertEquals(0, blockedBeforeEnd.get());
+        assertEquals(THREADS, limiter.getRemainingAttempts("10.0.0.2"));
+    }
+
+    @Test
+    void credentialStuffingFromManyIpsStaysBounded() throws Exception {
+        int maxEntries = 5_000;
+        InMemoryRateLimiter limiter = new InMemoryRateLimiter(5, 600_000, maxEntries, registry);
+
+        runConcurrently(thread -> {
+            for (int i = 0; i < 20_000; i++) {
+                String ip = "10." + thread + "." + (i >> 8) + "." + (i & 0xff);
+                limiter.recordFailedAttempt(ip);
+                limiter.isBlocked(ip);
+            }
+        });
+
+        assertTrue(limiter.getTrackedKeys() <= maxEntries, "tracked keys " + limiter.getTrackedKeys());
+        assertTrue(registry.get("rate.limiter.evictions").tag("reason", "capacity").counter().count() > 0);
+    }
+
+    @Test
+    void aTableFullOfBlocksStaysBounded() throws Exception {
+        int maxEntries = 1_000;
+        InMemoryRateLimiter limiter = new InMemoryRateLimiter(1, 600_000, maxEntries, registry);
+
+        runConcurrently(thread -> {
+            for (int i = 0; i < 5_000; i++) {
+                limiter.recordFailedAttempt("10." + thread + "." + (i >> 8) + "." + (i & 0xff));
+            }
+        });
+
+        // Every IP is blocked on its first failure, so the only room left is made by giving up the oldest blocks
+        assertTrue(limiter.getTrackedKeys() <= maxEntries, "tracked keys " + limiter.getTrackedKeys());
+        assertTrue(registry.get("rate.limiter.evictions").tag("reason", "blocked").counter().count() > 0);
+        String last = "10.0." + (4_999 >> 8) + "." + (4_999 & 0xff);
+        limiter.recordFailedAttempt(last);
+        assertTrue(limiter.isBlocked(last));
+    }
+
+    @Test
+    void floodingFreshIpsDoesNotLiftABlock() {
+        InMemoryRateLimiter limiter = new InMemoryRateLimiter(2, 600_000, 100, registry);
+        limiter.recordFailedAttempt("10.2.0.1");
+        limiter.recordFailedAttempt("10.2.0.1");
+        assertTrue(limiter.isBlocked("10.2.0.1"));
+
+        // The blocked IP is the least recently seen bucket by the time the table fills up
+        for (int i = 0; i < 1000; i++) {
+            limiter.recordFailedAttempt("10.3." + (i >> 8) + "." + (i & 0xff));
+        }
+        assertTrue(registry.get("rate.limiter.evictions").tag("reason", "capacity").counter().count() > 0);
+        assertTrue(limiter.isBlocked("10.2.0.1"));
+    }
+
+    @Test
+    void sweeperRemovesExpiredBlocks() throws Exception {
+        InMemoryRateLimiter limiter = new InMemoryRateLimiter(1, 20, 1000, registry);
+        for (int i = 0; i < 100; i++) {
+            limiter.recordFailedAttempt("10.1.0." + i);
+        }
+        assertEquals(100, limiter.getTrackedKeys());
+        assertEquals(100.0, registry.get("rate.limiter.blocks").counter().count());
+
+        Thread.sleep(50);
+        limiter.sweep();
+        assertEquals(0, limiter.getTrackedKeys());
+    }
+
+    private void runConcurrently(ThreadBody body) throws Exception {
+        ExecutorService pool = Executors.newFixedThreadPool(THREADS);
+        CountDownLatch start = new CountDownLatch(1);
+        AtomicInteger failures = new AtomicInteger();
+        for (int t = 0; t < THREADS; t++) {
+            int thread = t;
+            pool.submit(() -> {
+                try {
+                    start.await();
+                    body.run(thread);
+                } catch (Throwable e) {
+                    failures.incrementAndGet();
+                }
+            });
+        }
+        start.countDown();
+        pool.shutdown();
+        assertTrue(pool.awaitTermination(60, TimeUnit.SECONDS));
+        assertEquals(0, failures.get());
+    }
+
+    private interface ThreadBody {
+        void run(int thread) throws Exception;
+    }
+}
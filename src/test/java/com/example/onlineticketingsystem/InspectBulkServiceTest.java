@@ -0,0 +1,206 @@
+package com.example.onlineticketingsystem;
+
+import com.example.onlineticketingsystem.DTO.FraudRatePercentilesDTO;
+import com.example.onlineticketingsystem.DTO.InspectBulkItemDTO;
+import com.example.onlineticketingsystem.DTO.InspectBulkResultDTO;
+import com.example.onlineticketingsystem.repo.JdbcInspectHistoryRepo;
+import com.example.onlineticketingsystem.service.AuditLogService;
+import com.example.onlineticketingsystem.service.FraudCounterService;
+import com.example.onlineticketingsystem.service.FraudRateSketchService;
+import com.example.onlineticketingsystem.service.InspectBulkService;
+import com.example.onlineticketingsystem.service.InspectColumnStore;
+import com.example.onlineticketingsystem.service.InspectRollupService;
+import com.example.onlineticketingsystem.service.InspectService;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+import org.modelmapper.ModelMapper;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.boot.test.mock.mockito.MockBean;
+import org.springframework.context.annotation.Import;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.sql.Date;
+import java.sql.Time;
+import java.time.LocalDate;
+import java.util.*;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.*;
+
+// Uploads go through InspectBulkService with small batches; the counters, rollups, sketches and change log
+// they leave behind are checked against the inspect table. The audit log is a mock so batches can be counted.
+@DataJpaTest(showSql = false, properties = {"logging.level.org.springframework.security=INFO",
+        "inspect.fraud-counters.reconcile-on-startup=false", "inspect.rollup.backfill-on-startup=false",
+        "inspect.fraud-sketch.background=false", "inspect.columnar.enabled=false",
+        "inspect.bulk.batch-size=4", "inspect.bulk.max-items=20"})
+@Import({InspectService.class, FraudCounterService.class, InspectRollupService.class, InspectColumnStore.class,
+        FraudRateSketchService.class, JdbcInspectHistoryRepo.class, InspectBulkService.class, ModelMapper.class,
+        SimpleMeterRegistry.class})
+@Transactional(propagation = Propagation.NOT_SUPPORTED)
+class InspectBulkServiceTest {
+
+    @Autowired
+    private InspectBulkService bulkService;
+    @Autowired
+    private FraudCounterService fraudCounterService;
+    @Autowired
+    private FraudRateSketchService fraudRateSketchService;
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+    @MockBean
+    private AuditLogService auditLogService;
+
+    @BeforeEach
+    void clean() {
+        for (String table : List.of("inspect", "fraud_counter", "inspect_daily_rollup", "fraud_rate_sketch", "inspect_change")) {
+            jdbcTemplate.update("DELETE FROM " + table);
+        }
+    }
+
+    private static String json(int inspectorId, int busId, int routeId, String date, String time, int fraud, int passengers) {
+        return String.format("{\"inspectorId\": %d, \"busId\": %d, \"routeId\": %d, \"inspectDate\": %s, \"inspectTime\": %s, "
+                        + "\"noFraudDetected\": %d, \"noOfPassengers\": %d}", inspectorId, busId, routeId,
+                date != null ? "\"" + date + "\"" : "null", time != null ? "\"" + time + "\"" : "null", fraud, passengers);
+    }
+
+    private static InputStream body(String text) {
+        return new ByteArrayInputStream(text.getBytes(StandardCharsets.UTF_8));
+    }
+
+    private static List<String> statuses(InspectBulkResultDTO result) {
+        return result.getItems().stream().map(InspectBulkItemDTO::getStatus).toList();
+    }
+
+    private long count(String sql) {
+        return jdbcTemplate.queryForObject(sql, Long.class);
+    }
+
+    @Test
+    void arrayUploadIsWrittenInBatchesWithDerivedStateInStep() throws IOException {
+        List<String> items = new ArrayList<>();
+        List<List<Object>> expectedRows = new ArrayList<>();
+        Random random = new Random(5);
+        for (int i = 0; i < 12; i++) {
+            if (i == 3 || i == 8) {
+                items.add(json(0, 4, 2, "2024-06-01", "08:00:00", 1, 10));
+                continue;
+            }
+            int inspectorId = 1 + random.nextInt(3);
+            int busId = 1 + random.nextInt(5);
+            int routeId = 1 + random.nextInt(3);
+            String date = "2024-06-0" + (1 + random.nextInt(3));
+            String time = i % 5 == 0 ? null : "0" + random.nextInt(10) + ":15:00";
+            int fraud = random.nextInt(4);
+            int passengers = 10 + random.nextInt(30);
+            items.add(json(inspectorId, busId, routeId, date, time, fraud, passengers));
+            expectedRows.add(Arrays.asList(inspectorId, busId, routeId, Date.valueOf(date),
+                    time != null ? Time.valueOf(time) : null, fraud, passengers));
+        }
+        InspectBulkResultDTO result = bulkService.ingest(body("[" + String.join(",\n", items) + "]"), false, "inspector@example.com", "ticket-inspector");
+
+        assertNull(result.getError());
+        assertEquals(12, result.getReceived());
+        assertEquals(10, result.getCreated());
+        assertEquals(2, result.getRejected());
+        assertEquals(0, result.getFailed());
+        assertEquals(3, result.getBatches());
+        for (InspectBulkItemDTO item : result.getItems()) {
+            boolean invalid = item.getIndex() == 3 || item.getIndex() == 8;
+            assertEquals(invalid ? "rejected" : "created", item.getStatus());
+            assertEquals(invalid ? "inspectorId must be positive" : null, item.getError());
+            assertEquals(invalid, item.getInspectId() == null);
+        }
+
+        // The rows are those uploaded, under the ids handed back, and each batch's audit record lists its ids
+        List<Integer> ids = result.getItems().stream().map(InspectBulkItemDTO::getInspectId).filter(Objects::nonNull).toList();
+        ArgumentCaptor<String> details = ArgumentCaptor.forClass(String.class);
+        verify(auditLogService, times(3)).createAuditLog(eq("Create"), eq("inspector@example.com"), eq("ticket-inspector"),
+                details.capture());
+        assertEquals(List.of("Bulk created 4 inspections, ids " + ids.get(0) + "-" + ids.get(3),
+                "Bulk created 4 inspections, ids " + ids.get(4) + "-" + ids.get(7),
+                "Bulk created 2 inspections, ids " + ids.get(8) + "-" + ids.get(9)), details.getAllValues());
+        assertEquals(ids, jdbcTemplate.queryForList("SELECT inspect_id FROM inspect ORDER BY inspect_id", Integer.class));
+        assertEquals(expectedRows, jdbcTemplate.query("SELECT inspector_id, bus_id, route_id, inspect_date, inspect_time, "
+                        + "no_fraud_detected, no_of_passengers FROM inspect ORDER BY inspect_id",
+                (row, i) -> Arrays.asList(row.getInt(1), row.getInt(2), row.getInt(3), row.getDate(4), row.getTime(5),
+                        row.getInt(6), row.getInt(7))));
+
+        assertEquals(count("SELECT SUM(no_fraud_detected) FROM inspect"), fraudCounterService.totalFraudCount());
+        assertTrue(fraudCounterService.reconcile().getDrifted().isEmpty());
+        assertEquals(count("SELECT COUNT(*) FROM inspect"), count("SELECT SUM(inspections) FROM inspect_daily_rollup"));
+        assertEquals(count("SELECT SUM(no_of_passengers) FROM inspect"), count("SELECT SUM(passengers) FROM inspect_daily_rollup"));
+        assertEquals(10, count("SELECT COUNT(*) FROM inspect_change"));
+        // Every inspection is in one day and one month sketch per dimension
+        assertEquals(40, count("SELECT SUM(inspections) FROM fraud_rate_sketch"));
+        long sketched = fraudRateSketchService.percentiles(FraudRateSketchService.Dimension.ROUTE,
+                        LocalDate.of(2024, 6, 1), LocalDate.of(2024, 6, 30), null, List.of(50.0))
+                .getRows().stream().mapToLong(FraudRatePercentilesDTO::getInspections).sum();
+        assertEquals(10, sketched);
+    }
+
+    @Test
+    void ndjsonRejectsBadLinesAndCarriesOn() throws IOException {
+        String upload = String.join("\n",
+                json(1, 2, 3, "2024-06-01", "08:00:00", 0, 12),
+                "{\"inspectorId\": 1, \"busId\": ",
+                "",
+                json(1, 2, 3, null, "08:00:00", 0, 12),
+                "{\"inspectId\": 42, \"inspectorId\": 1, \"busId\": 2, \"routeId\": 3, \"inspectDate\": \"2024-06-01\"}",
+                "{\"inspectorId\": \"one\", \"busId\": 2, \"routeId\": 3, \"inspectDate\": \"2024-06-01\"}",
+                "[1, 2]",
+                json(1, 2, 3, "2024-06-01", "09:00:00", -1, 12),
+                "{\"inspectorId\": 1, \"busId\": 2, \"routeId\": 3, \"inspectDate\": \"2024-06-01\", \"comment\": \"late bus\"}");
+        InspectBulkResultDTO result = bulkService.ingest(body(upload), true, "admin@example.com", "admin");
+
+        assertEquals(List.of("created", "rejected", "rejected", "rejected", "rejected", "rejected", "rejected", "created"),
+                statuses(result));
+        List<String> errors = result.getItems().stream().map(InspectBulkItemDTO::getError).toList();
+        assertTrue(errors.get(1).startsWith("Malformed JSON"), errors.get(1));
+        assertEquals("inspectDate is required", errors.get(2));
+        assertEquals("inspectId must not be set; bulk uploads only create inspections", errors.get(3));
+        assertTrue(errors.get(4).startsWith("Invalid inspection"), errors.get(4));
+        assertEquals("Expected a JSON object", errors.get(5));
+        assertEquals("noFraudDetected must not be negative", errors.get(6));
+        assertEquals(1, result.getBatches());
+        assertEquals(2, count("SELECT COUNT(*) FROM inspect"));
+        verify(auditLogService, times(1)).createAuditLog(eq("Create"), eq("admin@example.com"), eq("admin"), anyString());
+    }
+
+    @Test
+    void malformedArrayStopsTheUploadAfterWritingWhatCameBefore() throws IOException {
+        String upload = "[" + String.join(",", Collections.nCopies(5, json(1, 2, 3, "2024-06-01", "08:00:00", 1, 12)))
+                + ", {\"inspectorId\": 1,, ]";
+        InspectBulkResultDTO result = bulkService.ingest(body(upload), false, "admin@example.com", "admin");
+        assertEquals(5, result.getCreated());
+        assertEquals(2, result.getBatches());
+        assertTrue(result.getError().startsWith("Malformed JSON after item 5"), result.getError());
+        assertEquals(5, count("SELECT COUNT(*) FROM inspect"));
+
+        result = bulkService.ingest(body("[" + json(1, 2, 3, "2024-06-01", "08:00:00", 1, 12)), false, "admin@example.com", "admin");
+        assertEquals(1, result.getCreated());
+        assertTrue(result.getError().startsWith("Malformed JSON after item 1"), result.getError());
+
+        assertThrows(IllegalArgumentException.class,
+                () -> bulkService.ingest(body(json(1, 2, 3, "2024-06-01", "08:00:00", 1, 12)), false, "admin@example.com", "admin"));
+    }
+
+    @Test
+    void uploadsStopAtMaxItems() throws IOException {
+        String upload = String.join("\n", Collections.nCopies(25, json(1, 2, 3, "2024-06-01", "08:00:00", 1, 12)));
+        InspectBulkResultDTO result = bulkService.ingest(body(upload), true, "admin@example.com", "admin");
+        assertEquals(20, result.getReceived());
+        assertEquals(20, result.getCreated());
+        assertEquals("At most 20 inspections per upload; the rest were not read", result.getError());
+    }
+}
@@ -0,0 +1,247 @@
+package com.example.onlineticketingsystem;
+
+import com.example.onlineticketingsystem.DTO.InspectAnalyticsRowDTO;
+import com.example.onlineticketingsystem.DTO.InspectDTO;
+import com.example.onlineticketingsystem.repo.JdbcInspectHistoryRepo;
+import com.example.onlineticketingsystem.service.FraudCounterService;
+import com.example.onlineticketingsystem.service.FraudRateSketchService;
+import com.example.onlineticketingsystem.service.InspectColumnStore;
+import com.example.onlineticketingsystem.service.InspectColumns;
+import com.example.onlineticketingsystem.service.InspectRollupService;
+import com.example.onlineticketingsystem.service.InspectService;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.modelmapper.ModelMapper;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.context.annotation.Import;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.sql.Date;
+import java.sql.Time;
+import java.time.LocalDate;
+import java.util.*;
+import java.util.concurrent.ForkJoinPool;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+// InspectService commits its own transactions and the snapshot reads what was committed. The background
+// refresher only loads once, so the test decides when to refresh. H2 rejects the MySQL streaming fetch size.
+@DataJpaTest(showSql = false, properties = {"logging.level.org.springframework.security=INFO",
+        "inspect.fraud-counters.reconcile-on-startup=false", "inspect.rollup.backfill-on-startup=false",
+        "inspect.fraud-sketch.background=false",
+        "inspect.columnar.fetch-size=1000", "inspect.columnar.refresh-ms=3600000"})
+@Import({InspectService.class, FraudCounterService.class, InspectRollupService.class, InspectColumnStore.class,
+        FraudRateSketchService.class, JdbcInspectHistoryRepo.class, ModelMapper.class, SimpleMeterRegistry.class})
+@Transactional(propagation = Propagation.NOT_SUPPORTED)
+class InspectColumnStoreTest {
+
+    private static final List<InspectColumns.Column> SUMS = List.of(InspectColumns.Column.FRAUD, InspectColumns.Column.PASSENGERS);
+
+    @Autowired
+    private InspectService inspectService;
+    @Autowired
+    private InspectColumnStore columnStore;
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @BeforeEach
+    void clean() {
+        jdbcTemplate.update("DELETE FROM inspect");
+        jdbcTemplate.update("DELETE FROM inspect_change");
+    }
+
+    // {inspectId, inspectorId, busId, routeId, epochDay, secondOfDay, fraud, passengers}
+    private static int[] randomRow(Random random, int id) {
+        return new int[]{id, random.nextInt(30), random.nextInt(50), random.nextInt(120),
+                random.nextInt(50) == 0 ? InspectColumns.NULL : 19_000 + random.nextInt(400),
+                random.nextInt(50) == 0 ? InspectColumns.NULL : random.nextInt(86_400),
+                random.nextInt(5), random.nextInt(90)};
+    }
+
+    private static void upsert(InspectColumns columns, int[] row) {
+        columns.upsert(row[0], row[1], row[2], row[3], row[4], row[5], row[6], row[7]);
+    }
+
+    private static int value(int[] row, InspectColumns.Column column) {
+        if (column == InspectColumns.Column.INSPECT_HOUR) {
+            return row[5] == InspectColumns.NULL ? -1 : row[5] / 3600;
+        }
+        return row[column.ordinal()];
+    }
+
+    // What aggregate() should return, computed one row at a time: key -> {count, sums...}
+    private static Map<Integer, List<Long>> expected(Collection<int[]> rows, List<InspectColumns.Filter> filters,
+                                                     InspectColumns.Column groupBy) {
+        Map<Integer, List<Long>> groups = new TreeMap<>(Comparator.nullsFirst(Comparator.naturalOrder()));
+        for (int[] row : rows) {
+            boolean matches = filters.stream().allMatch(filter ->
+                    value(row, filter.column()) >= filter.min() && value(row, filter.column()) <= filter.max());
+            if (!matches) {
+                continue;
+            }
+            Integer key = groupBy != null ? value(row, groupBy) : null;
+            List<Long> totals = groups.computeIfAbsent(key, k -> new ArrayList<>(List.of(0L, 0L, 0L)));
+            totals.set(0, totals.get(0) + 1);
+            totals.set(1, totals.get(1) + row[6]);
+            totals.set(2, totals.get(2) + row[7]);
+        }
+        return groups;
+    }
+
+    private static Map<Integer, List<Long>> actual(InspectColumns columns, List<InspectColumns.Filter> filters,
+                                                   InspectColumns.Column groupBy, ForkJoinPool pool) {
+        Map<Integer, List<Long>> groups = new TreeMap<>(Comparator.nullsFirst(Comparator.naturalOrder()));
+        List<Integer> order = new ArrayList<>();
+        for (InspectColumns.Group group : columns.aggregate(filters, groupBy, SUMS, pool)) {
+            groups.put(group.key(), List.of(group.count(), group.sums()[0], group.sums()[1]));
+            order.add(group.key());
+        }
+        assertEquals(new ArrayList<>(groups.keySet()), order, "groups come back sorted by key");
+        return groups;
+    }
+
+    @Test
+    void aggregatesMatchRowByRowTotals() {
+        Random random = new Random(7);
+        Map<Integer, int[]> rows = new TreeMap<>();
+        InspectColumns columns = new InspectColumns(16);
+        // Mostly increasing ids with some late lower ones, then updates, deletes and re-inserts
+        for (int id = 1; id <= 120_000; id++) {
+            int inspectId = random.nextInt(20) == 0 ? random.nextInt(id) + 1 : id * 2;
+            int[] row = randomRow(random, inspectId);
+            rows.put(inspectId, row);
+            upsert(columns, row);
+        }
+        List<Integer> ids = new ArrayList<>(rows.keySet());
+        for (int i = 0; i < 40_000; i++) {
+            int id = ids.get(random.nextInt(ids.size()));
+            if (random.nextBoolean()) {
+                int[] row = randomRow(random, id);
+                rows.put(id, row);
+                upsert(columns, row);
+            } else {
+                assertEquals(rows.remove(id) != null, columns.delete(id));
+            }
+        }
+        assertEquals(rows.size(), columns.rows());
+
+        ForkJoinPool pool = new ForkJoinPool(4);
+        try {
+            List<List<InspectColumns.Filter>> filterSets = List.of(
+                    List.of(),
+                    List.of(InspectColumns.Filter.equal(InspectColumns.Column.ROUTE_ID, 17)),
+                    List.of(new InspectColumns.Filter(InspectColumns.Column.INSPECT_DATE, 19_100, 19_200),
+                            new InspectColumns.Filter(InspectColumns.Column.INSPECT_HOUR, 7, 9)),
+                    List.of(new InspectColumns.Filter(InspectColumns.Column.INSPECT_DATE, InspectColumns.NULL, InspectColumns.NULL)));
+            List<InspectColumns.Column> groupings = Arrays.asList(null, InspectColumns.Column.ROUTE_ID,
+                    InspectColumns.Column.INSPECT_DATE, InspectColumns.Column.INSPECT_HOUR, InspectColumns.Column.INSPECT_ID);
+            for (int pass = 0; pass < 2; pass++) {
+                for (List<InspectColumns.Filter> filters : filterSets) {
+                    for (InspectColumns.Column groupBy : groupings) {
+                        assertEquals(expected(rows.values(), filters, groupBy), actual(columns, filters, groupBy, pool),
+                                "filters " + filters + ", group by " + groupBy);
+                    }
+                }
+                // Dropping the deleted rows changes nothing visible
+                columns.compactIfNeeded();
+            }
+        } finally {
+            pool.shutdown();
+        }
+    }
+
+    private static InspectDTO inspection(int id, int routeId, String date, String time, int fraud) {
+        return new InspectDTO(id, 2, 4, routeId, Date.valueOf(date), time != null ? Time.valueOf(time) : null, fraud, 40);
+    }
+
+    private int lastId() {
+        return jdbcTemplate.queryForObject("SELECT MAX(inspect_id) FROM inspect", Integer.class);
+    }
+
+    // route -> {inspections, fraud} straight from the table
+    private Map<Object, List<Long>> fromDatabase() {
+        Map<Object, List<Long>> byRoute = new TreeMap<>();
+        jdbcTemplate.query("SELECT route_id, COUNT(*), SUM(no_fraud_detected) FROM inspect GROUP BY route_id", row -> {
+            byRoute.put(row.getInt(1), List.of(row.getLong(2), row.getLong(3)));
+        });
+        return byRoute;
+    }
+
+    private Map<Object, List<Long>> fromSnapshot() {
+        Map<Object, List<Long>> byRoute = new TreeMap<>();
+        for (InspectAnalyticsRowDTO row : columnStore.query(InspectColumnStore.Dimension.ROUTE,
+                List.of(InspectColumnStore.Measure.FRAUD), null, null, null, null, null, null, null)) {
+            byRoute.put(row.getKey(), List.of(row.getCount(), row.getSums().get("fraud")));
+        }
+        return byRoute;
+    }
+
+    @Test
+    void refreshFollowsTheChangeLog() {
+        inspectService.saveInspect(inspection(0, 1, "2024-05-01", "08:15:00", 2));
+        inspectService.saveInspect(inspection(0, 2, "2024-05-01", "17:40:00", 1));
+        columnStore.refresh();
+        assertEquals(fromDatabase(), fromSnapshot());
+
+        inspectService.saveInspect(inspection(0, 1, "2024-05-02", "08:05:00", 4));
+        int added = lastId();
+        inspectService.saveInspect(inspection(0, 3, "2024-05-02", null, 1));
+        inspectService.updateInspect(inspection(added, 2, "2024-05-02", "09:00:00", 6));
+        columnStore.refresh();
+        assertEquals(fromDatabase(), fromSnapshot());
+        assertEquals(4, columnStore.rows());
+
+        inspectService.delete(inspection(added, 0, "2024-05-02", null, 0));
+        columnStore.refresh();
+        assertEquals(fromDatabase(), fromSnapshot());
+
+        // Hours and dates come back as hours and dates; the inspection without a time has no hour
+        List<InspectAnalyticsRowDTO> byHour = columnStore.query(InspectColumnStore.Dimension.HOUR,
+                InspectColumnStore.Measure.parse(null), LocalDate.of(2024, 5, 1), LocalDate.of(2024, 5, 2),
+                null, null, null, null, null);
+        assertEquals(Arrays.asList(null, 8, 17), byHour.stream().map(InspectAnalyticsRowDTO::getKey).toList());
+        assertEquals(Map.of("fraud", 2.0, "passengers", 40.0), byHour.get(1).getAverages());
+        List<InspectAnalyticsRowDTO> morning = columnStore.query(InspectColumnStore.Dimension.DATE,
+                List.of(InspectColumnStore.Measure.FRAUD), null, null, null, null, null, 6, 11);
+        assertEquals(1, morning.size());
+        assertEquals(LocalDate.of(2024, 5, 1), morning.get(0).getKey());
+
+        // A row written without the log is only seen after entries were pruned past the cursor forces a reload
+        jdbcTemplate.update("INSERT INTO inspect (inspector_id, bus_id, route_id, inspect_date, inspect_time,"
+                + " no_fraud_detected, no_of_passengers) VALUES (1, 1, 9, '2024-05-03', '10:00:00', 3, 20)");
+        inspectService.saveInspect(inspection(0, 1, "2024-05-03", "11:00:00", 1));
+        columnStore.refresh();
+        assertNotEquals(fromDatabase(), fromSnapshot());
+        inspectService.saveInspect(inspection(0, 1, "2024-05-03", "11:00:00", 1));
+        inspectService.saveInspect(inspection(0, 1, "2024-05-03", "11:00:00", 1));
+        jdbcTemplate.update("DELETE FROM inspect_change WHERE seq < (SELECT MAX(seq) FROM inspect_change)");
+        columnStore.refresh();
+        assertEquals(fromDatabase(), fromSnapshot());
+
+        assertThrows(IllegalArgumentException.class, () -> InspectColumnStore.Dimension.parse("weekday"));
+        assertThrows(IllegalArgumentException.class, () -> columnStore.query(null, List.of(), null, null, null,
+                null, null, 3, 24));
+    }
+
+    // How fast the group-bys run is measured by benchmark.InspectAnalyticsBenchmark
+    @Test
+    void columnsHoldARowInThirtyTwoBytes() {
+        int rows = 1_000_000;
+        Random random = new Random(11);
+        InspectColumns columns = new InspectColumns(rows);
+        for (int id = 1; id <= rows; id++) {
+            upsert(columns, randomRow(random, id));
+        }
+        assertEquals(rows, columns.rows());
+        // Eight int columns plus one live bit a row
+        assertEquals(rows * 32L + (rows + 63) / 64 * 8L, columns.bytes());
+
+        // Growing past the initial capacity keeps at most half as much again spare
+        upsert(columns, randomRow(random, rows + 1));
+        assertTrue(columns.bytes() <= (rows + 1) * 33L * 3 / 2);
+    }
+}
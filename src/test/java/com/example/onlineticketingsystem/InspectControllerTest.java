@@ -1,59 +1,77 @@
 package com.example.onlineticketingsystem;
 
 import com.example.onlineticketingsystem.DTO.InspectDTO;
+import com.example.onlineticketingsystem.DTO.InspectHistoryPageDTO;
+import com.example.onlineticketingsystem.DTO.InspectSummaryDTO;
 import com.example.onlineticketingsystem.controller.InspectController;
-import com.example.onlineticketingsystem.entity.Inspect;
+import com.example.onlineticketingsystem.service.AuditLogService;
 import com.example.onlineticketingsystem.service.InspectService;
-import com.fasterxml.jackson.databind.ObjectMapper;
-import com.fasterxml.jackson.databind.ObjectWriter;
-import org.junit.Before;
-import org.junit.Test;
-import org.junit.runner.RunWith;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
 import org.mockito.InjectMocks;
 import org.mockito.Mock;
 import org.mockito.MockitoAnnotations;
-import org.mockito.junit.MockitoJUnitRunner;
-import org.springframework.boot.test.context.SpringBootTest;
 import org.springframework.http.MediaType;
+import org.springframework.http.converter.StringHttpMessageConverter;
+import org.springframework.http.converter.json.Jackson2ObjectMapperBuilder;
+import org.springframework.http.converter.json.MappingJackson2HttpMessageConverter;
+import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
+import org.springframework.security.core.Authentication;
+import org.springframework.security.core.authority.SimpleGrantedAuthority;
 import org.springframework.test.web.servlet.MockMvc;
-import org.springframework.test.web.servlet.result.MockMvcResultMatchers;
 import org.springframework.test.web.servlet.setup.MockMvcBuilders;
 
 import java.sql.Date;
 import java.sql.Time;
+import java.time.LocalDate;
+import java.time.LocalTime;
 import java.util.ArrayList;
 import java.util.List;
 
 import static org.hamcrest.Matchers.hasSize;
+import static org.hamcrest.Matchers.nullValue;
+import static org.mockito.ArgumentMatchers.any;
 import static org.mockito.ArgumentMatchers.anyInt;
 import static org.mockito.BDDMockito.given;
-import static org.mockito.Mockito.when;
-import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.*;
+import static org.mockito.Mockito.*;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.*;
 
-@SpringBootTest
-@RunWith(MockitoJUnitRunner.class)
 public class InspectControllerTest {
 
     private MockMvc mockMvc;
 
-    ObjectMapper objectMapper = new ObjectMapper();
-    ObjectWriter objectWriter = objectMapper.writer();
-
     @Mock
     private InspectService inspectService;
 
+    @Mock
+    private AuditLogService auditLogService;
+
     @InjectMocks
     private InspectController inspectController;
 
+    // Standalone MockMvc has no security filter chain, so the caller is passed as the request principal
+    private final Authentication inspector = new UsernamePasswordAuthenticationToken("inspector@test.com", null,
+            List.of(new SimpleGrantedAuthority("ticket-inspector")));
+    private final Authentication passenger = new UsernamePasswordAuthenticationToken("passenger@test.com", null,
+            List.of(new SimpleGrantedAuthority("passenger")));
+
     InspectDTO Inspect_1 = new InspectDTO(1, 2, 4, 177, Date.valueOf("2023-10-16"), Time.valueOf("12:30:00"), 3, 130);
     InspectDTO Inspect_2 = new InspectDTO(2, 2, 6, 180, Date.valueOf("2023-10-17"), Time.valueOf("12:30:00"), 3, 130);
     InspectDTO Inspect_3 = new InspectDTO(3, 5, 13, 177, Date.valueOf("2023-10-18"), Time.valueOf("12:30:00"), 3, 130);
 
-    @Before
+    @BeforeEach
     public void setUp() {
         MockitoAnnotations.initMocks(this);
-        this.mockMvc = MockMvcBuilders.standaloneSetup(inspectController).build();
+        // Dates render as ISO strings, the same as with Spring Boot's auto-configured ObjectMapper
+        MappingJackson2HttpMessageConverter json = new MappingJackson2HttpMessageConverter(Jackson2ObjectMapperBuilder.json()
+                .featuresToDisable(SerializationFeature.WRITE_DATES_AS_TIMESTAMPS).build());
+        this.mockMvc = MockMvcBuilders.standaloneSetup(inspectController).setMessageConverters(new StringHttpMessageConverter(), json).build();
+    }
+
+    private static InspectHistoryPageDTO page(String nextCursor, InspectSummaryDTO... items) {
+        return new InspectHistoryPageDTO(List.of(items), nextCursor);
     }
 
     @Test
@@ -63,180 +81,192 @@ public class InspectControllerTest {
         listInspect.add(Inspect_2);
         listInspect.add(Inspect_3);
 
-
         when(inspectService.getAllInspects()).thenReturn(listInspect);
 
         mockMvc.perform(get("/api/Inspect/getInspect")
+                        .principal(inspector)
                         .contentType(MediaType.APPLICATION_JSON))
                 .andExpect(status().isOk())
-                .andExpect(MockMvcResultMatchers.jsonPath("$", hasSize(3)));
+                .andExpect(jsonPath("$", hasSize(3)));
     }
 
     @Test
     public void getAllInspects_404_fail() throws Exception {
-        List<InspectDTO> listInspect = new ArrayList<>();
-        listInspect.add(Inspect_1);
-        listInspect.add(Inspect_2);
-        listInspect.add(Inspect_3);
-
-
-//        when(inspectService.getAllInspects()).thenReturn(listInspect);
-
         mockMvc.perform(get("/api/inspect/getInspect")
+                        .principal(inspector)
                         .contentType(MediaType.APPLICATION_JSON))
                 .andExpect(status().isNotFound());
+
+        verifyNoInteractions(inspectService);
     }
 
     @Test
     public void getByInspectorId_pass() throws Exception {
         // Arrange
         int inspectorId = 5;
-        List<Inspect> inspectList = new ArrayList<Inspect>();
-        inspectList.add(new Inspect(12, 5, 3, 177, Date.valueOf("2023-10-14"), Time.valueOf("12:30:00"), 6, 170));
+        InspectHistoryPageDTO page = page(null,
+                new InspectSummaryDTO(12, 3, 177, LocalDate.parse("2023-10-14"), LocalTime.of(12, 30, 0), 6, 170));
 
         // Mock the service call
-        given(inspectService.getInspectsByInspectorId(anyInt())).willReturn(inspectList);
+        given(inspectService.getInspectsByInspectorId(inspectorId, null, null)).willReturn(page);
 
         // Act and Assert
         mockMvc.perform(get("/api/Inspect/byInspector/{id}", inspectorId)
+                        .principal(inspector)
                         .contentType(MediaType.APPLICATION_JSON)
                 )
                 .andExpect(status().isOk())
-                .andExpect(jsonPath("$[0].inspectId").value(12))
-                .andExpect(jsonPath("$[0].inspectorId").value(5))
-                .andExpect(jsonPath("$[0].busId").value(3))
-                .andExpect(jsonPath("$[0].routeId").value(177))
-                .andExpect(jsonPath("$[0].inspectDate").value("1697221800000"))
-                .andExpect(jsonPath("$[0].inspectTime").value("12:30:00"))
-                .andExpect(jsonPath("$[0].noFraudDetected").value(6))
-                .andExpect(jsonPath("$[0].noOfPassengers").value(170));
+                .andExpect(jsonPath("$.items", hasSize(1)))
+                .andExpect(jsonPath("$.items[0].inspectId").value(12))
+                .andExpect(jsonPath("$.items[0].busId").value(3))
+                .andExpect(jsonPath("$.items[0].routeId").value(177))
+                .andExpect(jsonPath("$.items[0].inspectDate").value("2023-10-14"))
+                .andExpect(jsonPath("$.items[0].inspectTime").value("12:30:00"))
+                .andExpect(jsonPath("$.items[0].noFraudDetected").value(6))
+                .andExpect(jsonPath("$.items[0].noOfPassengers").value(170))
+                .andExpect(jsonPath("$.nextCursor").value(nullValue()));
     }
 
     @Test
-    public void getByInspectorId_fail() throws Exception {
+    public void getByInspectorId_forwardsCursorAndLimit() throws Exception {
         // Arrange
         int inspectorId = 5;
-        List<Inspect> inspectList = new ArrayList<Inspect>();
-        inspectList.add(new Inspect(12, 5, 3, 177, Date.valueOf("2023-10-14"), Time.valueOf("25:00:01"), 6, 170));
+        InspectHistoryPageDTO page = page("MjAyMy0xMC0xMHwxMXw5",
+                new InspectSummaryDTO(11, 3, 177, LocalDate.parse("2023-10-12"), LocalTime.of(9, 0, 0), 1, 60),
+                new InspectSummaryDTO(10, 4, 180, LocalDate.parse("2023-10-11"), LocalTime.of(8, 0, 0), 0, 45));
 
         // Mock the service call
-        given(inspectService.getInspectsByInspectorId(anyInt())).willReturn(inspectList);
+        given(inspectService.getInspectsByInspectorId(inspectorId, "abc", 2)).willReturn(page);
 
         // Act and Assert
         mockMvc.perform(get("/api/Inspect/byInspector/{id}", inspectorId)
+                        .param("cursor", "abc")
+                        .param("limit", "2")
+                        .principal(inspector)
                         .contentType(MediaType.APPLICATION_JSON)
                 )
                 .andExpect(status().isOk())
-                .andExpect(jsonPath("$[0].inspectId").value(12))
-                .andExpect(jsonPath("$[0].inspectorId").value(5))
-                .andExpect(jsonPath("$[0].busId").value(3))
-                .andExpect(jsonPath("$[0].routeId").value(177))
-                .andExpect(jsonPath("$[0].inspectDate").value("1697221800000"))
-                .andExpect(jsonPath("$[0].inspectTime").value("12:30:00"))
-                .andExpect(jsonPath("$[0].noFraudDetected").value(6))
-                .andExpect(jsonPath("$[0].noOfPassengers").value(170));
+                .andExpect(jsonPath("$.items", hasSize(2)))
+                .andExpect(jsonPath("$.items[0].inspectId").value(11))
+                .andExpect(jsonPath("$.items[1].inspectId").value(10))
+                .andExpect(jsonPath("$.nextCursor").value("MjAyMy0xMC0xMHwxMXw5"));
     }
 
+    @Test
+    public void getByInspectorId_fail() throws Exception {
+        // Arrange
+        int inspectorId = 5;
 
+        // Mock the service call
+        given(inspectService.getInspectsByInspectorId(anyInt(), any(), any())).willReturn(page(null));
+
+        // Act and Assert
+        mockMvc.perform(get("/api/Inspect/byInspector/{id}", inspectorId)
+                        .principal(inspector)
+                        .contentType(MediaType.APPLICATION_JSON)
+                )
+                .andExpect(status().isNotFound());
+    }
 
     @Test
     public void getByInspectorId_fail2() throws Exception {
         // Arrange
         int inspectorId = 10;
-        List<Inspect> inspectList = new ArrayList<Inspect>();
-        inspectList.add(new Inspect(1, 10, 3, 177, Date.valueOf("2023-10-14"), Time.valueOf("12:30:00"), 6, 170));
-
-        // Mock the service call
-        given(inspectService.getInspectsByInspectorId(anyInt())).willReturn(inspectList);
 
         // Act and Assert
         mockMvc.perform(get("/api/Inspect/byInspector/{id}", inspectorId)
+                        .principal(passenger)
                         .contentType(MediaType.APPLICATION_JSON)
                 )
-                .andExpect(status().isOk())
-                .andExpect(jsonPath("$[0].inspectId").value(12))
-                .andExpect(jsonPath("$[0].inspectorId").value(10))
-                .andExpect(jsonPath("$[0].busId").value(3))
-                .andExpect(jsonPath("$[0].routeId").value(177))
-                .andExpect(jsonPath("$[0].inspectDate").value("1697221800000"))
-                .andExpect(jsonPath("$[0].inspectTime").value("12:30:00"))
-                .andExpect(jsonPath("$[0].noFraudDetected").value(6))
-                .andExpect(jsonPath("$[0].noOfPassengers").value(170));
+                .andExpect(status().isUnauthorized());
+
+        verifyNoInteractions(inspectService);
     }
 
     @Test
     public void get_history() throws Exception {
         // Arrange
         int inspectorId = 10;
-        List<Inspect> inspectList = new ArrayList<Inspect>();
-        inspectList.add(new Inspect(1, 10, 3, 177, Date.valueOf("2023-10-11"), Time.valueOf("12:30:00"), 6, 170));
+        InspectHistoryPageDTO page = page("next",
+                new InspectSummaryDTO(1, 3, 177, LocalDate.parse("2023-10-11"), LocalTime.of(12, 30, 0), 6, 170));
 
         // Mock the service call
-        given(inspectService.getInspectHistoryByInspectorId(anyInt())).willReturn(inspectList);
+        given(inspectService.getInspectHistoryByInspectorId(inspectorId, null, 1)).willReturn(page);
 
         // Act and Assert
         mockMvc.perform(get("/api/Inspect/getInspectorHistory/{id}", inspectorId)
+                        .param("limit", "1")
+                        .principal(inspector)
                         .contentType(MediaType.APPLICATION_JSON)
                 )
                 .andExpect(status().isOk())
-                .andExpect(jsonPath("$[0].inspectId").value(1))
-                .andExpect(jsonPath("$[0].inspectorId").value(10))
-                .andExpect(jsonPath("$[0].busId").value(3))
-                .andExpect(jsonPath("$[0].routeId").value(177))
-                .andExpect(jsonPath("$[0].inspectDate").value("1696962600000"))
-                .andExpect(jsonPath("$[0].inspectTime").value("12:30:00"))
-                .andExpect(jsonPath("$[0].noFraudDetected").value(6))
-                .andExpect(jsonPath("$[0].noOfPassengers").value(170));
+                .andExpect(jsonPath("$.items", hasSize(1)))
+                .andExpect(jsonPath("$.items[0].inspectId").value(1))
+                .andExpect(jsonPath("$.items[0].busId").value(3))
+                .andExpect(jsonPath("$.items[0].routeId").value(177))
+                .andExpect(jsonPath("$.items[0].inspectDate").value("2023-10-11"))
+                .andExpect(jsonPath("$.items[0].inspectTime").value("12:30:00"))
+                .andExpect(jsonPath("$.items[0].noFraudDetected").value(6))
+                .andExpect(jsonPath("$.items[0].noOfPassengers").value(170))
+                .andExpect(jsonPath("$.nextCursor").value("next"));
     }
+
     @Test
-    public void get_history_fail() throws Exception {
+    public void get_history_badCursor() throws Exception {
         // Arrange
         int inspectorId = 10;
-        List<Inspect> inspectList = new ArrayList<Inspect>();
-        inspectList.add(new Inspect(1, 10, 3, 212, Date.valueOf("2023-11-11"), Time.valueOf("12:30:00"), 6, 170));
 
         // Mock the service call
-        given(inspectService.getUpcomingInspectByInspectorId(anyInt())).willReturn(inspectList);
+        given(inspectService.getInspectHistoryByInspectorId(anyInt(), any(), any()))
+                .willThrow(new IllegalArgumentException("Invalid cursor"));
 
         // Act and Assert
-        mockMvc.perform(get("/api/Inspect/getInspectorUpComing/{id}", inspectorId)
+        mockMvc.perform(get("/api/Inspect/getInspectorHistory/{id}", inspectorId)
+                        .param("cursor", "not-a-cursor")
+                        .principal(inspector)
                         .contentType(MediaType.APPLICATION_JSON)
                 )
-                .andExpect(status().isOk())
-                .andExpect(jsonPath("$[0].inspectId").value(1))
-                .andExpect(jsonPath("$[0].inspectorId").value(10))
-                .andExpect(jsonPath("$[0].busId").value(3))
-                .andExpect(jsonPath("$[0].routeId").value(1))
-                .andExpect(jsonPath("$[0].inspectDate").value("1668105000000"))
-                .andExpect(jsonPath("$[0].inspectTime").value("12:30:00"))
-                .andExpect(jsonPath("$[0].noFraudDetected").value(6))
-                .andExpect(jsonPath("$[0].noOfPassengers").value(170));
+                .andExpect(status().isBadRequest())
+                .andExpect(content().string("Invalid cursor"));
     }
 
     @Test
-    public void get_history_fail2() throws Exception {
+    public void get_upcoming() throws Exception {
         // Arrange
         int inspectorId = 10;
-        List<Inspect> inspectList = new ArrayList<Inspect>();
-        inspectList.add(new Inspect(1, 10, 3, 212, Date.valueOf("2023-11-11"), Time.valueOf("12:30:00"), 6, 170));
+        InspectHistoryPageDTO page = page(null,
+                new InspectSummaryDTO(1, 3, 212, LocalDate.parse("2023-11-11"), LocalTime.of(12, 30, 0), 6, 170));
 
         // Mock the service call
-        given(inspectService.getUpcomingInspectByInspectorId(anyInt())).willReturn(inspectList);
+        given(inspectService.getUpcomingInspectByInspectorId(inspectorId, "abc", null)).willReturn(page);
 
         // Act and Assert
-        mockMvc.perform(get("/api/Inspect/getInspectorUpComing/", inspectorId)
+        mockMvc.perform(get("/api/Inspect/getInspectorUpComing/{id}", inspectorId)
+                        .param("cursor", "abc")
+                        .principal(inspector)
                         .contentType(MediaType.APPLICATION_JSON)
                 )
                 .andExpect(status().isOk())
-                .andExpect(jsonPath("$[0].inspectId").value(1))
-                .andExpect(jsonPath("$[0].inspectorId").value(10))
-                .andExpect(jsonPath("$[0].busId").value(3))
-                .andExpect(jsonPath("$[0].routeId").value(1))
-                .andExpect(jsonPath("$[0].inspectDate").value("1668105000000"))
-                .andExpect(jsonPath("$[0].inspectTime").value("12:30:00"))
-                .andExpect(jsonPath("$[0].noFraudDetected").value(6))
-                .andExpect(jsonPath("$[0].noOfPassengers").value(170));
+                .andExpect(jsonPath("$.items", hasSize(1)))
+                .andExpect(jsonPath("$.items[0].inspectId").value(1))
+                .andExpect(jsonPath("$.items[0].busId").value(3))
+                .andExpect(jsonPath("$.items[0].routeId").value(212))
+                .andExpect(jsonPath("$.items[0].inspectDate").value("2023-11-11"))
+                .andExpect(jsonPath("$.items[0].inspectTime").value("12:30:00"))
+                .andExpect(jsonPath("$.items[0].noFraudDetected").value(6))
+                .andExpect(jsonPath("$.items[0].noOfPassengers").value(170))
+                .andExpect(jsonPath("$.nextCursor").value(nullValue()));
     }
 
+    @Test
+    public void get_upcoming_fail() throws Exception {
+        // Act and Assert
+        mockMvc.perform(get("/api/Inspect/getInspectorUpComing/")
+                        .principal(inspector)
+                        .contentType(MediaType.APPLICATION_JSON)
+                )
+                .andExpect(status().isNotFound());
 
-}
\ No newline at end of file
+        verifyNoInteractions(inspectService);
+    }
+}
@@ -0,0 +1,88 @@
+package com.example.onlineticketingsystem;
+
+import com.example.onlineticketingsystem.entity.Inspect;
+import com.example.onlineticketingsystem.repo.InspectRepo;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.boot.test.autoconfigure.orm.jpa.TestEntityManager;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import java.sql.Date;
+import java.sql.Time;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Predicate;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@DataJpaTest(showSql = false, properties = {"logging.level.org.springframework.security=INFO"})
+class InspectFraudQueryTest {
+
+    // Spread over 2024 across 40 routes and 25 inspectors
+    private static final int ROWS = 100_000;
+    private static final LocalDate FIRST_DAY = LocalDate.of(2024, 1, 1);
+
+    @Autowired
+    private InspectRepo inspectRepo;
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+    @Autowired
+    private TestEntityManager entityManager;
+
+    @BeforeEach
+    void setUp() {
+        List<Object[]> rows = new ArrayList<>();
+        for (int i = 0; i < ROWS; i++) {
+            rows.add(new Object[]{i % 25, i % 17, i % 40, Date.valueOf(FIRST_DAY.plusDays(i % 366)), Time.valueOf("12:30:00"),
+                    i % 7, 100});
+        }
+        jdbcTemplate.batchUpdate("INSERT INTO inspect (inspector_id, bus_id, route_id, inspect_date, inspect_time,"
+                + " no_fraud_detected, no_of_passengers) VALUES (?, ?, ?, ?, ?, ?, ?)", rows);
+    }
+
+    // What the service used to do: every entity loaded and summed in Java, in a fresh persistence context as
+    // a new request would have
+    private Map<Integer, Long> loop(Predicate<Inspect> filter) {
+        entityManager.clear();
+        Map<Integer, Long> byRoute = new HashMap<>();
+        for (Inspect inspect : inspectRepo.findAll()) {
+            if (filter.test(inspect)) {
+                byRoute.merge(inspect.getRouteId(), (long) inspect.getNoFraudDetected(), Long::sum);
+            }
+        }
+        return byRoute;
+    }
+
+    private static Map<Integer, Long> toMap(List<InspectRepo.RouteFraud> routes) {
+        Map<Integer, Long> byRoute = new HashMap<>();
+        routes.forEach(route -> byRoute.put(route.getRouteId(), route.getFraudCount()));
+        return byRoute;
+    }
+
+    @Test
+    void aggregatesMatchTheEntityLoop() {
+        Map<Integer, Long> all = loop(inspect -> true);
+        assertEquals(all, toMap(inspectRepo.sumFraudByRoute(null, null, null)));
+        assertEquals(all.values().stream().mapToLong(Long::longValue).sum(), inspectRepo.sumFraud(null, null, null));
+
+        // Dates are inclusive at both ends
+        Date from = Date.valueOf("2024-03-01");
+        Date to = Date.valueOf("2024-03-31");
+        Map<Integer, Long> march = loop(inspect -> inspect.getInspectorId() == 7
+                && !inspect.getInspectDate().before(from) && !inspect.getInspectDate().after(to));
+        assertEquals(march, toMap(inspectRepo.sumFraudByRoute(from, to, 7)));
+        assertEquals(march.values().stream().mapToLong(Long::longValue).sum(), inspectRepo.sumFraud(from, to, 7));
+
+        List<InspectRepo.RouteFraud> open = inspectRepo.sumFraudByRoute(from, null, null);
+        assertEquals(40, open.size());
+        assertTrue(open.get(0).getRouteId() < open.get(1).getRouteId());
+
+        assertEquals(0, inspectRepo.sumFraud(Date.valueOf("2030-01-01"), null, null));
+        assertTrue(inspectRepo.sumFraudByRoute(null, null, 999).isEmpty());
+    }
+}
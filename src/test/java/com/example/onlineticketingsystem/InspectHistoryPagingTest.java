@@ -0,0 +1,187 @@
+package com.example.onlineticketingsystem;
+
+import com.example.onlineticketingsystem.DTO.InspectHistoryPageDTO;
+import com.example.onlineticketingsystem.DTO.InspectSummaryDTO;
+import com.example.onlineticketingsystem.repo.JdbcInspectHistoryRepo;
+import com.example.onlineticketingsystem.service.FraudCounterService;
+import com.example.onlineticketingsystem.service.FraudRateSketchService;
+import com.example.onlineticketingsystem.service.InspectColumnStore;
+import com.example.onlineticketingsystem.service.InspectRollupService;
+import com.example.onlineticketingsystem.service.InspectService;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.modelmapper.ModelMapper;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.context.annotation.Import;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.sql.Date;
+import java.sql.Time;
+import java.time.LocalDate;
+import java.time.LocalTime;
+import java.util.*;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+// Rows go straight into the table; the history reads them back with plain JDBC.
+@DataJpaTest(showSql = false, properties = {"logging.level.org.springframework.security=INFO",
+        "inspect.fraud-counters.reconcile-on-startup=false", "inspect.rollup.backfill-on-startup=false",
+        "inspect.fraud-sketch.background=false", "inspect.columnar.enabled=false"})
+@Import({InspectService.class, FraudCounterService.class, InspectRollupService.class, InspectColumnStore.class,
+        FraudRateSketchService.class, JdbcInspectHistoryRepo.class, ModelMapper.class, SimpleMeterRegistry.class})
+@Transactional(propagation = Propagation.NOT_SUPPORTED)
+class InspectHistoryPagingTest {
+
+    private static final Comparator<InspectSummaryDTO> PAGE_ORDER = Comparator
+            .comparing(InspectSummaryDTO::getInspectDate)
+            .thenComparing(InspectSummaryDTO::getInspectTime, Comparator.nullsFirst(Comparator.naturalOrder()))
+            .thenComparingInt(InspectSummaryDTO::getInspectId);
+
+    @Autowired
+    private InspectService inspectService;
+    @Autowired
+    private JdbcInspectHistoryRepo historyRepo;
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    private int nextId;
+
+    @BeforeEach
+    void clean() {
+        jdbcTemplate.update("DELETE FROM inspect");
+        nextId = 1;
+    }
+
+    private int insert(int inspectorId, LocalDate date, LocalTime time) {
+        int id = nextId++;
+        jdbcTemplate.update("INSERT INTO inspect (inspect_id, inspector_id, bus_id, route_id, inspect_date, inspect_time, "
+                        + "no_fraud_detected, no_of_passengers) VALUES (?, ?, ?, ?, ?, ?, ?, ?)",
+                id, inspectorId, id % 40, id % 12, date != null ? Date.valueOf(date) : null,
+                time != null ? Time.valueOf(time) : null, id % 3, 20 + id % 50);
+        return id;
+    }
+
+    private List<InspectSummaryDTO> walk(LocalDate from, LocalDate to, boolean newestFirst, int limit) {
+        List<InspectSummaryDTO> rows = new ArrayList<>();
+        String cursor = null;
+        do {
+            InspectHistoryPageDTO page = historyRepo.page(7, from, to, newestFirst, cursor, limit);
+            assertTrue(page.getItems().size() <= limit);
+            assertTrue(page.getNextCursor() == null || page.getItems().size() == limit);
+            rows.addAll(page.getItems());
+            cursor = page.getNextCursor();
+        } while (cursor != null);
+        return rows;
+    }
+
+    private static List<Integer> ids(List<InspectSummaryDTO> rows) {
+        return rows.stream().map(InspectSummaryDTO::getInspectId).toList();
+    }
+
+    private static List<Integer> reversed(List<Integer> ids) {
+        List<Integer> reversed = new ArrayList<>(ids);
+        Collections.reverse(reversed);
+        return reversed;
+    }
+
+    @Test
+    void pagesVisitEveryInspectionOnceInOrder() {
+        // Few distinct days and times so that ties and untimed inspections fall on page boundaries
+        Random random = new Random(3);
+        LocalDate first = LocalDate.of(2024, 3, 1);
+        List<InspectSummaryDTO> expected = new ArrayList<>();
+        for (int i = 0; i < 400; i++) {
+            int inspectorId = random.nextInt(3) == 0 ? 8 : 7;
+            LocalDate date = random.nextInt(40) == 0 ? null : first.plusDays(random.nextInt(6));
+            LocalTime time = random.nextInt(4) == 0 ? null : LocalTime.of(8 + random.nextInt(3), 30 * random.nextInt(2));
+            int id = insert(inspectorId, date, time);
+            if (inspectorId == 7 && date != null) {
+                expected.add(new InspectSummaryDTO(id, id % 40, id % 12, date, time, id % 3, 20 + id % 50));
+            }
+        }
+        expected.sort(PAGE_ORDER);
+
+        for (int limit : new int[]{1, 7, 50, 1000}) {
+            assertEquals(expected, walk(null, null, false, limit));
+            assertEquals(reversed(ids(expected)), ids(walk(null, null, true, limit)));
+        }
+
+        List<InspectSummaryDTO> middle = expected.stream()
+                .filter(row -> !row.getInspectDate().isBefore(first.plusDays(2)) && !row.getInspectDate().isAfter(first.plusDays(3)))
+                .toList();
+        assertEquals(middle, walk(first.plusDays(2), first.plusDays(3), false, 9));
+        assertEquals(reversed(ids(middle)), ids(walk(first.plusDays(2), first.plusDays(3), true, 9)));
+    }
+
+    @Test
+    void historyEndsTodayAndUpcomingStartsTomorrow() {
+        LocalDate today = LocalDate.now();
+        int lastYear = insert(7, today.minusYears(1), LocalTime.NOON);
+        int earlierToday = insert(7, today, LocalTime.of(6, 0));
+        int laterToday = insert(7, today, LocalTime.of(18, 0));
+        int nextYear = insert(7, today.plusYears(1), LocalTime.NOON);
+        int otherInspector = insert(8, today, LocalTime.NOON);
+        List<Integer> history = ids(inspectService.getInspectHistoryByInspectorId(7, null, null).getItems());
+        assertEquals(List.of(laterToday, earlierToday), history.subList(0, 2));
+        assertFalse(history.contains(lastYear) || history.contains(nextYear) || history.contains(otherInspector));
+
+        int tomorrow = insert(7, today.plusDays(1), null);
+        int dayAfter = insert(7, today.plusDays(2), LocalTime.NOON);
+        List<Integer> upcoming = ids(inspectService.getUpcomingInspectByInspectorId(7, null, null).getItems());
+        assertFalse(upcoming.contains(laterToday) || upcoming.contains(nextYear));
+        // Unless today is the last day or two of the year
+        if (today.plusDays(2).getYear() == today.getYear()) {
+            assertEquals(List.of(tomorrow, dayAfter), upcoming);
+        }
+
+        List<Integer> lifetime = ids(inspectService.getInspectsByInspectorId(7, null, 100).getItems());
+        assertEquals(nextYear, lifetime.get(0));
+        assertEquals(lastYear, lifetime.get(lifetime.size() - 1));
+    }
+
+    @Test
+    void rejectsBadCursorsAndLimits() {
+        insert(7, LocalDate.now(), null);
+        assertThrows(IllegalArgumentException.class, () -> inspectService.getInspectsByInspectorId(7, "not-a-cursor", 10));
+        assertThrows(IllegalArgumentException.class, () -> inspectService.getInspectsByInspectorId(7,
+                Base64.getUrlEncoder().encodeToString("2024-01-01|25:00|3".getBytes()), 10));
+        assertThrows(IllegalArgumentException.class, () -> inspectService.getInspectsByInspectorId(7, null, 0));
+        assertThrows(IllegalArgumentException.class, () -> inspectService.getInspectsByInspectorId(7, null, 501));
+        assertEquals(1, inspectService.getInspectsByInspectorId(7, null, null).getItems().size());
+    }
+
+    @Test
+    void longHistoryIsReadInIndexOrderAPageAtATime() {
+        // One busy inspector with a long history among quieter ones
+        LocalDate first = LocalDate.of(2015, 1, 1);
+        List<Object[]> rows = new ArrayList<>();
+        for (int i = 1; i <= 60_000; i++) {
+            rows.add(new Object[]{i, i % 4 == 0 ? 7 : 100 + i % 50, Date.valueOf(first.plusDays(i / 24)),
+                    Time.valueOf(LocalTime.ofSecondOfDay((i % 24) * 3600L))});
+        }
+        jdbcTemplate.batchUpdate("INSERT INTO inspect (inspect_id, inspector_id, bus_id, route_id, inspect_date, inspect_time, "
+                + "no_fraud_detected, no_of_passengers) VALUES (?, ?, 1, 1, ?, ?, 0, 30)", rows);
+
+        // Read in index order rather than sorted
+        String plan = jdbcTemplate.queryForList("EXPLAIN SELECT inspect_id FROM inspect WHERE inspector_id = 7 "
+                + "AND inspect_date <= DATE '2020-01-01' ORDER BY inspector_id DESC, inspect_date DESC, inspect_time DESC, "
+                + "inspect_id DESC LIMIT 51", String.class).get(0);
+        assertTrue(plan.toUpperCase().contains("IDX_INSPECT_INSPECTOR_DATE") && plan.contains("index sorted"), plan);
+
+        String cursor = null;
+        int pages = 0;
+        int seen = 0;
+        do {
+            InspectHistoryPageDTO page = inspectService.getInspectsByInspectorId(7, cursor, 50);
+            pages++;
+            seen += page.getItems().size();
+            cursor = page.getNextCursor();
+        } while (cursor != null);
+        assertEquals(15_000, seen);
+        assertEquals(300, pages);
+    }
+}
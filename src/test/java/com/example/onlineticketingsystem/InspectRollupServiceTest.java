@@ -0,0 +1,192 @@
+package com.example.onlineticketingsystem;
+
+import com.example.onlineticketingsystem.DTO.InspectDTO;
+import com.example.onlineticketingsystem.DTO.InspectRollupDTO;
+import com.example.onlineticketingsystem.DTO.InspectRollupReportDTO;
+import com.example.onlineticketingsystem.repo.JdbcInspectHistoryRepo;
+import com.example.onlineticketingsystem.service.FraudCounterService;
+import com.example.onlineticketingsystem.service.FraudRateSketchService;
+import com.example.onlineticketingsystem.service.InspectColumnStore;
+import com.example.onlineticketingsystem.service.InspectRollupService;
+import com.example.onlineticketingsystem.service.InspectService;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.modelmapper.ModelMapper;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.context.annotation.Import;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.sql.Date;
+import java.sql.Time;
+import java.time.DayOfWeek;
+import java.time.LocalDate;
+import java.time.temporal.TemporalAdjusters;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+// The backfill commits its own transactions, so the test does not wrap each method in a rolled-back one
+@DataJpaTest(showSql = false, properties = {"logging.level.org.springframework.security=INFO",
+        "inspect.fraud-counters.reconcile-on-startup=false", "inspect.rollup.backfill-on-startup=false",
+        "inspect.fraud-sketch.background=false"})
+@Import({InspectService.class, FraudCounterService.class, InspectRollupService.class, InspectColumnStore.class,
+        FraudRateSketchService.class, JdbcInspectHistoryRepo.class, ModelMapper.class, SimpleMeterRegistry.class})
+@Transactional(propagation = Propagation.NOT_SUPPORTED)
+class InspectRollupServiceTest {
+
+    // 2024: every day 15 inspectors make 20 inspections each; inspector n works route n % 5 on two buses
+    private static final LocalDate FIRST_DAY = LocalDate.of(2024, 1, 1);
+    private static final int DAYS = 366;
+    private static final int INSPECTORS = 15;
+    private static final int PER_INSPECTOR = 20;
+
+    @Autowired
+    private InspectService inspectService;
+    @Autowired
+    private InspectRollupService rollups;
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+
+    @BeforeEach
+    void setUp() {
+        jdbcTemplate.update("DELETE FROM inspect");
+        jdbcTemplate.update("DELETE FROM inspect_daily_rollup");
+        jdbcTemplate.update("DELETE FROM rollup_backfill_checkpoint");
+        jdbcTemplate.update("DELETE FROM fraud_counter");
+        List<Object[]> rows = new ArrayList<>();
+        for (int day = 0; day < DAYS; day++) {
+            Date date = Date.valueOf(FIRST_DAY.plusDays(day));
+            for (int inspector = 0; inspector < INSPECTORS; inspector++) {
+                int route = inspector % 5;
+                for (int k = 0; k < PER_INSPECTOR; k++) {
+                    rows.add(new Object[]{inspector, route * 10 + k % 2, route, date, Time.valueOf("12:30:00"),
+                            (day + inspector + k) % 4, 40 + k});
+                }
+            }
+        }
+        jdbcTemplate.batchUpdate("INSERT INTO inspect (inspector_id, bus_id, route_id, inspect_date, inspect_time,"
+                + " no_fraud_detected, no_of_passengers) VALUES (?, ?, ?, ?, ?, ?, ?)", rows);
+        // The service outlives the test, so plan from scratch for this data
+        rollups.plan(true);
+    }
+
+    // The same report computed from the raw inspections
+    private List<InspectRollupDTO> raw(LocalDate from, LocalDate to, boolean weekly, String groupColumn, String where) {
+        Map<String, InspectRollupDTO> periods = new TreeMap<>();
+        jdbcTemplate.query("SELECT inspect_date, " + groupColumn + ", no_fraud_detected, no_of_passengers FROM inspect"
+                + " WHERE inspect_date >= ? AND inspect_date <= ?" + where, row -> {
+            LocalDate day = row.getDate(1).toLocalDate();
+            LocalDate start = weekly ? day.with(TemporalAdjusters.previousOrSame(DayOfWeek.MONDAY)) : day;
+            int group = row.getInt(2);
+            InspectRollupDTO period = periods.computeIfAbsent(start + "/" + (1000 + group),
+                    key -> new InspectRollupDTO(start, group, 0, 0, 0, 0));
+            period.setInspections(period.getInspections() + 1);
+            period.setFraudCount(period.getFraudCount() + row.getInt(3));
+            period.setPassengers(period.getPassengers() + row.getInt(4));
+        }, Date.valueOf(from), Date.valueOf(to));
+        periods.values().forEach(period -> period.setFraudRate((double) period.getFraudCount() / period.getPassengers()));
+        return new ArrayList<>(periods.values());
+    }
+
+    private InspectRollupService restarted(int daysPerBatch) {
+        return new InspectRollupService(jdbcTemplate, transactionManager, false, daysPerBatch, 1100, new SimpleMeterRegistry());
+    }
+
+    @Test
+    void backfillMatchesTheRawInspections() {
+        assertFalse(rollups.isBackfillComplete());
+        assertEquals(DAYS, rollups.runBackfill());
+        assertTrue(rollups.isBackfillComplete());
+        assertEquals(DAYS * INSPECTORS * 2, jdbcTemplate.queryForObject("SELECT COUNT(*) FROM inspect_daily_rollup", Integer.class));
+
+        LocalDate from = LocalDate.of(2024, 2, 10);
+        LocalDate to = LocalDate.of(2024, 5, 20);
+        InspectRollupReportDTO weeklyByRoute = rollups.report(from, to, InspectRollupService.Granularity.WEEK,
+                InspectRollupService.GroupBy.ROUTE, null, null, null);
+        assertTrue(weeklyByRoute.isComplete());
+        assertEquals(raw(from, to, true, "route_id", ""), weeklyByRoute.getRows());
+
+        InspectRollupReportDTO dailyForInspector = rollups.report(from, to, InspectRollupService.Granularity.DAY,
+                InspectRollupService.GroupBy.BUS, null, null, 7);
+        assertEquals(raw(from, to, false, "bus_id", " AND inspector_id = 7"), dailyForInspector.getRows());
+
+        InspectRollupReportDTO total = rollups.report(FIRST_DAY, FIRST_DAY.plusDays(DAYS - 1), InspectRollupService.Granularity.WEEK,
+                InspectRollupService.GroupBy.NONE, 2, null, null);
+        assertEquals(DAYS * 3 * PER_INSPECTOR, total.getRows().stream().mapToLong(InspectRollupDTO::getInspections).sum());
+        assertNull(total.getRows().get(0).getGroupId());
+
+        assertThrows(IllegalArgumentException.class, () -> rollups.report(to, from, InspectRollupService.Granularity.DAY,
+                InspectRollupService.GroupBy.NONE, null, null, null));
+        assertThrows(IllegalArgumentException.class, () -> InspectRollupService.GroupBy.parse("passenger"));
+    }
+
+    @Test
+    void interruptedBackfillResumesFromItsCheckpoint() {
+        rollups.runBackfill();
+        // What a crash after committing June would leave behind: later days missing or half written
+        jdbcTemplate.update("DELETE FROM inspect_daily_rollup WHERE inspect_date >= ?", Date.valueOf("2024-07-01"));
+        jdbcTemplate.update("UPDATE inspect_daily_rollup SET inspections = 0 WHERE inspect_date = ?", Date.valueOf("2024-06-30"));
+        jdbcTemplate.update("UPDATE rollup_backfill_checkpoint SET next_date = ?", Date.valueOf("2024-06-30"));
+
+        InspectRollupService resumed = restarted(5);
+        assertFalse(resumed.isBackfillComplete());
+        resumed.plan(false);
+        assertEquals(1 + 31 + 31 + 30 + 31 + 30 + 31, resumed.runBackfill());
+        assertEquals(raw(FIRST_DAY, LocalDate.of(2024, 12, 31), false, "inspector_id", ""),
+                resumed.report(FIRST_DAY, LocalDate.of(2024, 12, 31), InspectRollupService.Granularity.DAY,
+                        InspectRollupService.GroupBy.INSPECTOR, null, null, null).getRows());
+
+        // Once finished, a start leaves it alone unless asked to rebuild everything
+        assertEquals(0, restarted(5).runBackfill());
+        InspectRollupService rebuilt = restarted(30);
+        rebuilt.plan(true);
+        assertEquals(DAYS, rebuilt.runBackfill());
+    }
+
+    @Test
+    void inspectionWritesKeepRollupsCurrent() {
+        rollups.runBackfill();
+        LocalDate today = LocalDate.now();
+
+        inspectService.saveInspect(new InspectDTO(0, 3, 30, 3, Date.valueOf(today), Time.valueOf("08:00:00"), 2, 50));
+        int id = jdbcTemplate.queryForObject("SELECT MAX(inspect_id) FROM inspect", Integer.class);
+        inspectService.saveInspect(new InspectDTO(0, 4, 40, 4, Date.valueOf(today), Time.valueOf("09:00:00"), 1, 30));
+        assertEquals(Map.of(3, 1L, 4, 1L), inspectService.getCountOfInspectorIdByRouteToday());
+
+        // Moved to another route and day, then to a day inside the backfilled year, then deleted
+        inspectService.updateInspect(new InspectDTO(id, 3, 30, 4, Date.valueOf(today.minusDays(1)), Time.valueOf("08:00:00"), 5, 50));
+        assertEquals(Map.of(4, 1L), inspectService.getCountOfInspectorIdByRouteToday());
+        inspectService.updateInspect(new InspectDTO(id, 3, 30, 3, Date.valueOf("2024-03-05"), Time.valueOf("08:00:00"), 5, 50));
+        LocalDate from = LocalDate.of(2024, 3, 1);
+        LocalDate to = LocalDate.of(2024, 3, 10);
+        assertEquals(raw(from, to, false, "inspector_id", ""), rollups.report(from, to, InspectRollupService.Granularity.DAY,
+                InspectRollupService.GroupBy.INSPECTOR, null, null, null).getRows());
+
+        inspectService.delete(new InspectDTO(id, 0, 0, 0, null, null, 0, 0));
+        assertEquals(raw(from, to, false, "inspector_id", ""), rollups.report(from, to, InspectRollupService.Granularity.DAY,
+                InspectRollupService.GroupBy.INSPECTOR, null, null, null).getRows());
+        assertEquals(0, jdbcTemplate.queryForObject("SELECT COUNT(*) FROM inspect_daily_rollup WHERE inspections = 0", Integer.class));
+    }
+
+    @Test
+    void yearReportReadsRollupsInsteadOfEveryInspection() {
+        rollups.runBackfill();
+        LocalDate to = FIRST_DAY.plusDays(DAYS - 1);
+
+        assertEquals(raw(FIRST_DAY, to, true, "route_id", " AND route_id = 1"), rollups.report(FIRST_DAY, to,
+                InspectRollupService.Granularity.WEEK, InspectRollupService.GroupBy.ROUTE, 1, null, null).getRows());
+        int rollupRows = jdbcTemplate.queryForObject("SELECT COUNT(*) FROM inspect_daily_rollup WHERE route_id = 1", Integer.class);
+        int inspectRows = jdbcTemplate.queryForObject("SELECT COUNT(*) FROM inspect WHERE route_id = 1", Integer.class);
+        assertTrue(rollupRows * 10 <= inspectRows);
+    }
+}
@@ -0,0 +1,123 @@
+package com.example.onlineticketingsystem;
+
+import com.example.onlineticketingsystem.DTO.CountEstimateDTO;
+import com.example.onlineticketingsystem.DTO.LogPageDTO;
+import com.example.onlineticketingsystem.DTO.LogQueryDTO;
+import com.example.onlineticketingsystem.entity.AuditLog;
+import com.example.onlineticketingsystem.entity.SecurityLog;
+import com.example.onlineticketingsystem.repo.JdbcLogQueryRepo;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.context.annotation.Import;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import java.sql.Timestamp;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.stream.IntStream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@DataJpaTest(showSql = false, properties = {"logging.level.org.springframework.security=INFO"})
+@Import(JdbcLogQueryRepo.class)
+class JdbcLogQueryRepoTest {
+
+    private static final int ROWS = 10_000;
+    private static final Instant START = Instant.parse("2024-01-01T00:00:00Z");
+
+    @Autowired
+    private JdbcLogQueryRepo jdbcLogQueryRepo;
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @BeforeEach
+    void seed() {
+        // Ten rows share every timestamp, so the id tie-break decides page boundaries
+        List<Object[]> audit = new ArrayList<>();
+        List<Object[]> security = new ArrayList<>();
+        for (int i = 0; i < ROWS; i++) {
+            Timestamp timestamp = Timestamp.from(START.plusMillis(i / 10 * 1000L).plusNanos(123_000));
+            audit.add(new Object[]{i % 3 == 0 ? "Create" : "Read", "user" + (i % 50) + "@test.com", "[admin]", timestamp, "row " + i});
+            security.add(new Object[]{"LOGIN", "user" + (i % 50) + "@test.com", i % 7 == 0 ? "FAILURE" : "SUCCESS",
+                    "10.0.0." + (i % 20), timestamp, "row " + i});
+        }
+        jdbcTemplate.batchUpdate("INSERT INTO audit_log (action, performed_by, role, timestamp, details) VALUES (?, ?, ?, ?, ?)", audit);
+        jdbcTemplate.batchUpdate("INSERT INTO security_log (action, username, status, ip_address, timestamp, details) VALUES (?, ?, ?, ?, ?, ?)", security);
+    }
+
+    @Test
+    void pagesVisitEveryRowOnceNewestFirst() {
+        LogQueryDTO query = new LogQueryDTO();
+        Set<Integer> seen = new HashSet<>();
+        Timestamp previous = null;
+        int pages = 0;
+        do {
+            LogPageDTO<AuditLog> page = jdbcLogQueryRepo.findAuditLogs(query, 500);
+            for (AuditLog log : page.getItems()) {
+                assertTrue(seen.add(log.getId()));
+                assertTrue(previous == null || !log.getTimestamp().after(previous));
+                previous = log.getTimestamp();
+            }
+            query.setCursor(page.getNextCursor());
+            pages++;
+        } while (query.getCursor() != null);
+
+        assertEquals(ROWS, seen.size());
+        assertEquals(ROWS / 500, pages);
+    }
+
+    @Test
+    void filtersCombineWithTheTimeRange() {
+        LogQueryDTO query = new LogQueryDTO();
+        query.setUsername("user7@test.com");
+        query.setStatus("FAILURE");
+        query.setFrom(START);
+        query.setTo(START.plusSeconds(500));
+
+        List<SecurityLog> items = jdbcLogQueryRepo.findSecurityLogs(query, 1000).getItems();
+
+        // Rows 0..4999 fall in the first 500 seconds; user7 with FAILURE needs i % 50 == 7 and i % 7 == 0
+        long expected = IntStream.range(0, 5_000).filter(i -> i % 50 == 7 && i % 7 == 0).count();
+        assertEquals(expected, items.size());
+        assertTrue(items.stream().allMatch(log -> log.getUsername().equals("user7@test.com") && log.getStatus().equals("FAILURE")));
+    }
+
+    @Test
+    void countEstimateIsCapped() {
+        LogQueryDTO query = new LogQueryDTO();
+        query.setAction("Read");
+        CountEstimateDTO capped = jdbcLogQueryRepo.estimateAuditLogs(query, 1000);
+        assertEquals(1000, capped.getCount());
+        assertFalse(capped.isExact());
+
+        query.setPerformedBy("user1@test.com");
+        CountEstimateDTO exact = jdbcLogQueryRepo.estimateAuditLogs(query, 1000);
+        assertTrue(exact.isExact());
+        assertEquals(ROWS / 50 - IntStream.range(0, ROWS).filter(i -> i % 50 == 1 && i % 3 == 0).count(), exact.getCount());
+    }
+
+    @Test
+    void invalidCursorIsRejected() {
+        LogQueryDTO query = new LogQueryDTO();
+        query.setCursor("not-a-cursor");
+        assertThrows(IllegalArgumentException.class, () -> jdbcLogQueryRepo.findAuditLogs(query, 10));
+    }
+
+    // A deep page starts from the cursor rather than an offset
+    @Test
+    void deepPageFromACursorContinuesWhereThePreviousEnded() {
+        LogQueryDTO query = new LogQueryDTO();
+        for (int i = 0; i < 15; i++) {
+            query.setCursor(jdbcLogQueryRepo.findAuditLogs(query, 500).getNextCursor());
+        }
+        List<AuditLog> deep = jdbcLogQueryRepo.findAuditLogs(query, 100).getItems();
+        List<Integer> expected = jdbcTemplate.queryForList("SELECT id FROM audit_log ORDER BY timestamp DESC, id DESC"
+                + " LIMIT 100 OFFSET 7500", Integer.class);
+        assertEquals(expected, deep.stream().map(AuditLog::getId).toList());
+    }
+}
@@ -0,0 +1,80 @@
+package com.example.onlineticketingsystem;
+
+import com.example.onlineticketingsystem.security.JwtClaimsCache;
+import io.jsonwebtoken.Claims;
+import io.jsonwebtoken.Jwts;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+
+import java.util.Date;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertSame;
+
+class JwtClaimsCacheTest {
+
+    private final SimpleMeterRegistry registry = new SimpleMeterRegistry();
+
+    private Claims claimsExpiringIn(long millis) {
+        return Jwts.claims().setSubject("user@test.com").setExpiration(new Date(System.currentTimeMillis() + millis));
+    }
+
+    @Test
+    void verifiesEachTokenOnlyOnce() {
+        JwtClaimsCache cache = new JwtClaimsCache(100, registry);
+        AtomicInteger verifications = new AtomicInteger();
+        Claims claims = claimsExpiringIn(60_000);
+
+        Claims first = cache.get("token-a", t -> { verifications.incrementAndGet(); return claims; });
+        Claims second = cache.get("token-a", t -> { verifications.incrementAndGet(); return claims; });
+
+        assertSame(first, second);
+        assertEquals(1, verifications.get());
+        assertEquals(1.0, registry.get("jwt.claims.cache").tag("result", "hit").counter().count());
+        assertEquals(1.0, registry.get("jwt.claims.cache").tag("result", "miss").counter().count());
+    }
+
+    @Test
+    void expiredEntriesAreVerifiedAgain() {
+        JwtClaimsCache cache = new JwtClaimsCache(100, registry);
+        AtomicInteger verifications = new AtomicInteger();
+        Claims expired = claimsExpiringIn(-1);
+
+        cache.get("token-b", t -> { verifications.incrementAndGet(); return expired; });
+        cache.get("token-b", t -> { verifications.incrementAndGet(); return expired; });
+
+        assertEquals(2, verifications.get());
+    }
+
+    @Test
+    void sizeStaysBounded() {
+        JwtClaimsCache cache = new JwtClaimsCache(10, registry);
+        for (int i = 0; i < 100; i++) {
+            Claims claims = claimsExpiringIn(60_000 + i * 1000L);
+            cache.get("token-" + i, t -> claims);
+        }
+        assertEquals(10, cache.size());
+        assertEquals(90.0, registry.get("jwt.claims.cache.evictions").counter().count());
+
+        // The ten kept are the ten that expire last
+        for (int i = 90; i < 100; i++) {
+            cache.get("token-" + i, t -> {
+                throw new AssertionError("evicted");
+            });
+        }
+    }
+
+    @Test
+    void expiredEntriesArePurgedOnSchedule() {
+        JwtClaimsCache cache = new JwtClaimsCache(100, registry);
+        for (int i = 0; i < 20; i++) {
+            Claims claims = claimsExpiringIn(i % 2 == 0 ? -1000 : 60_000);
+            cache.get("token-" + i, t -> claims);
+        }
+
+        cache.purgeExpired();
+        assertEquals(10, cache.size());
+        assertEquals(10.0, registry.get("jwt.claims.cache.evictions").counter().count());
+    }
+}
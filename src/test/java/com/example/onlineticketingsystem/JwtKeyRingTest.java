@@ -0,0 +1,103 @@
+package com.example.onlineticketingsystem;
+
+import com.example.onlineticketingsystem.security.JWTGenerator;
+import com.example.onlineticketingsystem.security.JwtClaimsCache;
+import com.example.onlineticketingsystem.security.JwtKeyRing;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.security.authentication.AuthenticationCredentialsNotFoundException;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.security.SecureRandom;
+import java.util.Base64;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class JwtKeyRingTest {
+
+    private static final SecureRandom random = new SecureRandom();
+
+    @TempDir
+    Path dir;
+
+    private static String key(String kid) {
+        byte[] secret = new byte[64];
+        random.nextBytes(secret);
+        return kid + ":" + Base64.getEncoder().encodeToString(secret);
+    }
+
+    // One JWTGenerator per simulated node, each with its own caches
+    private static JWTGenerator node(String keys, String keysFile) {
+        SimpleMeterRegistry registry = new SimpleMeterRegistry();
+        JwtClaimsCache cache = new JwtClaimsCache(100, registry);
+        return new JWTGenerator(cache, new JwtKeyRing(keys, keysFile, cache, registry));
+    }
+
+    @Test
+    void tokenFromOneNodeVerifiesOnAnother() {
+        String keys = key("k1") + "," + key("k2");
+        JWTGenerator nodeA = node(keys, "");
+        JWTGenerator nodeB = node(keys, "");
+
+        String token = nodeA.generateToken("user@test.com", "admin");
+
+        assertEquals("user@test.com", nodeB.getUsernameFromJWT(token));
+        assertEquals("admin", nodeB.getRoleFromJWT(token));
+    }
+
+    @Test
+    void nodesWithDifferentKeysRejectEachOthersTokens() {
+        String token = node(key("k1"), "").generateToken("user@test.com", "admin");
+        assertThrows(AuthenticationCredentialsNotFoundException.class, () -> node(key("k1"), "").validateToken(token));
+    }
+
+    @Test
+    void rotationThroughTheKeysFile() throws Exception {
+        Path file = dir.resolve("jwt-keys");
+        String oldKey = key("old");
+        Files.writeString(file, oldKey + "\n");
+        SimpleMeterRegistry registry = new SimpleMeterRegistry();
+        JwtClaimsCache cache = new JwtClaimsCache(100, registry);
+        JwtKeyRing ring = new JwtKeyRing("", file.toString(), cache, registry);
+        JWTGenerator generator = new JWTGenerator(cache, ring);
+        String oldToken = generator.generateToken("user@test.com", "admin");
+
+        // A key published ahead of its activation time only verifies
+        String newKey = key("new");
+        Files.writeString(file, oldKey + "\n" + newKey + ":" + (System.currentTimeMillis() + 200) + "\n");
+        assertTrue(ring.reload());
+        assertEquals("old", ring.signingKey().getKid());
+
+        Thread.sleep(250);
+        ring.reload();
+        assertEquals("new", ring.signingKey().getKid());
+        String newToken = generator.generateToken("user@test.com", "admin");
+        assertTrue(generator.validateToken(oldToken));
+        assertTrue(generator.validateToken(newToken));
+
+        // Retiring the old key invalidates its tokens straight away, even though their claims were cached
+        Files.writeString(file, newKey + "\n");
+        assertTrue(ring.reload());
+        assertThrows(AuthenticationCredentialsNotFoundException.class, () -> generator.validateToken(oldToken));
+        assertTrue(generator.validateToken(newToken));
+    }
+
+    @Test
+    void invalidFileKeepsCurrentKeys() throws Exception {
+        Path file = dir.resolve("jwt-keys");
+        Files.writeString(file, key("k1"));
+        SimpleMeterRegistry registry = new SimpleMeterRegistry();
+        JwtKeyRing ring = new JwtKeyRing("", file.toString(), new JwtClaimsCache(100, registry), registry);
+
+        Files.writeString(file, "k2:dG9vLXNob3J0");
+        assertFalse(ring.reload());
+        assertEquals("k1", ring.signingKey().getKid());
+    }
+
+    @Test
+    void shortSecretsAreRefused() {
+        assertThrows(IllegalArgumentException.class, () -> node("k1:dG9vLXNob3J0", ""));
+    }
+}
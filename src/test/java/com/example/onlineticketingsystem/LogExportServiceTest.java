@@ -0,0 +1,84 @@
+package com.example.onlineticketingsystem;
+
+import com.example.onlineticketingsystem.DTO.LogQueryDTO;
+import com.example.onlineticketingsystem.repo.JdbcLogQueryRepo;
+import com.example.onlineticketingsystem.service.LogExportService;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.context.annotation.Import;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.nio.charset.StandardCharsets;
+import java.sql.Timestamp;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.zip.GZIPInputStream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@DataJpaTest(showSql = false, properties = {"logging.level.org.springframework.security=INFO"})
+@Import(JdbcLogQueryRepo.class)
+class LogExportServiceTest {
+
+    private final ObjectMapper objectMapper = new ObjectMapper();
+
+    @Autowired
+    private JdbcLogQueryRepo jdbcLogQueryRepo;
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Test
+    void ndjsonHasOneObjectPerRowOldestFirst() throws Exception {
+        Instant start = Instant.parse("2024-01-01T00:00:00Z");
+        List<Object[]> rows = new ArrayList<>();
+        for (int i = 0; i < 50; i++) {
+            rows.add(new Object[]{"LOGIN", "user" + (i % 5) + "@test.com", "SUCCESS", "10.0.0.1",
+                    Timestamp.from(start.plusSeconds(50 - i)), "row " + i});
+        }
+        jdbcTemplate.batchUpdate("INSERT INTO security_log (action, username, status, ip_address, timestamp, details) VALUES (?, ?, ?, ?, ?, ?)", rows);
+
+        LogQueryDTO query = new LogQueryDTO();
+        query.setUsername("user2@test.com");
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        service().exportSecurityLogs(query, LogExportService.Format.NDJSON, false).writeTo(out);
+
+        String[] lines = out.toString(StandardCharsets.UTF_8).split("\n");
+        assertEquals(10, lines.length);
+        Instant previous = Instant.MIN;
+        for (String line : lines) {
+            JsonNode node = objectMapper.readTree(line);
+            assertEquals("user2@test.com", node.get("username").asText());
+            assertTrue(node.get("id").isNumber());
+            assertEquals("10.0.0.1", node.get("ipAddress").asText());
+            Instant timestamp = Instant.parse(node.get("timestamp").asText());
+            assertTrue(timestamp.isAfter(previous));
+            previous = timestamp;
+        }
+    }
+
+    @Test
+    void csvQuotesSpecialCharactersAndDefusesFormulas() throws Exception {
+        jdbcTemplate.update("INSERT INTO audit_log (action, performed_by, role, timestamp, details) VALUES (?, ?, ?, ?, ?)",
+                "Update", "=cmd|' /C calc'!A0", "[admin]", Timestamp.from(Instant.parse("2024-01-01T00:00:00Z")),
+                "Changed \"name\", route\nand bus");
+
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        service().exportAuditLogs(new LogQueryDTO(), LogExportService.Format.CSV, true).writeTo(out);
+
+        String csv = new String(new GZIPInputStream(new ByteArrayInputStream(out.toByteArray())).readAllBytes(), StandardCharsets.UTF_8);
+        String[] lines = csv.split("\r\n");
+        assertEquals("id,action,performedBy,role,timestamp,details,eventCount,firstTimestamp", lines[0]);
+        assertTrue(lines[1].endsWith(",Update,'=cmd|' /C calc'!A0,[admin],2024-01-01T00:00:00Z,\"Changed \"\"name\"\", route\nand bus\",1,"), lines[1]);
+    }
+
+    private LogExportService service() {
+        return new LogExportService(jdbcLogQueryRepo, 100, new SimpleMeterRegistry());
+    }
+}
@@ -0,0 +1,141 @@
+package com.example.onlineticketingsystem;
+
+import com.example.onlineticketingsystem.DTO.LogArchiveDTO;
+import com.example.onlineticketingsystem.DTO.LogQueryDTO;
+import com.example.onlineticketingsystem.repo.JdbcLogQueryRepo;
+import com.example.onlineticketingsystem.service.LogArchiveService;
+import com.example.onlineticketingsystem.service.LogExportService;
+import com.example.onlineticketingsystem.service.LogRetentionService;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.context.annotation.Import;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.sql.Timestamp;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@DataJpaTest(showSql = false, properties = {"logging.level.org.springframework.security=INFO"})
+@Import(JdbcLogQueryRepo.class)
+class LogRetentionServiceTest {
+
+    // 100 rows a day from January to May 2024
+    private static final LocalDate FIRST_DAY = LocalDate.of(2024, 1, 1);
+    private static final LocalDate TODAY = LocalDate.of(2024, 5, 31);
+    private static final int ROWS_PER_DAY = 100;
+
+    @TempDir
+    private Path directory;
+    @Autowired
+    private JdbcLogQueryRepo jdbcLogQueryRepo;
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    private LogArchiveService archive;
+    private LogRetentionService retention;
+
+    @BeforeEach
+    void setUp() {
+        List<Object[]> rows = new ArrayList<>();
+        for (LocalDate day = FIRST_DAY; !day.isAfter(TODAY); day = day.plusDays(1)) {
+            for (int i = 0; i < ROWS_PER_DAY; i++) {
+                rows.add(new Object[]{i % 4 == 0 ? "Create" : "Read", "user" + (i % 10) + "@test.com", "[user]",
+                        Timestamp.valueOf(day.atStartOfDay().plusMinutes(i * 10L)), "row " + i});
+            }
+        }
+        jdbcTemplate.batchUpdate("INSERT INTO audit_log (action, performed_by, role, timestamp, details) VALUES (?, ?, ?, ?, ?)", rows);
+
+        archive = new LogArchiveService(directory.toString(),
+                new LogExportService(jdbcLogQueryRepo, 1000, new SimpleMeterRegistry()));
+        retention = new LogRetentionService(jdbcTemplate, archive, true, false, 2, 3, 500, new SimpleMeterRegistry());
+    }
+
+    @Test
+    void expiredMonthsMoveToArchivesAndStayQueryable() throws Exception {
+        assertEquals(3, retention.enforce("audit_log", TODAY));
+
+        long kept = (30 + 31) * ROWS_PER_DAY;
+        assertEquals(kept, jdbcTemplate.queryForObject("SELECT COUNT(*) FROM audit_log", Long.class));
+        assertEquals(LocalDate.of(2024, 4, 1).atStartOfDay(),
+                jdbcTemplate.queryForObject("SELECT MIN(timestamp) FROM audit_log", Timestamp.class).toLocalDateTime());
+
+        List<LogArchiveDTO> archives = archive.list();
+        assertEquals(List.of("2024-01", "2024-02", "2024-03"), archives.stream().map(LogArchiveDTO::getMonth).toList());
+        assertTrue(archives.stream().allMatch(file -> file.getTable().equals("audit_log") && file.getBytes() > 0));
+
+        // Everything archived is still there: 31 + 29 + 31 days
+        assertEquals((31 + 29 + 31) * ROWS_PER_DAY, query(new LogQueryDTO()));
+
+        // Filters and a time range inside February
+        LogQueryDTO query = new LogQueryDTO();
+        query.setPerformedBy("user4@test.com");
+        query.setAction("Create");
+        query.setFrom(instant(LocalDate.of(2024, 2, 10).atStartOfDay()));
+        query.setTo(instant(LocalDate.of(2024, 2, 20).atStartOfDay()));
+        assertEquals(10 * ROWS_PER_DAY / 20, query(query));
+
+        query.setLimit(3);
+        assertEquals(3, query(query));
+
+        // Nothing left to do until the next month starts
+        assertEquals(0, retention.enforce("audit_log", TODAY));
+        assertEquals(1, retention.enforce("audit_log", TODAY.plusDays(1)));
+    }
+
+    @Test
+    void lateRowsAreAddedToTheMonthsArchive() throws Exception {
+        assertEquals(3, retention.enforce("audit_log", TODAY));
+        jdbcTemplate.update("INSERT INTO audit_log (action, performed_by, role, timestamp, details) VALUES (?, ?, ?, ?, ?)",
+                "Read", "late@test.com", "[user]", Timestamp.valueOf(LocalDate.of(2024, 2, 14).atStartOfDay()), "late");
+
+        assertEquals(1, retention.enforce("audit_log", TODAY));
+        assertEquals(0, jdbcTemplate.queryForObject("SELECT COUNT(*) FROM audit_log WHERE details = 'late'", Long.class));
+
+        // The late row joins February's archive, whose earlier rows are all still there
+        LogQueryDTO february = new LogQueryDTO();
+        february.setFrom(instant(LocalDate.of(2024, 2, 1).atStartOfDay()));
+        february.setTo(instant(LocalDate.of(2024, 3, 1).atStartOfDay()));
+        assertEquals(29 * ROWS_PER_DAY + 1, query(february));
+        february.setPerformedBy("late@test.com");
+        assertEquals(1, query(february));
+    }
+
+    @Test
+    void rowsWithoutATimestampAreLeftAsTheyAre() throws Exception {
+        jdbcTemplate.update("INSERT INTO audit_log (action, performed_by, role, timestamp, details) VALUES ('Read', 'x', '[user]', NULL, 'undated')");
+        LogRetentionService converting = new LogRetentionService(jdbcTemplate, archive, true, true, 2, 3, 500, new SimpleMeterRegistry());
+
+        assertEquals(3, converting.enforce("audit_log", TODAY));
+        assertEquals(1, jdbcTemplate.queryForObject("SELECT COUNT(*) FROM audit_log WHERE timestamp IS NULL", Long.class));
+    }
+
+    @Test
+    void anEmptyTableNeedsNothing() throws Exception {
+        assertEquals(0, retention.enforce("security_log", TODAY));
+        assertTrue(archive.list().isEmpty());
+    }
+
+    private long query(LogQueryDTO query) throws Exception {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        long matched = archive.query("audit_log", query, out);
+        assertEquals(matched, out.toString(StandardCharsets.UTF_8).lines().count());
+        return matched;
+    }
+
+    private static Instant instant(LocalDateTime localDateTime) {
+        return localDateTime.atZone(ZoneId.systemDefault()).toInstant();
+    }
+}
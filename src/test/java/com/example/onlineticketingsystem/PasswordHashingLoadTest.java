@@ -0,0 +1,61 @@
+package com.example.onlineticketingsystem;
+
+import com.example.onlineticketingsystem.exception.PasswordHashingRejectedException;
+import com.example.onlineticketingsystem.security.PasswordHashingExecutor;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.*;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+// Admission to the hashing pool during a login flood.
+class PasswordHashingLoadTest {
+
+    @Test
+    void loginsBeyondTheQueueAreRejectedAtOnce() throws Exception {
+        SimpleMeterRegistry registry = new SimpleMeterRegistry();
+        PasswordHashingExecutor hashing = new PasswordHashingExecutor(1, 2, 10_000, registry);
+        CountDownLatch release = new CountDownLatch(1);
+        ExecutorService workers = Executors.newFixedThreadPool(3);
+
+        // One login holds the hashing thread and two wait in the queue
+        List<Future<Boolean>> admitted = new ArrayList<>();
+        for (int i = 0; i < 3; i++) {
+            admitted.add(workers.submit(() -> hashing.execute("login", () -> {
+                try {
+                    return release.await(60, TimeUnit.SECONDS);
+                } catch (InterruptedException e) {
+                    throw new IllegalStateException(e);
+                }
+            })));
+        }
+        long deadline = System.currentTimeMillis() + 10_000;
+        while (hashing.getQueueDepth() < 2 && System.currentTimeMillis() < deadline) {
+            Thread.sleep(5);
+        }
+        assertEquals(2, hashing.getQueueDepth());
+
+        assertThrows(PasswordHashingRejectedException.class, () -> hashing.execute("login", () -> true));
+        assertEquals(1, registry.get("password.hash.rejections").counter().count());
+
+        release.countDown();
+        for (Future<Boolean> login : admitted) {
+            assertTrue(login.get(60, TimeUnit.SECONDS));
+        }
+        assertEquals(3, registry.get("password.hash.time").tag("operation", "login").timer().count());
+        workers.shutdown();
+        hashing.shutdown();
+    }
+
+    @Test
+    void exceptionsFromTheTaskAreRethrown() {
+        PasswordHashingExecutor hashing = new PasswordHashingExecutor(1, 1, 10_000, new SimpleMeterRegistry());
+        assertThrows(IllegalArgumentException.class, () -> hashing.execute("login", () -> {
+            throw new IllegalArgumentException("bad credentials");
+        }));
+        hashing.shutdown();
+    }
+}
@@ -0,0 +1,95 @@
+package com.example.onlineticketingsystem;
+
+import com.example.onlineticketingsystem.entity.RefreshToken;
+import com.example.onlineticketingsystem.exception.InvalidRefreshTokenException;
+import com.example.onlineticketingsystem.repo.RefreshTokenRepo;
+import com.example.onlineticketingsystem.security.SecurityConstants;
+import com.example.onlineticketingsystem.service.RefreshTokenService;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.context.annotation.Import;
+
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@DataJpaTest(showSql = false, properties = {
+        "logging.level.org.springframework.security=INFO",
+        "security.refresh-token.cleanup-batch-size=10"
+})
+@Import({RefreshTokenService.class, SimpleMeterRegistry.class})
+class RefreshTokenServiceTest {
+
+    @Autowired
+    private RefreshTokenService refreshTokenService;
+    @Autowired
+    private RefreshTokenRepo refreshTokenRepo;
+    @Autowired
+    private SimpleMeterRegistry meterRegistry;
+
+    @Test
+    void rotationIssuesNewTokenAndRetiresOldOne() {
+        RefreshTokenService.IssuedToken first = refreshTokenService.issue("user@test.com");
+        RefreshTokenService.IssuedToken second = refreshTokenService.rotate(first.token());
+
+        assertEquals("user@test.com", second.username());
+        assertNotEquals(first.token(), second.token());
+        assertNotNull(refreshTokenService.rotate(second.token()));
+        // Only hashes are stored
+        assertTrue(refreshTokenRepo.findAll().stream().noneMatch(t -> t.getTokenHash().equals(first.token())));
+    }
+
+    @Test
+    void reusingARotatedTokenRevokesTheWholeFamily() {
+        RefreshTokenService.IssuedToken first = refreshTokenService.issue("user@test.com");
+        RefreshTokenService.IssuedToken second = refreshTokenService.rotate(first.token());
+        RefreshTokenService.IssuedToken otherLogin = refreshTokenService.issue("user@test.com");
+
+        assertThrows(InvalidRefreshTokenException.class, () -> refreshTokenService.rotate(first.token()));
+        assertThrows(InvalidRefreshTokenException.class, () -> refreshTokenService.rotate(second.token()));
+        assertEquals(1, meterRegistry.get("auth.refresh").tag("result", "reuse").counter().count());
+
+        // A separate login has its own family and keeps working
+        assertNotNull(refreshTokenService.rotate(otherLogin.token()));
+    }
+
+    @Test
+    void unknownAndMissingTokensAreRejected() {
+        assertThrows(InvalidRefreshTokenException.class, () -> refreshTokenService.rotate("not-a-token"));
+        assertThrows(InvalidRefreshTokenException.class, () -> refreshTokenService.rotate(null));
+    }
+
+    @Test
+    void expiredTokensArePurgedInBatches() {
+        long past = System.currentTimeMillis() - 1000;
+        for (int i = 0; i < 25; i++) {
+            refreshTokenRepo.save(new RefreshToken(0, "expired" + i, UUID.randomUUID().toString(), "user@test.com", past - 1000, past, 0, false));
+        }
+        RefreshTokenService.IssuedToken live = refreshTokenService.issue("user@test.com");
+
+        assertEquals(25, refreshTokenService.purgeExpired());
+        assertEquals(1, refreshTokenRepo.count());
+        assertNotNull(refreshTokenService.rotate(live.token()));
+    }
+
+    // One user kept active for an hour: with refresh tokens only the first login is a BCrypt check, and every
+    // later renewal is a rotation.
+    @Test
+    void anHourOfRenewalsIsOneLoginAndRotations() {
+        int renewalsPerHour = (int) Math.ceil(TimeUnit.HOURS.toMillis(1) / (double) SecurityConstants.JWT_EXPIRATION);
+        double before = meterRegistry.get("auth.refresh").tag("result", "success").counter().count();
+
+        String first = refreshTokenService.issue("user@test.com").token();
+        String token = first;
+        for (int i = 1; i < renewalsPerHour; i++) {
+            token = refreshTokenService.rotate(token).token();
+        }
+
+        assertEquals(renewalsPerHour - 1, meterRegistry.get("auth.refresh").tag("result", "success").counter().count() - before);
+        assertNotEquals(first, token);
+        assertEquals("user@test.com", refreshTokenService.rotate(token).username());
+    }
+}
@@ -0,0 +1,105 @@
+package com.example.onlineticketingsystem;
+
+import com.example.onlineticketingsystem.security.RequestRateLimitFilter;
+import com.example.onlineticketingsystem.security.RequestRateLimitProperties;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.mock.web.MockFilterChain;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
+import org.springframework.security.core.authority.SimpleGrantedAuthority;
+import org.springframework.security.core.context.SecurityContextHolder;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class RequestRateLimitFilterTest {
+
+    private RequestRateLimitFilter filter(RequestRateLimitProperties.Rule... rules) {
+        return filter(100_000, rules);
+    }
+
+    private RequestRateLimitFilter filter(int maxKeys, RequestRateLimitProperties.Rule... rules) {
+        RequestRateLimitProperties properties = new RequestRateLimitProperties();
+        properties.setMaxKeys(maxKeys);
+        properties.setRules(List.of(rules));
+        return new RequestRateLimitFilter(properties, new SimpleMeterRegistry());
+    }
+
+    private RequestRateLimitProperties.Rule rule(String pattern, int capacity, int ipCapacity) {
+        RequestRateLimitProperties.Rule rule = new RequestRateLimitProperties.Rule();
+        rule.setPattern(pattern);
+        rule.setCapacity(capacity);
+        rule.setRefillPerSecond(0.001);
+        rule.setIpCapacity(ipCapacity);
+        rule.setIpRefillPerSecond(0.001);
+        return rule;
+    }
+
+    private MockHttpServletResponse call(RequestRateLimitFilter filter, String path, String ip) throws Exception {
+        MockHttpServletRequest request = new MockHttpServletRequest("GET", path);
+        request.setRemoteAddr(ip);
+        MockHttpServletResponse response = new MockHttpServletResponse();
+        filter.doFilter(request, response, new MockFilterChain());
+        return response;
+    }
+
+    @AfterEach
+    void clearContext() {
+        SecurityContextHolder.clearContext();
+    }
+
+    @Test
+    void rejectsWithRetryAfterOncePrincipalBucketIsEmpty() throws Exception {
+        RequestRateLimitFilter filter = filter(rule("/api/Inspect/fraudByRoute", 2, 100));
+        SecurityContextHolder.getContext().setAuthentication(new UsernamePasswordAuthenticationToken(
+                "admin@test.com", null, List.of(new SimpleGrantedAuthority("admin"))));
+
+        assertEquals(200, call(filter, "/api/Inspect/fraudByRoute", "10.0.0.1").getStatus());
+        assertEquals(200, call(filter, "/api/Inspect/fraudByRoute", "10.0.0.2").getStatus());
+
+        MockHttpServletResponse rejected = call(filter, "/api/Inspect/fraudByRoute", "10.0.0.3");
+        assertEquals(429, rejected.getStatus());
+        assertTrue(Long.parseLong(rejected.getHeader("Retry-After")) >= 1);
+
+        // Other routes are not covered by the rule
+        assertEquals(200, call(filter, "/api/v1/bus/getBus", "10.0.0.3").getStatus());
+    }
+
+    @Test
+    void limitsAnonymousClientsByIp() throws Exception {
+        RequestRateLimitFilter filter = filter(rule("/api/v1/{resource}/{list:getBus|getRoute|getTimetable}", 100, 1));
+
+        assertEquals(200, call(filter, "/api/v1/route/getRoute", "10.0.0.9").getStatus());
+        assertEquals(429, call(filter, "/api/v1/timetable/getTimetable", "10.0.0.9").getStatus());
+        assertEquals(200, call(filter, "/api/v1/route/getRoute", "10.0.0.10").getStatus());
+    }
+
+    @Test
+    void firstMatchingRuleWins() throws Exception {
+        RequestRateLimitFilter filter = filter(rule("/api/Inspect/**", 100, 1), rule("/**", 100, 100));
+
+        assertEquals(200, call(filter, "/api/Inspect/getInspect", "10.0.0.4").getStatus());
+        assertEquals(429, call(filter, "/api/Inspect/getInspect", "10.0.0.4").getStatus());
+        assertEquals(200, call(filter, "/api/tickets/passengerById/1", "10.0.0.4").getStatus());
+    }
+
+    @Test
+    void newKeysShareAnOverflowBucketOnceFullInsteadOfEvictingKnownOnes() throws Exception {
+        RequestRateLimitFilter filter = filter(2, rule("/**", 100, 1));
+
+        assertEquals(200, call(filter, "/api/x", "10.0.0.1").getStatus());
+        assertEquals(200, call(filter, "/api/x", "10.0.0.2").getStatus());
+        // The map is full: a flood of new IPs draws on one shared bucket
+        assertEquals(200, call(filter, "/api/x", "10.0.1.1").getStatus());
+        for (int i = 2; i < 50; i++) {
+            assertEquals(429, call(filter, "/api/x", "10.0.1." + i).getStatus());
+        }
+        // and the known IPs keep their own, already empty, buckets
+        assertEquals(429, call(filter, "/api/x", "10.0.0.1").getStatus());
+        assertEquals(429, call(filter, "/api/x", "10.0.0.2").getStatus());
+    }
+}
@@ -0,0 +1,53 @@
+package com.example.onlineticketingsystem;
+
+import com.example.onlineticketingsystem.security.RevocationList;
+import org.junit.jupiter.api.Test;
+
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class RevocationListTest {
+
+    @Test
+    void revokedJtiIsFoundAndOthersAreNot() {
+        RevocationList list = new RevocationList(1000, 0.001);
+        list.add(RevocationList.jtiKey("a"), new RevocationList.Entry(Long.MAX_VALUE, Long.MAX_VALUE));
+
+        assertTrue(list.isRevoked("a", "user@test.com", 0));
+        assertFalse(list.isRevoked("b", "user@test.com", 0));
+    }
+
+    @Test
+    void userRevocationOnlyCoversTokensIssuedBeforeTheCutoff() {
+        RevocationList list = new RevocationList(1000, 0.001);
+        list.add(RevocationList.userKey("user@test.com"), new RevocationList.Entry(5_000, Long.MAX_VALUE));
+
+        assertTrue(list.isRevoked("x", "user@test.com", 4_000));
+        assertFalse(list.isRevoked("y", "user@test.com", 6_000));
+        assertFalse(list.isRevoked("x", "other@test.com", 4_000));
+    }
+
+    @Test
+    void expiredEntriesArePurged() {
+        RevocationList list = new RevocationList(1000, 0.001);
+        list.add(RevocationList.jtiKey("old"), new RevocationList.Entry(Long.MAX_VALUE, 1_000));
+        list.add(RevocationList.jtiKey("new"), new RevocationList.Entry(Long.MAX_VALUE, 3_000));
+
+        assertEquals(1, list.purgeExpired(2_000));
+        assertFalse(list.isRevoked("old", null, 0));
+        assertTrue(list.isRevoked("new", null, 0));
+    }
+
+    @Test
+    void bloomFilterKeepsFalsePositivesNearTheConfiguredRate() {
+        RevocationList list = new RevocationList(10_000, 0.01);
+        for (int i = 0; i < 10_000; i++) {
+            list.add(RevocationList.jtiKey(UUID.randomUUID().toString()), new RevocationList.Entry(Long.MAX_VALUE, Long.MAX_VALUE));
+        }
+        // The exact set filters out Bloom false positives, so nothing unrevoked is ever reported
+        for (int i = 0; i < 100_000; i++) {
+            assertFalse(list.isRevoked(UUID.randomUUID().toString(), null, 0));
+        }
+    }
+}
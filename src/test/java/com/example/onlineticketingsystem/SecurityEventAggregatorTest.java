@@ -0,0 +1,103 @@
+package com.example.onlineticketingsystem;
+
+import com.example.onlineticketingsystem.DTO.SecurityEventStatsDTO;
+import com.example.onlineticketingsystem.service.SecurityEventAggregator;
+import org.junit.jupiter.api.Test;
+
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class SecurityEventAggregatorTest {
+
+    private final AtomicLong now = new AtomicLong(1_700_000_000_000L);
+    private final SecurityEventAggregator aggregator = new SecurityEventAggregator(now::get, 5, 100, 1024, 4, 0);
+
+    @Test
+    void countsSlideOutOfEachWindow() {
+        for (int i = 0; i < 30; i++) {
+            aggregator.record("LOGIN", i % 3 == 0 ? "FAILURE" : "SUCCESS", "10.0.0." + (i % 4));
+        }
+        aggregator.record("REGISTER", "BLOCKED", null);
+
+        SecurityEventStatsDTO.WindowStats minute = aggregator.stats().getWindows().get("1m");
+        assertEquals(31, minute.getTotal());
+        assertEquals(Map.of("FAILURE", 10L, "SUCCESS", 20L, "BLOCKED", 1L), minute.getByStatus());
+        assertEquals(Map.of("LOGIN", 30L, "REGISTER", 1L), minute.getByAction());
+
+        now.addAndGet(TimeUnit.MINUTES.toMillis(2));
+        aggregator.record("LOGIN", "FAILURE", "10.0.0.9");
+        SecurityEventStatsDTO stats = aggregator.stats();
+        assertEquals(1, stats.getWindows().get("1m").getTotal());
+        assertEquals(32, stats.getWindows().get("15m").getTotal());
+        assertEquals(11L, stats.getWindows().get("15m").getByStatus().get("FAILURE"));
+        assertEquals(32, stats.getWindows().get("1h").getTotal());
+
+        now.addAndGet(TimeUnit.MINUTES.toMillis(20));
+        stats = aggregator.stats();
+        assertEquals(0, stats.getWindows().get("15m").getTotal());
+        assertTrue(stats.getWindows().get("15m").getTopIps().isEmpty());
+        assertEquals(32, stats.getWindows().get("1h").getTotal());
+
+        now.addAndGet(TimeUnit.HOURS.toMillis(2));
+        assertEquals(0, aggregator.stats().getWindows().get("1h").getTotal());
+    }
+
+    @Test
+    void heavyHittersStandOutAmongManyAddresses() {
+        Random random = new Random(7);
+        int events = 0;
+        for (int second = 0; second < 600; second++) {
+            now.addAndGet(1000);
+            for (int i = 0; i < 50; i++, events++) {
+                aggregator.record("LOGIN", "SUCCESS", "10." + random.nextInt(50) + "." + random.nextInt(250) + ".1");
+            }
+            for (int i = 0; i < 5; i++, events++) {
+                aggregator.record("LOGIN", "FAILURE", "203.0.113.66");
+            }
+            events++;
+            aggregator.record("LOGIN", "FAILURE", "198.51.100.7");
+        }
+
+        SecurityEventStatsDTO stats = aggregator.stats();
+
+        SecurityEventStatsDTO.WindowStats quarter = stats.getWindows().get("15m");
+        assertEquals(events, quarter.getTotal());
+        assertEquals(5, quarter.getTopIps().size());
+        assertEquals("203.0.113.66", quarter.getTopIps().get(0).getIpAddress());
+        // Count-min never undercounts; with 1024 x 4 counters per bucket it overcounts by little here
+        long attacker = quarter.getTopIps().get(0).getCount();
+        assertTrue(attacker >= 3000 && attacker < 3000 * 1.1, "attacker count " + attacker);
+        assertEquals("198.51.100.7", quarter.getTopIps().get(1).getIpAddress());
+
+        // The minute window is the last 12 five-second buckets; the newest has just started, so 56 seconds
+        SecurityEventStatsDTO.WindowStats minute = stats.getWindows().get("1m");
+        assertEquals(56 * 56, minute.getTotal());
+        assertEquals("203.0.113.66", minute.getTopIps().get(0).getIpAddress());
+    }
+
+    @Test
+    void unknownActionsBeyondTheKeyLimitAreCountedAsOther() {
+        for (int i = 0; i < 200; i++) {
+            aggregator.record("ACTION_" + i, "SUCCESS", "10.0.0.1");
+        }
+        SecurityEventStatsDTO.WindowStats minute = aggregator.stats().getWindows().get("1m");
+        assertEquals(200, minute.getTotal());
+        assertEquals(200, minute.getByAction().values().stream().mapToLong(Long::longValue).sum());
+        assertTrue(minute.getByAction().get("OTHER") > 100);
+    }
+
+    @Test
+    void statsAreReusedWithinTheRefreshInterval() {
+        SecurityEventAggregator cached = new SecurityEventAggregator(now::get, 5, 100, 1024, 4, 1000);
+        SecurityEventStatsDTO first = cached.stats();
+        cached.record("LOGIN", "FAILURE", "10.0.0.1");
+        assertSame(first, cached.stats());
+
+        now.addAndGet(1000);
+        assertEquals(1, cached.stats().getWindows().get("1m").getTotal());
+    }
+}
@@ -0,0 +1,197 @@
+package com.example.onlineticketingsystem;
+
+import com.example.onlineticketingsystem.entity.SecurityLog;
+import com.example.onlineticketingsystem.repo.SecurityLogRepo;
+import com.example.onlineticketingsystem.service.SecurityLogJournal;
+import com.example.onlineticketingsystem.service.SecurityLogShipper;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.sql.Timestamp;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+// The shipper commits its own transactions, so the test runs outside the usual rolled-back transaction
+@DataJpaTest(showSql = false, properties = {"logging.level.org.springframework.security=INFO"})
+@Transactional(propagation = Propagation.NOT_SUPPORTED)
+class SecurityLogJournalTest {
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+    @Autowired
+    private SecurityLogRepo securityLogRepo;
+
+    @TempDir
+    Path dir;
+
+    private final SimpleMeterRegistry registry = new SimpleMeterRegistry();
+
+    @AfterEach
+    void cleanUp() {
+        securityLogRepo.deleteAllInBatch();
+        jdbcTemplate.update("DELETE FROM security_log_checkpoint");
+    }
+
+    private SecurityLogJournal journal(long segmentBytes) throws Exception {
+        return new SecurityLogJournal(dir.toString(), segmentBytes, true, registry);
+    }
+
+    private SecurityLogShipper shipper(SecurityLogJournal journal) {
+        return new SecurityLogShipper(journal, jdbcTemplate, transactionManager, 100, 500, registry);
+    }
+
+    private static SecurityLog record(int i) {
+        return new SecurityLog(0, "LOGIN", "user" + i + "@test.com", "SUCCESS", "10.0.0." + (i % 250),
+                new Timestamp(System.currentTimeMillis()), "User login successful");
+    }
+
+    @Test
+    void concurrentAppendsShareFsyncs() throws Exception {
+        SecurityLogJournal journal = journal(16 * 1024 * 1024);
+        ExecutorService threads = Executors.newFixedThreadPool(8);
+        List<Future<?>> futures = new ArrayList<>();
+        for (int t = 0; t < 8; t++) {
+            int thread = t;
+            futures.add(threads.submit(() -> {
+                for (int i = 0; i < 200; i++) {
+                    journal.append(record(thread * 1000 + i));
+                }
+            }));
+        }
+        for (Future<?> future : futures) {
+            future.get(60, TimeUnit.SECONDS);
+        }
+        threads.shutdown();
+
+        double fsyncs = registry.get("security.log.journal.fsyncs").counter().count();
+        assertTrue(fsyncs < 1600);
+        assertEquals(1600, journal.read(0, 10_000).records().size());
+        journal.close();
+    }
+
+    @Test
+    void readsAcrossSegments() throws Exception {
+        SecurityLogJournal journal = journal(1024);
+        for (int i = 0; i < 100; i++) {
+            journal.append(record(i));
+        }
+        assertTrue(segmentCount() > 1);
+
+        List<SecurityLog> read = new ArrayList<>();
+        long offset = 0;
+        SecurityLogJournal.ReadBatch batch;
+        while (!(batch = journal.read(offset, 7)).records().isEmpty()) {
+            read.addAll(batch.records());
+            offset = batch.endOffset();
+        }
+        assertEquals(100, read.size());
+        assertEquals("user0@test.com", read.get(0).getUsername());
+        assertEquals("user99@test.com", read.get(99).getUsername());
+        assertEquals(journal.durableOffset(), offset);
+        journal.close();
+    }
+
+    @Test
+    void tornRecordFromACrashIsCutOff() throws Exception {
+        SecurityLogJournal journal = journal(16 * 1024 * 1024);
+        for (int i = 0; i < 10; i++) {
+            journal.append(record(i));
+        }
+        long end = journal.durableOffset();
+        journal.close();
+
+        // A crash in the middle of a write leaves a header that promises more bytes than follow
+        try (FileChannel segment = FileChannel.open(lastSegment(), StandardOpenOption.WRITE, StandardOpenOption.APPEND)) {
+            segment.write(ByteBuffer.allocate(12).putInt(500).putInt(42).putInt(7).flip());
+        }
+
+        SecurityLogJournal reopened = journal(16 * 1024 * 1024);
+        assertEquals(end, reopened.durableOffset());
+        reopened.append(record(10));
+        assertEquals(11, reopened.read(0, 100).records().size());
+        reopened.close();
+    }
+
+    @Test
+    void shipsInBatchesAndResumesFromCheckpointAfterRestart() throws Exception {
+        SecurityLogJournal journal = journal(4096);
+        for (int i = 0; i < 250; i++) {
+            journal.append(record(i));
+        }
+        assertEquals(250, shipper(journal).shipPending());
+        assertEquals(250, securityLogRepo.count());
+        assertEquals(1, segmentCount());
+
+        // Records acknowledged but not shipped when the node went down
+        for (int i = 250; i < 260; i++) {
+            journal.append(record(i));
+        }
+        journal.close();
+
+        SecurityLogJournal restarted = journal(4096);
+        assertEquals(journal.id(), restarted.id());
+        assertEquals(10, shipper(restarted).shipPending());
+        assertEquals(260, securityLogRepo.count());
+        assertEquals(restarted.durableOffset(), jdbcTemplate.queryForObject(
+                "SELECT journal_offset FROM security_log_checkpoint WHERE node_id = ?", Long.class, restarted.id()));
+        restarted.close();
+    }
+
+    // A fresh directory is a new journal, so an old checkpoint cannot make it skip records
+    @Test
+    void wipedJournalDirectoryStartsANewCheckpoint() throws Exception {
+        SecurityLogJournal journal = journal(4096);
+        for (int i = 0; i < 20; i++) {
+            journal.append(record(i));
+        }
+        assertEquals(20, shipper(journal).shipPending());
+        String firstId = journal.id();
+        journal.close();
+        try (Stream<Path> files = Files.list(dir)) {
+            for (Path file : files.toList()) {
+                Files.delete(file);
+            }
+        }
+
+        SecurityLogJournal wiped = journal(4096);
+        assertNotEquals(firstId, wiped.id());
+        wiped.append(record(20));
+        assertEquals(1, shipper(wiped).shipPending());
+        assertEquals(21, securityLogRepo.count());
+        wiped.close();
+    }
+
+    private long segmentCount() throws Exception {
+        try (Stream<Path> files = Files.list(dir)) {
+            return files.filter(path -> path.toString().endsWith(".log")).count();
+        }
+    }
+
+    private Path lastSegment() throws Exception {
+        try (Stream<Path> files = Files.list(dir)) {
+            return files.filter(path -> path.toString().endsWith(".log")).sorted().reduce((a, b) -> b).orElseThrow();
+        }
+    }
+}
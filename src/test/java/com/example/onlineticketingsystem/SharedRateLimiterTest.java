@@ -0,0 +1,131 @@
+package com.example.onlineticketingsystem;
+
+import com.example.onlineticketingsystem.service.RateLimiterStore;
+import com.example.onlineticketingsystem.service.SharedRateLimiter;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class SharedRateLimiterTest {
+
+    private final LocalStore store = new LocalStore();
+    private final SharedRateLimiter nodeA = new SharedRateLimiter(5, 600_000, store, new SimpleMeterRegistry());
+    private final SharedRateLimiter nodeB = new SharedRateLimiter(5, 600_000, store, new SimpleMeterRegistry());
+
+    @Test
+    void attemptsOnDifferentNodesAddUp() {
+        for (int i = 0; i < 3; i++) nodeA.recordFailedAttempt("10.0.0.1");
+        for (int i = 0; i < 2; i++) nodeB.recordFailedAttempt("10.0.0.1");
+        assertFalse(nodeA.isBlocked("10.0.0.1"));
+        assertFalse(nodeB.isBlocked("10.0.0.1"));
+
+        nodeA.sync();
+        nodeB.sync();
+        nodeA.sync();
+
+        assertTrue(nodeA.isBlocked("10.0.0.1"));
+        assertTrue(nodeB.isBlocked("10.0.0.1"));
+    }
+
+    @Test
+    void loginsNeverCallTheStoreDirectly() {
+        for (int i = 0; i < 100; i++) {
+            nodeA.isBlocked("10.0.0.2");
+            nodeA.recordFailedAttempt("10.0.0.2");
+        }
+        assertEquals(0, store.calls.get());
+
+        // The node blocks on its own count before the store has heard about it
+        assertTrue(nodeA.isBlocked("10.0.0.2"));
+
+        nodeA.sync();
+        assertEquals(2, store.calls.get());
+    }
+
+    @Test
+    void successfulLoginClearsTheSharedCounter() {
+        for (int i = 0; i < 4; i++) nodeA.recordFailedAttempt("10.0.0.3");
+        nodeA.sync();
+        nodeB.resetAttempts("10.0.0.3");
+        nodeB.sync();
+
+        nodeA.recordFailedAttempt("10.0.0.3");
+        nodeA.sync();
+        assertFalse(nodeA.isBlocked("10.0.0.3"));
+    }
+
+    @Test
+    void failedSyncIsRetried() {
+        for (int i = 0; i < 5; i++) nodeB.recordFailedAttempt("10.0.0.4");
+        store.failNext = true;
+        nodeB.sync();
+        assertFalse(store.rows.containsKey("10.0.0.4"));
+
+        nodeB.sync();
+        nodeA.sync();
+        assertTrue(nodeA.isBlocked("10.0.0.4"));
+    }
+
+    // Stand-in for the login_attempt table with the same upsert rules as JdbcRateLimiterStore
+    private static class LocalStore implements RateLimiterStore {
+
+        private final Map<String, long[]> rows = new HashMap<>();
+        private final AtomicInteger calls = new AtomicInteger();
+        private boolean failNext;
+
+        @Override
+        public synchronized void addAttempts(Map<String, Integer> attempts, int maxAttempts, long now,
+                                             long windowStart, long blockUntil) {
+            call();
+            attempts.forEach((ip, added) -> {
+                long[] row = rows.get(ip);
+                if (row == null) {
+                    rows.put(ip, new long[]{added, added >= maxAttempts ? blockUntil : 0, now});
+                    return;
+                }
+                boolean expired = (row[1] != 0 && row[1] <= now) || row[2] < windowStart;
+                row[0] = expired ? added : row[0] + added;
+                row[1] = row[0] >= maxAttempts ? (row[1] > now ? row[1] : blockUntil) : (row[1] <= now ? 0 : row[1]);
+                row[2] = now;
+            });
+        }
+
+        @Override
+        public synchronized void reset(Collection<String> ipAddresses) {
+            call();
+            ipAddresses.forEach(rows::remove);
+        }
+
+        @Override
+        public synchronized Map<String, Long> findBlocked(long now) {
+            call();
+            Map<String, Long> blocked = new HashMap<>();
+            rows.forEach((ip, row) -> {
+                if (row[1] > now) blocked.put(ip, row[1]);
+            });
+            return blocked;
+        }
+
+        @Override
+        public synchronized int purgeIdle(long cutoff, long now) {
+            call();
+            int before = rows.size();
+            rows.values().removeIf(row -> row[2] < cutoff && row[1] <= now);
+            return before - rows.size();
+        }
+
+        private void call() {
+            calls.incrementAndGet();
+            if (failNext) {
+                failNext = false;
+                throw new IllegalStateException("store unavailable");
+            }
+        }
+    }
+}
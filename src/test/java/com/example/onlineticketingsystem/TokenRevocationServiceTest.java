@@ -0,0 +1,84 @@
+package com.example.onlineticketingsystem;
+
+import com.example.onlineticketingsystem.repo.RevokedTokenRepo;
+import com.example.onlineticketingsystem.service.RefreshTokenService;
+import com.example.onlineticketingsystem.service.TokenRevocationService;
+import io.jsonwebtoken.Claims;
+import io.jsonwebtoken.Jwts;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.context.annotation.Import;
+
+import java.util.Date;
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@DataJpaTest(showSql = false, properties = {"logging.level.org.springframework.security=INFO"})
+@Import({TokenRevocationService.class, RefreshTokenService.class, SimpleMeterRegistry.class})
+class TokenRevocationServiceTest {
+
+    @Autowired
+    private TokenRevocationService tokenRevocationService;
+    @Autowired
+    private RefreshTokenService refreshTokenService;
+    @Autowired
+    private RevokedTokenRepo revokedTokenRepo;
+
+    private static Claims claims(String username, long issuedAt, long expiresAt) {
+        return Jwts.claims().setId(UUID.randomUUID().toString()).setSubject(username)
+                .setIssuedAt(new Date(issuedAt)).setExpiration(new Date(expiresAt));
+    }
+
+    // A new node (or a restart) sees the same revocations through the table
+    private TokenRevocationService restartedNode() {
+        TokenRevocationService node = new TokenRevocationService(revokedTokenRepo, refreshTokenService,
+                1000, 0.001, 100, 5000, new SimpleMeterRegistry());
+        node.load();
+        return node;
+    }
+
+    @Test
+    void revokedTokenStaysRevokedAfterRestart() {
+        long now = System.currentTimeMillis();
+        Claims revoked = claims("user@test.com", now, now + 60_000);
+        Claims other = claims("user@test.com", now, now + 60_000);
+
+        tokenRevocationService.revokeToken(revoked, "logout");
+
+        assertTrue(tokenRevocationService.isRevoked(revoked));
+        assertFalse(tokenRevocationService.isRevoked(other));
+        TokenRevocationService restarted = restartedNode();
+        assertTrue(restarted.isRevoked(revoked));
+        assertFalse(restarted.isRevoked(other));
+    }
+
+    @Test
+    void revokingAUserCoversEarlierTokensAndRefreshTokens() {
+        long now = System.currentTimeMillis();
+        Claims earlier = claims("inspector@test.com", now - 10_000, now + 60_000);
+        String refreshToken = refreshTokenService.issue("inspector@test.com").token();
+
+        tokenRevocationService.revokeUser("inspector@test.com", "device lost");
+
+        assertTrue(tokenRevocationService.isRevoked(earlier));
+        assertFalse(tokenRevocationService.isRevoked(claims("inspector@test.com", now + 2_000, now + 60_000)));
+        assertThrows(RuntimeException.class, () -> refreshTokenService.rotate(refreshToken));
+    }
+
+    @Test
+    void expiredRevocationsArePurged() {
+        long now = System.currentTimeMillis();
+        Claims expired = claims("user@test.com", now - 120_000, now - 1);
+        tokenRevocationService.revokeToken(expired, "logout");
+        tokenRevocationService.revokeToken(claims("user@test.com", now, now + 60_000), "logout");
+        // The in-memory list is shared with the other tests in this context, unlike the rolled-back table
+        int entries = tokenRevocationService.size();
+
+        assertEquals(1, tokenRevocationService.purgeExpired());
+        assertEquals(1, revokedTokenRepo.count());
+        assertEquals(entries - 1, tokenRevocationService.size());
+    }
+}
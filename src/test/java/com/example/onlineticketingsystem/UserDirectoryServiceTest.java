@@ -0,0 +1,155 @@
+package com.example.onlineticketingsystem;
+
+import com.example.onlineticketingsystem.entity.*;
+import com.example.onlineticketingsystem.repo.*;
+import com.example.onlineticketingsystem.service.UserDirectoryService;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.boot.test.autoconfigure.orm.jpa.TestEntityManager;
+import org.springframework.context.annotation.Import;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Optional;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+@DataJpaTest(showSql = false, properties = {"logging.level.org.springframework.security=INFO"})
+@Import(UserDirectoryService.class)
+class UserDirectoryServiceTest {
+
+    private static final int USERS_PER_TYPE = 20;
+
+    @Autowired
+    private PassengerRepo passengerRepo;
+    @Autowired
+    private BusOwnerRepo busOwnerRepo;
+    @Autowired
+    private TicketInspectorRepo ticketInspectorRepo;
+    @Autowired
+    private AdminRepo adminRepo;
+    @Autowired
+    private RoleRepo roleRepo;
+    @Autowired
+    private UserDirectoryBackfillRepo userDirectoryBackfillRepo;
+    @Autowired
+    private UserDirectoryService userDirectoryService;
+    @Autowired
+    private TestEntityManager entityManager;
+
+    @BeforeEach
+    void seed() {
+        Role role = roleRepo.save(new Role(0, "admin"));
+        for (int i = 0; i < USERS_PER_TYPE; i++) {
+            Passenger passenger = new Passenger(100);
+            fill(passenger, "passenger" + i, role);
+            passengerRepo.save(passenger);
+
+            BusOwner busOwner = new BusOwner(i, "");
+            fill(busOwner, "owner" + i, role);
+            busOwnerRepo.save(busOwner);
+
+            TicketInspector inspector = new TicketInspector(i);
+            fill(inspector, "inspector" + i, role);
+            ticketInspectorRepo.save(inspector);
+
+            Admin admin = new Admin();
+            fill(admin, "admin" + i, role);
+            adminRepo.save(admin);
+        }
+        assertEquals(USERS_PER_TYPE * 4, userDirectoryService.backfill());
+        entityManager.flush();
+        entityManager.clear();
+    }
+
+    @Test
+    void eachUserTypeResolvesThroughTheDirectory() {
+        Map<String, String> prefixes = new LinkedHashMap<>();
+        prefixes.put("passenger", UserDirectoryService.PASSENGER);
+        prefixes.put("owner", UserDirectoryService.BUS_OWNER);
+        prefixes.put("inspector", UserDirectoryService.TICKET_INSPECTOR);
+        prefixes.put("admin", UserDirectoryService.ADMIN);
+
+        for (Map.Entry<String, String> type : prefixes.entrySet()) {
+            UserDirectory entry = userDirectoryService.findByEmail(type.getKey() + "7@test.com").orElseThrow();
+            assertEquals(type.getValue(), entry.getUserType());
+            assertEquals(probe(type.getKey() + "7").orElseThrow().getUserID(), entry.getUserId());
+        }
+        assertTrue(userDirectoryService.findByEmail("nobody@test.com").isEmpty());
+        assertEquals(0, userDirectoryService.backfill());
+    }
+
+    @Test
+    void recordDoesNotHandAnEmailToAnotherUser() {
+        Admin admin = new Admin();
+        fill(admin, "passenger7", roleRepo.findAll().get(0));
+        admin.setUserID(999);
+        userDirectoryService.record(UserDirectoryService.ADMIN, admin);
+
+        UserDirectory entry = userDirectoryService.findByEmail("passenger7@test.com").orElseThrow();
+        assertEquals(UserDirectoryService.PASSENGER, entry.getUserType());
+        assertEquals(passengerRepo.findByEmail("passenger7@test.com").orElseThrow().getUserID(), entry.getUserId());
+    }
+
+    @Test
+    void recordRefreshesTheSameUsersEntry() {
+        Passenger passenger = passengerRepo.findByEmail("passenger7@test.com").orElseThrow();
+        passenger.setPassword("new hash");
+        userDirectoryService.record(UserDirectoryService.PASSENGER, passenger);
+
+        assertEquals("new hash", userDirectoryService.findByEmail("passenger7@test.com").orElseThrow().getPassword());
+    }
+
+    @Test
+    void usersNotYetBackfilledCountAsRegistered() {
+        // As on a node that has not seen the backfill complete
+        userDirectoryBackfillRepo.deleteAll();
+        ReflectionTestUtils.setField(userDirectoryService, "backfilled", false);
+
+        Admin admin = new Admin();
+        fill(admin, "late", roleRepo.findAll().get(0));
+        adminRepo.save(admin);
+
+        assertTrue(userDirectoryService.findByEmail("late@test.com").isEmpty());
+        assertTrue(userDirectoryService.isRegistered("late@test.com"));
+        assertTrue(userDirectoryService.isRegistered("owner3@test.com"));
+        assertFalse(userDirectoryService.isRegistered("nobody@test.com"));
+    }
+
+    @Test
+    void aCompletedBackfillIsNotRepeated() {
+        assertTrue(userDirectoryBackfillRepo.existsById(1));
+        userDirectoryService.backfillOnStartup();
+        assertTrue(userDirectoryService.isBackfilled());
+
+        // Only the directory is asked from now on: a row written behind its back is not found
+        Admin admin = new Admin();
+        fill(admin, "unrecorded", roleRepo.findAll().get(0));
+        adminRepo.save(admin);
+        assertFalse(userDirectoryService.isRegistered("unrecorded@test.com"));
+        assertTrue(userDirectoryService.isRegistered("owner3@test.com"));
+    }
+
+    // The lookup order CustomUserDetailsService used before the directory existed
+    private Optional<? extends User> probe(String name) {
+        String email = name + "@test.com";
+        Optional<? extends User> user = passengerRepo.findByEmail(email);
+        if (user.isEmpty()) user = busOwnerRepo.findByEmail(email);
+        if (user.isEmpty()) user = ticketInspectorRepo.findByEmail(email);
+        if (user.isEmpty()) user = adminRepo.findByEmail(email);
+        return user;
+    }
+
+    private void fill(User user, String name, Role role) {
+        user.setName(name);
+        user.setEmail(name + "@test.com");
+        user.setContactNo("0770000000");
+        user.setPassword("hash");
+        user.setRole(role);
+    }
+}
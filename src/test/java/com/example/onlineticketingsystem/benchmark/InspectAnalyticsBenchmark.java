@@ -0,0 +1,110 @@
+package com.example.onlineticketingsystem.benchmark;
+
+import com.example.onlineticketingsystem.entity.Inspect;
+import com.example.onlineticketingsystem.service.InspectColumns;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.sql.Date;
+import java.sql.Time;
+import java.time.LocalDate;
+import java.util.*;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.TimeUnit;
+
+// Group-bys over the InspectColumns snapshot against the loops over List<Inspect> the services used to run
+// (fraud by route as in fraudByRoute, and an hourly profile of one route over one quarter).
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgs = {"-Xms4g", "-Xmx4g"})
+public class InspectAnalyticsBenchmark {
+
+    @Param({"1000000", "10000000"})
+    private int rows;
+
+    private List<Inspect> inspects;
+    private InspectColumns columns;
+    private final ForkJoinPool pool = ForkJoinPool.commonPool();
+    private Date quarterStart;
+    private Date quarterEnd;
+
+    @Setup
+    public void setUp() {
+        Random random = new Random(42);
+        LocalDate first = LocalDate.of(2022, 1, 1);
+        inspects = new ArrayList<>(rows);
+        columns = new InspectColumns(rows);
+        // The entities share Date and Time instances, which loaded entities would not, so the loops run at their best
+        Date[] dates = new Date[1096];
+        for (int d = 0; d < dates.length; d++) {
+            dates[d] = Date.valueOf(first.plusDays(d));
+        }
+        Time[] times = new Time[96];
+        for (int t = 0; t < times.length; t++) {
+            times[t] = Time.valueOf(String.format("%02d:%02d:00", t / 4, (t % 4) * 15));
+        }
+        for (int id = 1; id <= rows; id++) {
+            int day = random.nextInt(dates.length);
+            int time = random.nextInt(times.length);
+            Inspect inspect = new Inspect(id, random.nextInt(500), random.nextInt(2000), random.nextInt(300),
+                    dates[day], times[time], random.nextInt(4), 20 + random.nextInt(60));
+            inspects.add(inspect);
+            columns.upsert(id, inspect.getInspectorId(), inspect.getBusId(), inspect.getRouteId(),
+                    (int) first.plusDays(day).toEpochDay(), times[time].toLocalTime().toSecondOfDay(),
+                    inspect.getNoFraudDetected(), inspect.getNoOfPassengers());
+        }
+        quarterStart = Date.valueOf("2023-04-01");
+        quarterEnd = Date.valueOf("2023-06-30");
+    }
+
+    @Benchmark
+    public Map<Integer, Long> fraudByRouteEntityLoop() {
+        Map<Integer, Long> fraudByRoute = new HashMap<>();
+        for (Inspect inspect : inspects) {
+            fraudByRoute.merge(inspect.getRouteId(), (long) inspect.getNoFraudDetected(), Long::sum);
+        }
+        return fraudByRoute;
+    }
+
+    @Benchmark
+    public List<InspectColumns.Group> fraudByRouteColumns() {
+        return columns.aggregate(List.of(), InspectColumns.Column.ROUTE_ID, List.of(InspectColumns.Column.FRAUD), pool);
+    }
+
+    @Benchmark
+    public Map<Integer, long[]> routeHourlyProfileEntityLoop() {
+        Map<Integer, long[]> byHour = new TreeMap<>();
+        for (Inspect inspect : inspects) {
+            if (inspect.getRouteId() == 7 && !inspect.getInspectDate().before(quarterStart)
+                    && !inspect.getInspectDate().after(quarterEnd)) {
+                long[] totals = byHour.computeIfAbsent(inspect.getInspectTime().toLocalTime().getHour(), hour -> new long[3]);
+                totals[0]++;
+                totals[1] += inspect.getNoFraudDetected();
+                totals[2] += inspect.getNoOfPassengers();
+            }
+        }
+        return byHour;
+    }
+
+    @Benchmark
+    public List<InspectColumns.Group> routeHourlyProfileColumns() {
+        return columns.aggregate(List.of(InspectColumns.Filter.equal(InspectColumns.Column.ROUTE_ID, 7),
+                        new InspectColumns.Filter(InspectColumns.Column.INSPECT_DATE,
+                                (int) quarterStart.toLocalDate().toEpochDay(), (int) quarterEnd.toLocalDate().toEpochDay())),
+                InspectColumns.Column.INSPECT_HOUR,
+                List.of(InspectColumns.Column.FRAUD, InspectColumns.Column.PASSENGERS), pool);
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        Options options = new OptionsBuilder()
+                .include(InspectAnalyticsBenchmark.class.getSimpleName())
+                .build();
+        new Runner(options).run();
+    }
+}
@@ -0,0 +1,103 @@
+package com.example.onlineticketingsystem.benchmark;
+
+import com.example.onlineticketingsystem.DTO.InspectHistoryPageDTO;
+import com.example.onlineticketingsystem.DTO.InspectSummaryDTO;
+import com.example.onlineticketingsystem.repo.JdbcInspectHistoryRepo;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.DriverManagerDataSource;
+
+import java.sql.Date;
+import java.sql.Time;
+import java.time.LocalDate;
+import java.time.LocalTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+// One inspector's history in an in-memory H2 table laid out as the entity declares it, read a page at a time
+// through JdbcInspectHistoryRepo (the first page, and the page half way through the history) against the
+// full-list query the endpoints used to run. Only the full list should grow with the history.
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgs = {"-Xms2g", "-Xmx2g"})
+public class InspectHistoryBenchmark {
+
+    private static final int INSPECTOR = 7;
+    private static final int PAGE = 50;
+
+    @Param({"1000", "10000", "100000"})
+    private int history;
+
+    private JdbcTemplate jdbcTemplate;
+    private JdbcInspectHistoryRepo historyRepo;
+    private String middleCursor;
+
+    @Setup
+    public void setUp() {
+        DriverManagerDataSource dataSource = new DriverManagerDataSource("jdbc:h2:mem:history" + history + ";DB_CLOSE_DELAY=-1");
+        jdbcTemplate = new JdbcTemplate(dataSource);
+        jdbcTemplate.execute("CREATE TABLE inspect (inspect_id INT PRIMARY KEY, inspector_id INT NOT NULL, bus_id INT NOT NULL, "
+                + "route_id INT NOT NULL, inspect_date DATE, inspect_time TIME, no_fraud_detected INT NOT NULL, "
+                + "no_of_passengers INT NOT NULL)");
+        jdbcTemplate.execute("CREATE INDEX idx_inspect_inspector_date ON inspect "
+                + "(inspector_id DESC, inspect_date DESC, inspect_time DESC, inspect_id DESC)");
+        // The busy inspector takes every fourth inspection, twelve a day
+        LocalDate first = LocalDate.of(2000, 1, 1);
+        List<Object[]> batch = new ArrayList<>();
+        for (int id = 1; id <= history * 4; id++) {
+            int inspectorId = id % 4 == 0 ? INSPECTOR : 100 + id % 50;
+            batch.add(new Object[]{id, inspectorId, id % 40, id % 12, Date.valueOf(first.plusDays(id / 48)),
+                    Time.valueOf(LocalTime.ofSecondOfDay((id % 48) * 1800L)), id % 3, 20 + id % 50});
+            if (batch.size() == 10_000) {
+                insert(batch);
+            }
+        }
+        insert(batch);
+        historyRepo = new JdbcInspectHistoryRepo(jdbcTemplate);
+        middleCursor = historyRepo.page(INSPECTOR, null, null, true, null, history / 2).getNextCursor();
+    }
+
+    private void insert(List<Object[]> batch) {
+        jdbcTemplate.batchUpdate("INSERT INTO inspect VALUES (?, ?, ?, ?, ?, ?, ?, ?)", batch);
+        batch.clear();
+    }
+
+    @TearDown
+    public void tearDown() {
+        jdbcTemplate.execute("DROP ALL OBJECTS");
+    }
+
+    @Benchmark
+    public InspectHistoryPageDTO firstPage() {
+        return historyRepo.page(INSPECTOR, null, null, true, null, PAGE);
+    }
+
+    @Benchmark
+    public InspectHistoryPageDTO middlePage() {
+        return historyRepo.page(INSPECTOR, null, null, true, middleCursor, PAGE);
+    }
+
+    @Benchmark
+    public List<InspectSummaryDTO> fullHistory() {
+        return jdbcTemplate.query("SELECT inspect_id, bus_id, route_id, inspect_date, inspect_time, no_fraud_detected, "
+                        + "no_of_passengers FROM inspect WHERE inspector_id = ?",
+                (rs, rowNum) -> new InspectSummaryDTO(rs.getInt(1), rs.getInt(2), rs.getInt(3),
+                        rs.getObject(4, LocalDate.class), rs.getObject(5, LocalTime.class), rs.getInt(6), rs.getInt(7)),
+                INSPECTOR);
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        Options options = new OptionsBuilder()
+                .include(InspectHistoryBenchmark.class.getSimpleName())
+                .build();
+        new Runner(options).run();
+    }
+}
@@ -0,0 +1,78 @@
+package com.example.onlineticketingsystem.benchmark;
+
+import com.example.onlineticketingsystem.service.InMemoryRateLimiter;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+// Contended isBlocked / recordFailedAttempt throughput.
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@Threads(8)
+public class RateLimiterBenchmark {
+
+    // Few keys = every thread fights over the same bins; many keys = eviction pressure at the size cap
+    @Param({"16", "1000000"})
+    private int distinctIps;
+
+    private InMemoryRateLimiter limiter;
+    private String[] ips;
+
+    @Setup
+    public void setUp() {
+        limiter = new InMemoryRateLimiter(5, 600_000, 100_000, new SimpleMeterRegistry());
+        ips = new String[Math.min(distinctIps, 1 << 16)];
+        for (int i = 0; i < ips.length; i++) {
+            ips[i] = "10." + (i >> 16) + "." + ((i >> 8) & 0xff) + "." + (i & 0xff);
+        }
+    }
+
+    private String nextIp() {
+        if (distinctIps > ips.length) {
+            int i = ThreadLocalRandom.current().nextInt(distinctIps);
+            return "10." + (i >> 16) + "." + ((i >> 8) & 0xff) + "." + (i & 0xff);
+        }
+        return ips[ThreadLocalRandom.current().nextInt(ips.length)];
+    }
+
+    @Benchmark
+    public boolean isBlocked() {
+        return limiter.isBlocked(nextIp());
+    }
+
+    @Benchmark
+    public void recordFailedAttempt() {
+        limiter.recordFailedAttempt(nextIp());
+    }
+
+    @Benchmark
+    @Group("loginMix")
+    @GroupThreads(6)
+    public boolean loginMixCheck() {
+        return limiter.isBlocked(nextIp());
+    }
+
+    @Benchmark
+    @Group("loginMix")
+    @GroupThreads(2)
+    public void loginMixFailure() {
+        limiter.recordFailedAttempt(nextIp());
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        Options options = new OptionsBuilder()
+                .include(RateLimiterBenchmark.class.getSimpleName())
+                .build();
+        new Runner(options).run();
+    }
+}
@@ -0,0 +1,88 @@
+package com.example.onlineticketingsystem.benchmark;
+
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.SingleConnectionDataSource;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+// Resolving a login email through the four per-type user tables, in the order CustomUserDetailsService used to
+// probe them, against the single user_directory lookup. Each table in an in-memory H2 database has a unique
+// index on email as the entities declare, and one connection is held open so only the lookups are timed.
+// The probe gets slower the later the user's type comes in the order; the directory lookup should not.
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class UserDirectoryLookupBenchmark {
+
+    private static final String[] TABLES = {"passenger", "bus_owner", "ticket_inspector", "admin"};
+    private static final String[] TYPES = {"P", "B", "T", "A"};
+    private static final int USERS_PER_TYPE = 10_000;
+    private static final int SAMPLES = 1024;
+
+    @Param({"passenger", "bus_owner", "ticket_inspector", "admin"})
+    private String table;
+
+    private JdbcTemplate jdbcTemplate;
+    private final String[] emails = new String[SAMPLES];
+    private int next;
+
+    @Setup
+    public void setUp() {
+        jdbcTemplate = new JdbcTemplate(new SingleConnectionDataSource("jdbc:h2:mem:directory_" + table, true));
+        jdbcTemplate.execute("CREATE TABLE user_directory (id INT AUTO_INCREMENT PRIMARY KEY, email VARCHAR(255) NOT NULL UNIQUE, "
+                + "user_type VARCHAR(1), user_id INT NOT NULL, password VARCHAR(255), role_name VARCHAR(255))");
+        for (int t = 0; t < TABLES.length; t++) {
+            jdbcTemplate.execute("CREATE TABLE " + TABLES[t] + " (userid INT PRIMARY KEY, name VARCHAR(255), "
+                    + "email VARCHAR(255) UNIQUE, contact_no VARCHAR(255), password VARCHAR(255), role_id INT)");
+            List<Object[]> users = new ArrayList<>();
+            List<Object[]> entries = new ArrayList<>();
+            for (int id = 1; id <= USERS_PER_TYPE; id++) {
+                String email = TABLES[t] + id + "@test.com";
+                users.add(new Object[]{id, "user" + id, email, "0770000000", "hash", 1});
+                entries.add(new Object[]{email, TYPES[t], id, "hash", "user"});
+            }
+            jdbcTemplate.batchUpdate("INSERT INTO " + TABLES[t] + " VALUES (?, ?, ?, ?, ?, ?)", users);
+            jdbcTemplate.batchUpdate("INSERT INTO user_directory (email, user_type, user_id, password, role_name) "
+                    + "VALUES (?, ?, ?, ?, ?)", entries);
+        }
+        for (int i = 0; i < SAMPLES; i++) {
+            emails[i] = table + (1 + (i * 7919) % USERS_PER_TYPE) + "@test.com";
+        }
+    }
+
+    @TearDown
+    public void tearDown() {
+        jdbcTemplate.execute("DROP ALL OBJECTS");
+    }
+
+    @Benchmark
+    public List<Map<String, Object>> probe() {
+        String email = emails[next++ & (SAMPLES - 1)];
+        for (String candidate : TABLES) {
+            List<Map<String, Object>> user = jdbcTemplate.queryForList("SELECT * FROM " + candidate + " WHERE email = ?", email);
+            if (!user.isEmpty()) {
+                return user;
+            }
+        }
+        return List.of();
+    }
+
+    @Benchmark
+    public List<Map<String, Object>> directory() {
+        return jdbcTemplate.queryForList("SELECT * FROM user_directory WHERE email = ?", emails[next++ & (SAMPLES - 1)]);
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        new Runner(new OptionsBuilder().include(UserDirectoryLookupBenchmark.class.getSimpleName()).build()).run();
+    }
+}